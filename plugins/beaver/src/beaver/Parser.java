@@ -9,6 +9,7 @@
 package beaver;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -212,7 +213,10 @@ public abstract class Parser
 		 */
 		public void alloc(int size)
 		{
-			buffer = new Symbol[(n_marked = size) + 1];
+			if (token_buffer == null || token_buffer.length <= size)
+				token_buffer = new Symbol[size + 1];
+			buffer = token_buffer;
+			n_marked = size;
 			n_read = n_written = 0;
 		}
 		
@@ -401,6 +405,15 @@ public abstract class Parser
 		}
 	}
 
+	/** Initial capacity of the parser's stack. */
+	private static final int INITIAL_STACK_CAPACITY = 256;
+
+	/**
+	 * Largest stack kept for the next parse. A deeply nested source may grow the stacks much further; they are dropped
+	 * once it's parsed so that a pooled parser doesn't hold on to them for good.
+	 */
+	public static final int MAX_RETAINED_STACK_CAPACITY = 4096;
+
 	/** The automaton tables. */
 	private final ParsingTables tables;
 
@@ -418,13 +431,19 @@ public abstract class Parser
 
 	/** Parsing events notification "gateway" */
 	protected Events report;
+
+	/** Simulator reused by all error recoveries of this parser. */
+	private Simulator simulator;
+
+	/** Token accumulator storage reused by all token streams of this parser. */
+	private Symbol[] token_buffer;
 	
 
 	protected Parser(ParsingTables tables)
 	{
 		this.tables = tables;
 		this.accept_action_id = (short) ~tables.rule_infos.length;
-		this.states = new short[256];
+		this.states = new short[INITIAL_STACK_CAPACITY];
 	}
 
     /**
@@ -436,7 +455,14 @@ public abstract class Parser
 	public Object parse(Scanner source) throws IOException, Parser.Exception
 	{
 		init();
-		return parse(new TokenStream(source));
+		try
+		{
+			return parse(new TokenStream(source));
+		}
+		finally
+		{
+			release();
+		}
 	}
     
     /**
@@ -451,8 +477,15 @@ public abstract class Parser
     public Object parse(Scanner source, short alt_goal_marker_id) throws IOException, Parser.Exception
     {
         init();
-        TokenStream in = new TokenStream(source, new Symbol(alt_goal_marker_id));
-        return parse(in);
+        try
+        {
+            TokenStream in = new TokenStream(source, new Symbol(alt_goal_marker_id));
+            return parse(in);
+        }
+        finally
+        {
+            release();
+        }
     }
     
     private Object parse(TokenStream in) throws IOException, Parser.Exception
@@ -470,9 +503,7 @@ public abstract class Parser
                 }
                 else if (act == accept_action_id)
                 {
-                    Symbol goal = _symbols[top];
-                    _symbols = null; // drop this stack to prevent loitering
-                    return goal.value;
+                    return _symbols[top].value;
                 }
                 else if (act < 0)
                 {
@@ -484,7 +515,6 @@ public abstract class Parser
                     }
                     else if (act == accept_action_id)
                     {
-                        _symbols = null; // no loitering
                         return nt.value;
                     }
                     else
@@ -519,12 +549,61 @@ public abstract class Parser
 	{
 		if (report == null) report = new Events();
 		
-		_symbols = new Symbol[states.length];
+		if (_symbols == null || _symbols.length != states.length)
+			_symbols = new Symbol[states.length];
 		top = 0; // i.e. it's not empty
 		_symbols[top] = new Symbol("none"); // need a symbol here for a default reduce on the very first erroneous token  
 		states[top] = 1; // initial/first state
 	}
 
+	/**
+	 * Drops the references held by the stack and the token accumulator once a parse is over to prevent loitering.
+	 * The arrays themselves are kept to be reused by the next parse, unless they grew past
+	 * {@link #MAX_RETAINED_STACK_CAPACITY}.
+	 */
+	private void release()
+	{
+		if (states.length > MAX_RETAINED_STACK_CAPACITY)
+		{
+			states = new short[INITIAL_STACK_CAPACITY];
+			_symbols = null; // init() allocates it again for the new states
+		}
+		else
+			Arrays.fill(_symbols, null);
+		if (simulator != null && simulator.states != null && simulator.states.length > MAX_RETAINED_STACK_CAPACITY)
+			simulator = null;
+		if (token_buffer != null)
+		{
+			if (token_buffer.length > MAX_RETAINED_STACK_CAPACITY)
+				token_buffer = null;
+			else
+				Arrays.fill(token_buffer, null);
+		}
+	}
+
+	/**
+	 * @return number of entries the parser's stack can hold before it has to grow
+	 */
+	public int getStackCapacity()
+	{
+		return states.length;
+	}
+
+	/**
+	 * Returns the simulator used to try recoveries from syntax errors. The simulator, and its stack, are created once
+	 * per parser and reused by all recoveries.
+	 * 
+	 * @return simulator ready to simulate parsing from the current state of this parser
+	 */
+	public Simulator getSimulator()
+	{
+		if (simulator == null)
+			simulator = new Simulator();
+		else
+			simulator.min_top = 0; // the parser's stack has changed since the last simulation
+		return simulator;
+	}
+
 	/**
 	 * Increases the stack capacity if it has no room for new entries.
 	 */
@@ -600,7 +679,7 @@ public abstract class Parser
 		if (token.id == 0) // end of input
 			throw new Parser.Exception("Cannot recover from the syntax error");
 		
-		Simulator sim = new Simulator();
+		Simulator sim = getSimulator();
 		in.alloc(3);
 		if (sim.parse(in)) // just delete "token" from the stream
 		{
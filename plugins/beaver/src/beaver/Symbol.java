@@ -8,10 +8,16 @@
 
 package beaver;
 
+import java.io.Serializable;
+
 /**
  * Represents a symbol of a grammar.
+ * <p/>
+ * Symbols, and so the trees built from them, are serializable so that parse results can be kept on disk. There's no
+ * serialVersionUID on purpose: the computed one keeps a tree written by another version of its classes from being
+ * read back.
  */
-public class Symbol
+public class Symbol implements Serializable
 {
 	static private final int COLUMN_FIELD_BITS = 12;
 	static private final int COLUMN_FIELD_MASK = (1 << COLUMN_FIELD_BITS) - 1; 
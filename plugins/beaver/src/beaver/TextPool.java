@@ -0,0 +1,189 @@
+/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+ * This file is part of Beaver Parser Generator.                       *
+ * Copyright (C) 2003,2004 Alexander Demenchuk <alder@softanvil.com>.  *
+ * All rights reserved.                                                *
+ * See the file "LICENSE" for the terms and conditions for copying,    *
+ * distribution and modification of Beaver.                            *
+ * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+
+package beaver;
+
+import java.util.Arrays;
+
+/**
+ * Interns token values straight from a scanner's character buffer. A value is materialized as a String only the first
+ * time its text is seen; later occurrences of the same text return that String without allocating anything, which is
+ * what makes identifiers, numbers and strings cheap to deliver to a parser.
+ * <p>
+ * The pool is meant to be owned by a single scanner and cleared whenever the scanner is reset. Its table is kept
+ * across clears so that rescanning a document of similar size does not allocate a new one, unless an unusually large
+ * document grew it past {@link #MAX_RETAINED_CAPACITY}.
+ * </p>
+ */
+public class TextPool
+{
+	private static final int INITIAL_CAPACITY = 256;
+
+	/**
+	 * Largest table kept by {@link #clear()}. A bigger one is dropped so that a scanner that once read a huge document
+	 * doesn't hold on to its table for good.
+	 */
+	public static final int MAX_RETAINED_CAPACITY = 16384;
+
+	private String[] values;
+	private int[] hashes;
+	private int size;
+
+	public TextPool()
+	{
+		values = new String[INITIAL_CAPACITY];
+		hashes = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Returns the pooled String having the text of the given range of characters.
+	 * 
+	 * @param buffer characters holding the text
+	 * @param offset of the first character of the text
+	 * @param length of the text
+	 * @return pooled text
+	 */
+	public String add(char[] buffer, int offset, int length)
+	{
+		int hash = 0;
+		for (int i = offset, end = offset + length; i < end; i++)
+		{
+			hash = 31 * hash + buffer[i];
+		}
+
+		int mask = values.length - 1;
+		int index = hash & mask;
+		String value;
+		while ((value = values[index]) != null)
+		{
+			if (hashes[index] == hash && matches(value, buffer, offset, length))
+			{
+				return value;
+			}
+			index = (index + 1) & mask;
+		}
+
+		value = new String(buffer, offset, length);
+		put(index, hash, value);
+		return value;
+	}
+
+	/**
+	 * Returns the pooled String equal to the given one. When there's none yet, the given String is the one pooled.
+	 * 
+	 * @param text to pool
+	 * @return pooled text
+	 */
+	public String add(String text)
+	{
+		if (text == null)
+		{
+			return null;
+		}
+
+		// String.hashCode() is the hash computed over a range of characters
+		int hash = text.hashCode();
+		int mask = values.length - 1;
+		int index = hash & mask;
+		String value;
+		while ((value = values[index]) != null)
+		{
+			if (hashes[index] == hash && value.equals(text))
+			{
+				return value;
+			}
+			index = (index + 1) & mask;
+		}
+
+		put(index, hash, text);
+		return text;
+	}
+
+	/**
+	 * Forgets all pooled values.
+	 */
+	public void clear()
+	{
+		if (values.length > MAX_RETAINED_CAPACITY)
+		{
+			values = new String[INITIAL_CAPACITY];
+			hashes = new int[INITIAL_CAPACITY];
+		}
+		else if (size > 0)
+		{
+			Arrays.fill(values, null);
+		}
+		size = 0;
+	}
+
+	/**
+	 * @return number of pooled values
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return number of slots of the table holding the pooled values
+	 */
+	public int capacity()
+	{
+		return values.length;
+	}
+
+	private void put(int index, int hash, String value)
+	{
+		values[index] = value;
+		hashes[index] = hash;
+		if (++size > values.length >> 1)
+		{
+			rehash();
+		}
+	}
+
+	private static boolean matches(String value, char[] buffer, int offset, int length)
+	{
+		if (value.length() != length)
+		{
+			return false;
+		}
+		for (int i = 0; i < length; i++)
+		{
+			if (value.charAt(i) != buffer[offset + i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void rehash()
+	{
+		String[] old_values = values;
+		int[] old_hashes = hashes;
+
+		values = new String[old_values.length * 2];
+		hashes = new int[values.length];
+
+		int mask = values.length - 1;
+		for (int i = 0; i < old_values.length; i++)
+		{
+			if (old_values[i] != null)
+			{
+				int index = old_hashes[i] & mask;
+				while (values[index] != null)
+				{
+					index = (index + 1) & mask;
+				}
+				values[index] = old_values[i];
+				hashes[index] = old_hashes[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,17 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.buildpath.core;
+
+public interface IPreferenceConstants
+{
+	/**
+	 * The number of threads running the build participants on the files of a build. Values less than one use one
+	 * thread per available processor; a value of one builds files serially on the builder's thread.
+	 */
+	public static final String BUILD_WORKER_COUNT = "BUILD_WORKER_COUNT"; //$NON-NLS-1$
+}
@@ -62,6 +62,11 @@ public interface IBuildParticipant
 	/**
 	 * Called on an individual file. For incremental builds we traverse the diff and call this for every updated/added
 	 * file. For full builds we traverse the project to collect the files and call this once per file.
+	 * <p>
+	 * The builder may call this from worker threads, building several files at once, but never for two files at once on
+	 * the same participant: a participant may keep the state of the file it builds in its fields. It must not run
+	 * workspace operations (the builder updates the markers from the problems put in the context).
+	 * </p>
 	 * 
 	 * @param context
 	 * @param monitor
@@ -118,6 +123,14 @@ public interface IBuildParticipant
 	 */
 	public boolean isRequired();
 
+	/**
+	 * Thread-safe participants may build a file on another thread than the one running the build or reconcile, at the
+	 * same time as other participants build the same file.
+	 * 
+	 * @return
+	 */
+	public boolean isThreadSafe();
+
 	/**
 	 * Returns the list of filters.
 	 * 
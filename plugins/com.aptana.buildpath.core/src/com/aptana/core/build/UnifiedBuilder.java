@@ -11,10 +11,24 @@ import java.net.URI;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
@@ -33,12 +47,18 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.MultiRule;
 
 import com.aptana.buildpath.core.BuildPathCorePlugin;
 import com.aptana.buildpath.core.BuildPathManager;
 import com.aptana.buildpath.core.IBuildPathEntry;
+import com.aptana.buildpath.core.IPreferenceConstants;
 import com.aptana.core.CorePlugin;
 import com.aptana.core.IDebugScopes;
 import com.aptana.core.IFilter;
@@ -62,8 +82,24 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 {
 
 	public static final String ID = "com.aptana.ide.core.unifiedBuilder"; //$NON-NLS-1$
+
+	/**
+	 * The number of files whose markers are updated in a single workspace operation
+	 */
+	private static final int MARKER_BATCH_SIZE = 50;
+
+	/**
+	 * The time (in milliseconds) we wait for a worker to build a file before checking for cancellation
+	 */
+	private static final long POLL_INTERVAL = 100;
+
 	private boolean traceParticipantsEnabled = false;
 
+	/**
+	 * The kind of the build running, to start the participants created for the workers of a parallel build
+	 */
+	private int buildKind;
+
 	public UnifiedBuilder()
 	{
 	}
@@ -156,6 +192,7 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		}
 		List<IBuildParticipant> participants = manager.getAllBuildParticipants();
 		participants = filterToEnabled(participants, project);
+		buildKind = kind;
 		buildStarting(participants, kind, sub.newChild(10));
 
 		if (kind == IncrementalProjectBuilder.FULL_BUILD)
@@ -488,6 +525,16 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		sub.done();
 	}
 
+	/**
+	 * Runs the participants on the files. The markers of the files are updated in batches, each batch in a single
+	 * workspace operation. When there are several files, more than one worker (see {@link #getWorkerCount()}) and
+	 * thread-safe participants, the files are built on a pool of worker threads.
+	 * 
+	 * @param participants
+	 * @param files
+	 * @param monitor
+	 * @throws CoreException
+	 */
 	private void doBuildFiles(List<IBuildParticipant> participants, Collection<IFile> files, IProgressMonitor monitor)
 			throws CoreException
 	{
@@ -496,30 +543,268 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 			return;
 		}
 
+		int workerCount = Math.min(getWorkerCount(), files.size());
+		if (workerCount > 1 && !getThreadSafeParticipants(participants).isEmpty())
+		{
+			doBuildFilesInParallel(participants, files, workerCount, monitor);
+			return;
+		}
+
 		SubMonitor sub = SubMonitor.convert(monitor, 15 * files.size());
-		for (IFile file : files)
+		Map<IFile, Map<String, Collection<IProblem>>> problems =
+				new LinkedHashMap<IFile, Map<String, Collection<IProblem>>>();
+		try
 		{
-			BuildContext context = new BuildContext(file);
-			sub.worked(1);
+			for (IFile file : files)
+			{
+				BuildContext context = new BuildContext(file);
+				sub.worked(1);
 
-			IBuildParticipantManager manager = getBuildParticipantManager();
-			if (manager == null)
+				IBuildParticipantManager manager = getBuildParticipantManager();
+				if (manager == null)
+				{
+					return;
+				}
+				List<IBuildParticipant> filteredParticipants = manager.filterParticipants(participants,
+						context.getContentType());
+				sub.worked(2);
+
+				runParticipants(context, filteredParticipants, sub.newChild(12));
+				addProblems(problems, context);
+				if (problems.size() >= MARKER_BATCH_SIZE)
+				{
+					updateMarkers(problems, sub.newChild(0));
+					problems.clear();
+				}
+
+				// stop building if canceled
+				if (sub.isCanceled())
+				{
+					break;
+				}
+			}
+		}
+		finally
+		{
+			updateMarkers(problems, sub.newChild(0));
+			sub.done();
+		}
+	}
+
+	/**
+	 * Builds the files on a pool of worker threads. Only the thread-safe participants (see
+	 * {@link IBuildParticipant#isThreadSafe()}) run on the workers: each file is built by a single worker, which runs
+	 * them in order so that they share the AST of the {@link BuildContext}, then by this thread, which runs the other
+	 * participants on the same context. Participants keep the state of the file they build in fields, so each worker
+	 * builds with its own participant instances, started and ended along with the ones of the build.
+	 * <p>
+	 * Workers don't touch the workspace: this thread reads the files (which may refresh them, under the build rule it
+	 * holds) before handing them to the workers, and updates the markers from the problems the workers collected.
+	 * </p>
+	 * 
+	 * @param participants
+	 * @param files
+	 * @param workerCount
+	 * @param monitor
+	 * @throws CoreException
+	 */
+	private void doBuildFilesInParallel(List<IBuildParticipant> participants, Collection<IFile> files,
+			int workerCount, IProgressMonitor monitor) throws CoreException
+	{
+		IBuildParticipantManager manager = getBuildParticipantManager();
+		if (manager == null)
+		{
+			return;
+		}
+
+		SubMonitor sub = SubMonitor.convert(monitor, 15 * files.size());
+		// SubMonitors aren't thread-safe, so workers only share a monitor we use to cancel them
+		IProgressMonitor workerMonitor = new NullProgressMonitor();
+		List<IBuildParticipant> threadSafeParticipants = getThreadSafeParticipants(participants);
+		List<IBuildParticipant> serialParticipants = new ArrayList<IBuildParticipant>(participants);
+		serialParticipants.removeAll(threadSafeParticipants);
+		List<List<IBuildParticipant>> workerParticipants = createWorkerParticipants(threadSafeParticipants,
+				workerCount - 1);
+		BlockingQueue<List<IBuildParticipant>> idleParticipants = new ArrayBlockingQueue<List<IBuildParticipant>>(
+				workerCount);
+		idleParticipants.add(threadSafeParticipants);
+		idleParticipants.addAll(workerParticipants);
+		ExecutorService executor = Executors.newFixedThreadPool(workerCount, new BuilderThreadFactory());
+		CompletionService<BuildContext> completionService = new ExecutorCompletionService<BuildContext>(executor);
+		Map<IFile, Map<String, Collection<IProblem>>> problems =
+				new LinkedHashMap<IFile, Map<String, Collection<IProblem>>>();
+		Iterator<IFile> iterator = files.iterator();
+		int running = 0;
+
+		try
+		{
+			while (iterator.hasNext() || running > 0)
 			{
-				return;
+				// only queue a few files ahead of the workers so a cancel doesn't leave a backlog behind
+				while (iterator.hasNext() && running < workerCount * 2)
+				{
+					BuildContext context = new BuildContext(iterator.next());
+					String contentType = context.getContentType();
+					context.getContents();
+					sub.worked(3);
+
+					completionService.submit(new BuildFileTask(context, contentType, manager, idleParticipants,
+							workerMonitor));
+					running++;
+				}
+
+				Future<BuildContext> result = completionService.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+
+				// stop building if canceled
+				if (sub.isCanceled())
+				{
+					break;
+				}
+				if (result == null)
+				{
+					continue;
+				}
+
+				running--;
+				BuildContext context = getBuiltContext(result);
+				runParticipants(context, manager.filterParticipants(serialParticipants, context.getContentType()),
+						sub.newChild(12));
+				addProblems(problems, context);
+
+				if (problems.size() >= MARKER_BATCH_SIZE)
+				{
+					updateMarkers(problems, sub.newChild(0));
+					problems.clear();
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			workerMonitor.setCanceled(true);
+			// don't interrupt the workers, participants may be writing to an index: let them stop at the next check of
+			// the canceled monitor, before the participants are told the build ended
+			executor.shutdown();
+			try
+			{
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
 			}
-			List<IBuildParticipant> filteredParticipants = manager.filterParticipants(participants,
-					context.getContentType());
-			sub.worked(2);
 
-			buildFile(context, filteredParticipants, sub.newChild(12));
+			for (List<IBuildParticipant> started : workerParticipants)
+			{
+				buildEnding(started, sub.newChild(0));
+			}
 
-			// stop building if canceled
-			if (sub.isCanceled())
+			// keep the markers of the files that were completely built, like the serial loop does when it stops early
+			updateMarkers(problems, sub.newChild(0));
+			sub.done();
+		}
+	}
+
+	/**
+	 * Creates and starts the thread-safe participants of the additional workers of a parallel build. A manager handing
+	 * out the same instances again can't give each worker its own: the workers then share the instances of the build,
+	 * one at a time.
+	 * 
+	 * @param participants
+	 *            the thread-safe participants of the build
+	 * @param count
+	 *            the number of additional workers
+	 * @return the participants of each additional worker
+	 */
+	private List<List<IBuildParticipant>> createWorkerParticipants(List<IBuildParticipant> participants, int count)
+	{
+		List<List<IBuildParticipant>> result = new ArrayList<List<IBuildParticipant>>(count);
+		IBuildParticipantManager manager = getBuildParticipantManager();
+		Set<IBuildParticipant> used = new HashSet<IBuildParticipant>(participants);
+		for (int i = 0; i < count; i++)
+		{
+			List<IBuildParticipant> created = getThreadSafeParticipants(filterToEnabled(
+					manager.getAllBuildParticipants(), getProjectHandle()));
+			for (IBuildParticipant participant : created)
 			{
-				break;
+				if (!used.add(participant))
+				{
+					return result;
+				}
 			}
+			buildStarting(created, buildKind, new NullProgressMonitor());
+			result.add(created);
 		}
-		sub.done();
+		return result;
+	}
+
+	/**
+	 * Returns the participants that may build a file on a worker thread
+	 * 
+	 * @param participants
+	 * @return
+	 */
+	private static List<IBuildParticipant> getThreadSafeParticipants(List<IBuildParticipant> participants)
+	{
+		return CollectionsUtil.filter(participants, new IFilter<IBuildParticipant>()
+		{
+			public boolean include(IBuildParticipant item)
+			{
+				return item.isThreadSafe();
+			}
+		});
+	}
+
+	/**
+	 * Returns the context built by a finished {@link BuildFileTask}, rethrowing anything it threw
+	 * 
+	 * @param result
+	 * @return
+	 * @throws CoreException
+	 * @throws InterruptedException
+	 */
+	private BuildContext getBuiltContext(Future<BuildContext> result) throws CoreException, InterruptedException
+	{
+		try
+		{
+			return result.get();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+
+			if (cause instanceof CoreException)
+			{
+				throw (CoreException) cause;
+			}
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error)
+			{
+				throw (Error) cause;
+			}
+			throw new CoreException(new Status(IStatus.ERROR, BuildPathCorePlugin.PLUGIN_ID, cause.getMessage(),
+					cause));
+		}
+	}
+
+	/**
+	 * Returns the number of threads used to build several files, as set by the
+	 * {@link IPreferenceConstants#BUILD_WORKER_COUNT} preference
+	 * 
+	 * @return
+	 */
+	protected int getWorkerCount()
+	{
+		int workerCount = Platform.getPreferencesService().getInt(BuildPathCorePlugin.PLUGIN_ID,
+				IPreferenceConstants.BUILD_WORKER_COUNT, 0, null);
+
+		return (workerCount > 0) ? workerCount : Runtime.getRuntime().availableProcessors();
 	}
 
 	/**
@@ -597,6 +882,19 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		}
 
 		SubMonitor sub = SubMonitor.convert(monitor, 2 * participants.size());
+		runParticipants(context, participants, sub.newChild(participants.size()));
+		updateMarkers(context, sub.newChild(participants.size()));
+		sub.done();
+	}
+
+	private void runParticipants(BuildContext context, List<IBuildParticipant> participants, IProgressMonitor monitor)
+	{
+		if (CollectionsUtil.isEmpty(participants))
+		{
+			return;
+		}
+
+		SubMonitor sub = SubMonitor.convert(monitor, participants.size());
 		for (IBuildParticipant participant : participants)
 		{
 			long startTime = System.nanoTime();
@@ -616,31 +914,66 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 				break;
 			}
 		}
-		updateMarkers(context, sub.newChild(participants.size()));
 		sub.done();
 	}
 
+	private void addProblems(Map<IFile, Map<String, Collection<IProblem>>> problems, BuildContext context)
+	{
+		Map<String, Collection<IProblem>> itemsByType = context.getProblems();
+		if (!CollectionsUtil.isEmpty(itemsByType))
+		{
+			problems.put(context.getFile(), itemsByType);
+		}
+	}
+
 	private void updateMarkers(BuildContext context, IProgressMonitor monitor)
 	{
-		final IFile file = context.getFile();
-		final Map<String, Collection<IProblem>> itemsByType = context.getProblems();
+		Map<String, Collection<IProblem>> itemsByType = context.getProblems();
 		if (CollectionsUtil.isEmpty(itemsByType))
 		{
 			return;
 		}
+		updateMarkers(Collections.singletonMap(context.getFile(), itemsByType), monitor);
+	}
+
+	/**
+	 * Updates the markers of several files in a single workspace operation, under the combined marker rules of the
+	 * files.
+	 * 
+	 * @param problems
+	 *            the problems of each file, by marker type
+	 * @param monitor
+	 */
+	private void updateMarkers(final Map<IFile, Map<String, Collection<IProblem>>> problems, IProgressMonitor monitor)
+	{
+		if (problems.isEmpty())
+		{
+			return;
+		}
 		// Performance fix: schedules the error handling as a single workspace update so that we don't trigger a
-		// bunch of resource updated events while problem markers are being added to the file.
+		// bunch of resource updated events while problem markers are being added to the files.
 		IWorkspaceRunnable runnable = new IWorkspaceRunnable()
 		{
 			public void run(IProgressMonitor monitor)
 			{
-				updateMarkers(file, itemsByType, monitor);
+				SubMonitor sub = SubMonitor.convert(monitor, problems.size());
+				for (Map.Entry<IFile, Map<String, Collection<IProblem>>> entry : problems.entrySet())
+				{
+					updateMarkers(entry.getKey(), entry.getValue(), sub.newChild(1));
+				}
+				sub.done();
 			}
 		};
 
+		ISchedulingRule rule = null;
+		for (IFile file : problems.keySet())
+		{
+			rule = MultiRule.combine(rule, getMarkerRule(file));
+		}
+
 		try
 		{
-			ResourcesPlugin.getWorkspace().run(runnable, getMarkerRule(file), IWorkspace.AVOID_UPDATE, monitor);
+			ResourcesPlugin.getWorkspace().run(runnable, rule, IWorkspace.AVOID_UPDATE, monitor);
 		}
 		catch (CoreException e)
 		{
@@ -710,6 +1043,61 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		sub.done();
 	}
 
+	/**
+	 * Runs the thread-safe participants on a file on a worker thread and returns its context, holding the problems they
+	 * found. The task borrows a set of participants no other worker is using for the time it builds the file.
+	 */
+	private class BuildFileTask implements Callable<BuildContext>
+	{
+		private final BuildContext context;
+		private final String contentType;
+		private final IBuildParticipantManager manager;
+		private final BlockingQueue<List<IBuildParticipant>> idleParticipants;
+		private final IProgressMonitor monitor;
+
+		BuildFileTask(BuildContext context, String contentType, IBuildParticipantManager manager,
+				BlockingQueue<List<IBuildParticipant>> idleParticipants, IProgressMonitor monitor)
+		{
+			this.context = context;
+			this.contentType = contentType;
+			this.manager = manager;
+			this.idleParticipants = idleParticipants;
+			this.monitor = monitor;
+		}
+
+		public BuildContext call() throws CoreException, InterruptedException
+		{
+			if (monitor.isCanceled())
+			{
+				throw new CoreException(Status.CANCEL_STATUS);
+			}
+
+			List<IBuildParticipant> participants = idleParticipants.take();
+			try
+			{
+				runParticipants(context, manager.filterParticipants(participants, contentType), monitor);
+			}
+			finally
+			{
+				idleParticipants.add(participants);
+			}
+			return context;
+		}
+	}
+
+	/**
+	 * Creates the daemon worker threads used to build files in parallel
+	 */
+	private static class BuilderThreadFactory implements ThreadFactory
+	{
+		public Thread newThread(Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, "Builder"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
 	/**
 	 * Collects all files with infinite depth. Used to grab all files inside an {@link IProject} for full builds.
 	 * 
@@ -0,0 +1,441 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.util;
+
+import java.text.MessageFormat;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aptana.core.CorePlugin;
+import com.aptana.core.logging.IdeLog;
+
+/**
+ * A pool which grows with the number of concurrent users of its objects, up to a maximum size, and shrinks back to a
+ * minimum size when they're not needed anymore. Checking objects out and in doesn't lock: only the threads which find
+ * the pool exhausted wait for an object to be checked in.
+ * <p>
+ * Instead of expiring objects by age (which needs a time stamp per object and a reaping thread), the pool tracks the
+ * lowest number of idle objects during a trimming period: that many objects weren't needed during the period, so they
+ * are expired (down to the minimum size) by the first check in or check out done after it.
+ * </p>
+ * <p>
+ * The pool keeps counts of its creations, check outs and waits, which can be used to tune its sizes.
+ * </p>
+ */
+public abstract class ElasticObjectPool<T> implements IObjectPool<T>
+{
+	/**
+	 * The default time (in milliseconds) a check out waits for an object when the pool is exhausted. After that an
+	 * object is created anyway, so that a thread checking out several objects of the same pool can't deadlock.
+	 */
+	private static final long DEFAULT_MAXIMUM_WAIT = 2000;
+
+	/**
+	 * The default period (in milliseconds) after which the objects which stayed idle during the whole period are
+	 * expired.
+	 */
+	private static final long DEFAULT_TRIM_PERIOD = 60000;
+
+	private final int minimumSize;
+	private final int maximumSize;
+	private final long maximumWait;
+	private final long trimPeriod;
+
+	private final ConcurrentLinkedQueue<T> idle;
+	private final AtomicInteger idleCount;
+	private final AtomicInteger lowestIdleCount;
+	private final AtomicInteger size;
+	private final AtomicLong lastTrim;
+	private final AtomicInteger waiters;
+	private final Object waitLock;
+	private volatile boolean disposed;
+
+	private final AtomicLong checkOutCount;
+	private final AtomicLong createdCount;
+	private final AtomicLong expiredCount;
+	private final AtomicLong waitCount;
+	private final AtomicLong waitTime;
+
+	/**
+	 * ElasticObjectPool
+	 * 
+	 * @param minimumSize
+	 *            the number of objects kept even when they're not used
+	 * @param maximumSize
+	 *            the number of objects from which a check out waits for another one to be checked in
+	 */
+	public ElasticObjectPool(int minimumSize, int maximumSize)
+	{
+		this(minimumSize, maximumSize, DEFAULT_MAXIMUM_WAIT, DEFAULT_TRIM_PERIOD);
+	}
+
+	/**
+	 * ElasticObjectPool
+	 * 
+	 * @param minimumSize
+	 *            the number of objects kept even when they're not used
+	 * @param maximumSize
+	 *            the number of objects from which a check out waits for another one to be checked in
+	 * @param maximumWait
+	 *            the time (in milliseconds) after which a waiting check out creates an object anyway
+	 * @param trimPeriod
+	 *            the period (in milliseconds) during which an object must be idle to be expired
+	 */
+	public ElasticObjectPool(int minimumSize, int maximumSize, long maximumWait, long trimPeriod)
+	{
+		this.maximumSize = Math.max(1, maximumSize);
+		this.minimumSize = Math.max(0, Math.min(minimumSize, this.maximumSize));
+		this.maximumWait = maximumWait;
+		this.trimPeriod = trimPeriod;
+
+		idle = new ConcurrentLinkedQueue<T>();
+		idleCount = new AtomicInteger();
+		lowestIdleCount = new AtomicInteger();
+		size = new AtomicInteger();
+		lastTrim = new AtomicLong(System.currentTimeMillis());
+		waiters = new AtomicInteger();
+		waitLock = new Object();
+
+		checkOutCount = new AtomicLong();
+		createdCount = new AtomicLong();
+		expiredCount = new AtomicLong();
+		waitCount = new AtomicLong();
+		waitTime = new AtomicLong();
+	}
+
+	public abstract T create();
+
+	public abstract void expire(T o);
+
+	/**
+	 * Called when an object is checked in: an object which doesn't validate is expired instead of being pooled.
+	 */
+	public abstract boolean validate(T o);
+
+	/**
+	 * Returns an idle object, or a new one if there's none and the pool isn't at its maximum size. Otherwise waits for
+	 * an object to be checked in.
+	 * 
+	 * @return the object, or null if one had to be created and {@link #create()} failed
+	 */
+	public T checkOut()
+	{
+		checkOutCount.incrementAndGet();
+		trimIfNeeded();
+
+		long waitStart = 0;
+		try
+		{
+			while (true)
+			{
+				T t = poll();
+				if (t != null)
+				{
+					return t;
+				}
+
+				int current = size.get();
+				if (current < maximumSize)
+				{
+					if (size.compareAndSet(current, current + 1))
+					{
+						return newObject();
+					}
+					continue;
+				}
+
+				// The pool is exhausted: wait for a check in
+				if (waitStart == 0)
+				{
+					waitStart = System.nanoTime();
+					waitCount.incrementAndGet();
+				}
+				long remaining = maximumWait - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - waitStart);
+				if (remaining <= 0 || !await(remaining))
+				{
+					// the objects may be held by this thread: grow past the maximum size
+					size.incrementAndGet();
+					return newObject();
+				}
+			}
+		}
+		finally
+		{
+			if (waitStart != 0)
+			{
+				waitTime.addAndGet(System.nanoTime() - waitStart);
+			}
+		}
+	}
+
+	/**
+	 * Returns the object to the pool. It's expired if it doesn't validate, if the pool grew past its maximum size to
+	 * create it or if the pool was disposed.
+	 * 
+	 * @param t
+	 */
+	public void checkIn(T t)
+	{
+		if (t == null)
+		{
+			return;
+		}
+
+		if (disposed || size.get() > maximumSize || !validate(t))
+		{
+			size.decrementAndGet();
+			doExpire(t);
+		}
+		else
+		{
+			idle.offer(t);
+			idleCount.incrementAndGet();
+			if (waiters.get() > 0)
+			{
+				synchronized (waitLock)
+				{
+					waitLock.notify();
+				}
+			}
+		}
+
+		trimIfNeeded();
+	}
+
+	/**
+	 * Creates objects until the pool has its minimum size, so that the first check outs don't pay for their creation.
+	 */
+	public void warmUp()
+	{
+		int current;
+		while (!disposed && (current = size.get()) < minimumSize)
+		{
+			if (!size.compareAndSet(current, current + 1))
+			{
+				continue;
+			}
+
+			T t = newObject();
+			if (t == null)
+			{
+				break;
+			}
+			checkIn(t);
+		}
+	}
+
+	/**
+	 * Expires the objects which stayed idle during the whole trimming period, keeping the minimum size of the pool.
+	 */
+	public void trim()
+	{
+		lastTrim.set(System.currentTimeMillis());
+
+		int unused = lowestIdleCount.get();
+		for (int i = 0; i < unused && size.get() > minimumSize; i++)
+		{
+			T t = idle.poll();
+			if (t == null)
+			{
+				break;
+			}
+			idleCount.decrementAndGet();
+			size.decrementAndGet();
+			doExpire(t);
+		}
+		lowestIdleCount.set(idleCount.get());
+	}
+
+	/**
+	 * Expires all the idle objects. The objects which are checked out are expired when they're checked in.
+	 */
+	public void dispose()
+	{
+		disposed = true;
+
+		T t;
+		while ((t = idle.poll()) != null)
+		{
+			idleCount.decrementAndGet();
+			size.decrementAndGet();
+			doExpire(t);
+		}
+
+		int locked = size.get();
+		if (locked > 0)
+		{
+			IdeLog.logWarning(CorePlugin.getDefault(),
+					MessageFormat.format("Killed a pool that still has {0} locked items", locked)); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * @return the number of objects in the pool, idle or checked out
+	 */
+	public int getSize()
+	{
+		return size.get();
+	}
+
+	/**
+	 * @return the number of objects waiting to be checked out
+	 */
+	public int getIdleCount()
+	{
+		return idleCount.get();
+	}
+
+	/**
+	 * @return the number of check outs since the pool was created
+	 */
+	public long getCheckOutCount()
+	{
+		return checkOutCount.get();
+	}
+
+	/**
+	 * @return the number of objects created since the pool was created
+	 */
+	public long getCreatedCount()
+	{
+		return createdCount.get();
+	}
+
+	/**
+	 * @return the number of objects expired since the pool was created
+	 */
+	public long getExpiredCount()
+	{
+		return expiredCount.get();
+	}
+
+	/**
+	 * @return the number of check outs which found the pool exhausted
+	 */
+	public long getWaitCount()
+	{
+		return waitCount.get();
+	}
+
+	/**
+	 * @return the total time (in milliseconds) spent waiting by the check outs which found the pool exhausted
+	 */
+	public long getWaitTime()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(waitTime.get());
+	}
+
+	@Override
+	public String toString()
+	{
+		return MessageFormat.format("{0}[size: {1}, idle: {2}, check outs: {3}, created: {4}, expired: {5}, " //$NON-NLS-1$
+				+ "waits: {6}, wait time: {7}ms]", getClass().getSimpleName(), getSize(), getIdleCount(), //$NON-NLS-1$
+				getCheckOutCount(), getCreatedCount(), getExpiredCount(), getWaitCount(), getWaitTime());
+	}
+
+	/**
+	 * Takes an idle object, keeping track of the lowest number of idle objects
+	 * 
+	 * @return the object, or null if there's none
+	 */
+	private T poll()
+	{
+		T t = idle.poll();
+		if (t == null)
+		{
+			return null;
+		}
+
+		int count = idleCount.decrementAndGet();
+		int lowest;
+		while (count < (lowest = lowestIdleCount.get()) && !lowestIdleCount.compareAndSet(lowest, count))
+		{
+			// retry: another thread changed the lowest count
+		}
+		return t;
+	}
+
+	/**
+	 * Creates an object for which the size of the pool was already incremented
+	 * 
+	 * @return
+	 */
+	private T newObject()
+	{
+		T t = null;
+		try
+		{
+			t = create();
+		}
+		finally
+		{
+			if (t == null)
+			{
+				size.decrementAndGet();
+			}
+			else
+			{
+				createdCount.incrementAndGet();
+			}
+		}
+		return t;
+	}
+
+	private void doExpire(T t)
+	{
+		expiredCount.incrementAndGet();
+		expire(t);
+	}
+
+	/**
+	 * Waits for an object to be checked in
+	 * 
+	 * @param timeout
+	 *            in milliseconds
+	 * @return false if the thread was interrupted
+	 */
+	private boolean await(long timeout)
+	{
+		waiters.incrementAndGet();
+		try
+		{
+			synchronized (waitLock)
+			{
+				if (idle.isEmpty())
+				{
+					waitLock.wait(timeout);
+				}
+			}
+			return true;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		finally
+		{
+			waiters.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Trims the pool if the trimming period is over, in the first thread noticing it
+	 */
+	private void trimIfNeeded()
+	{
+		long last = lastTrim.get();
+		if (System.currentTimeMillis() - last >= trimPeriod
+				&& lastTrim.compareAndSet(last, System.currentTimeMillis()))
+		{
+			trim();
+		}
+	}
+}
@@ -21,6 +21,7 @@ import com.aptana.css.core.parsing.ast.CSSAttributeSelectorNode;
 import com.aptana.css.core.parsing.ast.CSSRuleNode;
 import com.aptana.css.core.parsing.ast.CSSTermNode;
 import com.aptana.index.core.AbstractFileIndexingParticipant;
+import com.aptana.index.core.DocumentBatch;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.build.BuildContext;
 import com.aptana.parsing.ast.IParseNode;
@@ -38,7 +39,9 @@ public class CSSFileIndexingParticipant extends AbstractFileIndexingParticipant
 			if (ast != null)
 			{
 				// TODO Pass along the monitor so we can provide very fine-grained detail on progress...
-				walkNode(index, context.getURI(), ast);
+				DocumentBatch batch = index.createDocumentBatch(context.getURI());
+				walkNode(batch, ast);
+				batch.commit();
 			}
 		}
 		catch (CoreException e)
@@ -61,6 +64,19 @@ public class CSSFileIndexingParticipant extends AbstractFileIndexingParticipant
 	 * @param current
 	 */
 	public void walkNode(Index index, URI uri, IParseNode current)
+	{
+		DocumentBatch batch = index.createDocumentBatch(uri);
+		walkNode(batch, current);
+		batch.commit();
+	}
+
+	/**
+	 * Collect the entries for a node and its descendants in a batch
+	 * 
+	 * @param batch
+	 * @param current
+	 */
+	public void walkNode(DocumentBatch batch, IParseNode current)
 	{
 		if (current == null)
 		{
@@ -73,11 +89,11 @@ public class CSSFileIndexingParticipant extends AbstractFileIndexingParticipant
 			String text = cssAttributeSelectorNode.getText();
 			if (!StringUtil.isEmpty(text) && text.charAt(0) == '.')
 			{
-				addIndex(index, uri, ICSSIndexConstants.CLASS, text.substring(1));
+				addIndex(batch, ICSSIndexConstants.CLASS, text.substring(1));
 			}
 			else if (!StringUtil.isEmpty(text) && text.charAt(0) == '#')
 			{
-				addIndex(index, uri, ICSSIndexConstants.IDENTIFIER, text.substring(1));
+				addIndex(batch, ICSSIndexConstants.IDENTIFIER, text.substring(1));
 			}
 		}
 
@@ -87,7 +103,7 @@ public class CSSFileIndexingParticipant extends AbstractFileIndexingParticipant
 			String value = term.getText();
 			if (CSSColors.isColor(value))
 			{
-				addIndex(index, uri, ICSSIndexConstants.COLOR, CSSColors.to6CharHexWithLeadingHash(value.trim()));
+				addIndex(batch, ICSSIndexConstants.COLOR, CSSColors.to6CharHexWithLeadingHash(value.trim()));
 			}
 		}
 
@@ -96,18 +112,18 @@ public class CSSFileIndexingParticipant extends AbstractFileIndexingParticipant
 			CSSRuleNode cssRuleNode = (CSSRuleNode) current;
 			for (IParseNode child : cssRuleNode.getSelectors())
 			{
-				walkNode(index, uri, child);
+				walkNode(batch, child);
 			}
 			for (IParseNode child : cssRuleNode.getDeclarations())
 			{
-				walkNode(index, uri, child);
+				walkNode(batch, child);
 			}
 		}
 		else
 		{
 			for (IParseNode child : current.getChildren())
 			{
-				walkNode(index, uri, child);
+				walkNode(batch, child);
 			}
 		}
 	}
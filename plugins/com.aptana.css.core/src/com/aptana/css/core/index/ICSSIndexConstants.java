@@ -7,6 +7,9 @@
  */
 package com.aptana.css.core.index;
 
+import com.aptana.index.core.record.BinaryRecordCodec;
+import com.aptana.index.core.record.IRecordCodec;
+
 public interface ICSSIndexConstants
 {
 	// the content format version of the CSS index files
@@ -14,7 +17,8 @@ public interface ICSSIndexConstants
 	// 0.11 - Using JSON for element and property content assist model elements
 	// 0.12 - Updated browser support for css3 properties
 	// 0.13 - Added properties for webkit
-	public static final double INDEX_VERSION = 0.13;
+	// 0.14 - Store element and property entries as binary records
+	public static final double INDEX_VERSION = 0.14;
 
 	// for debugging, comment the line above, and uncomment the following
 	// public static final double INDEX_VERSION = new Random().nextDouble() * 1e6;
@@ -26,6 +30,9 @@ public interface ICSSIndexConstants
 	static final String METADATA_INDEX_LOCATION = PREFIX + "metadata:/css"; //$NON-NLS-1$
 	static final String CORE = "CSS Core"; //$NON-NLS-1$
 
+	// element and property entries are stored as binary records keyed by name
+	static final IRecordCodec RECORD_CODEC = new BinaryRecordCodec(1, DELIMITER, SUB_DELIMITER);
+
 	// index categories
 	static final String ELEMENT = PREFIX + "element"; //$NON-NLS-1$
 	static final String PROPERTY = PREFIX + "property"; //$NON-NLS-1$
@@ -24,6 +24,7 @@ import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexReader;
 import com.aptana.index.core.QueryResult;
 import com.aptana.index.core.SearchPattern;
+import com.aptana.index.core.record.IRecordCodec;
 
 public class CSSIndexReader extends IndexReader
 {
@@ -121,7 +122,7 @@ public class CSSIndexReader extends IndexReader
 			{
 				List<QueryResult> elements = index.query( //
 						new String[] { ICSSIndexConstants.ELEMENT }, //
-						name + ICSSIndexConstants.DELIMITER, //
+						this.getRecordCodec().encodeKey(name), //
 						SearchPattern.PREFIX_MATCH //
 						);
 
@@ -186,7 +187,7 @@ public class CSSIndexReader extends IndexReader
 			{
 				List<QueryResult> properties = index.query( //
 						new String[] { ICSSIndexConstants.PROPERTY }, //
-						name + ICSSIndexConstants.DELIMITER, //
+						this.getRecordCodec().encodeKey(name), //
 						SearchPattern.PREFIX_MATCH //
 						);
 
@@ -263,6 +264,16 @@ public class CSSIndexReader extends IndexReader
 		return result;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IndexReader#getRecordCodec()
+	 */
+	@Override
+	protected IRecordCodec getRecordCodec()
+	{
+		return ICSSIndexConstants.RECORD_CODEC;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.index.core.IndexReader#getSubDelimiter()
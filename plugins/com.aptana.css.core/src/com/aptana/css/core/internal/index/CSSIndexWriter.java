@@ -9,7 +9,6 @@ package com.aptana.css.core.internal.index;
 
 import java.net.URI;
 
-import com.aptana.core.util.StringUtil;
 import com.aptana.css.core.index.ICSSIndexConstants;
 import com.aptana.css.core.model.ElementElement;
 import com.aptana.css.core.model.PropertyElement;
@@ -17,6 +16,7 @@ import com.aptana.css.core.model.PseudoClassElement;
 import com.aptana.css.core.model.PseudoElementElement;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexWriter;
+import com.aptana.index.core.record.IRecordCodec;
 
 public class CSSIndexWriter extends IndexWriter
 {
@@ -30,6 +30,16 @@ public class CSSIndexWriter extends IndexWriter
 		return URI.create(ICSSIndexConstants.METADATA_INDEX_LOCATION);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IndexWriter#getRecordCodec()
+	 */
+	@Override
+	protected IRecordCodec getRecordCodec()
+	{
+		return ICSSIndexConstants.RECORD_CODEC;
+	}
+
 	/**
 	 * writeElement
 	 * 
@@ -40,11 +50,7 @@ public class CSSIndexWriter extends IndexWriter
 	{
 		if (index != null && element != null)
 		{
-			String key = StringUtil.join( //
-					ICSSIndexConstants.DELIMITER, //
-					element.getName(), //
-					this.serialize(element) //
-					);
+			String key = this.getRecordCodec().encode(1, element.getName(), this.serialize(element));
 
 			index.addEntry(ICSSIndexConstants.ELEMENT, key, this.getDocumentPath());
 		}
@@ -60,11 +66,7 @@ public class CSSIndexWriter extends IndexWriter
 	{
 		if (index != null && property != null)
 		{
-			String key = StringUtil.join( //
-					ICSSIndexConstants.DELIMITER, //
-					property.getName(), //
-					this.serialize(property) //
-					);
+			String key = this.getRecordCodec().encode(1, property.getName(), this.serialize(property));
 
 			index.addEntry(ICSSIndexConstants.PROPERTY, key, this.getDocumentPath());
 		}
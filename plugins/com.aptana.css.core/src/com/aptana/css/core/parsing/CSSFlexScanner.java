@@ -17,6 +17,7 @@ import java.util.List;
 
 import beaver.Scanner;
 import beaver.Symbol;
+import beaver.TextPool;
 
 @SuppressWarnings({"unused", "nls"})
 
@@ -499,6 +500,9 @@ class CSSFlexScanner extends Scanner {
 	// comment collections, by type
 	private List<Symbol> _comments = new ArrayList<Symbol>();
 
+	// pool of the token values, read straight from the scanner buffer
+	private final TextPool _textPool = new TextPool();
+
 	// curly brace nesting level
 	private int _nestingLevel;
 
@@ -530,6 +534,11 @@ class CSSFlexScanner extends Scanner {
 		return new Symbol(id, yychar, yychar + yylength() - 1, value);
 	}
 
+	private String pool()
+	{
+		return _textPool.add(zzBuffer, zzStartRead, zzMarkedPos - zzStartRead);
+	}
+
 	public Symbol nextToken() throws java.io.IOException, Scanner.Exception
 	{
 		try
@@ -558,6 +567,8 @@ class CSSFlexScanner extends Scanner {
 	{
 		yyreset(new StringReader(source));
 
+		_textPool.clear();
+
 		// clear last token
 		_lastToken = null;
 
@@ -876,31 +887,31 @@ class CSSFlexScanner extends Scanner {
           }
         case 47: break;
         case 4: 
-          { return newToken(CSSTokenType.IDENTIFIER, yytext());
+          { return newToken(CSSTokenType.IDENTIFIER, pool());
           }
         case 48: break;
         case 35: 
-          { return newToken(CSSTokenType.NOT, yytext());
+          { return newToken(CSSTokenType.NOT, pool());
           }
         case 49: break;
         case 11: 
-          { return newToken(CSSTokenType.PLUS, yytext());
+          { return newToken(CSSTokenType.PLUS, pool());
           }
         case 50: break;
         case 29: 
-          { return newToken(CSSTokenType.BEGINS_WITH, yytext());
+          { return newToken(CSSTokenType.BEGINS_WITH, pool());
           }
         case 51: break;
         case 9: 
-          { return newToken(CSSTokenType.MINUS, yytext());
+          { return newToken(CSSTokenType.MINUS, pool());
           }
         case 52: break;
         case 28: 
-          { return newToken(CSSTokenType.DASHMATCH, yytext());
+          { return newToken(CSSTokenType.DASHMATCH, pool());
           }
         case 53: break;
         case 5: 
-          { return newToken(CSSTokenType.DOUBLE_QUOTED_STRING, yytext());
+          { return newToken(CSSTokenType.DOUBLE_QUOTED_STRING, pool());
           }
         case 54: break;
         case 25: 
@@ -929,39 +940,39 @@ class CSSFlexScanner extends Scanner {
 										type = (numbers) ? CSSTokenType.RGB : CSSTokenType.ID;
 									}
 
-									return newToken(type, yytext());
+									return newToken(type, pool());
           }
         case 55: break;
         case 2: 
-          { return newToken(CSSTokenType.NUMBER, yytext());
+          { return newToken(CSSTokenType.NUMBER, pool());
           }
         case 56: break;
         case 42: 
-          { return newToken(CSSTokenType.CHARSET, yytext());
+          { return newToken(CSSTokenType.CHARSET, pool());
           }
         case 57: break;
         case 13: 
-          { return newToken(CSSTokenType.EQUAL, yytext());
+          { return newToken(CSSTokenType.EQUAL, pool());
           }
         case 58: break;
         case 43: 
-          { return newToken(CSSTokenType.NAMESPACE, yytext());
+          { return newToken(CSSTokenType.NAMESPACE, pool());
           }
         case 59: break;
         case 38: 
-          { return newToken(CSSTokenType.PAGE, yytext());
+          { return newToken(CSSTokenType.PAGE, pool());
           }
         case 60: break;
         case 40: 
-          { _inMedia = true; return newToken(CSSTokenType.MEDIA_KEYWORD, yytext());
+          { _inMedia = true; return newToken(CSSTokenType.MEDIA_KEYWORD, pool());
           }
         case 61: break;
         case 27: 
-          { return newToken(CSSTokenType.INCLUDES, yytext());
+          { return newToken(CSSTokenType.INCLUDES, pool());
           }
         case 62: break;
         case 46: 
-          { return newToken(CSSTokenType.MOZ_DOCUMENT, yytext());
+          { return newToken(CSSTokenType.MOZ_DOCUMENT, pool());
           }
         case 63: break;
         case 16: 
@@ -973,49 +984,49 @@ class CSSFlexScanner extends Scanner {
 										_inMedia = false;
 									}
 
-									return newToken(CSSTokenType.RCURLY, yytext());
+									return newToken(CSSTokenType.RCURLY, pool());
           }
         case 64: break;
         case 30: 
-          { return newToken(CSSTokenType.ENDS_WITH, yytext());
+          { return newToken(CSSTokenType.ENDS_WITH, pool());
           }
         case 65: break;
         case 32: 
-          { return newToken(CSSTokenType.EMS, yytext());
+          { return newToken(CSSTokenType.EMS, pool());
           }
         case 66: break;
         case 33: 
-          { return newToken(CSSTokenType.EXS, yytext());
+          { return newToken(CSSTokenType.EXS, pool());
           }
         case 67: break;
         case 23: 
-          { return newToken(CSSTokenType.TIME, yytext());
+          { return newToken(CSSTokenType.TIME, pool());
           }
         case 68: break;
         case 6: 
-          { return newToken(CSSTokenType.SINGLE_QUOTED_STRING, yytext());
+          { return newToken(CSSTokenType.SINGLE_QUOTED_STRING, pool());
           }
         case 69: break;
         case 41: 
-          { return newToken(CSSTokenType.IMPORT, yytext());
+          { return newToken(CSSTokenType.IMPORT, pool());
           }
         case 70: break;
         case 15: 
           { _nestingLevel++;
 
-									return newToken(CSSTokenType.LCURLY, yytext());
+									return newToken(CSSTokenType.LCURLY, pool());
           }
         case 71: break;
         case 12: 
-          { return newToken(CSSTokenType.PERCENTAGE, yytext());
+          { return newToken(CSSTokenType.PERCENTAGE, pool());
           }
         case 72: break;
         case 18: 
-          { return newToken(CSSTokenType.RPAREN, yytext());
+          { return newToken(CSSTokenType.RPAREN, pool());
           }
         case 73: break;
         case 14: 
-          { return newToken(CSSTokenType.SEMICOLON, yytext());
+          { return newToken(CSSTokenType.SEMICOLON, pool());
           }
         case 74: break;
         case 24: 
@@ -1044,19 +1055,19 @@ class CSSFlexScanner extends Scanner {
 										type = (numbers) ? CSSTokenType.NUMBER : CSSTokenType.CLASS;
 									}
 
-									return newToken(type, yytext());
+									return newToken(type, pool());
           }
         case 75: break;
         case 8: 
-          { return newToken(CSSTokenType.STAR, yytext());
+          { return newToken(CSSTokenType.STAR, pool());
           }
         case 76: break;
         case 34: 
-          { return newToken(CSSTokenType.FREQUENCY, yytext());
+          { return newToken(CSSTokenType.FREQUENCY, pool());
           }
         case 77: break;
         case 7: 
-          { return newToken(CSSTokenType.SLASH, yytext());
+          { return newToken(CSSTokenType.SLASH, pool());
           }
         case 78: break;
         case 37: 
@@ -1064,55 +1075,55 @@ class CSSFlexScanner extends Scanner {
           }
         case 79: break;
         case 19: 
-          { return newToken(CSSTokenType.LBRACKET, yytext());
+          { return newToken(CSSTokenType.LBRACKET, pool());
           }
         case 80: break;
         case 31: 
-          { return newToken(CSSTokenType.LENGTH, yytext());
+          { return newToken(CSSTokenType.LENGTH, pool());
           }
         case 81: break;
         case 36: 
-          { return newToken(CSSTokenType.ANGLE, yytext());
+          { return newToken(CSSTokenType.ANGLE, pool());
           }
         case 82: break;
         case 26: 
-          { return newToken(CSSTokenType.AT_RULE, yytext());
+          { return newToken(CSSTokenType.AT_RULE, pool());
           }
         case 83: break;
         case 1: 
-          { return newToken(CSSTokenType.ERROR, yytext());
+          { return newToken(CSSTokenType.ERROR, pool());
           }
         case 84: break;
         case 44: 
-          { return newToken(CSSTokenType.FONTFACE, yytext());
+          { return newToken(CSSTokenType.FONTFACE, pool());
           }
         case 85: break;
         case 17: 
-          { return newToken(CSSTokenType.LPAREN, yytext());
+          { return newToken(CSSTokenType.LPAREN, pool());
           }
         case 86: break;
         case 45: 
-          { return newToken(CSSTokenType.IMPORTANT, yytext());
+          { return newToken(CSSTokenType.IMPORTANT, pool());
           }
         case 87: break;
         case 10: 
-          { return newToken(CSSTokenType.COLON, yytext());
+          { return newToken(CSSTokenType.COLON, pool());
           }
         case 88: break;
         case 39: 
-          { return newToken(CSSTokenType.URL, yytext());
+          { return newToken(CSSTokenType.URL, pool());
           }
         case 89: break;
         case 21: 
-          { return newToken(CSSTokenType.COMMA, yytext());
+          { return newToken(CSSTokenType.COMMA, pool());
           }
         case 90: break;
         case 22: 
-          { return newToken(CSSTokenType.GREATER, yytext());
+          { return newToken(CSSTokenType.GREATER, pool());
           }
         case 91: break;
         case 20: 
-          { return newToken(CSSTokenType.RBRACKET, yytext());
+          { return newToken(CSSTokenType.RBRACKET, pool());
           }
         case 92: break;
         default: 
@@ -3,6 +3,8 @@ package com.aptana.css.core.parsing;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.eclipse.jface.text.DocumentEvent;
+
 import beaver.Parser;
 import beaver.ParsingTables;
 import beaver.Scanner;
@@ -10,8 +12,9 @@ import beaver.Symbol;
 
 import com.aptana.css.core.ICSSConstants;
 import com.aptana.css.core.parsing.ast.*;
+import com.aptana.parsing.IIncrementalParser;
 import com.aptana.parsing.IParseState;
-import com.aptana.parsing.IParser;
+import com.aptana.parsing.IncrementalReparser;
 import com.aptana.parsing.ParseResult;
 import com.aptana.parsing.WorkingParseResult;
 import com.aptana.parsing.ast.IParseError;
@@ -26,7 +29,7 @@ import com.aptana.parsing.util.ParseUtil;
  * from the grammar specification "CSS.grammar".
  */
 @SuppressWarnings({ "unchecked", "rawtypes" })
-public class CSSParser extends Parser implements IParser {
+public class CSSParser extends Parser implements IIncrementalParser {
 
 	static final ParsingTables PARSING_TABLES = new ParsingTables(
 		"U9pLM6TuL4KKFM#NI18YY60IK4H4WgWiMJ0a8PG4M4GW9FRUiL2DDAdI4JKIce9230eY2aX" +
@@ -108,6 +111,11 @@ public class CSSParser extends Parser implements IParser {
         return working.getImmutableResult();
     }
 
+    public synchronized ParseResult parse(IParseState parseState, ParseResult previous, DocumentEvent edit) throws java.lang.Exception
+    {
+        return new IncrementalReparser(this).parse(parseState, previous, edit);
+    }
+
 
 	protected synchronized void parse(IParseState parseState, WorkingParseResult working) throws java.lang.Exception
 	{
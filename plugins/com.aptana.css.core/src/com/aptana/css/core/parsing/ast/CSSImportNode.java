@@ -38,6 +38,20 @@ public class CSSImportNode extends CSSNode
 		walker.visit(this);
 	}
 
+	@Override
+	public CSSImportNode copy()
+	{
+		CSSImportNode copy = (CSSImportNode) super.copy();
+
+		copy.fMediaList = new CSSTextNode[fMediaList.length];
+		for (int i = 0; i < fMediaList.length; i++)
+		{
+			copy.fMediaList[i] = (CSSTextNode) fMediaList[i].copy();
+		}
+
+		return copy;
+	}
+
 	@Override
 	public boolean equals(Object obj)
 	{
@@ -47,6 +47,24 @@ public class CSSMediaNode extends CSSNode
 		walker.visit(this);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#copy()
+	 */
+	@Override
+	public CSSMediaNode copy()
+	{
+		CSSMediaNode copy = (CSSMediaNode) super.copy();
+
+		copy.fMedias = new CSSTextNode[fMedias.length];
+		for (int i = 0; i < fMedias.length; i++)
+		{
+			copy.fMedias[i] = (CSSTextNode) fMedias[i].copy();
+		}
+
+		return copy;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.editor.css.parsing.ast.CSSNode#equals(java.lang.Object)
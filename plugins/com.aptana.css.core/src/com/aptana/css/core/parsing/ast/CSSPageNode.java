@@ -52,6 +52,19 @@ public class CSSPageNode extends CSSNode
 		walker.visit(this);
 	}
 
+	@Override
+	public CSSPageNode copy()
+	{
+		CSSPageNode copy = (CSSPageNode) super.copy();
+
+		if (fPageSelector != null)
+		{
+			copy.fPageSelector = (CSSPageSelectorNode) fPageSelector.copy();
+		}
+
+		return copy;
+	}
+
 	@Override
 	public boolean equals(Object obj)
 	{
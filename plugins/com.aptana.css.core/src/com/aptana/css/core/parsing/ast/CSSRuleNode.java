@@ -77,6 +77,36 @@ public class CSSRuleNode extends CSSNode
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#copy()
+	 */
+	@Override
+	public CSSRuleNode copy()
+	{
+		CSSRuleNode copy = (CSSRuleNode) super.copy();
+
+		copy.fSelectors = new CSSSelectorNode[fSelectors.length];
+		for (int i = 0; i < fSelectors.length; i++)
+		{
+			copy.fSelectors[i] = (CSSSelectorNode) fSelectors[i].copy();
+			copy.fSelectors[i].setParent(copy);
+		}
+
+		if (fDeclarations.length > 0)
+		{
+			// the parser makes the first selector the parent of the declarations
+			copy.fDeclarations = new CSSDeclarationNode[fDeclarations.length];
+			for (int i = 0; i < fDeclarations.length; i++)
+			{
+				copy.fDeclarations[i] = (CSSDeclarationNode) fDeclarations[i].copy();
+				copy.fDeclarations[i].setParent((copy.fSelectors.length > 0) ? copy.fSelectors[0] : copy);
+			}
+		}
+
+		return copy;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.editor.css.parsing.ast.CSSNode#equals(java.lang.Object)
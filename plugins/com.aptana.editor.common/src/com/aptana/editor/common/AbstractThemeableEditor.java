@@ -36,6 +36,7 @@ import org.eclipse.jface.dialogs.IDialogConstants;
 import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.jface.dialogs.MessageDialogWithToggle;
 import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.ITextViewer;
@@ -112,6 +113,7 @@ import com.aptana.editor.common.text.reconciler.IFoldingComputer;
 import com.aptana.editor.common.text.reconciler.RubyRegexpFolder;
 import com.aptana.editor.common.viewer.CommonProjectionViewer;
 import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
 import com.aptana.parsing.ParserPoolFactory;
 import com.aptana.parsing.ast.IParseNode;
 import com.aptana.parsing.ast.IParseRootNode;
@@ -275,6 +277,11 @@ public abstract class AbstractThemeableEditor extends AbstractFoldingEditor impl
 	 */
 	private ParseResult lastAstForModificationStamp;
 
+	/**
+	 * The source from which the last ast was built, kept while that ast may still be reused by an incremental parse.
+	 */
+	private String lastSourceForModificationStamp;
+
 	/**
 	 * Lock used to cache the last ast for a document.
 	 */
@@ -1136,7 +1143,7 @@ public abstract class AbstractThemeableEditor extends AbstractFoldingEditor impl
 			// Reset our cache when a new input is set.
 			lastModificationStamp = IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
 			lastAstForModificationStamp = null;
-
+			lastSourceForModificationStamp = null;
 		}
 		super.doSetInput(input);
 	}
@@ -1149,6 +1156,8 @@ public abstract class AbstractThemeableEditor extends AbstractFoldingEditor impl
 	 * @note this call may lock until the parser finishes generating the ast.
 	 * @note override doGetAST if something needs to be customized and the document-based cache maintained (i.e.: php
 	 *       may need to override this method as the parse depends on the grammar version which may change).
+	 * @note when the parser supports it, the next parse of the editor reuses copies of the nodes of the last ast,
+	 *       which itself is left unchanged.
 	 */
 	public IParseRootNode getAST()
 	{
@@ -1168,6 +1177,67 @@ public abstract class AbstractThemeableEditor extends AbstractFoldingEditor impl
 		return ParserPoolFactory.parse(getContentType(), document.get());
 	}
 
+	/**
+	 * Calculates the ast of the given source, reusing the last ast of this editor when the parser is able to reparse
+	 * only the part of the source affected by the edit. Subclasses overriding {@link #doGetAST(IDocument)} should
+	 * override this method as well.
+	 * 
+	 * @param document
+	 * @param source
+	 *            the current contents of the document
+	 * @param previous
+	 *            the last ast of this editor (may be null)
+	 * @param edit
+	 *            the change between the source of the previous ast and the current one (may be null)
+	 * @return
+	 * @throws Exception
+	 */
+	protected ParseResult doGetAST(IDocument document, String source, ParseResult previous, DocumentEvent edit)
+			throws Exception
+	{
+		if (previous == null || edit == null)
+		{
+			return doGetAST(document);
+		}
+		return ParserPoolFactory.parse(getContentType(), new ParseState(source), previous, edit);
+	}
+
+	/**
+	 * Computes the single change which turns the previous source into the current one, by skipping their common prefix
+	 * and suffix.
+	 * 
+	 * @param document
+	 * @param previousSource
+	 * @param source
+	 * @return the change, or null if the sources are the same.
+	 */
+	private DocumentEvent computeEdit(IDocument document, String previousSource, String source)
+	{
+		int previousLength = previousSource.length();
+		int length = source.length();
+		int maxPrefix = Math.min(previousLength, length);
+		int prefix = 0;
+		while (prefix < maxPrefix && previousSource.charAt(prefix) == source.charAt(prefix))
+		{
+			prefix++;
+		}
+		if (prefix == previousLength && prefix == length)
+		{
+			return null;
+		}
+
+		int maxSuffix = maxPrefix - prefix;
+		int suffix = 0;
+		while (suffix < maxSuffix
+				&& previousSource.charAt(previousLength - suffix - 1) == source.charAt(length - suffix - 1))
+		{
+			suffix++;
+		}
+
+		return new DocumentEvent(document, prefix, previousLength - prefix - suffix, source.substring(prefix, length
+				- suffix));
+	}
+
 	/**
 	 * @deprecated This doesn't belong on the editor, this should be in some ASTUtil method or something...
 	 * @param offset
@@ -1366,12 +1436,39 @@ public abstract class AbstractThemeableEditor extends AbstractFoldingEditor impl
 					}
 				}
 			}
+			// Take over the last ast so that no other thread reparses it at the same time.
+			ParseResult previous;
+			String previousSource;
+			synchronized (modificationStampLock)
+			{
+				previous = lastAstForModificationStamp;
+				previousSource = lastSourceForModificationStamp;
+				lastSourceForModificationStamp = null;
+			}
+
 			// Don't synchronize the actual parse!
-			ParseResult ast = doGetAST(document);
+			String source = document.get();
+			DocumentEvent edit = null;
+			if (previous != null && previousSource != null)
+			{
+				edit = computeEdit(document, previousSource, source);
+				if (edit == null)
+				{
+					// Same contents (i.e.: undo to the parsed state).
+					synchronized (modificationStampLock)
+					{
+						lastModificationStamp = modificationStamp;
+						lastSourceForModificationStamp = previousSource;
+						return previous;
+					}
+				}
+			}
+			ParseResult ast = doGetAST(document, source, (edit != null) ? previous : null, edit);
 
 			synchronized (modificationStampLock)
 			{
 				lastAstForModificationStamp = ast;
+				lastSourceForModificationStamp = source;
 				lastModificationStamp = modificationStamp;
 				return lastAstForModificationStamp;
 			}
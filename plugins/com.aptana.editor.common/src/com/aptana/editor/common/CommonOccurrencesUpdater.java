@@ -41,6 +41,7 @@ import org.eclipse.ui.texteditor.IDocumentProvider;
 
 import com.aptana.core.util.StringUtil;
 import com.aptana.editor.common.preferences.IPreferenceConstants;
+import com.aptana.editor.findbar.api.IdentifierIndex;
 
 /**
  * CommonOccurrenceUpdater
@@ -199,7 +200,21 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 				// find a "word" to search using the current selection
 				String word = getWord();
 
-				if (word != null && word.length() > 0) {
+				if (IdentifierIndex.isIdentifier(word)) {
+					// whole identifiers are looked up instead of searching the document
+					int length = word.length();
+
+					for (int start : IdentifierIndex.getIndex(document).getOccurrences(word)) {
+						if (monitor.isCanceled()) {
+							status = Status.CANCEL_STATUS;
+							break;
+						}
+
+						// @formatter:off
+						annotationMap.put(new Annotation(ANNOTION_ID, false, ANNOTION_DESCRIPTION), new Position(start, length));
+						// @formatter:on
+					}
+				} else if (word != null && word.length() > 0) {
 					String source = document.get();
 					Pattern wordPattern = createWordPattern(word);
 					Matcher matcher = wordPattern.matcher(source);
@@ -22,4 +22,11 @@ public interface ICommonEditorSystemProperties
 	public static String RECONCILER_BACKGROUND_DELAY = "studio.reconcilerBackgroundDelay"; //$NON-NLS-1$
 	public static String RECONCILER_ITERATION_DELAY = "studio.reconcilerIterationDelay"; //$NON-NLS-1$
 	public static String RECONCILER_MINIMAL_VISIBLE_LENGTH = "studio.reconcilerMinimalVisibleLength"; //$NON-NLS-1$
+
+	/**
+	 * Time budgets (in ms) of the presentation reconciler: how long coloring a damaged region may take on the UI thread
+	 * before the rest is left to the background, and how long each background iteration may hold the document.
+	 */
+	public static String RECONCILER_FOREGROUND_BUDGET = "studio.reconcilerForegroundBudget"; //$NON-NLS-1$
+	public static String RECONCILER_ITERATION_BUDGET = "studio.reconcilerIterationBudget"; //$NON-NLS-1$
 }
@@ -145,6 +145,40 @@ public final class Regions implements Iterable<IRegion> {
 		validate();
 	}
 
+	/**
+	 * Maps the regions through a replacement of text: the regions after it are shifted, and the regions overlapping
+	 * it are extended to cover the new text.
+	 * 
+	 * @param offset the offset of the replaced text
+	 * @param length the length of the replaced text
+	 * @param textLength the length of the new text
+	 */
+	public void replace(int offset, int length, int textLength) {
+		Assert.isLegal(length >= 0 && textLength >= 0, "Negative region length"); //$NON-NLS-1$
+		int delta = textLength - length;
+		List<IRegion> list = new ArrayList<IRegion>(NavigableSetTailSet(regions, new Region(offset, 0), true));
+		IRegion floor = NavigableSetFloor(regions, new Region(offset, 0));
+		if (floor != null && floor.getOffset() + floor.getLength() > offset) {
+			list.add(0, floor);
+		}
+		for (IRegion current : list) {
+			regions.remove(current);
+		}
+		List<IRegion> mapped = new ArrayList<IRegion>(list.size());
+		for (IRegion current : list) {
+			int start = current.getOffset();
+			int end = start + current.getLength();
+			if (start >= offset + length) {
+				mapped.add(new Region(start + delta, end - start));
+			} else {
+				start = Math.min(start, offset);
+				end = (end > offset + length) ? end + delta : offset + textLength;
+				mapped.add(new Region(start, end - start));
+			}
+		}
+		append(mapped.toArray(new IRegion[mapped.size()]));
+	}
+
 	/**
 	 * Returns the region which is the overlap of provided region with current region set
 	 * In case of multiple matches, the first overlap region is returned.
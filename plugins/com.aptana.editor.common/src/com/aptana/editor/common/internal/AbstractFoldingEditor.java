@@ -9,7 +9,7 @@ package com.aptana.editor.common.internal;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -161,12 +161,18 @@ public class AbstractFoldingEditor extends AbstractDecoratedTextEditor implement
 		synchronized (lockUpdateFoldingStructure)
 		{
 			List<Annotation> deletions = new ArrayList<Annotation>();
-			Collection<Position> additions = annotations.values();
 			ProjectionAnnotationModel currentModel = getAnnotationModel();
 			if (currentModel == null)
 			{
 				return;
 			}
+			// the annotations already in the model at the same positions are kept
+			Map<Position, ProjectionAnnotation> additions = new HashMap<Position, ProjectionAnnotation>(
+					annotations.size() * 2);
+			for (Map.Entry<ProjectionAnnotation, Position> entry : annotations.entrySet())
+			{
+				additions.put(entry.getValue(), entry.getKey());
+			}
 			for (@SuppressWarnings("rawtypes")
 			Iterator iter = currentModel.getAnnotationIterator(); iter.hasNext();)
 			{
@@ -174,9 +180,10 @@ public class AbstractFoldingEditor extends AbstractDecoratedTextEditor implement
 				if (annotation instanceof ProjectionAnnotation)
 				{
 					Position position = currentModel.getPosition((Annotation) annotation);
-					if (additions.contains(position))
+					ProjectionAnnotation addition = additions.remove(position);
+					if (addition != null)
 					{
-						additions.remove(position);
+						annotations.remove(addition);
 					}
 					else
 					{
@@ -8,17 +8,21 @@
 
 package com.aptana.editor.common.internal.scripting;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IAdaptable;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.ITextViewer;
-import org.eclipse.jface.text.Position;
-import org.eclipse.jface.text.TypedPosition;
 import org.eclipse.jface.text.source.ISourceViewer;
 
 import com.aptana.core.logging.IdeLog;
@@ -45,8 +49,33 @@ public class DocumentScopeManager implements IDocumentScopeManager
 	private static final String PROJECT_NATURE_SCOPE_PREFIX = "meta.project."; //$NON-NLS-1$
 
 	private static final QualifiedContentType UNKNOWN = new QualifiedContentType(ICommonConstants.CONTENT_TYPE_UKNOWN);
+
+	/**
+	 * The maximum number of scopes kept in {@link #scopes}.
+	 */
+	private static final int MAX_SCOPES = 1000;
+
 	private Map<IDocument, ExtendedDocumentInfo> infos = new WeakHashMap<IDocument, ExtendedDocumentInfo>();
 
+	/**
+	 * The token level scopes of the documents.
+	 */
+	private Map<IDocument, ScopePositions> scopePositions = Collections
+			.synchronizedMap(new WeakHashMap<IDocument, ScopePositions>());
+
+	/**
+	 * The scope prefixes built from the natures of the projects, see {@link #prependNaturesToScope(ITextViewer)}.
+	 * Getting the natures copies the project description, so they're only read again when it changes.
+	 */
+	private Map<IProject, String> naturePrefixes = new ConcurrentHashMap<IProject, String>();
+	private IResourceChangeListener projectListener;
+
+	/**
+	 * The scopes returned so far. The same scopes are asked for over and over, so the same instances are returned,
+	 * which makes them cheaper to compare and hash for the callers caching by scope.
+	 */
+	private Map<String, String> scopes = new ConcurrentHashMap<String, String>();
+
 	/**
 	 * Store the filename for the document so we can dynamically look up the scope later.
 	 * 
@@ -153,15 +182,43 @@ public class DocumentScopeManager implements IDocumentScopeManager
 		{
 			if (tokenPortion.length() == 0)
 			{
-				return partitionFragment;
+				return intern(partitionFragment);
 			}
 
 			if (!partitionFragment.endsWith(tokenPortion))
 			{
-				return partitionFragment + ' ' + tokenPortion;
+				return intern(partitionFragment + ' ' + tokenPortion);
+			}
+		}
+		return intern(partitionFragment);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.common.scripting.IDocumentScopeManager#scopesChanged(org.eclipse.jface.text.IDocument)
+	 */
+	public void scopesChanged(IDocument document)
+	{
+		ScopePositions positions = scopePositions.get(document);
+		if (positions != null)
+		{
+			positions.invalidate();
+		}
+	}
+
+	private String intern(String scope)
+	{
+		String result = scopes.get(scope);
+		if (result == null)
+		{
+			if (scopes.size() >= MAX_SCOPES)
+			{
+				scopes.clear();
 			}
+			scopes.put(scope, scope);
+			result = scope;
 		}
-		return partitionFragment;
+		return result;
 	}
 
 	/**
@@ -191,19 +248,59 @@ public class DocumentScopeManager implements IDocumentScopeManager
 		{
 			return StringUtil.EMPTY;
 		}
-		try
+		String prefix = naturePrefixes.get(project);
+		if (prefix == null)
 		{
-			String[] natures = project.getDescription().getNatureIds();
-			if (!ArrayUtil.isEmpty(natures))
+			addProjectListener();
+			prefix = StringUtil.EMPTY;
+			try
+			{
+				String[] natures = project.getDescription().getNatureIds();
+				if (!ArrayUtil.isEmpty(natures))
+				{
+					prefix = PROJECT_NATURE_SCOPE_PREFIX
+							+ StringUtil.join(" " + PROJECT_NATURE_SCOPE_PREFIX, natures) + ' '; //$NON-NLS-1$
+				}
+			}
+			catch (CoreException e)
 			{
-				return PROJECT_NATURE_SCOPE_PREFIX + StringUtil.join(" " + PROJECT_NATURE_SCOPE_PREFIX, natures) + ' '; //$NON-NLS-1$
+				// ignore
 			}
+			naturePrefixes.put(project, prefix);
 		}
-		catch (CoreException e)
+		return prefix;
+	}
+
+	/**
+	 * Listens to the changes of the projects, to forget their natures when they may have changed.
+	 */
+	private synchronized void addProjectListener()
+	{
+		if (projectListener != null)
 		{
-			// ignore
+			return;
 		}
-		return StringUtil.EMPTY;
+		projectListener = new IResourceChangeListener()
+		{
+			public void resourceChanged(IResourceChangeEvent event)
+			{
+				IResourceDelta delta = event.getDelta();
+				if (delta == null)
+				{
+					return;
+				}
+				for (IResourceDelta projectDelta : delta.getAffectedChildren())
+				{
+					// the natures are in the description, and a closed project has none
+					if (projectDelta.getKind() != IResourceDelta.CHANGED
+							|| (projectDelta.getFlags() & (IResourceDelta.DESCRIPTION | IResourceDelta.OPEN)) != 0)
+					{
+						naturePrefixes.remove(projectDelta.getResource());
+					}
+				}
+			}
+		};
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(projectListener, IResourceChangeEvent.POST_CHANGE);
 	}
 
 	private String getTokenScopeFragments(ITextViewer viewer, IDocument document, int offset)
@@ -215,44 +312,17 @@ public class DocumentScopeManager implements IDocumentScopeManager
 
 		try
 		{
-			// Force adding the category in case it doesn't exist yet...
-			document.addPositionCategory(ICommonConstants.SCOPE_CATEGORY);
-			Position[] scopes = document.getPositions(ICommonConstants.SCOPE_CATEGORY);
-			int index = document.computeIndexInCategory(ICommonConstants.SCOPE_CATEGORY, offset);
-
-			if (scopes == null || scopes.length == 0)
+			ScopePositions positions;
+			synchronized (scopePositions)
 			{
-				return null;
-			}
-			if (index >= scopes.length)
-			{
-				index = scopes.length - 1;
-			}
-			Position scope = scopes[index];
-			if (scope == null)
-			{
-				return null;
-			}
-			if (!scope.includes(offset))
-			{
-				if (index > 0)
-				{
-					scope = scopes[--index];
-					if (scope == null || !scope.includes(offset))
-					{
-						return null;
-					}
-				}
-				else
+				positions = scopePositions.get(document);
+				if (positions == null)
 				{
-					return null;
+					positions = new ScopePositions();
+					scopePositions.put(document, positions);
 				}
 			}
-			if (scope instanceof TypedPosition)
-			{
-				TypedPosition pos = (TypedPosition) scope;
-				return pos.getType();
-			}
+			return positions.getScope(document, offset);
 		}
 		catch (Exception e)
 		{
@@ -293,6 +363,17 @@ public class DocumentScopeManager implements IDocumentScopeManager
 
 	public void dispose()
 	{
+		synchronized (this)
+		{
+			if (projectListener != null)
+			{
+				ResourcesPlugin.getWorkspace().removeResourceChangeListener(projectListener);
+				projectListener = null;
+			}
+		}
 		infos.clear();
+		scopePositions.clear();
+		naturePrefixes.clear();
+		scopes.clear();
 	}
 }
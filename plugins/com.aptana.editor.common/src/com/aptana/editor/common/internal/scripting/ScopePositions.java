@@ -0,0 +1,131 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.internal.scripting;
+
+import org.eclipse.jface.text.BadPositionCategoryException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.TypedPosition;
+
+import com.aptana.editor.common.ICommonConstants;
+
+/**
+ * The token level scopes of a document, i.e. its positions in {@link ICommonConstants#SCOPE_CATEGORY}. Reading the
+ * positions from the document copies them all, so they're read once and then searched by offset until the scopes
+ * change.
+ * <p>
+ * Only the damager/repairers modify these positions (the category has no position updater), and they tell the
+ * {@link DocumentScopeManager} when they do.
+ * </p>
+ */
+/* package */class ScopePositions
+{
+
+	/**
+	 * The positions read from the document, null once they changed
+	 */
+	private Position[] positions;
+
+	/**
+	 * Incremented every time the positions change, so that positions read during a change aren't kept
+	 */
+	private int version;
+
+	/**
+	 * Tells the positions of the document changed.
+	 */
+	synchronized void invalidate()
+	{
+		positions = null;
+		version++;
+	}
+
+	/**
+	 * Returns the scope of the token at an offset.
+	 * 
+	 * @param document
+	 *            the document of the positions, which isn't referenced so that it can be a weak key
+	 * @param offset
+	 * @return the scope, or null if no token includes the offset
+	 * @throws BadPositionCategoryException
+	 */
+	String getScope(IDocument document, int offset) throws BadPositionCategoryException
+	{
+		Position[] scopes = getPositions(document);
+		if (scopes.length == 0)
+		{
+			return null;
+		}
+
+		// the first position starting at the offset or after, like IDocument#computeIndexInCategory()
+		int low = 0;
+		int high = scopes.length;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			Position scope = scopes[middle];
+			if (scope != null && scope.offset < offset)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+
+		int index = Math.min(low, scopes.length - 1);
+		Position scope = scopes[index];
+		if (scope == null)
+		{
+			return null;
+		}
+		if (!scope.includes(offset))
+		{
+			if (index == 0)
+			{
+				return null;
+			}
+			scope = scopes[index - 1];
+			if (scope == null || !scope.includes(offset))
+			{
+				return null;
+			}
+		}
+		if (scope instanceof TypedPosition)
+		{
+			return ((TypedPosition) scope).getType();
+		}
+		return null;
+	}
+
+	private Position[] getPositions(IDocument document) throws BadPositionCategoryException
+	{
+		int readVersion;
+		synchronized (this)
+		{
+			if (positions != null)
+			{
+				return positions;
+			}
+			readVersion = version;
+		}
+
+		// Force adding the category in case it doesn't exist yet...
+		document.addPositionCategory(ICommonConstants.SCOPE_CATEGORY);
+		Position[] read = document.getPositions(ICommonConstants.SCOPE_CATEGORY);
+		synchronized (this)
+		{
+			if (readVersion == version)
+			{
+				positions = read;
+			}
+		}
+		return read;
+	}
+}
@@ -63,4 +63,13 @@ public interface IDocumentScopeManager
 	 * @throws BadLocationException
 	 */
 	public QualifiedContentType getContentType(IDocument document, int offset) throws BadLocationException;
+
+	/**
+	 * Tells the token level scopes of the document were modified, i.e. its positions in
+	 * {@link com.aptana.editor.common.ICommonConstants#SCOPE_CATEGORY}. They're read again by the next call to
+	 * {@link #getScopeAtOffset(ITextViewer, int)}.
+	 * 
+	 * @param document
+	 */
+	public void scopesChanged(IDocument document);
 }
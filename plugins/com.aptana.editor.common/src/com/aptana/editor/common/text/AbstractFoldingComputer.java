@@ -4,7 +4,10 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.SubMonitor;
@@ -16,6 +19,7 @@ import org.eclipse.jface.text.source.projection.ProjectionAnnotation;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.editor.common.AbstractThemeableEditor;
 import com.aptana.editor.common.CommonEditorPlugin;
+import com.aptana.editor.common.text.reconciler.DocumentChangeTracker;
 import com.aptana.editor.common.text.reconciler.IFoldingComputer;
 import com.aptana.editor.common.text.reconciler.Messages;
 import com.aptana.parsing.ast.IParseNode;
@@ -30,11 +34,98 @@ import com.aptana.parsing.ast.ParseRootNode;
 public abstract class AbstractFoldingComputer implements IFoldingComputer
 {
 
+	/**
+	 * A folding position found while traversing the AST
+	 */
+	private static class Fold
+	{
+		final int start;
+		final int end;
+		/**
+		 * The line of the start offset, or -1 if unknown
+		 */
+		final int line;
+		final boolean collapsed;
+
+		Fold(int start, int end, int line, boolean collapsed)
+		{
+			this.start = start;
+			this.end = end;
+			this.line = line;
+			this.collapsed = collapsed;
+		}
+	}
+
+	/**
+	 * A node visited by a computation, with the ranges of its folds and of the nodes found under it. The nodes and
+	 * folds are kept in the order they were found in, so those of a node follow each other.
+	 */
+	private static class Node
+	{
+		final Class<?> type;
+		final int start;
+		final int end;
+		int foldsFrom;
+		int foldsTo;
+		int nodesFrom;
+		int nodesTo;
+		/**
+		 * The range covered by the node and its folds
+		 */
+		int extentStart;
+		int extentEnd;
+
+		Node(Class<?> type, int start, int end)
+		{
+			this.type = type;
+			this.start = start;
+			this.end = end;
+		}
+
+		long getKey()
+		{
+			return getKey(start, end);
+		}
+
+		static long getKey(int start, int end)
+		{
+			return ((long) start << 32) ^ (end & 0xffffffffL);
+		}
+	}
+
 	private IDocument fDocument;
 	private AbstractThemeableEditor fEditor;
-	private ArrayList<Integer> fLines;
 	private boolean initialReconcile;
 
+	/**
+	 * The folds and nodes found by the current computation
+	 */
+	private List<Fold> fFolds;
+	private List<Node> fNodes;
+
+	/**
+	 * The changes of the document since the last computation, created on the first one
+	 */
+	private DocumentChangeTracker fTracker;
+	private volatile boolean fDisposed;
+
+	/**
+	 * The folds and nodes found by the last computation, null if nothing can be reused
+	 */
+	private List<Fold> fLastFolds;
+	private Map<Long, Node> fLastNodes;
+	private List<Node> fLastNodeList;
+	private int fLastLineCount;
+
+	/**
+	 * The nodes ending before fReuseBefore are unchanged, and so are the ones starting from fReuseAfter, but shifted by
+	 * fDelta (and fLineDelta lines).
+	 */
+	private int fReuseBefore;
+	private int fReuseAfter;
+	private int fDelta;
+	private int fLineDelta;
+
 	protected AbstractFoldingComputer(AbstractThemeableEditor editor, IDocument document)
 	{
 		super();
@@ -61,10 +152,20 @@ public abstract class AbstractFoldingComputer implements IFoldingComputer
 			IParseRootNode parseNode) throws BadLocationException
 	{
 		this.initialReconcile = initialReconcile;
-		fLines = new ArrayList<Integer>();
+		if (fDisposed)
+		{
+			return Collections.emptyMap();
+		}
+		if (fTracker == null)
+		{
+			fTracker = new DocumentChangeTracker(getDocument());
+		}
+		DocumentChangeTracker.Change change = fTracker.reset();
+
 		int lineCount = getDocument().getNumberOfLines();
 		if (lineCount <= 1) // Quick hack fix for minified files. We need at least two lines to have folding!
 		{
+			fLastNodes = null;
 			return Collections.emptyMap();
 		}
 		SubMonitor sub = null;
@@ -72,8 +173,13 @@ public abstract class AbstractFoldingComputer implements IFoldingComputer
 		{
 			if (parseNode == null)
 			{
+				fLastNodes = null;
 				return Collections.emptyMap();
 			}
+			prepareReuse(change, lineCount);
+			fFolds = new ArrayList<Fold>();
+			fNodes = new ArrayList<Node>();
+
 			int length = parseNode.getChildCount();
 			if (parseNode instanceof IParseRootNode)
 			{
@@ -92,12 +198,23 @@ public abstract class AbstractFoldingComputer implements IFoldingComputer
 			if (subMonitor.isCanceled())
 			{
 				monitor.setCanceled(true);
+				fLastNodes = null;
+			}
+			else if (fTracker.hasChanged())
+			{
+				// the document was modified during the computation
+				fLastNodes = null;
+			}
+			else
+			{
+				keepForReuse(lineCount);
 			}
 			return positions;
 		}
 		finally
 		{
-			fLines = null;
+			fFolds = null;
+			fNodes = null;
 			if (sub != null)
 			{
 				sub.done();
@@ -105,6 +222,23 @@ public abstract class AbstractFoldingComputer implements IFoldingComputer
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.common.text.reconciler.IFoldingComputer#dispose()
+	 */
+	public void dispose()
+	{
+		fDisposed = true;
+		if (fTracker != null)
+		{
+			fTracker.dispose();
+			fTracker = null;
+		}
+		fLastNodes = null;
+		fLastNodeList = null;
+		fLastFolds = null;
+	}
+
 	protected IParseNode[] getChildren(IParseNode parseNode)
 	{
 		IParseNode[] children = parseNode.getChildren();
@@ -134,77 +268,248 @@ public abstract class AbstractFoldingComputer implements IFoldingComputer
 	 */
 	protected Map<ProjectionAnnotation, Position> getPositions(IProgressMonitor monitor, IParseNode parseNode)
 	{
+		if (fFolds == null)
+		{
+			// not part of a computation, so nothing is reused or kept
+			fFolds = new ArrayList<Fold>();
+			fNodes = new ArrayList<Node>();
+			try
+			{
+				return getPositions(monitor, parseNode);
+			}
+			finally
+			{
+				fFolds = null;
+				fNodes = null;
+			}
+		}
+
+		addFolds(monitor, parseNode);
+
+		// Don't bother adding multiple positions for the same starting line
 		Map<ProjectionAnnotation, Position> newPositions = new HashMap<ProjectionAnnotation, Position>();
+		Set<Integer> lines = new HashSet<Integer>();
+		for (Fold fold : fFolds)
+		{
+			if (fold.line == -1 || lines.add(fold.line))
+			{
+				newPositions.put(initialReconcile ? new ProjectionAnnotation(fold.collapsed)
+						: new ProjectionAnnotation(), new Position(fold.start, fold.end - fold.start));
+			}
+		}
+		return newPositions;
+	}
+
+	/**
+	 * Adds the folds of the nodes under a node, in the order they're found in. The folds of a node that didn't change
+	 * since the last computation are copied from it instead.
+	 * 
+	 * @param monitor
+	 * @param parseNode
+	 */
+	private void addFolds(IProgressMonitor monitor, IParseNode parseNode)
+	{
 		IParseNode[] children = getChildren(parseNode);
 		SubMonitor sub = SubMonitor.convert(monitor, 2 * children.length);
 		for (IParseNode child : children)
 		{
 			if (sub.isCanceled())
 			{
-				return newPositions;
+				return;
 			}
-			if (isFoldable(child))
+			boolean foldable = isFoldable(child);
+			boolean traverse = traverseInto(child);
+			if (foldable || traverse)
 			{
-				int start = child.getStartingOffset();
-				boolean add = true;
-				int end = child.getEndingOffset() + 1;
-				try
+				Node node = new Node(child.getClass(), child.getStartingOffset(), child.getEndingOffset());
+				fNodes.add(node);
+				node.foldsFrom = fFolds.size();
+				node.nodesFrom = fNodes.size();
+				if (!reuse(node))
 				{
-					int line = getDocument().getLineOfOffset(start);
-					// Don't bother adding multiple positions for the same starting line
-					if (fLines != null && fLines.contains(line))
+					if (foldable)
 					{
-						add = false;
+						addFold(child);
 					}
-					else
+					if (traverse)
 					{
-						// Don't set up folding for stuff starting and ending on same line
-						int endLine = getDocument().getLineOfOffset(child.getEndingOffset());
-						if (endLine == line)
-						{
-							add = false;
-						}
-						else
-						{
-							// When we can, use the end of the end line as the end offset, so it looks nicer in the
-							// editor. Using getLineInformation excludes the line delimiter, so we use the methods that
-							// include it!
-							end = getDocument().getLineOffset(endLine) + getDocument().getLineLength(endLine);
-							if (fLines != null)
-							{
-								fLines.add(line);
-							}
-						}
+						// Recurse into AST!
+						addFolds(sub.newChild(1), child);
 					}
 				}
-				catch (BadLocationException e)
-				{
-					// ignore
-				}
-				if (add)
+				node.foldsTo = fFolds.size();
+				node.nodesTo = fNodes.size();
+				node.extentStart = node.start;
+				node.extentEnd = node.end + 1;
+				for (int i = node.foldsFrom; i < node.foldsTo; i++)
 				{
-					end = Math.min(getDocument().getLength(), end);
-					if (start <= end)
-					{
-						newPositions.put(initialReconcile ? new ProjectionAnnotation(isCollapsed(child))
-								: new ProjectionAnnotation(), new Position(start, end - start));
-					}
-					else
-					{
-						IdeLog.logWarning(CommonEditorPlugin.getDefault(), MessageFormat.format(
-								"Was unable to add folding position. Start: {0}, end: {1}", start, end)); //$NON-NLS-1$
-					}
+					Fold fold = fFolds.get(i);
+					node.extentStart = Math.min(node.extentStart, fold.start);
+					node.extentEnd = Math.max(node.extentEnd, fold.end);
 				}
 			}
-			if (traverseInto(child))
-			{
-				// Recurse into AST!
-				newPositions.putAll(getPositions(sub.newChild(1), child));
-			}
 			sub.worked(1);
 		}
 		sub.done();
-		return newPositions;
+	}
+
+	private void addFold(IParseNode child)
+	{
+		int start = child.getStartingOffset();
+		int end = child.getEndingOffset() + 1;
+		int line = -1;
+		try
+		{
+			line = getDocument().getLineOfOffset(start);
+			// Don't set up folding for stuff starting and ending on same line
+			int endLine = getDocument().getLineOfOffset(child.getEndingOffset());
+			if (endLine == line)
+			{
+				return;
+			}
+			// When we can, use the end of the end line as the end offset, so it looks nicer in the
+			// editor. Using getLineInformation excludes the line delimiter, so we use the methods that
+			// include it!
+			end = getDocument().getLineOffset(endLine) + getDocument().getLineLength(endLine);
+		}
+		catch (BadLocationException e)
+		{
+			// ignore
+			line = -1;
+		}
+		end = Math.min(getDocument().getLength(), end);
+		if (start <= end)
+		{
+			fFolds.add(new Fold(start, end, line, initialReconcile && isCollapsed(child)));
+		}
+		else
+		{
+			IdeLog.logWarning(CommonEditorPlugin.getDefault(), MessageFormat.format(
+					"Was unable to add folding position. Start: {0}, end: {1}", start, end)); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Sets up what the last computation found that can be reused by this one.
+	 * 
+	 * @param change
+	 *            the changes since the last computation
+	 * @param lineCount
+	 * @throws BadLocationException
+	 */
+	private void prepareReuse(DocumentChangeTracker.Change change, int lineCount) throws BadLocationException
+	{
+		// the initial folds may be collapsed
+		if (fLastNodes == null || initialReconcile || change.isEverything())
+		{
+			fLastNodes = null;
+			return;
+		}
+		if (change.isEmpty())
+		{
+			fReuseBefore = Integer.MAX_VALUE;
+			fReuseAfter = Integer.MAX_VALUE;
+			fDelta = 0;
+			fLineDelta = 0;
+			return;
+		}
+		// a fold ends with the end of a line, so the line of the change must not be reached
+		int start = Math.min(change.getStart(), getDocument().getLength());
+		fReuseBefore = getDocument().getLineOffset(getDocument().getLineOfOffset(start));
+		fReuseAfter = change.getEnd();
+		fDelta = change.getDelta();
+		fLineDelta = lineCount - fLastLineCount;
+	}
+
+	/**
+	 * Copies the folds of a node and the nodes found under it by the last computation, if the node didn't change.
+	 * 
+	 * @param node
+	 * @return true if the node's folds were reused
+	 */
+	private boolean reuse(Node node)
+	{
+		if (fLastNodes == null)
+		{
+			return false;
+		}
+
+		Node last;
+		int delta;
+		int lineDelta;
+		if (node.end < fReuseBefore)
+		{
+			last = fLastNodes.get(node.getKey());
+			if (last == null || last.extentEnd > fReuseBefore)
+			{
+				return false;
+			}
+			delta = 0;
+			lineDelta = 0;
+		}
+		else if (node.start >= fReuseAfter)
+		{
+			last = fLastNodes.get(Node.getKey(node.start - fDelta, node.end - fDelta));
+			if (last == null || last.extentStart + fDelta < fReuseAfter)
+			{
+				return false;
+			}
+			delta = fDelta;
+			lineDelta = fLineDelta;
+		}
+		else
+		{
+			return false;
+		}
+		if (last.type != node.type)
+		{
+			return false;
+		}
+
+		int foldsOffset = fFolds.size() - last.foldsFrom;
+		for (int i = last.foldsFrom; i < last.foldsTo; i++)
+		{
+			Fold fold = fLastFolds.get(i);
+			fFolds.add(new Fold(fold.start + delta, fold.end + delta, (fold.line == -1) ? -1 : fold.line
+					+ lineDelta, false));
+		}
+		int nodesOffset = fNodes.size() - last.nodesFrom;
+		for (int i = last.nodesFrom; i < last.nodesTo; i++)
+		{
+			Node lastChild = fLastNodeList.get(i);
+			Node child = new Node(lastChild.type, lastChild.start + delta, lastChild.end + delta);
+			child.foldsFrom = lastChild.foldsFrom + foldsOffset;
+			child.foldsTo = lastChild.foldsTo + foldsOffset;
+			child.nodesFrom = lastChild.nodesFrom + nodesOffset;
+			child.nodesTo = lastChild.nodesTo + nodesOffset;
+			child.extentStart = lastChild.extentStart + delta;
+			child.extentEnd = lastChild.extentEnd + delta;
+			fNodes.add(child);
+		}
+		return true;
+	}
+
+	/**
+	 * Keeps the folds and nodes found by the computation, for the next one to reuse.
+	 * 
+	 * @param lineCount
+	 */
+	private void keepForReuse(int lineCount)
+	{
+		Map<Long, Node> nodes = new HashMap<Long, Node>(fNodes.size() * 2);
+		for (Node node : fNodes)
+		{
+			// a node may have the same range as its parent: keep the outermost one, found first
+			Long key = node.getKey();
+			if (!nodes.containsKey(key))
+			{
+				nodes.put(key, node);
+			}
+		}
+		fLastNodes = nodes;
+		fLastNodeList = fNodes;
+		fLastFolds = fFolds;
+		fLastLineCount = lineCount;
 	}
 
 	/**
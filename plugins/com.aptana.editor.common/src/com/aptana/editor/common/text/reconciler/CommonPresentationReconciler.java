@@ -9,6 +9,7 @@
 package com.aptana.editor.common.text.reconciler;
 
 import java.text.MessageFormat;
+import java.util.Iterator;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -16,16 +17,21 @@ import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ISynchronizable;
+import org.eclipse.jface.text.ITextInputListener;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.ITypedRegion;
 import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.TextPresentation;
 import org.eclipse.jface.text.TextUtilities;
+import org.eclipse.jface.text.TypedRegion;
 import org.eclipse.jface.text.presentation.IPresentationRepairer;
 import org.eclipse.jface.text.presentation.PresentationReconciler;
+import org.eclipse.swt.custom.StyleRange;
 import org.eclipse.swt.custom.StyledText;
 
 import com.aptana.core.logging.IdeLog;
@@ -39,13 +45,21 @@ import com.aptana.theme.ThemePlugin;
 import com.aptana.ui.util.UIUtils;
 
 /**
+ * A presentation reconciler which colors large damaged regions in the background. The damage is kept as a set of
+ * regions of the current document: the UI thread colors what it can of it within a time budget, starting with the
+ * visible part of the viewer, and a background job colors the rest in iterations, each of them bounded by a time budget
+ * as it holds the document, expanding outward from the visible part. An iteration whose document changed before its
+ * presentation could be applied is dropped, its region staying damaged.
+ * 
  * @author Max Stepanov
  */
 public class CommonPresentationReconciler extends PresentationReconciler
 {
 	private int iterationPartitionLimit = 4000;
 	private int backgroundReconcileDelay = 2000;
-	private int iterationDelay = 500;
+	private int iterationDelay = 0;
+	private int foregroundBudget = 100;
+	private int iterationBudget = 50;
 	private int minimalVisibleLength = 20000;
 
 	private ITextViewer textViewer;
@@ -53,6 +67,62 @@ public class CommonPresentationReconciler extends PresentationReconciler
 	private IRegion viewerVisibleRegion;
 	private Job job;
 
+	/**
+	 * Incremented on every change of the document, to tell whether what was computed from it is still valid
+	 */
+	private int documentVersion;
+
+	/**
+	 * The partitioning last computed, reused by the following iterations as long as the document doesn't change
+	 */
+	private ITypedRegion[] partitioning;
+	private int partitioningVersion;
+
+	private final InternalListener listener = new InternalListener();
+
+	/**
+	 * Keeps the damaged regions in sync with the document
+	 */
+	private class InternalListener implements IDocumentListener, ITextInputListener
+	{
+		public void documentAboutToBeChanged(DocumentEvent event)
+		{
+		}
+
+		public void documentChanged(DocumentEvent event)
+		{
+			String text = event.getText();
+			synchronized (CommonPresentationReconciler.this)
+			{
+				delayedRegions.replace(event.getOffset(), event.getLength(), (text == null) ? 0 : text.length());
+				documentVersion++;
+				partitioning = null;
+			}
+		}
+
+		public void inputDocumentAboutToBeChanged(IDocument oldInput, IDocument newInput)
+		{
+			if (oldInput != null)
+			{
+				oldInput.removeDocumentListener(this);
+			}
+			synchronized (CommonPresentationReconciler.this)
+			{
+				delayedRegions.clear();
+				documentVersion++;
+				partitioning = null;
+			}
+		}
+
+		public void inputDocumentChanged(IDocument oldInput, IDocument newInput)
+		{
+			if (newInput != null)
+			{
+				newInput.addDocumentListener(this);
+			}
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.jface.text.presentation.PresentationReconciler#install(org.eclipse.jface.text.ITextViewer)
@@ -60,7 +130,6 @@ public class CommonPresentationReconciler extends PresentationReconciler
 	@Override
 	public void install(ITextViewer viewer)
 	{
-		super.install(viewer);
 		delayedRegions.clear();
 		textViewer = viewer;
 		iterationPartitionLimit = Integer.getInteger(
@@ -68,6 +137,10 @@ public class CommonPresentationReconciler extends PresentationReconciler
 		backgroundReconcileDelay = Integer.getInteger(ICommonEditorSystemProperties.RECONCILER_BACKGROUND_DELAY,
 				backgroundReconcileDelay);
 		iterationDelay = Integer.getInteger(ICommonEditorSystemProperties.RECONCILER_ITERATION_DELAY, iterationDelay);
+		foregroundBudget = Integer.getInteger(ICommonEditorSystemProperties.RECONCILER_FOREGROUND_BUDGET,
+				foregroundBudget);
+		iterationBudget = Integer.getInteger(ICommonEditorSystemProperties.RECONCILER_ITERATION_BUDGET,
+				iterationBudget);
 		minimalVisibleLength = Integer.getInteger(ICommonEditorSystemProperties.RECONCILER_MINIMAL_VISIBLE_LENGTH,
 				minimalVisibleLength);
 		if (IdeLog.isTraceEnabled(CommonEditorPlugin.getDefault(), IDebugScopes.PRESENTATION))
@@ -75,10 +148,18 @@ public class CommonPresentationReconciler extends PresentationReconciler
 			IdeLog.logTrace(
 					CommonEditorPlugin.getDefault(),
 					MessageFormat
-							.format("Reconciling process set for partition limit of {0} partitions, background delay of {1}ms, iteration delay of {2}ms, and minimal visible length of {3} lines", //$NON-NLS-1$
+							.format("Reconciling process set for partition limit of {0} partitions, background delay of {1}ms, iteration delay of {2}ms, foreground budget of {3}ms, iteration budget of {4}ms, and minimal visible length of {5} lines", //$NON-NLS-1$
 									iterationPartitionLimit, backgroundReconcileDelay, iterationDelay,
-									minimalVisibleLength), IDebugScopes.PRESENTATION);
+									foregroundBudget, iterationBudget, minimalVisibleLength),
+					IDebugScopes.PRESENTATION);
 		}
+		// listen to the document before the damage of the changes gets presented
+		viewer.addTextInputListener(listener);
+		if (viewer.getDocument() != null)
+		{
+			listener.inputDocumentChanged(null, viewer.getDocument());
+		}
+		super.install(viewer);
 	}
 
 	/*
@@ -93,6 +174,11 @@ public class CommonPresentationReconciler extends PresentationReconciler
 			job.cancel();
 			job = null;
 		}
+		if (textViewer != null)
+		{
+			textViewer.removeTextInputListener(listener);
+			listener.inputDocumentAboutToBeChanged(textViewer.getDocument(), null);
+		}
 		delayedRegions.clear();
 		textViewer = null;
 		super.uninstall();
@@ -122,7 +208,22 @@ public class CommonPresentationReconciler extends PresentationReconciler
 		}
 		try
 		{
-			return createPresentation(nextDamagedRegion(), document, new NullProgressMonitor());
+			IRegion region = nextDamagedRegion();
+			if (region == null)
+			{
+				return null;
+			}
+			TextPresentation presentation = createPresentation(region, document, foregroundBudget,
+					new NullProgressMonitor());
+			if (presentation != null)
+			{
+				// applied right away by the caller
+				synchronized (this)
+				{
+					delayedRegions.remove(presentation.getExtent());
+				}
+			}
+			return presentation;
 		}
 		finally
 		{
@@ -130,7 +231,19 @@ public class CommonPresentationReconciler extends PresentationReconciler
 		}
 	}
 
-	protected TextPresentation createPresentation(IRegion damage, IDocument document, IProgressMonitor monitor)
+	/**
+	 * Creates the presentation of the partitions of a damaged region, starting at its offset, until the time budget
+	 * or the partition limit is reached.
+	 * 
+	 * @param damage
+	 * @param document
+	 * @param budget
+	 *            the time (in ms) after which the presentation is returned with the partitions processed so far
+	 * @param monitor
+	 * @return the presentation, its extent being the region processed, or null if cancelled
+	 */
+	protected TextPresentation createPresentation(IRegion damage, IDocument document, long budget,
+			IProgressMonitor monitor)
 	{
 		try
 		{
@@ -149,53 +262,138 @@ public class CommonPresentationReconciler extends PresentationReconciler
 				}
 				damageLength = adjustedLength;
 			}
-			TextPresentation presentation = new TextPresentation(damage, iterationPartitionLimit * 5);
-			ITypedRegion[] partitioning = TextUtilities.computePartitioning(document, getDocumentPartitioning(),
-					damageOffset, damageLength, false);
-			if (partitioning.length == 0)
+			IRegion region = new Region(damageOffset, damageLength);
+			ITypedRegion[] partitions = computePartitioning(document, damageOffset, damageLength);
+			TextPresentation presentation = new TextPresentation(region, Math.min(partitions.length,
+					iterationPartitionLimit) * 5);
+			if (partitions.length == 0)
 			{
 				return presentation;
 			}
-			int limit = Math.min(iterationPartitionLimit, partitioning.length);
-			int processingLength = partitioning[limit - 1].getOffset() + partitioning[limit - 1].getLength()
-					- damageOffset;
 			if (EclipseUtil.showSystemJobs())
 			{
 				monitor.subTask(MessageFormat.format(
 						"processing region at offset {0}, length {1} in document of length {2}", damageOffset, //$NON-NLS-1$
-						processingLength, document.getLength()));
+						damageLength, document.getLength()));
 			}
 
-			for (int i = 0; i < limit; ++i)
+			long deadline = System.currentTimeMillis() + budget;
+			int count = 0;
+			while (count < partitions.length)
 			{
-				ITypedRegion r = partitioning[i];
-				IPresentationRepairer repairer = getRepairer(r.getType());
 				if (monitor.isCanceled())
 				{
 					return null;
 				}
+				ITypedRegion r = partitions[count++];
+				IPresentationRepairer repairer = getRepairer(r.getType());
 				if (repairer != null)
 				{
 					repairer.createPresentation(presentation, r);
 				}
 				monitor.worked(r.getLength());
+				if (System.currentTimeMillis() >= deadline)
+				{
+					break;
+				}
+			}
+
+			int processingLength = partitions[count - 1].getOffset() + partitions[count - 1].getLength()
+					- damageOffset;
+			if (processingLength >= damageLength)
+			{
+				return presentation;
+			}
+			// the rest of the region keeps its current colors until it gets processed
+			TextPresentation processed = new TextPresentation(new Region(damageOffset, processingLength),
+					presentation.getDenumerableRanges());
+			for (Iterator<?> i = presentation.getAllStyleRangeIterator(); i.hasNext();)
+			{
+				processed.addStyleRange((StyleRange) i.next());
 			}
+			return processed;
+		}
+		catch (BadLocationException e)
+		{
+			return null;
+		}
+	}
 
+	/**
+	 * Returns the partitions of a region, up to the partition limit. The partitioning computed for the whole damage is
+	 * reused by the next iterations, as long as the document doesn't change.
+	 * 
+	 * @param document
+	 * @param offset
+	 * @param length
+	 * @return
+	 * @throws BadLocationException
+	 */
+	private ITypedRegion[] computePartitioning(IDocument document, int offset, int length)
+			throws BadLocationException
+	{
+		int end = offset + length;
+		ITypedRegion[] partitions;
+		int version;
+		synchronized (this)
+		{
+			version = documentVersion;
+			partitions = (partitioningVersion == version) ? partitioning : null;
+		}
+		if (partitions == null || partitions.length == 0 || partitions[0].getOffset() > offset
+				|| partitions[partitions.length - 1].getOffset() + partitions[partitions.length - 1].getLength() < end)
+		{
+			partitions = TextUtilities.computePartitioning(document, getDocumentPartitioning(), offset, length, false);
 			synchronized (this)
 			{
-				delayedRegions.remove(new Region(damageOffset, processingLength));
-				if (limit < partitioning.length)
+				if (version == documentVersion)
 				{
-					int offset = partitioning[limit].getOffset();
-					delayedRegions.append(new Region(offset, damageOffset + damageLength - offset));
+					partitioning = partitions;
+					partitioningVersion = version;
 				}
 			}
-			return presentation;
 		}
-		catch (BadLocationException e)
+
+		// the first partition ending after the offset
+		int low = 0;
+		int high = partitions.length;
+		while (low < high)
 		{
-			return null;
+			int middle = (low + high) >>> 1;
+			if (partitions[middle].getOffset() + partitions[middle].getLength() <= offset)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		int last = low;
+		while (last < partitions.length && last - low < iterationPartitionLimit && partitions[last].getOffset() < end)
+		{
+			last++;
+		}
+
+		ITypedRegion[] result = new ITypedRegion[last - low];
+		System.arraycopy(partitions, low, result, 0, result.length);
+		if (result.length > 0)
+		{
+			result[0] = clip(result[0], offset, end);
+			result[result.length - 1] = clip(result[result.length - 1], offset, end);
 		}
+		return result;
+	}
+
+	private static ITypedRegion clip(ITypedRegion partition, int start, int end)
+	{
+		int offset = Math.max(partition.getOffset(), start);
+		int length = Math.min(partition.getOffset() + partition.getLength(), end) - offset;
+		if (offset == partition.getOffset() && length == partition.getLength())
+		{
+			return partition;
+		}
+		return new TypedRegion(offset, length, partition.getType());
 	}
 
 	protected Theme getCurrentTheme()
@@ -208,9 +406,14 @@ public class CommonPresentationReconciler extends PresentationReconciler
 		if (damage != null && damage.getLength() > 0)
 		{
 			final TextPresentation[] presentation = new TextPresentation[1];
+			final int version;
 			synchronized (getLockObject(document))
 			{
-				presentation[0] = createPresentation(damage, document, monitor);
+				synchronized (this)
+				{
+					version = documentVersion;
+				}
+				presentation[0] = createPresentation(damage, document, iterationBudget, monitor);
 			}
 			if (presentation[0] != null)
 			{
@@ -221,6 +424,15 @@ public class CommonPresentationReconciler extends PresentationReconciler
 						ITextViewer viewer = textViewer;
 						if (viewer != null)
 						{
+							synchronized (CommonPresentationReconciler.this)
+							{
+								if (version != documentVersion)
+								{
+									// stale, the region stays damaged
+									return;
+								}
+								delayedRegions.remove(presentation[0].getExtent());
+							}
 							try
 							{
 								StyledText widget = viewer.getTextWidget();
@@ -228,10 +440,6 @@ public class CommonPresentationReconciler extends PresentationReconciler
 								{
 									viewer.changeTextPresentation(presentation[0], true);
 								}
-								// save visible region here since UI thread access required
-								int topOffset = viewer.getTopIndexStartOffset();
-								int length = viewer.getBottomIndexEndOffset() - topOffset;
-								viewerVisibleRegion = new Region(topOffset, Math.max(length, minimalVisibleLength));
 							}
 							catch (Exception e)
 							{
@@ -253,7 +461,7 @@ public class CommonPresentationReconciler extends PresentationReconciler
 		}
 		else
 		{
-			// TODO Is there any reason this needs to be a job? can we just use a Thread?
+			// a job, so that each change cancels the current iteration and delays the next ones
 			job = new Job("Delayed Presentation Reconciler") { //$NON-NLS-1$
 				@Override
 				protected IStatus run(IProgressMonitor monitor)
@@ -274,13 +482,20 @@ public class CommonPresentationReconciler extends PresentationReconciler
 							break;
 						}
 						processDamage(damage, textViewer.getDocument(), monitor);
-						try
+						if (iterationDelay > 0)
 						{
-							Thread.sleep(iterationDelay);
+							try
+							{
+								Thread.sleep(iterationDelay);
+							}
+							catch (InterruptedException e)
+							{
+								break;
+							}
 						}
-						catch (InterruptedException e)
+						else
 						{
-							break;
+							Thread.yield();
 						}
 					}
 					monitor.done();
@@ -293,13 +508,21 @@ public class CommonPresentationReconciler extends PresentationReconciler
 		}
 		if (!delayedRegions.isEmpty())
 		{
-			job.schedule(backgroundReconcileDelay);
+			// what's visible and not colored yet can't wait
+			boolean visibleDamage = viewerVisibleRegion != null && delayedRegions.overlap(viewerVisibleRegion) != null;
+			job.schedule(visibleDamage ? 0 : backgroundReconcileDelay);
 		}
 	}
 
+	/**
+	 * Returns the next region to process: the damage in the visible part of the viewer, or else the damage closest to
+	 * it, starting from the side facing it.
+	 * 
+	 * @return
+	 */
 	private IRegion nextDamagedRegion()
 	{
-		if (viewerVisibleRegion == null && textViewer != null)
+		if (textViewer != null)
 		{
 			UIUtils.getDisplay().syncExec(new Runnable()
 			{
@@ -322,16 +545,38 @@ public class CommonPresentationReconciler extends PresentationReconciler
 			{
 				return null;
 			}
-			if (viewerVisibleRegion != null)
+			IRegion visible = viewerVisibleRegion;
+			if (visible == null)
 			{
-				IRegion visible = delayedRegions.overlap(viewerVisibleRegion);
-				viewerVisibleRegion = null;
-				if (visible != null)
+				return delayedRegions.iterator().next();
+			}
+			IRegion overlap = delayedRegions.overlap(visible);
+			if (overlap != null)
+			{
+				return overlap;
+			}
+
+			int visibleEnd = visible.getOffset() + visible.getLength();
+			IRegion closest = null;
+			int closestDistance = Integer.MAX_VALUE;
+			for (IRegion region : delayedRegions)
+			{
+				int end = region.getOffset() + region.getLength();
+				int distance = (end <= visible.getOffset()) ? visible.getOffset() - end : region.getOffset()
+						- visibleEnd;
+				if (distance < closestDistance)
 				{
-					return visible;
+					closest = region;
+					closestDistance = distance;
 				}
 			}
-			return delayedRegions.iterator().next();
+			int end = closest.getOffset() + closest.getLength();
+			if (end <= visible.getOffset() && closest.getLength() > visible.getLength())
+			{
+				// above the visible part: its end first
+				return new Region(end - visible.getLength(), visible.getLength());
+			}
+			return closest;
 		}
 	}
 
@@ -7,15 +7,32 @@
  */
 package com.aptana.editor.common.text.reconciler;
 
+import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IncrementalProjectBuilder;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
@@ -37,6 +54,7 @@ import com.aptana.core.IFilter;
 import com.aptana.core.build.IBuildParticipant;
 import com.aptana.core.build.IBuildParticipant.BuildType;
 import com.aptana.core.build.IBuildParticipantManager;
+import com.aptana.core.build.IProblem;
 import com.aptana.core.build.ReconcileContext;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
@@ -44,6 +62,7 @@ import com.aptana.core.util.ResourceUtil;
 import com.aptana.editor.common.AbstractThemeableEditor;
 import com.aptana.editor.common.CommonEditorPlugin;
 import com.aptana.editor.common.ICommonAnnotationModel;
+import com.aptana.editor.common.IDebugScopes;
 import com.aptana.editor.common.util.EditorUtil;
 import com.aptana.parsing.ParseResult;
 import com.aptana.parsing.ast.IParseError;
@@ -53,6 +72,31 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 		IBatchReconcilingStrategy, IDisposableReconcilingStrategy
 {
 
+	/**
+	 * The time (in milliseconds) a reconcile waits for each thread-safe participant, from the moment it starts. A
+	 * participant which isn't done by then is canceled, and the problems it reported last time are kept.
+	 */
+	private static final long PARTICIPANT_TIMEOUT = 10000;
+
+	/**
+	 * The time (in milliseconds) we wait for a participant before checking whether a newer edit canceled the reconcile.
+	 */
+	private static final long POLL_INTERVAL = 50;
+
+	/**
+	 * The time (in milliseconds) we give the canceled participants to notice it. Those still running after that are
+	 * abandoned: they end on their own, with the context of their reconcile, while the next one gets a new context.
+	 */
+	private static final long CANCEL_TIMEOUT = 1000;
+
+	/**
+	 * Runs the thread-safe participants of all the editors. Threads are created as needed, up to one per processor,
+	 * and end when they're idle; when they're all busy, the reconciler thread runs the participant itself.
+	 */
+	private static final ExecutorService PARTICIPANTS_EXECUTOR = new ThreadPoolExecutor(0, Runtime.getRuntime()
+			.availableProcessors(), 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+			new ParticipantThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+
 	/**
 	 * The editor we're operating on.
 	 */
@@ -79,6 +123,11 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 	 */
 	private Map<ProjectionAnnotation, Position> fPositions = new HashMap<ProjectionAnnotation, Position>();
 
+	/**
+	 * The problems last reported to the annotation model.
+	 */
+	private volatile Map<String, Collection<IProblem>> fReportedProblems = Collections.emptyMap();
+
 	private IPropertyListener propertyListener = new IPropertyListener()
 	{
 		public void propertyChanged(Object source, int propId)
@@ -103,6 +152,11 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 			fEditor.removePropertyListener(propertyListener);
 			fEditor = null;
 		}
+		if (folder != null)
+		{
+			folder.dispose();
+			folder = null;
+		}
 		synchronized (fPositionsLock)
 		{
 			fPositions.clear();
@@ -131,6 +185,10 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 
 	public void setDocument(IDocument document)
 	{
+		if (folder != null)
+		{
+			folder.dispose();
+		}
 		folder = createFoldingComputer(document);
 		fDocument = document;
 	}
@@ -158,7 +216,9 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 	// FIXME Can folding be made into a build participant?
 	protected void calculatePositions(boolean initialReconcile, IProgressMonitor monitor, IParseRootNode ast)
 	{
-		if (monitor != null && monitor.isCanceled())
+		// the strategy may be disposed while reconciling
+		IFoldingComputer folder = this.folder;
+		if (folder == null || monitor != null && monitor.isCanceled())
 		{
 			return;
 		}
@@ -286,7 +346,12 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 	}
 
 	/**
-	 * Runs through the {@link IBuildParticipant}s that apply to this editor's underlying file.
+	 * Runs through the {@link IBuildParticipant}s that apply to this editor's underlying file. The thread-safe
+	 * participants run concurrently on other threads, while the others run on this one; the problems are reported each
+	 * time a participant finishes. The participants are canceled when a newer edit cancels the reconcile, or when they
+	 * take longer than {@link #PARTICIPANT_TIMEOUT}. Either way we wait up to {@link #CANCEL_TIMEOUT} for them to stop
+	 * before returning; a participant ignoring its monitor is abandoned, and the run is reported as incomplete. This
+	 * doesn't affect the next reconcile, which creates its own context (the AST it reads isn't modified by reparses).
 	 * 
 	 * @param monitor
 	 */
@@ -327,23 +392,193 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 		{
 			return;
 		}
-		for (IBuildParticipant participant : participants)
+
+		List<IBuildParticipant> serialParticipants = new ArrayList<IBuildParticipant>(participants.size());
+		List<IBuildParticipant> startedParticipants = new ArrayList<IBuildParticipant>(participants.size());
+		List<Future<IBuildParticipant>> results = new ArrayList<Future<IBuildParticipant>>(participants.size());
+		Map<Future<IBuildParticipant>, ParticipantTask> running = new HashMap<Future<IBuildParticipant>,
+				ParticipantTask>();
+		CompletionService<IBuildParticipant> completionService = new ExecutorCompletionService<IBuildParticipant>(
+				PARTICIPANTS_EXECUTOR);
+		boolean complete = true;
+		try
 		{
-			participant.buildStarting(context.getProject(), IncrementalProjectBuilder.INCREMENTAL_BUILD,
-					sub.newChild(1));
+			for (IBuildParticipant participant : participants)
+			{
+				if (participant.isThreadSafe())
+				{
+					ParticipantTask task = new ParticipantTask(participant, context);
+					Future<IBuildParticipant> result = completionService.submit(task);
+					results.add(result);
+					running.put(result, task);
+				}
+				else
+				{
+					serialParticipants.add(participant);
+				}
+			}
+
+			try
+			{
+				for (IBuildParticipant participant : serialParticipants)
+				{
+					participant.buildStarting(context.getProject(), IncrementalProjectBuilder.INCREMENTAL_BUILD,
+							sub.newChild(1));
+					startedParticipants.add(participant);
+				}
+				for (int i = 0; i < serialParticipants.size(); i++)
+				{
+					serialParticipants.get(i).buildFile(context, sub.newChild(10));
+					if (sub.isCanceled())
+					{
+						return;
+					}
+					if (!running.isEmpty() || i < serialParticipants.size() - 1)
+					{
+						reportProblems(context, false, sub.newChild(0));
+					}
+				}
+			}
+			finally
+			{
+				for (IBuildParticipant participant : startedParticipants)
+				{
+					participant.buildEnding(sub.newChild(1));
+				}
+			}
+
+			while (!running.isEmpty())
+			{
+				long now = System.currentTimeMillis();
+				long timeout = POLL_INTERVAL;
+				for (Iterator<ParticipantTask> i = running.values().iterator(); i.hasNext();)
+				{
+					ParticipantTask task = i.next();
+					long left = task.getTimeLeft(now);
+					if (left <= 0)
+					{
+						IdeLog.logWarning(CommonEditorPlugin.getDefault(), MessageFormat.format(
+								"Canceled reconcile participant {0} after {1}ms", //$NON-NLS-1$
+								task.participant.getName(), PARTICIPANT_TIMEOUT), IDebugScopes.DEBUG);
+						task.cancel();
+						i.remove();
+						complete = false;
+					}
+					else
+					{
+						timeout = Math.min(timeout, left);
+					}
+				}
+				if (running.isEmpty())
+				{
+					break;
+				}
+
+				Future<IBuildParticipant> result = completionService.poll(timeout, TimeUnit.MILLISECONDS);
+				if (sub.isCanceled())
+				{
+					return;
+				}
+				// a participant we stopped waiting for may finish meanwhile
+				if (result == null || running.remove(result) == null)
+				{
+					continue;
+				}
+
+				checkResult(result);
+				sub.worked(12);
+				if (!running.isEmpty())
+				{
+					reportProblems(context, false, sub.newChild(0));
+				}
+			}
 		}
-		for (IBuildParticipant participant : participants)
+		catch (InterruptedException e)
 		{
-			participant.buildFile(context, sub.newChild(10));
+			Thread.currentThread().interrupt();
+			return;
 		}
-		for (IBuildParticipant participant : participants)
+		finally
 		{
-			participant.buildEnding(sub.newChild(1));
+			// stops the participants still running when we were canceled, and waits for all of them to end
+			for (ParticipantTask task : running.values())
+			{
+				task.cancel();
+			}
+			if (!waitFor(results))
+			{
+				complete = false;
+			}
 		}
-		reportProblems(context, sub.newChild(10));
+
+		reportProblems(context, complete, sub.newChild(10));
 		sub.done();
 	}
 
+	/**
+	 * Waits up to {@link #CANCEL_TIMEOUT} for the {@link ParticipantTask}s to end. Those which ended in time have been
+	 * checked already, and the others were canceled, so what they throw isn't logged.
+	 * 
+	 * @param results
+	 * @return false if some tasks are still running, and were abandoned
+	 */
+	private boolean waitFor(List<Future<IBuildParticipant>> results)
+	{
+		long deadline = System.currentTimeMillis() + CANCEL_TIMEOUT;
+		boolean ended = true;
+		for (Future<IBuildParticipant> result : results)
+		{
+			try
+			{
+				result.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+			}
+			catch (ExecutionException e)
+			{
+				// see above
+			}
+			catch (CancellationException e)
+			{
+				// never started
+			}
+			catch (TimeoutException e)
+			{
+				// keeps it from starting if it's still queued, but doesn't interrupt it
+				result.cancel(false);
+				ended = false;
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		if (!ended)
+		{
+			IdeLog.logWarning(CommonEditorPlugin.getDefault(), MessageFormat.format(
+					"Abandoned reconcile participants still running {0}ms after being canceled", //$NON-NLS-1$
+					CANCEL_TIMEOUT), IDebugScopes.DEBUG);
+		}
+		return ended;
+	}
+
+	/**
+	 * Logs anything a finished {@link ParticipantTask} threw
+	 * 
+	 * @param result
+	 * @throws InterruptedException
+	 */
+	private void checkResult(Future<IBuildParticipant> result) throws InterruptedException
+	{
+		try
+		{
+			result.get();
+		}
+		catch (ExecutionException e)
+		{
+			IdeLog.logError(CommonEditorPlugin.getDefault(), e.getCause());
+		}
+	}
+
 	protected IBuildParticipantManager getBuildParticipantManager()
 	{
 		return BuildPathCorePlugin.getDefault().getBuildParticipantManager();
@@ -422,9 +657,12 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 	 * markers on the underlying resource.
 	 * 
 	 * @param context
+	 * @param complete
+	 *            whether all the participants are done. When they aren't, the problems of the marker types which
+	 *            weren't reported yet are kept from the last report, until their participant finishes.
 	 * @param monitor
 	 */
-	private void reportProblems(ReconcileContext context, IProgressMonitor monitor)
+	private void reportProblems(ReconcileContext context, boolean complete, IProgressMonitor monitor)
 	{
 		AbstractThemeableEditor editor = fEditor;
 		if (editor == null)
@@ -450,9 +688,18 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 			return;
 		}
 
+		Map<String, Collection<IProblem>> problems = context.getProblems();
+		if (!complete)
+		{
+			Map<String, Collection<IProblem>> reported = new HashMap<String, Collection<IProblem>>(fReportedProblems);
+			reported.putAll(problems);
+			problems = reported;
+		}
+
 		ICommonAnnotationModel caModel = (ICommonAnnotationModel) model;
 		// Now report them all to the annotation model!
-		caModel.reportProblems(context.getProblems(), monitor);
+		caModel.reportProblems(problems, monitor);
+		fReportedProblems = problems;
 	}
 
 	protected IFile getFile()
@@ -476,4 +723,65 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 	{
 		reconcile(false);
 	}
+
+	/**
+	 * Runs a thread-safe participant on the file of the reconcile. Each task has its own monitor, so that a participant
+	 * can be canceled without the others.
+	 */
+	private static class ParticipantTask implements Callable<IBuildParticipant>
+	{
+		private final IBuildParticipant participant;
+		private final ReconcileContext context;
+		// SubMonitors aren't thread-safe, so the participant only gets a monitor we use to cancel it
+		private final IProgressMonitor monitor = new NullProgressMonitor();
+		private volatile long startTime;
+
+		ParticipantTask(IBuildParticipant participant, ReconcileContext context)
+		{
+			this.participant = participant;
+			this.context = context;
+		}
+
+		/**
+		 * Returns the time (in milliseconds) the participant has left to finish. Its clock starts when it does.
+		 * 
+		 * @param now
+		 * @return time left
+		 */
+		long getTimeLeft(long now)
+		{
+			long start = startTime;
+			return (start == 0) ? PARTICIPANT_TIMEOUT : start + PARTICIPANT_TIMEOUT - now;
+		}
+
+		void cancel()
+		{
+			monitor.setCanceled(true);
+		}
+
+		public IBuildParticipant call()
+		{
+			startTime = System.currentTimeMillis();
+			if (!monitor.isCanceled())
+			{
+				participant.buildStarting(context.getProject(), IncrementalProjectBuilder.INCREMENTAL_BUILD, monitor);
+				participant.buildFile(context, monitor);
+				participant.buildEnding(monitor);
+			}
+			return participant;
+		}
+	}
+
+	/**
+	 * Creates the daemon threads running the thread-safe participants
+	 */
+	private static class ParticipantThreadFactory implements ThreadFactory
+	{
+		public Thread newThread(Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, "Reconcile participant"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
 }
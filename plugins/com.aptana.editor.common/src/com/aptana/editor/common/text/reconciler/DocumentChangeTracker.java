@@ -0,0 +1,216 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.text.reconciler;
+
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.DocumentPartitioningChangedEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IDocumentPartitioningListener;
+import org.eclipse.jface.text.IDocumentPartitioningListenerExtension2;
+import org.eclipse.jface.text.IRegion;
+
+/**
+ * Tracks the range of a document changed since it was last asked for, so that what is computed from the document (like
+ * the folding positions) can be recomputed for that range only. The edits and the partitioning changes since the last
+ * call to {@link #reset()} are merged into a single range of the current document, everything after it being shifted
+ * by the same delta.
+ */
+public class DocumentChangeTracker implements IDocumentListener, IDocumentPartitioningListener,
+		IDocumentPartitioningListenerExtension2
+{
+	/**
+	 * A range of the document which changed
+	 */
+	public static class Change
+	{
+		private final boolean everything;
+		private final int start;
+		private final int end;
+		private final int delta;
+
+		private Change(boolean everything, int start, int end, int delta)
+		{
+			this.everything = everything;
+			this.start = start;
+			this.end = end;
+			this.delta = delta;
+		}
+
+		/**
+		 * @return true if the whole document must be considered changed
+		 */
+		public boolean isEverything()
+		{
+			return everything;
+		}
+
+		/**
+		 * @return true if nothing changed
+		 */
+		public boolean isEmpty()
+		{
+			return !everything && start > end;
+		}
+
+		/**
+		 * @return the offset of the changed range; the document is unchanged before it
+		 */
+		public int getStart()
+		{
+			return start;
+		}
+
+		/**
+		 * @return the end offset (exclusive) of the changed range; the document is unchanged after it, but shifted by
+		 *         {@link #getDelta()}
+		 */
+		public int getEnd()
+		{
+			return end;
+		}
+
+		/**
+		 * @return the difference between the current offset of the text after the changed range and its previous
+		 *         offset
+		 */
+		public int getDelta()
+		{
+			return delta;
+		}
+	}
+
+	private final IDocument fDocument;
+
+	private boolean fEverything = true;
+	private int fStart = Integer.MAX_VALUE;
+	private int fEnd = -1;
+	private int fDelta;
+
+	/**
+	 * The partitioning changes are notified before the document change they belong to, but their range is in the
+	 * changed document: they're merged after it.
+	 */
+	private boolean fChanging;
+	private IRegion fPendingCoverage;
+
+	/**
+	 * DocumentChangeTracker. Everything is considered changed until the first call to {@link #reset()}.
+	 * 
+	 * @param document
+	 */
+	public DocumentChangeTracker(IDocument document)
+	{
+		fDocument = document;
+		fDocument.addDocumentListener(this);
+		fDocument.addDocumentPartitioningListener(this);
+	}
+
+	/**
+	 * Stops tracking the changes of the document
+	 */
+	public void dispose()
+	{
+		fDocument.removeDocumentListener(this);
+		fDocument.removeDocumentPartitioningListener(this);
+	}
+
+	/**
+	 * Returns the changes since the last call and starts tracking from the current state of the document.
+	 * 
+	 * @return
+	 */
+	public synchronized Change reset()
+	{
+		Change change = new Change(fEverything, fStart, fEnd, fDelta);
+		fEverything = false;
+		fStart = Integer.MAX_VALUE;
+		fEnd = -1;
+		fDelta = 0;
+		return change;
+	}
+
+	/**
+	 * @return true if the document changed since the last call to {@link #reset()}
+	 */
+	public synchronized boolean hasChanged()
+	{
+		return fEverything || fStart <= fEnd;
+	}
+
+	/**
+	 * Considers the whole document changed, e.g. because what was computed from it was lost.
+	 */
+	public synchronized void invalidate()
+	{
+		fEverything = true;
+	}
+
+	public synchronized void documentAboutToBeChanged(DocumentEvent event)
+	{
+		fChanging = true;
+	}
+
+	public synchronized void documentChanged(DocumentEvent event)
+	{
+		fChanging = false;
+
+		int offset = event.getOffset();
+		int removed = event.getLength();
+		int added = (event.getText() == null) ? 0 : event.getText().length();
+
+		if (fStart <= fEnd)
+		{
+			// map the end of the range to the changed document
+			if (fEnd >= offset + removed)
+			{
+				fEnd += added - removed;
+			}
+			else if (fEnd > offset)
+			{
+				fEnd = offset + added;
+			}
+		}
+		addRange(offset, offset + added);
+		fDelta += added - removed;
+
+		if (fPendingCoverage != null)
+		{
+			addRange(fPendingCoverage.getOffset(), fPendingCoverage.getOffset() + fPendingCoverage.getLength());
+			fPendingCoverage = null;
+		}
+	}
+
+	public synchronized void documentPartitioningChanged(IDocument document)
+	{
+		fEverything = true;
+	}
+
+	public synchronized void documentPartitioningChanged(DocumentPartitioningChangedEvent event)
+	{
+		IRegion coverage = event.getCoverage();
+		if (coverage == null)
+		{
+			return;
+		}
+		if (fChanging)
+		{
+			fPendingCoverage = coverage;
+		}
+		else
+		{
+			addRange(coverage.getOffset(), coverage.getOffset() + coverage.getLength());
+		}
+	}
+
+	private void addRange(int start, int end)
+	{
+		fStart = Math.min(fStart, start);
+		fEnd = Math.max(fEnd, end);
+	}
+}
@@ -22,4 +22,9 @@ public interface IFoldingComputer
 	public abstract Map<ProjectionAnnotation, Position> emitFoldingRegions(boolean initialReconcile,
 			IProgressMonitor monitor, IParseRootNode ast) throws BadLocationException;
 
+	/**
+	 * Releases what the computer keeps from one computation to the next, like its listeners on the document.
+	 */
+	public abstract void dispose();
+
 }
\ No newline at end of file
@@ -32,9 +32,52 @@ import com.aptana.scripting.model.BundleManager;
 public class RubyRegexpFolder implements IFoldingComputer
 {
 
+	/**
+	 * What the folding of a line depends on: the line itself and its scopes. The lines are kept between the
+	 * computations and only the changed ones are matched again, which is the expensive part.
+	 */
+	private static class Line
+	{
+		/**
+		 * A line which has no folding regexps
+		 */
+		static final Line NONE = new Line(null, false, 0, 0);
+
+		final RubyRegexp endRegexp;
+		final boolean start;
+		final int indent;
+		/**
+		 * The indent of the start line this line may close
+		 */
+		final int endIndent;
+		/**
+		 * Whether the line matches the end regexp, null until needed
+		 */
+		Boolean end;
+
+		Line(RubyRegexp endRegexp, boolean start, int indent, int endIndent)
+		{
+			this.endRegexp = endRegexp;
+			this.start = start;
+			this.indent = indent;
+			this.endIndent = endIndent;
+		}
+	}
+
 	private IDocument fDocument;
 	private AbstractThemeableEditor fEditor;
 
+	/**
+	 * The changes of the document since the last computation, created on the first one
+	 */
+	private DocumentChangeTracker fTracker;
+	private volatile boolean fDisposed;
+
+	/**
+	 * The lines of the last computation, null if they must all be matched again
+	 */
+	private Line[] fLines;
+
 	public RubyRegexpFolder(AbstractThemeableEditor editor, IDocument document)
 	{
 		this.fDocument = document;
@@ -49,11 +92,51 @@ public class RubyRegexpFolder implements IFoldingComputer
 	public Map<ProjectionAnnotation, Position> emitFoldingRegions(boolean initialReconcile, IProgressMonitor monitor,
 			IParseRootNode ast) throws BadLocationException
 	{
+		if (fDisposed)
+		{
+			return Collections.emptyMap();
+		}
+		if (fTracker == null)
+		{
+			fTracker = new DocumentChangeTracker(fDocument);
+		}
+		DocumentChangeTracker.Change change = fTracker.reset();
+
 		int lineCount = fDocument.getNumberOfLines();
 		if (lineCount <= 1) // Quick hack fix for minified files. We need at least two lines to have folding!
 		{
+			fLines = null;
 			return Collections.emptyMap();
 		}
+
+		int firstLine = 0;
+		int lastLine = lineCount - 1;
+		Line[] lines = new Line[lineCount];
+		if (fLines != null && !change.isEverything())
+		{
+			if (change.isEmpty())
+			{
+				firstLine = lineCount;
+			}
+			else
+			{
+				// the change includes the partitions whose type changed, which changes the scopes of their lines
+				firstLine = fDocument.getLineOfOffset(Math.min(change.getStart(), fDocument.getLength()));
+				lastLine = fDocument.getLineOfOffset(Math.min(change.getEnd(), fDocument.getLength()));
+			}
+			// the lines around the change are the same, the ones after it are just shifted
+			int lineDelta = lineCount - fLines.length;
+			int reused = Math.min(firstLine, fLines.length);
+			System.arraycopy(fLines, 0, lines, 0, reused);
+			int from = Math.max(lastLine + 1, lineDelta);
+			if (from < lineCount)
+			{
+				System.arraycopy(fLines, from - lineDelta, lines, from, lineCount - from);
+			}
+		}
+		// kept only if the computation completes
+		fLines = null;
+
 		Map<ProjectionAnnotation, Position> newPositions = new HashMap<ProjectionAnnotation, Position>(lineCount >> 2);
 		Map<Integer, Integer> starts = new HashMap<Integer, Integer>(3);
 		if (monitor != null)
@@ -66,66 +149,42 @@ public class RubyRegexpFolder implements IFoldingComputer
 			if (monitor != null && monitor.isCanceled())
 				return newPositions;
 
-			IRegion lineRegion = fDocument.getLineInformation(currentLine);
-			int offset = lineRegion.getOffset();
-			String line = fDocument.get(offset, lineRegion.getLength());
-
-			// Use scope at beginning of line for start regexp
-			RubyRegexp startRegexp = getStartFoldRegexp(getScopeAtOffset(offset));
-			if (startRegexp == null)
+			Line line = lines[currentLine];
+			if (line == null)
 			{
-				if (monitor != null)
-					monitor.worked(1);
-				continue;
+				line = computeLine(currentLine);
+				lines[currentLine] = line;
 			}
-			// Use scope at end of line for end regexp
-			RubyRegexp endRegexp = getEndFoldRegexp(getScopeAtOffset(offset + lineRegion.getLength()));
-			if (endRegexp == null)
+			if (line == Line.NONE)
 			{
 				if (monitor != null)
 					monitor.worked(1);
 				continue;
 			}
 			// Look for an open...
-			RubyString rLine = startRegexp.getRuntime().newString(line);
-			IRubyObject startMatcher = startRegexp.match_m(startRegexp.getRuntime().getCurrentContext(), rLine);
-			if (!startMatcher.isNil())
+			if (line.start)
 			{
-				starts.put(findIndent(line), offset); // cheat and just give offset of line since line resolution is all
-														// that matters
+				starts.put(line.indent, currentLine);
 			}
 			// Don't look for an end if there's no open yet!
-			if (starts.size() > 0)
+			// check to see if we have an open folding region at this indent level...
+			if (starts.size() > 0 && starts.containsKey(line.endIndent) && matchesEnd(line, currentLine))
 			{
-				// check to see if we have an open folding region at this indent level...
-				int indent = findIndent(line);
-				// Subtract one if we're handling /* */ folding!
-				if (line.trim().startsWith("*")) //$NON-NLS-1$
-				{
-					indent--;
-				}
-				if (starts.containsKey(indent))
+				int startLine = starts.remove(line.endIndent);
+				if (startLine != currentLine)
 				{
-					IRubyObject endMatcher = endRegexp.match_m(endRegexp.getRuntime().getCurrentContext(), rLine);
-					if (!endMatcher.isNil())
+					int startingOffset = fDocument.getLineOffset(startLine);
+					IRegion lineRegion = fDocument.getLineInformation(currentLine);
+					int end = lineRegion.getOffset() + lineRegion.getLength() + 1; // cheat and just use end of line
+					if (end > fDocument.getLength())
+					{
+						end = fDocument.getLength();
+					}
+					int posLength = end - startingOffset;
+					if (posLength > 0)
 					{
-						int startingOffset = starts.remove(indent);
-						int startLine = fDocument.getLineOfOffset(startingOffset);
-						if (startLine != currentLine)
-						{
-							int end = lineRegion.getOffset() + lineRegion.getLength() + 1; // cheat and just use end of
-																							// line
-							if (end > fDocument.getLength())
-							{
-								end = fDocument.getLength();
-							}
-							int posLength = end - startingOffset;
-							if (posLength > 0)
-							{
-								Position position = new Position(startingOffset, posLength);
-								newPositions.put(new ProjectionAnnotation(), position);
-							}
-						}
+						Position position = new Position(startingOffset, posLength);
+						newPositions.put(new ProjectionAnnotation(), position);
 					}
 				}
 			}
@@ -133,6 +192,11 @@ public class RubyRegexpFolder implements IFoldingComputer
 				monitor.worked(1);
 		}
 
+		// the lines can't be kept if the document was modified while they were read
+		if (!fTracker.hasChanged())
+		{
+			fLines = lines;
+		}
 		if (monitor != null)
 		{
 			monitor.done();
@@ -140,6 +204,69 @@ public class RubyRegexpFolder implements IFoldingComputer
 		return newPositions;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.common.text.reconciler.IFoldingComputer#dispose()
+	 */
+	public void dispose()
+	{
+		fDisposed = true;
+		if (fTracker != null)
+		{
+			fTracker.dispose();
+			fTracker = null;
+		}
+		fLines = null;
+	}
+
+	/**
+	 * Matches a line against the folding regexps of its scope. The end regexp is only matched when needed.
+	 * 
+	 * @param lineNumber
+	 * @return
+	 * @throws BadLocationException
+	 */
+	private Line computeLine(int lineNumber) throws BadLocationException
+	{
+		IRegion lineRegion = fDocument.getLineInformation(lineNumber);
+		int offset = lineRegion.getOffset();
+
+		// Use scope at beginning of line for start regexp
+		RubyRegexp startRegexp = getStartFoldRegexp(getScopeAtOffset(offset));
+		if (startRegexp == null)
+		{
+			return Line.NONE;
+		}
+		// Use scope at end of line for end regexp
+		RubyRegexp endRegexp = getEndFoldRegexp(getScopeAtOffset(offset + lineRegion.getLength()));
+		if (endRegexp == null)
+		{
+			return Line.NONE;
+		}
+
+		String text = fDocument.get(offset, lineRegion.getLength());
+		RubyString rLine = startRegexp.getRuntime().newString(text);
+		IRubyObject startMatcher = startRegexp.match_m(startRegexp.getRuntime().getCurrentContext(), rLine);
+		int indent = findIndent(text);
+		// Subtract one if we're handling /* */ folding!
+		int endIndent = text.trim().startsWith("*") ? indent - 1 : indent; //$NON-NLS-1$
+		return new Line(endRegexp, !startMatcher.isNil(), indent, endIndent);
+	}
+
+	private boolean matchesEnd(Line line, int lineNumber) throws BadLocationException
+	{
+		if (line.end == null)
+		{
+			IRegion lineRegion = fDocument.getLineInformation(lineNumber);
+			String text = fDocument.get(lineRegion.getOffset(), lineRegion.getLength());
+			RubyRegexp endRegexp = line.endRegexp;
+			IRubyObject endMatcher = endRegexp.match_m(endRegexp.getRuntime().getCurrentContext(), endRegexp
+					.getRuntime().newString(text));
+			line.end = !endMatcher.isNil();
+		}
+		return line.end;
+	}
+
 	protected String getScopeAtOffset(int offset) throws BadLocationException
 	{
 		if (fEditor != null)
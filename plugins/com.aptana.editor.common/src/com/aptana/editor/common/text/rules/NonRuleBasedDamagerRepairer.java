@@ -155,6 +155,7 @@ public class NonRuleBasedDamagerRepairer implements IPresentationDamager, IPrese
 				IdeLog.logError(CommonEditorPlugin.getDefault(), e);
 			}
 		}
+		getDocumentScopeManager().scopesChanged(fDocument);
 
 		addRange(presentation, region.getOffset(), region.getLength(), getTextAttribute(region));
 	}
@@ -109,6 +109,7 @@ public class ThemeingDamagerRepairer extends DefaultDamagerRepairer
 			// Do coloring and collect all the scopes
 			super.createPresentation(presentation, region);
 			updateScopePositions();
+			getDocumentScopeManager().scopesChanged(fDocument);
 
 			oldPositions = null;
 			newPositions = null;
@@ -0,0 +1,359 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.findbar.api;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+
+/**
+ * Maps the identifiers of a document to their sorted offsets, so that finding the occurrences of a whole word is a
+ * lookup instead of a scan of the document. An identifier is a run of {@link Character#isUnicodeIdentifierPart(char)}
+ * characters, which are the characters a word boundary (<code>\b</code>) doesn't split.
+ * <p>
+ * The index is built the first time it's queried and then kept up to date from the document events: only the
+ * identifiers touching a change are scanned again. The shifts of the offsets after the changes are logged, and only
+ * applied to the offsets of an identifier when they're used, so that typing doesn't touch every identifier.
+ * </p>
+ */
+public class IdentifierIndex implements IDocumentListener
+{
+	private static final int[] NO_OFFSETS = new int[0];
+
+	/**
+	 * The number of shifts logged before they're applied to all the identifiers
+	 */
+	private static final int MAX_SHIFTS = 256;
+
+	/**
+	 * The indexes of the documents. The indexes don't reference their document strongly, so they go away with it.
+	 */
+	private static final Map<IDocument, IdentifierIndex> INDEXES = new WeakHashMap<IDocument, IdentifierIndex>();
+
+	private final WeakReference<IDocument> fDocument;
+
+	/**
+	 * The offsets of each identifier, null until the index is built
+	 */
+	private Map<String, Offsets> fOffsets;
+
+	/**
+	 * The range of the document, expanded to whole identifiers, replaced by the change being made
+	 */
+	private int fDamageStart;
+	private int fDamageEnd;
+
+	/**
+	 * The shifts of the offsets since they were all up to date: the offsets from fShiftFrom[i] moved by fShiftDelta[i]
+	 */
+	private final int[] fShiftFrom = new int[MAX_SHIFTS];
+	private final int[] fShiftDelta = new int[MAX_SHIFTS];
+	private int fShiftCount;
+
+	/**
+	 * Returns the index of the given document, creating it the first time.
+	 * 
+	 * @param document
+	 * @return
+	 */
+	public static synchronized IdentifierIndex getIndex(IDocument document)
+	{
+		IdentifierIndex index = INDEXES.get(document);
+		if (index == null)
+		{
+			index = new IdentifierIndex(document);
+			document.addDocumentListener(index);
+			INDEXES.put(document, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Tells whether the text is a whole identifier, i.e. whether its occurrences can be looked up in an index.
+	 * 
+	 * @param text
+	 * @return
+	 */
+	public static boolean isIdentifier(String text)
+	{
+		if (text == null || text.length() == 0)
+		{
+			return false;
+		}
+		for (int i = 0; i < text.length(); i++)
+		{
+			if (!Character.isUnicodeIdentifierPart(text.charAt(i)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private IdentifierIndex(IDocument document)
+	{
+		fDocument = new WeakReference<IDocument>(document);
+	}
+
+	/**
+	 * Returns the offsets of the occurrences of an identifier.
+	 * 
+	 * @param identifier
+	 * @return the offsets, in increasing order
+	 */
+	public synchronized int[] getOccurrences(String identifier)
+	{
+		if (fOffsets == null)
+		{
+			IDocument document = fDocument.get();
+			if (document == null)
+			{
+				return NO_OFFSETS;
+			}
+			fOffsets = new HashMap<String, Offsets>();
+			fShiftCount = 0;
+			scan(document.get(), 0, true);
+		}
+
+		Offsets offsets = getOffsets(identifier);
+		return (offsets == null) ? NO_OFFSETS : offsets.toArray();
+	}
+
+	public synchronized void documentAboutToBeChanged(DocumentEvent event)
+	{
+		if (fOffsets == null)
+		{
+			return;
+		}
+
+		IDocument document = event.getDocument();
+		try
+		{
+			// the identifiers touching the change may be split or joined by it
+			int start = event.getOffset();
+			while (start > 0 && Character.isUnicodeIdentifierPart(document.getChar(start - 1)))
+			{
+				start--;
+			}
+			int end = event.getOffset() + event.getLength();
+			int length = document.getLength();
+			while (end < length && Character.isUnicodeIdentifierPart(document.getChar(end)))
+			{
+				end++;
+			}
+
+			scan(document.get(start, end - start), start, false);
+			fDamageStart = start;
+			fDamageEnd = end;
+		}
+		catch (BadLocationException e)
+		{
+			// rebuild the index on the next query
+			fOffsets = null;
+		}
+	}
+
+	public synchronized void documentChanged(DocumentEvent event)
+	{
+		if (fOffsets == null)
+		{
+			return;
+		}
+
+		String text = event.getText();
+		int delta = ((text == null) ? 0 : text.length()) - event.getLength();
+		if (delta != 0)
+		{
+			if (fShiftCount == MAX_SHIFTS)
+			{
+				for (Offsets offsets : fOffsets.values())
+				{
+					offsets.update(fShiftFrom, fShiftDelta, fShiftCount);
+					offsets.shifts = 0;
+				}
+				fShiftCount = 0;
+			}
+			fShiftFrom[fShiftCount] = fDamageEnd;
+			fShiftDelta[fShiftCount] = delta;
+			fShiftCount++;
+		}
+
+		// the characters around the damaged range didn't change, so they still end identifiers
+		try
+		{
+			scan(event.getDocument().get(fDamageStart, fDamageEnd + delta - fDamageStart), fDamageStart, true);
+		}
+		catch (BadLocationException e)
+		{
+			fOffsets = null;
+		}
+	}
+
+	/**
+	 * Adds or removes the identifiers of some text
+	 * 
+	 * @param text
+	 * @param offset
+	 *            the offset of the text in the document
+	 * @param add
+	 */
+	private void scan(String text, int offset, boolean add)
+	{
+		int length = text.length();
+		int i = 0;
+		while (i < length)
+		{
+			if (!Character.isUnicodeIdentifierPart(text.charAt(i)))
+			{
+				i++;
+				continue;
+			}
+
+			int start = i;
+			while (i < length && Character.isUnicodeIdentifierPart(text.charAt(i)))
+			{
+				i++;
+			}
+			String identifier = text.substring(start, i);
+
+			Offsets offsets = getOffsets(identifier);
+			if (add)
+			{
+				if (offsets == null)
+				{
+					// don't let the key keep the whole text of the document
+					offsets = new Offsets(fShiftCount);
+					fOffsets.put(new String(identifier), offsets);
+				}
+				offsets.add(offset + start);
+			}
+			else if (offsets != null)
+			{
+				offsets.remove(offset + start);
+				if (offsets.size == 0)
+				{
+					fOffsets.remove(identifier);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the offsets of an identifier, with the shifts logged since they were last used applied
+	 * 
+	 * @param identifier
+	 * @return the offsets, or null if the identifier isn't in the document
+	 */
+	private Offsets getOffsets(String identifier)
+	{
+		Offsets offsets = fOffsets.get(identifier);
+		if (offsets != null)
+		{
+			offsets.update(fShiftFrom, fShiftDelta, fShiftCount);
+		}
+		return offsets;
+	}
+
+	/**
+	 * A sorted list of offsets
+	 */
+	private static class Offsets
+	{
+		private int[] values = new int[4];
+		private int size;
+
+		/**
+		 * The number of logged shifts already applied to the values
+		 */
+		private int shifts;
+
+		Offsets(int shifts)
+		{
+			this.shifts = shifts;
+		}
+
+		void add(int value)
+		{
+			// most values are added in order while the index is built
+			int index = (size == 0 || values[size - 1] < value) ? size : indexOf(value);
+			if (index < size && values[index] == value)
+			{
+				return;
+			}
+
+			if (size == values.length)
+			{
+				int[] grown = new int[size * 2];
+				System.arraycopy(values, 0, grown, 0, size);
+				values = grown;
+			}
+			System.arraycopy(values, index, values, index + 1, size - index);
+			values[index] = value;
+			size++;
+		}
+
+		void remove(int value)
+		{
+			int index = indexOf(value);
+			if (index < size && values[index] == value)
+			{
+				System.arraycopy(values, index + 1, values, index, size - index - 1);
+				size--;
+			}
+		}
+
+		/**
+		 * Applies the logged shifts not applied yet
+		 */
+		void update(int[] from, int[] delta, int count)
+		{
+			for (; shifts < count; shifts++)
+			{
+				for (int i = indexOf(from[shifts]); i < size; i++)
+				{
+					values[i] += delta[shifts];
+				}
+			}
+		}
+
+		int[] toArray()
+		{
+			int[] result = new int[size];
+			System.arraycopy(values, 0, result, 0, size);
+			return result;
+		}
+
+		/**
+		 * @return the index of the first value not lower than the given one
+		 */
+		private int indexOf(int value)
+		{
+			int low = 0;
+			int high = size;
+			while (low < high)
+			{
+				int middle = (low + high) >>> 1;
+				if (values[middle] < value)
+				{
+					low = middle + 1;
+				}
+				else
+				{
+					high = middle;
+				}
+			}
+			return low;
+		}
+	}
+}
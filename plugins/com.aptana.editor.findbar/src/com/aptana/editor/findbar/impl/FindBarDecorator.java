@@ -96,6 +96,7 @@ import com.aptana.core.util.StringUtil;
 import com.aptana.core.util.replace.SimpleTextPatternReplacer;
 import com.aptana.editor.findbar.FindBarPlugin;
 import com.aptana.editor.findbar.api.IFindBarDecorator;
+import com.aptana.editor.findbar.api.IdentifierIndex;
 import com.aptana.editor.findbar.impl.FindBarEntriesHelper.EntriesControlHandle;
 import com.aptana.editor.findbar.preferences.IPreferencesConstants;
 import com.aptana.ui.util.UIUtils;
@@ -1474,7 +1475,31 @@ public class FindBarDecorator implements IFindBarDecorator, SelectionListener
 
 		int currentCount = 0;
 		int total = 0;
-		if (isTextFindValid())
+		if (isTextFindValid() && isIndexedSearch())
+		{
+			// whole identifiers are looked up in the index of the document instead of being searched
+			int[] offsets = IdentifierIndex.getIndex(sourceViewer.getDocument()).getOccurrences(textFind.getText());
+			total = offsets.length;
+
+			// the occurrences before the caret (or at it, when searching backward)
+			int low = 0;
+			int high = offsets.length;
+			boolean searchBackward = getConfiguration().getSearchBackward();
+			while (low < high)
+			{
+				int middle = (low + high) >>> 1;
+				if (offsets[middle] < lastCountOffset || (searchBackward && offsets[middle] == lastCountOffset))
+				{
+					low = middle + 1;
+				}
+				else
+				{
+					high = middle;
+				}
+			}
+			currentCount = low;
+		}
+		else if (isTextFindValid())
 		{
 			String text = sourceViewer.getDocument().get();
 			Pattern pattern = createFindPattern();
@@ -1542,6 +1567,19 @@ public class FindBarDecorator implements IFindBarDecorator, SelectionListener
 		findBar.layout(true, true);
 	}
 
+	/**
+	 * Tells whether the matches of the find text are the occurrences of an identifier, which are indexed: the search
+	 * must be a case sensitive whole word one, in the whole document.
+	 */
+	private boolean isIndexedSearch()
+	{
+		FindBarConfiguration configuration = getConfiguration();
+		String findText = textFind.getText();
+		return findBarFinder.getScope() == null && getWholeWord() && configuration.getCaseSensitive()
+				&& !configuration.getRegularExpression() && findText.equals(convertTextString(findText))
+				&& IdentifierIndex.isIdentifier(findText);
+	}
+
 	Pattern createFindPattern()
 	{
 		String originalPattern = textFind.getText();
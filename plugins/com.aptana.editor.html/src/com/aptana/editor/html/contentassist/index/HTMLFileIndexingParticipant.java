@@ -25,6 +25,7 @@ import com.aptana.editor.common.resolver.URIResolver;
 import com.aptana.editor.html.parsing.ast.HTMLElementNode;
 import com.aptana.editor.html.parsing.ast.HTMLSpecialNode;
 import com.aptana.index.core.AbstractFileIndexingParticipant;
+import com.aptana.index.core.DocumentBatch;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.build.BuildContext;
 import com.aptana.js.core.IJSConstants;
@@ -67,11 +68,10 @@ public class HTMLFileIndexingParticipant extends AbstractFileIndexingParticipant
 	/**
 	 * processHTMLElementNode
 	 * 
-	 * @param index
-	 * @param file
+	 * @param batch
 	 * @param element
 	 */
-	private void processHTMLElementNode(Index index, URI uri, HTMLElementNode element)
+	private void processHTMLElementNode(DocumentBatch batch, HTMLElementNode element)
 	{
 		String cssClass = element.getCSSClass();
 		if (!StringUtil.isEmpty(cssClass))
@@ -80,14 +80,14 @@ public class HTMLFileIndexingParticipant extends AbstractFileIndexingParticipant
 
 			while (tokenizer.hasMoreTokens())
 			{
-				addIndex(index, uri, ICSSIndexConstants.CLASS, tokenizer.nextToken());
+				addIndex(batch, ICSSIndexConstants.CLASS, tokenizer.nextToken());
 			}
 		}
 
 		String id = element.getID();
 		if (!StringUtil.isEmpty(id))
 		{
-			addIndex(index, uri, ICSSIndexConstants.IDENTIFIER, id);
+			addIndex(batch, ICSSIndexConstants.IDENTIFIER, id);
 		}
 
 		if (element.getName().equalsIgnoreCase(ELEMENT_LINK))
@@ -96,12 +96,12 @@ public class HTMLFileIndexingParticipant extends AbstractFileIndexingParticipant
 			if (!StringUtil.isEmpty(cssLink))
 			{
 				// TODO Fire off a thread to run this, since it could be slow or hit the network
-				IPathResolver resolver = new URIResolver(uri);
+				IPathResolver resolver = new URIResolver(batch.getDocumentURI());
 				URI resolved = resolver.resolveURI(cssLink);
 
 				if (resolved != null)
 				{
-					addIndex(index, uri, IHTMLIndexConstants.RESOURCE_CSS, resolved.toString());
+					addIndex(batch, IHTMLIndexConstants.RESOURCE_CSS, resolved.toString());
 				}
 			}
 		}
@@ -110,11 +110,11 @@ public class HTMLFileIndexingParticipant extends AbstractFileIndexingParticipant
 	/**
 	 * processHTMLSpecialNode
 	 * 
-	 * @param index
-	 * @param file
+	 * @param batch
+	 * @param context
 	 * @param htmlSpecialNode
 	 */
-	private void processHTMLSpecialNode(Index index, BuildContext context, HTMLSpecialNode htmlSpecialNode)
+	private void processHTMLSpecialNode(DocumentBatch batch, BuildContext context, HTMLSpecialNode htmlSpecialNode)
 	{
 		IParseNode child = htmlSpecialNode.getChild(0);
 
@@ -126,7 +126,7 @@ public class HTMLFileIndexingParticipant extends AbstractFileIndexingParticipant
 			{
 				// process inline code
 				CSSFileIndexingParticipant cssIndex = createCSSIndexer();
-				cssIndex.walkNode(index, context.getURI(), child);
+				cssIndex.walkNode(batch, child);
 			}
 		}
 
@@ -141,14 +141,14 @@ public class HTMLFileIndexingParticipant extends AbstractFileIndexingParticipant
 
 				if (resolved != null)
 				{
-					addIndex(index, context.getURI(), IHTMLIndexConstants.RESOURCE_JS, resolved.toString());
+					addIndex(batch, IHTMLIndexConstants.RESOURCE_JS, resolved.toString());
 				}
 			}
 			else if (child != null && IJSConstants.CONTENT_TYPE_JS.equals(child.getLanguage()))
 			{
 				// process inline code
 				JSFileIndexingParticipant jsIndex = createJSIndexer();
-				jsIndex.processParseResults(context, index, child, new NullProgressMonitor());
+				jsIndex.processParseResults(context, batch.getIndex(), child, new NullProgressMonitor());
 			}
 		}
 	}
@@ -166,19 +166,19 @@ public class HTMLFileIndexingParticipant extends AbstractFileIndexingParticipant
 	/**
 	 * processNode
 	 * 
-	 * @param index
-	 * @param file
+	 * @param batch
+	 * @param context
 	 * @param current
 	 */
-	protected void processNode(Index index, BuildContext context, URI uri, IParseNode current)
+	protected void processNode(DocumentBatch batch, BuildContext context, IParseNode current)
 	{
 		if (current instanceof HTMLSpecialNode)
 		{
-			processHTMLSpecialNode(index, context, (HTMLSpecialNode) current);
+			processHTMLSpecialNode(batch, context, (HTMLSpecialNode) current);
 		}
 		else if (current instanceof HTMLElementNode)
 		{
-			processHTMLElementNode(index, uri, (HTMLElementNode) current);
+			processHTMLElementNode(batch, (HTMLElementNode) current);
 		}
 	}
 
@@ -196,15 +196,17 @@ public class HTMLFileIndexingParticipant extends AbstractFileIndexingParticipant
 		{
 			return;
 		}
-		final URI uri = context.getURI();
+		// collect the entries for the whole document so they are added to the index at once
+		final DocumentBatch batch = index.createDocumentBatch(context.getURI());
 		ParseUtil.treeApply(parent, new IFilter<IParseNode>()
 		{
 
 			public boolean include(IParseNode item)
 			{
-				processNode(index, context, uri, item);
+				processNode(batch, context, item);
 				return true;
 			}
 		});
+		batch.commit();
 	}
 }
@@ -23,7 +23,6 @@ import com.aptana.core.util.ArrayUtil;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.RegexUtil;
 import com.aptana.core.util.StringUtil;
-import com.aptana.css.core.index.ICSSIndexConstants;
 import com.aptana.editor.html.contentassist.model.AttributeElement;
 import com.aptana.editor.html.contentassist.model.ElementElement;
 import com.aptana.editor.html.contentassist.model.EntityElement;
@@ -32,6 +31,7 @@ import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexReader;
 import com.aptana.index.core.QueryResult;
 import com.aptana.index.core.SearchPattern;
+import com.aptana.index.core.record.IRecordCodec;
 
 public class HTMLIndexReader extends IndexReader
 {
@@ -128,7 +128,7 @@ public class HTMLIndexReader extends IndexReader
 
 		List<QueryResult> attributes = index.query( //
 				new String[] { IHTMLIndexConstants.ATTRIBUTE }, //
-				name + ICSSIndexConstants.DELIMITER, //
+				this.getRecordCodec().encodeKey(name), //
 				SearchPattern.PREFIX_MATCH //
 				);
 
@@ -250,7 +250,7 @@ public class HTMLIndexReader extends IndexReader
 			name = name.toLowerCase();
 			List<QueryResult> elements = index.query( //
 					new String[] { IHTMLIndexConstants.ELEMENT }, //
-					name + ICSSIndexConstants.DELIMITER, //
+					this.getRecordCodec().encodeKey(name), //
 					SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE //
 			);
 
@@ -298,7 +298,7 @@ public class HTMLIndexReader extends IndexReader
 		{
 			List<QueryResult> entities = index.query( //
 					new String[] { IHTMLIndexConstants.ENTITY }, //
-					name + ICSSIndexConstants.DELIMITER, //
+					this.getRecordCodec().encodeKey(name), //
 					SearchPattern.PREFIX_MATCH //
 					);
 
@@ -333,7 +333,7 @@ public class HTMLIndexReader extends IndexReader
 		{
 			List<QueryResult> events = index.query( //
 					new String[] { IHTMLIndexConstants.EVENT }, //
-					name + ICSSIndexConstants.DELIMITER, //
+					this.getRecordCodec().encodeKey(name), //
 					SearchPattern.PREFIX_MATCH //
 					);
 
@@ -399,6 +399,16 @@ public class HTMLIndexReader extends IndexReader
 		return CollectionsUtil.map(events, new QueryResultToEventElementMapper());
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IndexReader#getRecordCodec()
+	 */
+	@Override
+	protected IRecordCodec getRecordCodec()
+	{
+		return IHTMLIndexConstants.RECORD_CODEC;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.index.core.IndexReader#getSubDelimiter()
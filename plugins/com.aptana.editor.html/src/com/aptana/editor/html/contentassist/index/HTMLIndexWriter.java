@@ -9,13 +9,13 @@ package com.aptana.editor.html.contentassist.index;
 
 import java.net.URI;
 
-import com.aptana.core.util.StringUtil;
 import com.aptana.editor.html.contentassist.model.AttributeElement;
 import com.aptana.editor.html.contentassist.model.ElementElement;
 import com.aptana.editor.html.contentassist.model.EntityElement;
 import com.aptana.editor.html.contentassist.model.EventElement;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexWriter;
+import com.aptana.index.core.record.IRecordCodec;
 
 public class HTMLIndexWriter extends IndexWriter
 {
@@ -29,6 +29,16 @@ public class HTMLIndexWriter extends IndexWriter
 		return URI.create(IHTMLIndexConstants.METADATA_INDEX_LOCATION);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IndexWriter#getRecordCodec()
+	 */
+	@Override
+	protected IRecordCodec getRecordCodec()
+	{
+		return IHTMLIndexConstants.RECORD_CODEC;
+	}
+
 	/**
 	 * writeAttribute
 	 * 
@@ -39,11 +49,7 @@ public class HTMLIndexWriter extends IndexWriter
 	{
 		if (index != null && attribute != null)
 		{
-			String key = StringUtil.join( //
-				IHTMLIndexConstants.DELIMITER, //
-				attribute.getName(), //
-				this.serialize(attribute) //
-				);
+			String key = this.getRecordCodec().encode(1, attribute.getName(), this.serialize(attribute));
 
 			index.addEntry(IHTMLIndexConstants.ATTRIBUTE, key, this.getDocumentPath());
 		}
@@ -59,11 +65,7 @@ public class HTMLIndexWriter extends IndexWriter
 	{
 		if (index != null && element != null)
 		{
-			String key = StringUtil.join( //
-				IHTMLIndexConstants.DELIMITER, //
-				element.getName(), //
-				this.serialize(element) //
-				);
+			String key = this.getRecordCodec().encode(1, element.getName(), this.serialize(element));
 
 			index.addEntry(IHTMLIndexConstants.ELEMENT, key, this.getDocumentPath());
 		}
@@ -79,11 +81,7 @@ public class HTMLIndexWriter extends IndexWriter
 	{
 		if (index != null && entity != null)
 		{
-			String key = StringUtil.join( //
-				IHTMLIndexConstants.DELIMITER, //
-				entity.getName(), //
-				this.serialize(entity) //
-				);
+			String key = this.getRecordCodec().encode(1, entity.getName(), this.serialize(entity));
 
 			index.addEntry(IHTMLIndexConstants.ENTITY, key, this.getDocumentPath());
 		}
@@ -99,11 +97,7 @@ public class HTMLIndexWriter extends IndexWriter
 	{
 		if (index != null && event != null)
 		{
-			String key = StringUtil.join( //
-				IHTMLIndexConstants.DELIMITER, //
-				event.getName(), //
-				this.serialize(event) //
-				);
+			String key = this.getRecordCodec().encode(1, event.getName(), this.serialize(event));
 
 			index.addEntry(IHTMLIndexConstants.EVENT, key, this.getDocumentPath());
 		}
@@ -7,6 +7,9 @@
  */
 package com.aptana.editor.html.contentassist.index;
 
+import com.aptana.index.core.record.BinaryRecordCodec;
+import com.aptana.index.core.record.IRecordCodec;
+
 public interface IHTMLIndexConstants
 {
 	// the content format version of the JS index files
@@ -15,7 +18,8 @@ public interface IHTMLIndexConstants
 	// 0.12 - Updated the browser support for html5 tags
 	// 0.13 - Fixed some misformatted examples
 	// 0.14 - Added '*' value to both 'rel' and 'rev attribute, fixed a typo
-	public static final double INDEX_VERSION = 0.14;
+	// 0.15 - Store element, attribute, entity and event entries as binary records
+	public static final double INDEX_VERSION = 0.15;
 
 	// for debugging, comment the line above, and uncomment the following
 	// public static final double INDEX_VERSION = new Random().nextDouble() * 1e6;
@@ -27,6 +31,9 @@ public interface IHTMLIndexConstants
 	static final String METADATA_INDEX_LOCATION = "metadata:/html"; //$NON-NLS-1$
 	static final String CORE = "HTML Core"; //$NON-NLS-1$
 
+	// element, attribute, entity and event entries are stored as binary records keyed by name
+	static final IRecordCodec RECORD_CODEC = new BinaryRecordCodec(1, DELIMITER, SUB_DELIMITER);
+
 	// index categories
 	static final String ELEMENT = PREFIX + "element"; //$NON-NLS-1$
 	static final String ATTRIBUTE = PREFIX + "attribute"; //$NON-NLS-1$
@@ -19,6 +19,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.rules.ITokenScanner;
 
 import beaver.Scanner.Exception;
@@ -53,6 +54,30 @@ import com.aptana.parsing.util.ParseUtil;
 
 public class HTMLParser extends AbstractParser
 {
+	/**
+	 * A region of the document written in another language. The regions are collected while reading the document and
+	 * parsed all at once when it's done.
+	 */
+	private static abstract class EmbeddedRegion
+	{
+		final String language;
+		final ParseState parseState;
+
+		EmbeddedRegion(String language, String source, int startingOffset)
+		{
+			this.language = language;
+			this.parseState = new ParseState(source, startingOffset);
+		}
+
+		/**
+		 * Adds the result of the parse of the region to the HTML tree.
+		 * 
+		 * @param result
+		 *            the result of the parse, or null if it failed
+		 */
+		abstract void setResult(ParseResult result);
+	}
+
 	public static final IParseNode[] NO_PARSE_NODES = new IParseNode[0];
 	public static final HTMLNode[] NO_HTML_NODES = new HTMLNode[0];
 	private static final String ATTR_TYPE = "type"; //$NON-NLS-1$
@@ -79,16 +104,34 @@ public class HTMLParser extends AbstractParser
 	private List<IParseNode> fCommentNodes;
 	private boolean previousSymbolSkipped;
 	private WorkingParseResult fWorkingParseResult;
+	private List<EmbeddedRegion> fEmbeddedRegions;
+
+	/**
+	 * The state of a parse is kept in the fields of the parser, so each parse is done by a new instance: that way a
+	 * single parser may be used by several threads at once.
+	 */
+	protected void parse(IParseState parseState, WorkingParseResult working) throws java.lang.Exception
+	{
+		createParser().parseSource(parseState, working);
+	}
 
 	/**
-	 * parse
+	 * Creates the instance doing a single parse. Subclasses should override to create an instance of their own class.
+	 * 
+	 * @return
 	 */
-	protected synchronized void parse(IParseState parseState, WorkingParseResult working) throws java.lang.Exception
+	protected HTMLParser createParser()
+	{
+		return new HTMLParser();
+	}
+
+	private void parseSource(IParseState parseState, WorkingParseResult working) throws java.lang.Exception
 	{
 		fMonitor = parseState.getProgressMonitor();
 		fScanner = new HTMLParserScanner();
 		fElementStack = new Stack<IParseNode>();
 		fCommentNodes = new ArrayList<IParseNode>();
+		fEmbeddedRegions = new ArrayList<EmbeddedRegion>();
 		fWorkingParseResult = working;
 
 		String source = parseState.getSource();
@@ -112,6 +155,7 @@ public class HTMLParser extends AbstractParser
 
 			parseAll(source);
 			root.setCommentNodes(fCommentNodes.toArray(new IParseNode[fCommentNodes.size()]));
+			parseEmbeddedRegions();
 		}
 		finally
 		{
@@ -124,6 +168,7 @@ public class HTMLParser extends AbstractParser
 			fCurrentSymbol = null;
 			fParseState = null;
 			fCommentNodes = null;
+			fEmbeddedRegions = null;
 		}
 
 		// trim the tree and set the result only after clearing for garbage collection.
@@ -181,14 +226,15 @@ public class HTMLParser extends AbstractParser
 			((HTMLTokenScanner) tokenScanner).setInsideSpecialTag(false);
 		}
 
-		IParseNode[] nested = getParseResult(language, start, end);
+		HTMLSpecialNode node = null;
 		if (fCurrentElement != null)
 		{
-			HTMLSpecialNode node = new HTMLSpecialNode(startTag, nested, startTag.getStart(), fCurrentSymbol.getEnd());
+			node = new HTMLSpecialNode(startTag, NO_PARSE_NODES, startTag.getStart(), fCurrentSymbol.getEnd());
 			node.setEndNode(fCurrentSymbol.getStart(), fCurrentSymbol.getEnd());
 			parseAttribute(node, startTag);
 			fCurrentElement.addChild(node);
 		}
+		addLanguageRegion(language, start, end, node);
 	}
 
 	protected HTMLElementNode processCurrentTag()
@@ -270,18 +316,45 @@ public class HTMLParser extends AbstractParser
 		return false;
 	}
 
-	private IParseNode[] getParseResult(String language, int start, int end)
+	/**
+	 * Registers the content of a special tag to be parsed as the nested node of that tag.
+	 * 
+	 * @param language
+	 * @param start
+	 * @param end
+	 * @param specialNode
+	 *            the node of the tag, or null if the content is parsed only for its errors
+	 */
+	private void addLanguageRegion(final String language, final int start, final int end,
+			final HTMLSpecialNode specialNode)
 	{
-		if (start <= end)
+		if (start > end)
 		{
-			try
+			return;
+		}
+
+		final String text;
+		try
+		{
+			text = fScanner.getSource().get(start, end - start + 1);
+		}
+		catch (BadLocationException e)
+		{
+			return;
+		}
+
+		// FIXME We need to propagate options down to sub-languages, i.e. JS's attach/collect comments
+		fEmbeddedRegions.add(new EmbeddedRegion(language, text, start)
+		{
+			void setResult(ParseResult result)
 			{
-				String text = fScanner.getSource().get(start, end - start + 1);
-				ParseState subParseState = new ParseState(text, start);
-				// FIXME We need to propagate options down to sub-languages, i.e. JS's attach/collect comments
-				ParseResult subParseResult = ParserPoolFactory.parse(language, subParseState);
-				IParseNode node = subParseResult.getRootNode();
-				for (IParseError subError : subParseResult.getErrors())
+				if (result == null)
+				{
+					return;
+				}
+
+				IParseNode node = result.getRootNode();
+				for (IParseError subError : result.getErrors())
 				{
 					// Shift the line/offsets based on the starting offset/line of the sub-language!
 					fWorkingParseResult.addError(new ParseError(language, start + subError.getOffset(), subError
@@ -291,13 +364,39 @@ public class HTMLParser extends AbstractParser
 				{
 					node = new HTMLTextNode(text, start, end);
 				}
-				return new IParseNode[] { node };
-			}
-			catch (java.lang.Exception e)
-			{
+				if (specialNode != null)
+				{
+					specialNode.setChildren(new IParseNode[] { node });
+				}
 			}
+		});
+	}
+
+	/**
+	 * Parses all the embedded language regions at once and adds their results to the tree, in document order.
+	 */
+	private void parseEmbeddedRegions()
+	{
+		int count = fEmbeddedRegions.size();
+		if (count == 0)
+		{
+			return;
+		}
+
+		String[] languages = new String[count];
+		IParseState[] parseStates = new IParseState[count];
+		for (int i = 0; i < count; i++)
+		{
+			EmbeddedRegion region = fEmbeddedRegions.get(i);
+			languages[i] = region.language;
+			parseStates[i] = region.parseState;
+		}
+
+		ParseResult[] results = ParserPoolFactory.parseAll(languages, parseStates);
+		for (int i = 0; i < count; i++)
+		{
+			fEmbeddedRegions.get(i).setResult(results[i]);
 		}
-		return NO_PARSE_NODES;
 	}
 
 	private void processComment()
@@ -494,51 +593,73 @@ public class HTMLParser extends AbstractParser
 				if (HTMLUtils.isCSSAttribute(name))
 				{
 					String text = tagName + " {" + value + "}"; //$NON-NLS-1$ //$NON-NLS-2$
-					try
-					{
-
-						int startingOffset = absoluteOffset - (tagName.length() + 1);
-						IParseNode node = ParserPoolFactory.parse(ICSSConstants.CONTENT_TYPE_CSS, text, startingOffset)
-								.getRootNode();
-
-						// should always have a rule node
-						if (node.hasChildren())
-						{
-							IParseNode rule = node.getChild(0);
-							if (rule instanceof CSSRuleNode)
-							{
-								CSSDeclarationNode[] declarations = ((CSSRuleNode) rule).getDeclarations();
-								for (CSSDeclarationNode declaration : declarations)
-								{
-									element.addCSSStyleNode(declaration);
-								}
-							}
-						}
-					}
-					catch (java.lang.Exception e)
-					{
-					}
+					int startingOffset = absoluteOffset - (tagName.length() + 1);
+					addCSSAttributeRegion(element, text, startingOffset);
 				}
 				// checks if we need to process the value as JS
 				else if (HTMLUtils.isJSAttribute(tagName, name))
 				{
-					try
-					{
-						int startingOffset = absoluteOffset + 1;
-						IParseNode node = ParserPoolFactory.parse(IJSConstants.CONTENT_TYPE_JS, value, startingOffset)
-								.getRootNode();
+					addJSAttributeRegion(element, value, absoluteOffset + 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Registers the value of a style attribute, wrapped in a rule, to be parsed as CSS.
+	 * 
+	 * @param element
+	 * @param text
+	 * @param startingOffset
+	 */
+	private void addCSSAttributeRegion(final HTMLElementNode element, String text, int startingOffset)
+	{
+		fEmbeddedRegions.add(new EmbeddedRegion(ICSSConstants.CONTENT_TYPE_CSS, text, startingOffset)
+		{
+			void setResult(ParseResult result)
+			{
+				IParseNode node = (result == null) ? null : result.getRootNode();
 
-						for (IParseNode child : node)
+				// should always have a rule node
+				if (node != null && node.hasChildren())
+				{
+					IParseNode rule = node.getChild(0);
+					if (rule instanceof CSSRuleNode)
+					{
+						CSSDeclarationNode[] declarations = ((CSSRuleNode) rule).getDeclarations();
+						for (CSSDeclarationNode declaration : declarations)
 						{
-							element.addJSAttributeNode(child);
+							element.addCSSStyleNode(declaration);
 						}
 					}
-					catch (java.lang.Exception e)
+				}
+			}
+		});
+	}
+
+	/**
+	 * Registers the value of an event handler attribute to be parsed as JS.
+	 * 
+	 * @param element
+	 * @param text
+	 * @param startingOffset
+	 */
+	private void addJSAttributeRegion(final HTMLElementNode element, String text, int startingOffset)
+	{
+		fEmbeddedRegions.add(new EmbeddedRegion(IJSConstants.CONTENT_TYPE_JS, text, startingOffset)
+		{
+			void setResult(ParseResult result)
+			{
+				IParseNode node = (result == null) ? null : result.getRootNode();
+				if (node != null)
+				{
+					for (IParseNode child : node)
 					{
+						element.addJSAttributeNode(child);
 					}
 				}
 			}
-		}
+		});
 	}
 
 	private void processText(String source)
@@ -29,6 +29,11 @@ public abstract class AbstractFileIndexingParticipant implements IFileStoreIndex
 		index.addEntry(category, word, uri);
 	}
 
+	protected void addIndex(DocumentBatch batch, String category, String word)
+	{
+		batch.addEntry(category, word);
+	}
+
 	protected String getIndexingMessage(Index index, URI uri)
 	{
 		String relativePath = null;
@@ -0,0 +1,106 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the entries for a single document and adds them to an {@link Index} in one step when committed, instead of
+ * acquiring the index's write lock once per entry. Entries aren't visible to queries until {@link #commit()} is called.
+ * A batch must only be used by one thread at a time. Use {@link Index#createDocumentBatch(URI)} to create one.
+ */
+public class DocumentBatch
+{
+	private final Index index;
+	private final URI documentURI;
+	private Map<String, Set<String>> entries;
+	private int size;
+
+	/**
+	 * DocumentBatch
+	 * 
+	 * @param index
+	 * @param documentURI
+	 */
+	DocumentBatch(Index index, URI documentURI)
+	{
+		this.index = index;
+		this.documentURI = documentURI;
+		this.entries = new HashMap<String, Set<String>>();
+	}
+
+	/**
+	 * Add an entry for this batch's document
+	 * 
+	 * @param category
+	 * @param key
+	 */
+	public void addEntry(String category, String key)
+	{
+		Set<String> keys = entries.get(category);
+
+		if (keys == null)
+		{
+			keys = new HashSet<String>();
+			entries.put(category, keys);
+		}
+
+		if (keys.add(key))
+		{
+			size++;
+		}
+	}
+
+	/**
+	 * Add the collected entries to the index and clear this batch, so it may be reused for more entries
+	 */
+	public void commit()
+	{
+		if (size > 0)
+		{
+			index.addEntries(documentURI, entries);
+
+			entries = new HashMap<String, Set<String>>();
+			size = 0;
+		}
+	}
+
+	/**
+	 * Returns the URI of the document the entries belong to
+	 * 
+	 * @return
+	 */
+	public URI getDocumentURI()
+	{
+		return documentURI;
+	}
+
+	/**
+	 * Returns the index this batch is committed to
+	 * 
+	 * @return
+	 */
+	public Index getIndex()
+	{
+		return index;
+	}
+
+	/**
+	 * Returns the number of uncommitted entries
+	 * 
+	 * @return
+	 */
+	public int size()
+	{
+		return size;
+	}
+}
@@ -0,0 +1,26 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import java.io.IOException;
+
+/**
+ * Looks up the names of documents from the numbers an index stores them under, see
+ * {@link QueryResult#addDocumentNumbers(IDocumentNameResolver, int[])}
+ */
+public interface IDocumentNameResolver
+{
+	/**
+	 * Returns the name of the document with the specified number
+	 * 
+	 * @param documentNumber
+	 * @return
+	 * @throws IOException
+	 */
+	String getDocumentName(int documentNumber) throws IOException;
+}
@@ -13,4 +13,10 @@ public interface IPreferenceConstants
 {
 	public static final String FILTERED_INDEX_URIS = "FILTERED_INDEX_URIS"; //$NON-NLS-1$
 	public static final String NO_ITEMS = StringUtil.EMPTY;
+
+	/**
+	 * The number of threads used to index the files of a container. Values less than one use one thread per available
+	 * processor; a value of one indexes files serially on the indexing job's thread.
+	 */
+	public static final String INDEXING_WORKER_COUNT = "INDEXING_WORKER_COUNT"; //$NON-NLS-1$
 }
@@ -24,10 +24,14 @@ import java.util.regex.PatternSyntaxException;
 import java.util.zip.CRC32;
 
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 
 import com.aptana.core.logging.IdeLog;
-import com.aptana.internal.index.core.DiskIndex;
 import com.aptana.internal.index.core.MemoryIndex;
+import com.aptana.internal.index.core.SegmentedDiskIndex;
 
 public class Index
 {
@@ -300,8 +304,40 @@ public class Index
 		return (pattern != null) ? pattern.matcher(word).find() : false;
 	}
 
+	/**
+	 * The state of the index that readers can query without holding any lock: the disk index segments plus, while a
+	 * merge is running, the memory index being written to a new segment. Neither is modified once published.
+	 */
+	private static final class Snapshot
+	{
+		final SegmentedDiskIndex diskIndex;
+		final MemoryIndex frozenIndex;
+
+		Snapshot(SegmentedDiskIndex diskIndex, MemoryIndex frozenIndex)
+		{
+			this.diskIndex = diskIndex;
+			this.frozenIndex = frozenIndex;
+		}
+	}
+
+	// guarded by monitor
 	private MemoryIndex memoryIndex;
-	private DiskIndex diskIndex;
+
+	// only replaced while holding the write lock or the merge lock, see merge()
+	private volatile Snapshot snapshot;
+
+	// serializes merges so only one new disk segment is written at a time
+	private final Object mergeLock = new Object();
+	private Job mergeJob;
+
+	// serializes compactions of the disk segments. Acquired before the merge lock when both are needed
+	private final Object compactionLock = new Object();
+	private Job compactionJob;
+
+	// changes made by an indexing thread that haven't been applied to the memory index yet, see
+	// beginDocumentChanges()
+	private final ThreadLocal<MemoryIndex> pendingChanges = new ThreadLocal<MemoryIndex>();
+
 	ReadWriteLock monitor;
 	private URI containerURI;
 
@@ -318,6 +354,7 @@ public class Index
 
 		this.memoryIndex = new MemoryIndex();
 		this.monitor = new ReentrantReadWriteLock();
+		this.snapshot = new Snapshot(null, null);
 
 		// Convert to a filename we can use for the actual index on disk
 		IPath diskIndexPath = computeIndexLocation(containerURI);
@@ -327,11 +364,29 @@ public class Index
 		}
 		String diskIndexPathString = (diskIndexPath.getDevice() == null) ? diskIndexPath.toString() : diskIndexPath
 				.toOSString();
+		this.snapshot = new Snapshot(SegmentedDiskIndex.open(diskIndexPathString, reuseExistingFile), null);
+	}
+
+	/**
+	 * addEntry
+	 * 
+	 * @param category
+	 * @param key
+	 * @param containerRelativeURI
+	 */
+	public void addEntry(String category, String key, URI containerRelativeURI)
+	{
+		MemoryIndex pending = this.pendingChanges.get();
+		if (pending != null)
+		{
+			pending.addEntry(category, key, containerRelativeURI.toString());
+			return;
+		}
+
 		this.enterWrite();
 		try
 		{
-			this.diskIndex = new DiskIndex(diskIndexPathString);
-			this.diskIndex.initialize(reuseExistingFile);
+			this.memoryIndex.addEntry(category, key, containerRelativeURI.toString());
 		}
 		finally
 		{
@@ -340,18 +395,93 @@ public class Index
 	}
 
 	/**
-	 * addEntry
+	 * Add the entries collected by a {@link DocumentBatch}
 	 * 
-	 * @param category
-	 * @param key
 	 * @param containerRelativeURI
+	 * @param entries
+	 *            the keys to add, by category
 	 */
-	public void addEntry(String category, String key, URI containerRelativeURI)
+	void addEntries(URI containerRelativeURI, Map<String, Set<String>> entries)
 	{
+		MemoryIndex pending = this.pendingChanges.get();
+		if (pending != null)
+		{
+			pending.addEntries(containerRelativeURI.toString(), entries);
+			return;
+		}
+
 		this.enterWrite();
 		try
 		{
-			this.memoryIndex.addEntry(category, key, containerRelativeURI.toString());
+			this.memoryIndex.addEntries(containerRelativeURI.toString(), entries);
+		}
+		finally
+		{
+			this.exitWrite();
+		}
+	}
+
+	/**
+	 * Create a batch which collects entries for the specified document and adds them to this index all at once. Use
+	 * this instead of {@link #addEntry(String, String, URI)} when adding many entries for the same document.
+	 * 
+	 * @param containerRelativeURI
+	 * @return
+	 */
+	public DocumentBatch createDocumentBatch(URI containerRelativeURI)
+	{
+		return new DocumentBatch(this, containerRelativeURI);
+	}
+
+	/**
+	 * Collect the entries added and documents removed by the current thread in a private memory index instead of
+	 * applying them to this index, until {@link #endDocumentChanges()} is called. Queries made by the current thread
+	 * see its collected changes as the newest layer of the index. This lets several threads index files at the same
+	 * time without contending for the write lock; the collected changes are applied in batches through
+	 * {@link #applyDocumentChanges(List)}.
+	 */
+	void beginDocumentChanges()
+	{
+		this.pendingChanges.set(new MemoryIndex());
+	}
+
+	/**
+	 * Stop collecting the changes made by the current thread
+	 * 
+	 * @return the changes collected since {@link #beginDocumentChanges()}, or null if the current thread wasn't
+	 *         collecting changes
+	 */
+	MemoryIndex endDocumentChanges()
+	{
+		MemoryIndex pending = this.pendingChanges.get();
+
+		this.pendingChanges.remove();
+
+		return pending;
+	}
+
+	/**
+	 * Apply the changes collected by {@link #endDocumentChanges()}, in order, while acquiring the write lock once
+	 * 
+	 * @param changes
+	 */
+	void applyDocumentChanges(List<MemoryIndex> changes)
+	{
+		if (changes == null || changes.isEmpty())
+		{
+			return;
+		}
+
+		this.enterWrite();
+		try
+		{
+			for (MemoryIndex change : changes)
+			{
+				if (change != null)
+				{
+					this.memoryIndex.addAll(change);
+				}
+			}
 		}
 		finally
 		{
@@ -371,10 +501,10 @@ public class Index
 
 		// TODO Enter write?
 
-		File indexFile = this.getIndexFile();
-		if (indexFile != null && indexFile.exists())
+		SegmentedDiskIndex diskIndex = this.snapshot.diskIndex;
+		if (diskIndex != null)
 		{
-			indexFile.delete();
+			diskIndex.delete();
 		}
 	}
 
@@ -418,24 +548,6 @@ public class Index
 		}
 	}
 
-	/**
-	 * This method does not guarantee that it will acquire the write lock. A boolean is returned indicating success.
-	 * 
-	 * @return
-	 */
-	private boolean exitReadEnterWrite()
-	{
-		boolean result = false;
-
-		if (this.monitor != null)
-		{
-			monitor.readLock().unlock();
-			result = monitor.writeLock().tryLock();
-		}
-
-		return result;
-	}
-
 	private void exitWrite()
 	{
 		if (this.monitor != null)
@@ -444,18 +556,6 @@ public class Index
 		}
 	}
 
-	/**
-	 * This operation is _not_ atomic. This method will block until the read lock is acquired.
-	 */
-	private void exitWriteEnterRead()
-	{
-		if (this.monitor != null)
-		{
-			exitWrite();
-			enterRead();
-		}
-	}
-
 	/**
 	 * getCategories
 	 * 
@@ -467,8 +567,23 @@ public class Index
 		this.enterRead();
 		try
 		{
+			Snapshot current = this.snapshot;
+			MemoryIndex pending = this.pendingChanges.get();
+
+			if (pending != null)
+			{
+				categories.addAll(pending.getCategories());
+			}
 			categories.addAll(this.memoryIndex.getCategories());
-			categories.addAll(this.diskIndex.getCategories());
+
+			if (current.frozenIndex != null)
+			{
+				categories.addAll(current.frozenIndex.getCategories());
+			}
+			if (current.diskIndex != null)
+			{
+				categories.addAll(current.diskIndex.getCategories());
+			}
 		}
 		finally
 		{
@@ -484,7 +599,9 @@ public class Index
 	 */
 	public File getIndexFile()
 	{
-		return this.diskIndex == null ? null : this.diskIndex.indexFile;
+		SegmentedDiskIndex diskIndex = this.snapshot.diskIndex;
+
+		return diskIndex == null ? null : diskIndex.getIndexFile();
 	}
 
 	/**
@@ -498,13 +615,200 @@ public class Index
 	}
 
 	/**
-	 * hasChanged
+	 * Merge the memory index into a new disk index segment. The memory index is frozen and replaced by an empty one
+	 * while holding the write lock, which only takes as long as swapping two references. The new segment is then
+	 * written without holding any lock, so readers keep querying the previous segments plus the frozen memory index
+	 * until the new segment is published.
 	 * 
-	 * @return
+	 * @param categoriesToRemove
+	 *            categories to drop from every segment, or null. Callers must hold the compaction lock in this case,
+	 *            since the segments are all merged into one.
+	 * @throws IOException
 	 */
-	private boolean hasChanged()
+	private void merge(String[] categoriesToRemove) throws IOException
 	{
-		return memoryIndex.hasChanged();
+		synchronized (this.mergeLock)
+		{
+			Snapshot current;
+
+			this.enterWrite();
+			try
+			{
+				if (categoriesToRemove != null)
+				{
+					this.memoryIndex.removeCategories(categoriesToRemove);
+				}
+				// no need to do anything if the memory index hasn't changed
+				else if (!this.memoryIndex.hasChanged())
+				{
+					return;
+				}
+
+				current = new Snapshot(this.snapshot.diskIndex, this.memoryIndex);
+				this.memoryIndex = new MemoryIndex();
+				this.snapshot = current;
+			}
+			finally
+			{
+				this.exitWrite();
+			}
+
+			SegmentedDiskIndex diskIndex = null;
+
+			try
+			{
+				if (current.diskIndex != null)
+				{
+					if (categoriesToRemove != null)
+					{
+						diskIndex = current.diskIndex.removeCategories(categoriesToRemove, current.frozenIndex);
+					}
+					else
+					{
+						diskIndex = current.diskIndex.append(current.frozenIndex);
+					}
+				}
+			}
+			finally
+			{
+				this.enterWrite();
+				try
+				{
+					if (diskIndex == null)
+					{
+						// the merge failed, so hand the frozen changes back to the memory index so they aren't lost
+						MemoryIndex restored = new MemoryIndex();
+
+						restored.addAll(current.frozenIndex);
+						restored.addAll(this.memoryIndex);
+
+						this.memoryIndex = restored;
+						this.snapshot = new Snapshot(current.diskIndex, null);
+					}
+					else
+					{
+						this.snapshot = new Snapshot(diskIndex, null);
+					}
+				}
+				finally
+				{
+					this.exitWrite();
+				}
+			}
+
+			if (diskIndex != null && diskIndex.getCompaction() != null)
+			{
+				scheduleCompaction();
+			}
+		}
+	}
+
+	/**
+	 * Merge a run of disk index segments into one. The merged segment is written without holding any lock and only
+	 * replaces the run once it is complete, so neither readers nor merges of the memory index wait for it.
+	 * 
+	 * @throws IOException
+	 */
+	private void compact() throws IOException
+	{
+		synchronized (this.compactionLock)
+		{
+			SegmentedDiskIndex diskIndex = this.snapshot.diskIndex;
+			SegmentedDiskIndex.Compaction compaction = (diskIndex == null) ? null : diskIndex.getCompaction();
+
+			if (compaction == null)
+			{
+				return;
+			}
+
+			compaction.run();
+
+			// merges only append segments, so the run is still in place. Hold the merge lock so we don't publish
+			// our segments over a merge which is about to publish its own.
+			synchronized (this.mergeLock)
+			{
+				this.enterWrite();
+				try
+				{
+					diskIndex = compaction.apply(this.snapshot.diskIndex);
+					this.snapshot = new Snapshot(diskIndex, this.snapshot.frozenIndex);
+				}
+				finally
+				{
+					this.exitWrite();
+				}
+			}
+
+			compaction.deleteMergedSegments();
+
+			if (diskIndex.getCompaction() != null)
+			{
+				scheduleCompaction();
+			}
+		}
+	}
+
+	/**
+	 * Compact the disk index segments in a background job
+	 */
+	private synchronized void scheduleCompaction()
+	{
+		if (this.compactionJob == null)
+		{
+			this.compactionJob = new Job(MessageFormat.format(Messages.Index_CompactionJobName, this.containerURI))
+			{
+				@Override
+				protected IStatus run(IProgressMonitor monitor)
+				{
+					try
+					{
+						compact();
+					}
+					catch (IOException e)
+					{
+						IdeLog.logError(IndexPlugin.getDefault(), e);
+					}
+
+					return Status.OK_STATUS;
+				}
+			};
+			this.compactionJob.setSystem(true);
+			this.compactionJob.setPriority(Job.DECORATE);
+		}
+
+		this.compactionJob.schedule();
+	}
+
+	/**
+	 * Merge the memory index in a background job, so the query that noticed the memory index grew too large doesn't
+	 * have to wait for the new disk index segment to be written
+	 */
+	private synchronized void scheduleMerge()
+	{
+		if (this.mergeJob == null)
+		{
+			this.mergeJob = new Job(MessageFormat.format(Messages.Index_MergeJobName, this.containerURI))
+			{
+				@Override
+				protected IStatus run(IProgressMonitor monitor)
+				{
+					try
+					{
+						merge(null);
+					}
+					catch (IOException e)
+					{
+						IdeLog.logError(IndexPlugin.getDefault(), e);
+					}
+
+					return Status.OK_STATUS;
+				}
+			};
+			this.mergeJob.setSystem(true);
+			this.mergeJob.setPriority(Job.DECORATE);
+		}
+
+		this.mergeJob.schedule();
 	}
 
 	/**
@@ -519,37 +823,37 @@ public class Index
 	public List<QueryResult> query(String[] categories, String key, int matchRule)
 	{
 		Map<String, QueryResult> results = null;
+		boolean shouldMerge = false;
 
+		// the read lock only guards the memory index; the disk index and any memory index being merged into a new disk
+		// index generation are immutable, so a merge never blocks this query
+		this.enterRead();
 		try
 		{
-			// NOTE: I'd like to lock later in the method, but it would contort
-			// the IReadWriteMonitor interface, so we lock here and stick with
-			// the call to exitReadEnterWrite below
-			this.enterRead();
+			Snapshot current = this.snapshot;
+			int rule = matchRule & MATCH_RULE_INDEX_MASK;
+
+			shouldMerge = this.memoryIndex.shouldMerge();
 
-			if (this.memoryIndex.shouldMerge() && this.exitReadEnterWrite())
+			MemoryIndex frozenIndex = current.frozenIndex;
+			MemoryIndex memoryIndex = this.memoryIndex.hasChanged() ? this.memoryIndex : null;
+			MemoryIndex pending = this.pendingChanges.get();
+
+			if (current.diskIndex != null)
 			{
-				// in write...
-				try
-				{
-					this.save(false);
-				}
-				finally
-				{
-					this.exitWriteEnterRead();
-				}
+				results = current.diskIndex.addQueryResults(categories, key, rule, frozenIndex, memoryIndex, pending);
 			}
-			// We're in read mode for monitor here now matter what...
-			int rule = matchRule & MATCH_RULE_INDEX_MASK;
-
-			if (this.memoryIndex.hasChanged())
+			if (frozenIndex != null)
 			{
-				results = this.diskIndex.addQueryResults(categories, key, rule, this.memoryIndex);
-				results = this.memoryIndex.addQueryResults(categories, key, rule, results);
+				results = frozenIndex.addQueryResults(categories, key, rule, results, memoryIndex, pending);
 			}
-			else
+			if (memoryIndex != null)
+			{
+				results = memoryIndex.addQueryResults(categories, key, rule, results, pending);
+			}
+			if (pending != null)
 			{
-				results = this.diskIndex.addQueryResults(categories, key, rule, null);
+				results = pending.addQueryResults(categories, key, rule, results);
 			}
 		}
 		catch (IOException e)
@@ -568,6 +872,11 @@ public class Index
 			PATTERNS.clear();
 		}
 
+		if (shouldMerge)
+		{
+			scheduleMerge();
+		}
+
 		return (results == null) ? null : new ArrayList<QueryResult>(results.values());
 	}
 
@@ -580,14 +889,30 @@ public class Index
 		this.enterRead();
 		try
 		{
-			if (this.memoryIndex.hasChanged())
+			Snapshot current = this.snapshot;
+			MemoryIndex frozenIndex = current.frozenIndex;
+			MemoryIndex memoryIndex = this.memoryIndex.hasChanged() ? this.memoryIndex : null;
+			MemoryIndex pending = this.pendingChanges.get();
+
+			if (current.diskIndex != null)
 			{
-				results = this.diskIndex.addDocumentNames(substring, this.memoryIndex);
-				results.addAll(this.memoryIndex.addDocumentNames(substring));
+				results = current.diskIndex.addDocumentNames(substring, frozenIndex, memoryIndex, pending);
 			}
 			else
 			{
-				results = this.diskIndex.addDocumentNames(substring, null);
+				results = new HashSet<String>();
+			}
+			if (frozenIndex != null)
+			{
+				results.addAll(frozenIndex.addDocumentNames(substring, memoryIndex, pending));
+			}
+			if (memoryIndex != null)
+			{
+				results.addAll(memoryIndex.addDocumentNames(substring, pending));
+			}
+			if (pending != null)
+			{
+				results.addAll(pending.addDocumentNames(substring));
 			}
 		}
 		finally
@@ -605,8 +930,15 @@ public class Index
 	public void remove(URI containerRelativeURI)
 	{
 		String documentName = containerRelativeURI.toString();
+		MemoryIndex pending = this.pendingChanges.get();
 
-		this.enterRead();
+		if (pending != null)
+		{
+			pending.remove(documentName);
+			return;
+		}
+
+		this.enterWrite();
 		try
 		{
 			if (isTraceEnabled() && memoryIndex.hasDocument(documentName))
@@ -617,14 +949,7 @@ public class Index
 				// @formatter:on
 				logTrace(message);
 			}
-		}
-		finally
-		{
-			this.exitRead();
-			this.enterWrite(); // we must wait for write! DO NOT CALL exitReadEnterWrite!
-		}
-		try
-		{
+
 			this.memoryIndex.remove(documentName);
 		}
 		finally
@@ -640,20 +965,17 @@ public class Index
 	 */
 	public void removeCategories(String... categoryNames)
 	{
-		this.enterWrite();
 		try
 		{
-			this.memoryIndex.removeCategories(categoryNames);
-			this.diskIndex = this.diskIndex.removeCategories(categoryNames, this.memoryIndex);
+			synchronized (this.compactionLock)
+			{
+				this.merge(categoryNames);
+			}
 		}
 		catch (IOException e)
 		{
 			IdeLog.logError(IndexPlugin.getDefault(), "An error occurred while removing categories from the index", e); //$NON-NLS-1$
 		}
-		finally
-		{
-			this.exitWrite();
-		}
 	}
 
 	/**
@@ -668,52 +990,14 @@ public class Index
 			logTrace(MessageFormat.format("Saving index ''{0}''", this)); //$NON-NLS-1$
 		}
 
-		this.save(true);
-	}
-
-	/**
-	 * save
-	 * 
-	 * @param lock
-	 * @throws IOException
-	 */
-	private void save(boolean lock) throws IOException
-	{
-		// NOTE: Unfortunately we need the ugly "lock" flag hack in order to
-		// prevent hanging when save is called from query
 		try
 		{
-			if (lock)
-			{
-				this.enterWrite();
-			}
-
-			// no need to do anything if the memory index hasn't changed
-			if (!hasChanged())
-			{
-				return;
-			}
-
-			int numberOfChanges = this.memoryIndex.numberOfChanges();
-			this.diskIndex = this.diskIndex.mergeWith(this.memoryIndex);
-			this.memoryIndex = new MemoryIndex();
-
-			if (numberOfChanges > 1000)
-			{
-				System.gc(); // reclaim space if the MemoryIndex was very BIG
-			}
+			this.merge(null);
 		}
 		catch (Exception e)
 		{
 			IdeLog.logError(IndexPlugin.getDefault(), e);
 		}
-		finally
-		{
-			if (lock)
-			{
-				this.exitWrite();
-			}
-		}
 	}
 
 	/*
@@ -737,8 +1021,23 @@ public class Index
 	 */
 	public void reset() throws IOException
 	{
-		this.memoryIndex = new MemoryIndex();
-		this.diskIndex = new DiskIndex(this.diskIndex.indexFile.getCanonicalPath());
-		this.diskIndex.initialize(false/* do not reuse the index file */);
+		synchronized (this.compactionLock)
+		{
+			synchronized (this.mergeLock)
+			{
+				SegmentedDiskIndex diskIndex = this.snapshot.diskIndex.reset();
+
+				this.enterWrite();
+				try
+				{
+					this.memoryIndex = new MemoryIndex();
+					this.snapshot = new Snapshot(diskIndex, null);
+				}
+				finally
+				{
+					this.exitWrite();
+				}
+			}
+		}
 	}
 }
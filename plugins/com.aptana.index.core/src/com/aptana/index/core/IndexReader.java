@@ -21,6 +21,8 @@ import com.aptana.jetty.util.epl.ajax.JSON.Convertible;
 import com.aptana.core.IFilter;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
+import com.aptana.index.core.record.DelimitedRecordCodec;
+import com.aptana.index.core.record.IRecordCodec;
 
 /**
  * IndexReader
@@ -30,6 +32,8 @@ public abstract class IndexReader
 	public static Pattern DELIMITER_PATTERN;
 	public static Pattern SUB_DELIMITER_PATTERN;
 
+	private IRecordCodec recordCodec;
+
 	/**
 	 * getCategoryInfo
 	 * 
@@ -65,6 +69,38 @@ public abstract class IndexReader
 		return new CategoryInfo(category, lengths);
 	}
 
+	/**
+	 * Extract a single column from an index word. This returns null when the word has fewer columns than requested or
+	 * when the requested column is empty
+	 * 
+	 * @param word
+	 *            The index word
+	 * @param columnIndex
+	 *            The zero-based index of the column to extract
+	 * @return
+	 */
+	protected String getColumn(String word, int columnIndex)
+	{
+		if (word == null || columnIndex < 0)
+		{
+			return null;
+		}
+
+		String column;
+
+		try
+		{
+			column = this.getRecordCodec().decode(word).getString(columnIndex);
+		}
+		catch (IllegalArgumentException e)
+		{
+			IdeLog.logError(IndexPlugin.getDefault(), MessageFormat.format("Unable to decode index word ''{0}''", word), e); //$NON-NLS-1$
+			return null;
+		}
+
+		return (column != null && column.length() > 0) ? column : null;
+	}
+
 	/**
 	 * Get the top-level delimiter string used to separate columns in an index word
 	 * 
@@ -120,6 +156,22 @@ public abstract class IndexReader
 		});
 	}
 
+	/**
+	 * Get the codec used to decode index words into columns. By default this decodes words whose columns are joined
+	 * with {@link #getDelimiter()} and {@link #getSubDelimiter()}
+	 * 
+	 * @return
+	 */
+	protected IRecordCodec getRecordCodec()
+	{
+		if (recordCodec == null)
+		{
+			recordCodec = new DelimitedRecordCodec(this.getDelimiter(), this.getSubDelimiter());
+		}
+
+		return recordCodec;
+	}
+
 	/**
 	 * Get the second level delimiter string used to separate test within a column in an index word
 	 * 
@@ -173,12 +225,11 @@ public abstract class IndexReader
 	{
 		if (item != null && element != null && 0 <= columnIndex)
 		{
-			String key = item.getWord();
-			String[] columns = this.getDelimiterPattern().split(key);
+			String column = this.getColumn(item.getWord(), columnIndex);
 
-			if (columnIndex < columns.length)
+			if (column != null)
 			{
-				this.populateElement(element, columns[columnIndex], item.getDocuments());
+				this.populateElement(element, column, item.getDocuments());
 			}
 		}
 
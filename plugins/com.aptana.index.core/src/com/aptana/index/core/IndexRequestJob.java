@@ -9,14 +9,28 @@ package com.aptana.index.core;
 
 import java.net.URI;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.Job;
@@ -25,11 +39,27 @@ import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.index.core.build.BuildContext;
 import com.aptana.index.core.filter.IIndexFilterParticipant;
+import com.aptana.internal.index.core.MemoryIndex;
 
 abstract class IndexRequestJob extends Job
 {
 	public static final String INDEX_REQUEST_JOB_FAMILY = "index-request-job-family";
 
+	/**
+	 * Smaller sets of files are indexed serially, since starting worker threads would cost more than it saves
+	 */
+	private static final int MIN_FILES_FOR_PARALLEL_INDEXING = 16;
+
+	/**
+	 * The number of indexed files whose changes are applied to the index at once
+	 */
+	private static final int BATCH_SIZE = 50;
+
+	/**
+	 * How long to wait for a worker to finish a file before checking for cancellation again, in milliseconds
+	 */
+	private static final long POLL_INTERVAL = 100;
+
 	private URI containerURI;
 
 	/**
@@ -153,7 +183,9 @@ abstract class IndexRequestJob extends Job
 
 	/**
 	 * Indexes a set of {@link IFileStore}s with the appropriate {@link IFileStoreIndexingParticipant}s that apply to
-	 * the content types (matching is done via filename/extension).
+	 * the content types (matching is done via filename/extension). The changes for each file are applied to the index
+	 * at once, so a save of the index can't split a file's entries between its memory and disk parts. Large sets are
+	 * indexed by a pool of worker threads, see {@link #getWorkerCount()}.
 	 * 
 	 * @param index
 	 * @param fileStores
@@ -174,6 +206,17 @@ abstract class IndexRequestJob extends Job
 			return;
 		}
 
+		if (fileStores.size() >= MIN_FILES_FOR_PARALLEL_INDEXING)
+		{
+			int workerCount = Math.min(getWorkerCount(), fileStores.size());
+
+			if (workerCount > 1)
+			{
+				indexFileStoresInParallel(index, fileStores, workerCount, monitor);
+				return;
+			}
+		}
+
 		int remaining = fileStores.size();
 		SubMonitor sub = SubMonitor.convert(monitor, remaining * 11);
 		try
@@ -184,32 +227,9 @@ abstract class IndexRequestJob extends Job
 				{
 					throw new CoreException(Status.CANCEL_STATUS);
 				}
-				// First cleanup old index entries for file
-				index.remove(file.toURI());
-				sub.worked(1);
+				MemoryIndex changes = collectDocumentChanges(index, file, sub.newChild(11));
+				index.applyDocumentChanges(Collections.singletonList(changes));
 
-				// Now run indexers on file
-				List<IFileStoreIndexingParticipant> indexers = getIndexParticipants(file);
-				if (!CollectionsUtil.isEmpty(indexers))
-				{
-					int work = 10 / indexers.size();
-					BuildContext context = new FileStoreBuildContext(file);
-					for (IFileStoreIndexingParticipant indexer : indexers)
-					{
-						if (sub.isCanceled())
-						{
-							throw new CoreException(Status.CANCEL_STATUS);
-						}
-						try
-						{
-							indexer.index(context, index, sub.newChild(work));
-						}
-						catch (CoreException e)
-						{
-							IdeLog.logError(IndexPlugin.getDefault(), e);
-						}
-					}
-				}
 				// Update remaining units
 				remaining--;
 				sub.setWorkRemaining(remaining * 11);
@@ -221,6 +241,193 @@ abstract class IndexRequestJob extends Job
 		}
 	}
 
+	/**
+	 * Indexes the files on a pool of worker threads. Each worker collects the changes for one file in a private memory
+	 * index (see {@link Index#beginDocumentChanges()}), and this thread is the only one applying those changes to the
+	 * index, in batches, so workers never wait on the index write lock. The index ends up with the same entries as when
+	 * indexing the files serially.
+	 * 
+	 * @param index
+	 * @param fileStores
+	 * @param workerCount
+	 * @param monitor
+	 * @throws CoreException
+	 */
+	private void indexFileStoresInParallel(Index index, Set<IFileStore> fileStores, int workerCount,
+			IProgressMonitor monitor) throws CoreException
+	{
+		SubMonitor sub = SubMonitor.convert(monitor, fileStores.size());
+		// SubMonitors aren't thread-safe, so workers only share a monitor we use to cancel them
+		IProgressMonitor workerMonitor = new NullProgressMonitor();
+		ExecutorService executor = Executors.newFixedThreadPool(workerCount, new IndexerThreadFactory());
+		CompletionService<MemoryIndex> completionService = new ExecutorCompletionService<MemoryIndex>(executor);
+		List<MemoryIndex> batch = new ArrayList<MemoryIndex>(BATCH_SIZE);
+		Iterator<IFileStore> files = fileStores.iterator();
+		int running = 0;
+
+		try
+		{
+			while (files.hasNext() || running > 0)
+			{
+				// only queue a few files ahead of the workers so a cancel doesn't leave a backlog behind
+				while (files.hasNext() && running < workerCount * 2)
+				{
+					completionService.submit(new IndexFileStoreTask(index, files.next(), workerMonitor));
+					running++;
+				}
+
+				Future<MemoryIndex> result = completionService.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+
+				if (sub.isCanceled())
+				{
+					throw new CoreException(Status.CANCEL_STATUS);
+				}
+				if (result == null)
+				{
+					continue;
+				}
+
+				running--;
+				batch.add(getChanges(result));
+				sub.worked(1);
+
+				if (batch.size() >= BATCH_SIZE)
+				{
+					index.applyDocumentChanges(batch);
+					batch.clear();
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new CoreException(Status.CANCEL_STATUS);
+		}
+		finally
+		{
+			workerMonitor.setCanceled(true);
+			executor.shutdownNow();
+
+			// keep the files that were completely indexed, like the serial loop does when it stops early
+			index.applyDocumentChanges(batch);
+			sub.done();
+		}
+	}
+
+	/**
+	 * Returns the changes collected by a finished {@link IndexFileStoreTask}, rethrowing anything it threw
+	 * 
+	 * @param result
+	 * @return
+	 * @throws CoreException
+	 * @throws InterruptedException
+	 */
+	private MemoryIndex getChanges(Future<MemoryIndex> result) throws CoreException, InterruptedException
+	{
+		try
+		{
+			return result.get();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+
+			if (cause instanceof CoreException)
+			{
+				throw (CoreException) cause;
+			}
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error)
+			{
+				throw (Error) cause;
+			}
+			throw new CoreException(new Status(IStatus.ERROR, IndexPlugin.PLUGIN_ID, cause.getMessage(), cause));
+		}
+	}
+
+	/**
+	 * Indexes a file, collecting its changes instead of applying them to the index
+	 * 
+	 * @param index
+	 * @param file
+	 * @param monitor
+	 * @return
+	 * @throws CoreException
+	 */
+	private MemoryIndex collectDocumentChanges(Index index, IFileStore file, IProgressMonitor monitor)
+			throws CoreException
+	{
+		index.beginDocumentChanges();
+		try
+		{
+			indexFileStore(index, file, monitor);
+			return index.endDocumentChanges();
+		}
+		finally
+		{
+			// drops the changes of a file that failed part way through, no-op otherwise
+			index.endDocumentChanges();
+		}
+	}
+
+	/**
+	 * Removes the old index entries of a file and runs the indexing participants that apply to it
+	 * 
+	 * @param index
+	 * @param file
+	 * @param monitor
+	 * @throws CoreException
+	 */
+	private void indexFileStore(Index index, IFileStore file, IProgressMonitor monitor) throws CoreException
+	{
+		SubMonitor sub = SubMonitor.convert(monitor, 11);
+
+		// First cleanup old index entries for file
+		index.remove(file.toURI());
+		sub.worked(1);
+
+		// Now run indexers on file
+		List<IFileStoreIndexingParticipant> indexers = getIndexParticipants(file);
+		if (!CollectionsUtil.isEmpty(indexers))
+		{
+			int work = 10 / indexers.size();
+			BuildContext context = new FileStoreBuildContext(file);
+			for (IFileStoreIndexingParticipant indexer : indexers)
+			{
+				if (sub.isCanceled())
+				{
+					throw new CoreException(Status.CANCEL_STATUS);
+				}
+				try
+				{
+					indexer.index(context, index, sub.newChild(work));
+				}
+				catch (CoreException e)
+				{
+					IdeLog.logError(IndexPlugin.getDefault(), e);
+				}
+			}
+		}
+		sub.done();
+	}
+
+	/**
+	 * Returns the number of threads used to index large sets of files, as set by the
+	 * {@link IPreferenceConstants#INDEXING_WORKER_COUNT} preference
+	 * 
+	 * @return
+	 */
+	protected int getWorkerCount()
+	{
+		int workerCount = Platform.getPreferencesService().getInt(IndexPlugin.PLUGIN_ID,
+				IPreferenceConstants.INDEXING_WORKER_COUNT, 0, null);
+
+		return (workerCount > 0) ? workerCount : Runtime.getRuntime().availableProcessors();
+	}
+
 	protected List<IFileStoreIndexingParticipant> getIndexParticipants(IFileStore file)
 	{
 		IndexManager indexManager = getIndexManager();
@@ -232,4 +439,43 @@ abstract class IndexRequestJob extends Job
 		return Collections.emptyList();
 	}
 
+	/**
+	 * Indexes a single file on a worker thread and returns the changes it made to the index
+	 */
+	private class IndexFileStoreTask implements Callable<MemoryIndex>
+	{
+		private final Index index;
+		private final IFileStore file;
+		private final IProgressMonitor monitor;
+
+		IndexFileStoreTask(Index index, IFileStore file, IProgressMonitor monitor)
+		{
+			this.index = index;
+			this.file = file;
+			this.monitor = monitor;
+		}
+
+		public MemoryIndex call() throws CoreException
+		{
+			if (monitor.isCanceled())
+			{
+				throw new CoreException(Status.CANCEL_STATUS);
+			}
+
+			return collectDocumentChanges(index, file, monitor);
+		}
+	}
+
+	/**
+	 * Creates the daemon worker threads used to index files in parallel
+	 */
+	private static class IndexerThreadFactory implements ThreadFactory
+	{
+		public Thread newThread(Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, "Indexer"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
 }
@@ -9,6 +9,8 @@ package com.aptana.index.core;
 
 import java.net.URI;
 
+import com.aptana.index.core.record.DelimitedRecordCodec;
+import com.aptana.index.core.record.IRecordCodec;
 import com.aptana.jetty.util.epl.ajax.JSON;
 
 /**
@@ -16,6 +18,8 @@ import com.aptana.jetty.util.epl.ajax.JSON;
  */
 public abstract class IndexWriter
 {
+	private static final IRecordCodec DEFAULT_RECORD_CODEC = new DelimitedRecordCodec("\0", ","); //$NON-NLS-1$ //$NON-NLS-2$
+
 	/**
 	 * Get the URI used as the metadata path
 	 * 
@@ -23,6 +27,17 @@ public abstract class IndexWriter
 	 */
 	protected abstract URI getDocumentPath();
 
+	/**
+	 * Get the codec used to turn the columns of an entry into an index word. Subclasses should return the same codec as
+	 * their matching {@link IndexReader}
+	 * 
+	 * @return
+	 */
+	protected IRecordCodec getRecordCodec()
+	{
+		return DEFAULT_RECORD_CODEC;
+	}
+
 	/**
 	 * Convert the specified object into a string representation. This representation should be reversible to recreate
 	 * the original object
@@ -8,6 +8,9 @@ public class Messages extends NLS
 
 	public static String AbstractFileIndexingParticipant_Indexing_Message;
 
+	public static String Index_CompactionJobName;
+	public static String Index_MergeJobName;
+
 	public static String IndexFilesOfProjectJob_Name;
 	public static String IndexPlugin_IndexingFile;
 	public static String IndexRequestJob_Name;
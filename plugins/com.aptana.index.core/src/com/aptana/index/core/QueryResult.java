@@ -7,14 +7,15 @@
  */
 package com.aptana.index.core;
 
+import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
+import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.StringUtil;
 
 public class QueryResult
@@ -22,20 +23,16 @@ public class QueryResult
 
 	private String word;
 	private HashSet<String> documentNames;
-	private List<Map<String, Object>> documentTables;
 
-	public QueryResult(String word)
-	{
-		this(word, null);
-	}
+	// document numbers from disk indexes whose names haven't been looked up yet. Many callers only look at the word, so
+	// we defer resolving names until someone asks for them
+	private List<IDocumentNameResolver> unresolvedIndexes;
+	private List<int[]> unresolvedDocumentNumbers;
 
-	public QueryResult(String word, Map<String, Object> table)
+	public QueryResult(String word)
 	{
 		this.word = word;
 		this.documentNames = new HashSet<String>();
-		this.documentTables = new ArrayList<Map<String, Object>>();
-		if (table != null)
-			documentTables.add(table);
 	}
 
 	public void addDocumentName(String path)
@@ -43,6 +40,31 @@ public class QueryResult
 		this.documentNames.add(path);
 	}
 
+	/**
+	 * Add the documents with the specified numbers in the given index. The array is kept as-is and names are only looked
+	 * up the first time the documents of this result are requested.
+	 * 
+	 * @param index
+	 *            the index resolving the names of its document numbers
+	 * @param documentNumbers
+	 */
+	public void addDocumentNumbers(IDocumentNameResolver index, int[] documentNumbers)
+	{
+		if (documentNumbers.length == 0)
+		{
+			return;
+		}
+
+		if (this.unresolvedIndexes == null)
+		{
+			this.unresolvedIndexes = new ArrayList<IDocumentNameResolver>(1);
+			this.unresolvedDocumentNumbers = new ArrayList<int[]>(1);
+		}
+
+		this.unresolvedIndexes.add(index);
+		this.unresolvedDocumentNumbers.add(documentNumbers);
+	}
+
 	public String getWord()
 	{
 		return word;
@@ -50,17 +72,45 @@ public class QueryResult
 
 	public Set<String> getDocuments()
 	{
+		resolveDocumentNumbers();
+
 		return Collections.unmodifiableSet(documentNames);
 	}
 
 	public boolean isEmpty()
 	{
-		return this.documentTables.isEmpty() && this.documentNames.isEmpty();
+		return this.unresolvedIndexes == null && this.documentNames.isEmpty();
 	}
 
-	public void addDocumentTable(Map<String, Object> wordsToDocNumbers)
+	/**
+	 * Look up the names of any document numbers added through {@link #addDocumentNumbers(IDocumentNameResolver, int[])}
+	 */
+	private void resolveDocumentNumbers()
 	{
-		documentTables.add(wordsToDocNumbers);
+		if (this.unresolvedIndexes == null)
+		{
+			return;
+		}
+
+		for (int i = 0; i < this.unresolvedIndexes.size(); i++)
+		{
+			IDocumentNameResolver index = this.unresolvedIndexes.get(i);
+
+			try
+			{
+				for (int documentNumber : this.unresolvedDocumentNumbers.get(i))
+				{
+					this.documentNames.add(index.getDocumentName(documentNumber));
+				}
+			}
+			catch (IOException e)
+			{
+				IdeLog.logError(IndexPlugin.getDefault(), e);
+			}
+		}
+
+		this.unresolvedIndexes = null;
+		this.unresolvedDocumentNumbers = null;
 	}
 
 	@Override
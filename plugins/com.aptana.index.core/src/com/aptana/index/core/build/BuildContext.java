@@ -36,6 +36,7 @@ import com.aptana.core.util.StringUtil;
 import com.aptana.index.core.IDebugScopes;
 import com.aptana.index.core.IndexPlugin;
 import com.aptana.parsing.IParseState;
+import com.aptana.parsing.IParseStateCacheKey;
 import com.aptana.parsing.ParseResult;
 import com.aptana.parsing.ParseState;
 import com.aptana.parsing.ParserPoolFactory;
@@ -51,8 +52,11 @@ public class BuildContext
 	private IFile file;
 	protected Map<String, Collection<IProblem>> problems;
 	private ParseResult fParseResult;
+	private IParseStateCacheKey fParseCacheKey;
+	private String fParseSource;
 
 	private String fContents;
+	private volatile boolean fRefreshed;
 
 	protected BuildContext()
 	{
@@ -96,7 +100,9 @@ public class BuildContext
 	}
 
 	/**
-	 * Does not return null (must be an empty parse result in the case the ast == null).
+	 * Does not return null (must be an empty parse result in the case the ast == null). The result is kept, so that all
+	 * the participants building this context share a single parse of its source, unless a participant asks for a parse
+	 * with a different source or cache key.
 	 */
 	public synchronized ParseResult getAST(IParseState parseState) throws CoreException
 	{
@@ -105,10 +111,21 @@ public class BuildContext
 			// FIXME What if we fail to parse? Should we catch and log that exception here and return null?
 			try
 			{
+				String contentType = getContentType();
+				String source = parseState.getSource();
+				IParseStateCacheKey cacheKey = parseState.getCacheKey(contentType);
+				if (fParseResult != null && fParseCacheKey != null && source != null && source.equals(fParseSource)
+						&& !fParseCacheKey.requiresReparse(cacheKey))
+				{
+					return fParseResult;
+				}
+
 				// FIXME The parsers need to throw a specific SyntaxException or something for us to differentiate
 				// between those and IO errors!
 				WorkingParseResult working = new WorkingParseResult();
-				fParseResult = parse(getContentType(), parseState, working);
+				fParseResult = parse(contentType, parseState, working);
+				fParseCacheKey = cacheKey;
+				fParseSource = source;
 			}
 			catch (CoreException e)
 			{
@@ -143,6 +160,8 @@ public class BuildContext
 	public synchronized void resetAST()
 	{
 		fParseResult = null;
+		fParseCacheKey = null;
+		fParseSource = null;
 	}
 
 	public synchronized String getContents()
@@ -227,19 +246,30 @@ public class BuildContext
 
 	public void removeProblems(String markerType)
 	{
-		this.problems.remove(markerType);
+		synchronized (problems)
+		{
+			this.problems.remove(markerType);
+		}
 	}
 
 	public void putProblems(String markerType, Collection<IProblem> problems)
 	{
 		// TODO Maybe just add problems?
-		this.problems.put(markerType, problems);
+		synchronized (this.problems)
+		{
+			this.problems.put(markerType, problems);
+		}
 	}
 
+	/**
+	 * Returns a snapshot of the problems, so that it can be read while participants still put problems.
+	 */
 	public Map<String, Collection<IProblem>> getProblems()
 	{
-		// TODO Handle possible concurrent modification exceptions
-		return Collections.unmodifiableMap(problems);
+		synchronized (problems)
+		{
+			return Collections.unmodifiableMap(new HashMap<String, Collection<IProblem>>(problems));
+		}
 	}
 
 	public Collection<IParseError> getParseErrors()
@@ -261,7 +291,13 @@ public class BuildContext
 		{
 			return new ByteArrayInputStream(ArrayUtil.NO_BYTES);
 		}
-		file.refreshLocal(IResource.DEPTH_ZERO, null);
+		if (!fRefreshed)
+		{
+			// Only refresh once: the contents are read by the thread running the build (which holds the rules the
+			// refresh needs) before participants may read them again from other threads.
+			file.refreshLocal(IResource.DEPTH_ZERO, null);
+			fRefreshed = true;
+		}
 		if (!file.exists())
 		{
 			return new ByteArrayInputStream(ArrayUtil.NO_BYTES);
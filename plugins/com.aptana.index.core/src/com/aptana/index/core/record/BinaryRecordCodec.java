@@ -0,0 +1,302 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core.record;
+
+import java.text.MessageFormat;
+import java.util.Collection;
+
+/**
+ * A record format where value fields are length-prefixed instead of delimited. Key fields are written as plain text,
+ * each followed by the delimiter, so prefix queries on keys work exactly as they do for delimited records. They are
+ * followed by a marker char, the schema version, and then each value field as its length followed by its chars. List
+ * fields hold the number of items followed by each item as a length and its chars.
+ * <p>
+ * Lengths are written as variable-length numbers using one char per 14 bits, least significant group first. Chars
+ * below 0x4000 end a number and chars from 0x4000 to 0x7FFF are followed by more groups, so none of the chars used
+ * are surrogates.
+ * <p>
+ * Field boundaries are found by skipping from length to length, so reading a field never scans or copies the fields in
+ * front of it. Records without the marker are decoded as delimited records, which lets readers using this codec read
+ * indexes that were written before their writers switched to it.
+ */
+public class BinaryRecordCodec implements IRecordCodec
+{
+	/**
+	 * Starts the value fields. Key fields are names and never start with a control char
+	 */
+	static final char MARKER = '\u0001';
+
+	private static final int GROUP_BITS = 14;
+	private static final int GROUP_MASK = (1 << GROUP_BITS) - 1;
+	private static final int CONTINUATION = 1 << GROUP_BITS;
+
+	private final int schemaVersion;
+	private final String delimiter;
+	private final String subDelimiter;
+
+	/**
+	 * BinaryRecordCodec
+	 * 
+	 * @param schemaVersion
+	 *            The version written into each record. Readers can use this to handle records written with an older
+	 *            field layout
+	 * @param delimiter
+	 *            The text placed after each key field
+	 * @param subDelimiter
+	 *            The text used between list items by delimited records
+	 */
+	public BinaryRecordCodec(int schemaVersion, String delimiter, String subDelimiter)
+	{
+		if (schemaVersion < 0)
+		{
+			throw new IllegalArgumentException("Schema version must not be negative"); //$NON-NLS-1$
+		}
+
+		this.schemaVersion = schemaVersion;
+		this.delimiter = delimiter;
+		this.subDelimiter = subDelimiter;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.record.IRecordCodec#decode(java.lang.String)
+	 */
+	public IRecordView decode(String record)
+	{
+		int[] bounds = new int[8];
+		int fieldCount = 0;
+		int length = record.length();
+		int start = 0;
+
+		// key fields
+		while (start >= length || record.charAt(start) != MARKER)
+		{
+			int end = record.indexOf(delimiter, start);
+
+			if (fieldCount * 2 == bounds.length)
+			{
+				bounds = DelimitedRecordCodec.grow(bounds);
+			}
+
+			bounds[fieldCount * 2] = start;
+			bounds[fieldCount * 2 + 1] = (end != -1) ? end : length;
+			fieldCount++;
+
+			if (end == -1)
+			{
+				// no marker, so this is a delimited record
+				return new RecordView(record, 0, bounds, fieldCount, fieldCount, subDelimiter);
+			}
+
+			start = end + delimiter.length();
+		}
+
+		int firstBinaryField = fieldCount;
+		int[] position = new int[] { start + 1 };
+		int version = readNumber(record, position, length);
+
+		// value fields
+		while (position[0] < length)
+		{
+			int fieldLength = readLength(record, position, length);
+
+			if (fieldCount * 2 == bounds.length)
+			{
+				bounds = DelimitedRecordCodec.grow(bounds);
+			}
+
+			bounds[fieldCount * 2] = position[0];
+			bounds[fieldCount * 2 + 1] = position[0] + fieldLength;
+			fieldCount++;
+
+			position[0] += fieldLength;
+		}
+
+		return new RecordView(record, version, bounds, fieldCount, firstBinaryField, subDelimiter);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.record.IRecordCodec#encode(int, java.lang.Object[])
+	 */
+	public String encode(int keyFieldCount, Object... fields)
+	{
+		if (keyFieldCount < 0 || keyFieldCount > fields.length)
+		{
+			throw new IllegalArgumentException(MessageFormat.format(
+					"Key field count {0} is out of range for a record with {1} fields", keyFieldCount, fields.length)); //$NON-NLS-1$
+		}
+
+		StringBuilder builder = new StringBuilder();
+
+		for (int i = 0; i < keyFieldCount; i++)
+		{
+			String key = toString(fields[i]);
+
+			if (key.indexOf(delimiter) != -1 || (key.length() > 0 && key.charAt(0) == MARKER))
+			{
+				throw new IllegalArgumentException(MessageFormat.format("Key field {0} contains a reserved char", i)); //$NON-NLS-1$
+			}
+
+			builder.append(key).append(delimiter);
+		}
+
+		builder.append(MARKER);
+		writeLength(builder, schemaVersion);
+
+		for (int i = keyFieldCount; i < fields.length; i++)
+		{
+			Object field = fields[i];
+
+			if (field instanceof Collection<?>)
+			{
+				Collection<?> items = (Collection<?>) field;
+				StringBuilder list = new StringBuilder();
+
+				writeLength(list, items.size());
+
+				for (Object item : items)
+				{
+					String value = toString(item);
+
+					writeLength(list, value.length());
+					list.append(value);
+				}
+
+				writeLength(builder, list.length());
+				builder.append(list);
+			}
+			else
+			{
+				String value = toString(field);
+
+				writeLength(builder, value.length());
+				builder.append(value);
+			}
+		}
+
+		return builder.toString();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.record.IRecordCodec#encodeKey(java.lang.String[])
+	 */
+	public String encodeKey(String... keyFields)
+	{
+		StringBuilder builder = new StringBuilder();
+
+		for (String keyField : keyFields)
+		{
+			builder.append(keyField).append(delimiter);
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * Returns the schema version written by this codec
+	 * 
+	 * @return
+	 */
+	public int getSchemaVersion()
+	{
+		return schemaVersion;
+	}
+
+	/**
+	 * Read a length starting at position[0], advancing position[0] past it. The length must fit between the new position
+	 * and limit
+	 * 
+	 * @param record
+	 * @param position
+	 * @param limit
+	 * @return
+	 */
+	static int readLength(String record, int[] position, int limit)
+	{
+		int result = readNumber(record, position, limit);
+
+		if (result > limit - position[0])
+		{
+			throw new IllegalArgumentException(MessageFormat.format(
+					"Length {0} at offset {1} extends past the end of the field", result, position[0])); //$NON-NLS-1$
+		}
+
+		return result;
+	}
+
+	/**
+	 * Read a number starting at position[0], advancing position[0] past it
+	 * 
+	 * @param record
+	 * @param position
+	 * @param limit
+	 * @return
+	 */
+	static int readNumber(String record, int[] position, int limit)
+	{
+		int result = 0;
+
+		for (int shift = 0; shift < 32 && position[0] < limit; shift += GROUP_BITS)
+		{
+			char c = record.charAt(position[0]++);
+
+			result |= (c & GROUP_MASK) << shift;
+
+			if (c < CONTINUATION)
+			{
+				if (result >= 0)
+				{
+					return result;
+				}
+
+				break;
+			}
+		}
+
+		throw new IllegalArgumentException(MessageFormat.format("Malformed number at offset {0}", position[0])); //$NON-NLS-1$
+	}
+
+	/**
+	 * toString
+	 * 
+	 * @param field
+	 * @return
+	 */
+	private static String toString(Object field)
+	{
+		if (field == null)
+		{
+			return ""; //$NON-NLS-1$
+		}
+		else if (field instanceof Boolean)
+		{
+			return ((Boolean) field).booleanValue() ? "1" : "0"; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		return field.toString();
+	}
+
+	/**
+	 * Append a length using 14 bits per char
+	 * 
+	 * @param builder
+	 * @param length
+	 */
+	private static void writeLength(StringBuilder builder, int length)
+	{
+		while (length >= CONTINUATION)
+		{
+			builder.append((char) (CONTINUATION | (length & GROUP_MASK)));
+			length >>>= GROUP_BITS;
+		}
+
+		builder.append((char) length);
+	}
+}
@@ -0,0 +1,141 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core.record;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * The original index word format: every field is plain text separated by a delimiter, and list fields separated by a
+ * sub-delimiter. This format can't represent fields that contain the delimiters, so it is mainly kept for readers and
+ * writers that have not moved to {@link BinaryRecordCodec} yet.
+ */
+public class DelimitedRecordCodec implements IRecordCodec
+{
+	private final String delimiter;
+	private final String subDelimiter;
+
+	/**
+	 * DelimitedRecordCodec
+	 * 
+	 * @param delimiter
+	 *            The text placed between fields
+	 * @param subDelimiter
+	 *            The text placed between the items of a list field
+	 */
+	public DelimitedRecordCodec(String delimiter, String subDelimiter)
+	{
+		this.delimiter = delimiter;
+		this.subDelimiter = subDelimiter;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.record.IRecordCodec#decode(java.lang.String)
+	 */
+	public IRecordView decode(String record)
+	{
+		int[] bounds = new int[8];
+		int fieldCount = 0;
+		int start = 0;
+
+		while (true)
+		{
+			int end = record.indexOf(delimiter, start);
+
+			if (fieldCount * 2 == bounds.length)
+			{
+				bounds = grow(bounds);
+			}
+
+			bounds[fieldCount * 2] = start;
+			bounds[fieldCount * 2 + 1] = (end != -1) ? end : record.length();
+			fieldCount++;
+
+			if (end == -1)
+			{
+				break;
+			}
+
+			start = end + delimiter.length();
+		}
+
+		return new RecordView(record, 0, bounds, fieldCount, fieldCount, subDelimiter);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.record.IRecordCodec#encode(int, java.lang.Object[])
+	 */
+	public String encode(int keyFieldCount, Object... fields)
+	{
+		StringBuilder builder = new StringBuilder();
+
+		for (int i = 0; i < fields.length; i++)
+		{
+			if (i > 0)
+			{
+				builder.append(delimiter);
+			}
+
+			Object field = fields[i];
+
+			if (field instanceof Collection<?>)
+			{
+				Iterator<?> items = ((Collection<?>) field).iterator();
+
+				while (items.hasNext())
+				{
+					builder.append(items.next());
+
+					if (items.hasNext())
+					{
+						builder.append(subDelimiter);
+					}
+				}
+			}
+			else if (field != null)
+			{
+				builder.append(field);
+			}
+		}
+
+		return builder.toString();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.record.IRecordCodec#encodeKey(java.lang.String[])
+	 */
+	public String encodeKey(String... keyFields)
+	{
+		StringBuilder builder = new StringBuilder();
+
+		for (String keyField : keyFields)
+		{
+			builder.append(keyField).append(delimiter);
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * Double the capacity of a field boundary array
+	 * 
+	 * @param bounds
+	 * @return
+	 */
+	static int[] grow(int[] bounds)
+	{
+		int[] result = new int[bounds.length * 2];
+
+		System.arraycopy(bounds, 0, result, 0, bounds.length);
+
+		return result;
+	}
+}
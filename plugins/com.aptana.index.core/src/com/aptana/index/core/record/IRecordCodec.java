@@ -0,0 +1,48 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core.record;
+
+/**
+ * Converts between the columns of an index entry and the single word that is stored in an index. Records start with
+ * zero or more key fields, which are always stored as plain text followed by a delimiter so that the index can find
+ * records by key with a case-sensitive prefix query. The fields that follow are value fields and are stored in a format
+ * defined by the codec.
+ */
+public interface IRecordCodec
+{
+	/**
+	 * Encode the specified fields into an index word. The first keyFieldCount fields are key fields. Fields may be
+	 * strings, collections (stored as a list of strings), or any other object, which is stored using its string value.
+	 * Null fields are stored as empty fields.
+	 * 
+	 * @param keyFieldCount
+	 *            The number of leading fields that may be used in prefix queries
+	 * @param fields
+	 *            The fields of the record
+	 * @return
+	 */
+	String encode(int keyFieldCount, Object... fields);
+
+	/**
+	 * Encode the specified leading key fields as a prefix that matches all records that start with exactly those key
+	 * fields. The result should be used with {@link com.aptana.index.core.SearchPattern#PREFIX_MATCH}
+	 * 
+	 * @param keyFields
+	 * @return
+	 */
+	String encodeKey(String... keyFields);
+
+	/**
+	 * Create a view of the fields of the specified index word. The view references the word and does not copy the
+	 * field contents until a field is requested as a String
+	 * 
+	 * @param record
+	 * @return
+	 */
+	IRecordView decode(String record);
+}
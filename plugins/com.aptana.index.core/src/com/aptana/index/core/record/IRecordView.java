@@ -0,0 +1,64 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core.record;
+
+import java.util.List;
+
+/**
+ * A read-only view of the fields of a single index word, as created by {@link IRecordCodec#decode(String)}. Fields
+ * that are not present in the record are reported as null (or an empty list) so readers can handle records written by
+ * older schema versions.
+ */
+public interface IRecordView
+{
+	/**
+	 * Returns the schema version the record was written with. Records written in the delimited format report 0
+	 * 
+	 * @return
+	 */
+	int getSchemaVersion();
+
+	/**
+	 * Returns the number of fields in this record
+	 * 
+	 * @return
+	 */
+	int getFieldCount();
+
+	/**
+	 * Returns a view of the specified field without copying its contents, or null if the field is not present
+	 * 
+	 * @param index
+	 * @return
+	 */
+	CharSequence getField(int index);
+
+	/**
+	 * Returns the specified field as a String, or null if the field is not present
+	 * 
+	 * @param index
+	 * @return
+	 */
+	String getString(int index);
+
+	/**
+	 * Returns the items of the specified list field. An empty list is returned if the field is empty or not present
+	 * 
+	 * @param index
+	 * @return
+	 */
+	List<String> getList(int index);
+
+	/**
+	 * Returns true if the specified field holds a boolean true value
+	 * 
+	 * @param index
+	 * @return
+	 */
+	boolean getBoolean(int index);
+}
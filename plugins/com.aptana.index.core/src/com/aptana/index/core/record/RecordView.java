@@ -0,0 +1,158 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core.record;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Field boundaries of a decoded record. Fields before firstBinaryField are plain delimited text and their lists are
+ * separated by the sub-delimiter. Fields from firstBinaryField on were written by {@link BinaryRecordCodec} and their
+ * lists are length-prefixed items.
+ */
+class RecordView implements IRecordView
+{
+	private final String record;
+	private final int schemaVersion;
+	private final int[] bounds;
+	private final int fieldCount;
+	private final int firstBinaryField;
+	private final String subDelimiter;
+
+	/**
+	 * RecordView
+	 * 
+	 * @param record
+	 * @param schemaVersion
+	 * @param bounds
+	 *            start and end offset of each field, in field order
+	 * @param fieldCount
+	 * @param firstBinaryField
+	 * @param subDelimiter
+	 */
+	RecordView(String record, int schemaVersion, int[] bounds, int fieldCount, int firstBinaryField,
+			String subDelimiter)
+	{
+		this.record = record;
+		this.schemaVersion = schemaVersion;
+		this.bounds = bounds;
+		this.fieldCount = fieldCount;
+		this.firstBinaryField = firstBinaryField;
+		this.subDelimiter = subDelimiter;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.record.IRecordView#getBoolean(int)
+	 */
+	public boolean getBoolean(int index)
+	{
+		CharSequence field = getField(index);
+
+		return field != null && field.length() == 1 && field.charAt(0) == '1';
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.record.IRecordView#getField(int)
+	 */
+	public CharSequence getField(int index)
+	{
+		if (index < 0 || index >= fieldCount)
+		{
+			return null;
+		}
+
+		return CharBuffer.wrap(record, bounds[index * 2], bounds[index * 2 + 1]);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.record.IRecordView#getFieldCount()
+	 */
+	public int getFieldCount()
+	{
+		return fieldCount;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.record.IRecordView#getList(int)
+	 */
+	public List<String> getList(int index)
+	{
+		if (index < 0 || index >= fieldCount)
+		{
+			return Collections.emptyList();
+		}
+
+		int start = bounds[index * 2];
+		int end = bounds[index * 2 + 1];
+
+		if (start == end)
+		{
+			return Collections.emptyList();
+		}
+
+		List<String> result = new ArrayList<String>();
+
+		if (index < firstBinaryField)
+		{
+			int itemStart = start;
+			int itemEnd;
+
+			while ((itemEnd = record.indexOf(subDelimiter, itemStart)) != -1 && itemEnd < end)
+			{
+				result.add(record.substring(itemStart, itemEnd));
+				itemStart = itemEnd + subDelimiter.length();
+			}
+
+			result.add(record.substring(itemStart, end));
+		}
+		else
+		{
+			int[] position = new int[] { start };
+			int count = BinaryRecordCodec.readNumber(record, position, end);
+
+			for (int i = 0; i < count; i++)
+			{
+				int length = BinaryRecordCodec.readLength(record, position, end);
+
+				result.add(record.substring(position[0], position[0] + length));
+				position[0] += length;
+			}
+		}
+
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.record.IRecordView#getSchemaVersion()
+	 */
+	public int getSchemaVersion()
+	{
+		return schemaVersion;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.record.IRecordView#getString(int)
+	 */
+	public String getString(int index)
+	{
+		if (index < 0 || index >= fieldCount)
+		{
+			return null;
+		}
+
+		return record.substring(bounds[index * 2], bounds[index * 2 + 1]);
+	}
+}
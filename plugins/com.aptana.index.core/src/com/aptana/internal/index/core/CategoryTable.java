@@ -0,0 +1,190 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A read-only view of one category table inside a mapped {@link DiskIndex} file. The table starts with the number of
+ * words followed by a fixed-size entry per word holding the offset of the word and the offset of its document number
+ * list, so any entry can be decoded directly without reading the ones before it. Entries are sorted by word (natural
+ * String order), which lets exact and case-sensitive prefix lookups binary search the table instead of scanning it.
+ * Instances are immutable once constructed (the lazily decoded word cache is published through a volatile field) and
+ * may be shared by concurrent readers.
+ */
+class CategoryTable
+{
+	/**
+	 * Each entry in the offset table is two ints: word offset, document number list offset
+	 */
+	static final int ENTRY_SIZE = 8;
+
+	private final ByteBuffer buffer;
+	private final int entriesOffset;
+	private final int size;
+
+	private volatile String[] words;
+
+	/**
+	 * CategoryTable
+	 * 
+	 * @param buffer
+	 * @param tableOffset
+	 * @throws IOException
+	 */
+	CategoryTable(ByteBuffer buffer, int tableOffset) throws IOException
+	{
+		IndexBufferReader reader = new IndexBufferReader(buffer, tableOffset);
+		int size = reader.readInt();
+
+		if (size < 0 || (long) size * ENTRY_SIZE > reader.remaining())
+		{
+			throw new IOException("Corrupt category table at offset " + tableOffset + ", reported size " + size); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		this.buffer = buffer;
+		this.entriesOffset = reader.position();
+		this.size = size;
+	}
+
+	/**
+	 * Returns the number of words in this table
+	 * 
+	 * @return
+	 */
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * getWord
+	 * 
+	 * @param index
+	 * @return
+	 * @throws IOException
+	 */
+	String getWord(int index) throws IOException
+	{
+		String[] decoded = words;
+
+		if (decoded != null)
+		{
+			return decoded[index];
+		}
+
+		// don't decode the whole table just to probe a few entries during a binary search
+		return new IndexBufferReader(buffer, buffer.getInt(entriesOffset + index * ENTRY_SIZE)).readString();
+	}
+
+	/**
+	 * Returns all words in this table in entry order. The returned array is shared and must not be modified.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	String[] getWords() throws IOException
+	{
+		String[] result = words;
+
+		if (result == null)
+		{
+			result = new String[size];
+			IndexBufferReader reader = new IndexBufferReader(buffer, 0);
+
+			for (int i = 0; i < size; i++)
+			{
+				reader.seek(buffer.getInt(entriesOffset + i * ENTRY_SIZE));
+				result[i] = reader.readString();
+			}
+
+			// benign race: concurrent callers decode identical arrays
+			words = result;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the entry index of the specified word, or -1 if it is not in this table
+	 * 
+	 * @param word
+	 * @return
+	 * @throws IOException
+	 */
+	int indexOf(String word) throws IOException
+	{
+		int index = lowerBound(word);
+
+		return (index < size && getWord(index).equals(word)) ? index : -1;
+	}
+
+	/**
+	 * Returns the index of the first entry whose word is greater than or equal to the specified key, or the table size
+	 * if there is no such entry. Since entries are sorted, all words starting with key form a contiguous range beginning
+	 * at this index.
+	 * 
+	 * @param key
+	 * @return
+	 * @throws IOException
+	 */
+	int lowerBound(String key) throws IOException
+	{
+		int low = 0;
+		int high = size;
+
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+
+			if (getWord(middle).compareTo(key) < 0)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * Decodes the document numbers referenced by the word at the specified entry index. Lists are stored as a
+	 * variable-length count followed by the sorted document numbers as variable-length deltas from the previous number,
+	 * and are decoded straight into the returned array.
+	 * 
+	 * @param index
+	 * @return
+	 * @throws IOException
+	 */
+	int[] getDocumentNumbers(int index) throws IOException
+	{
+		IndexBufferReader reader = new IndexBufferReader(buffer, buffer.getInt(entriesOffset + index * ENTRY_SIZE + 4));
+		int length = reader.readVarInt();
+
+		// every entry takes at least one byte, which also guards against corrupt lengths
+		if (length < 0 || length > reader.remaining())
+		{
+			throw new IOException("Corrupt document number list for entry " + index + ", reported length " + length); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		int[] result = new int[length];
+		int previous = 0;
+
+		for (int i = 0; i < length; i++)
+		{
+			previous += reader.readVarInt();
+			result[i] = previous;
+		}
+
+		return result;
+	}
+}
@@ -7,16 +7,14 @@
  */
 package com.aptana.internal.index.core;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
-import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -26,25 +24,51 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import com.aptana.core.logging.IdeLog;
-import com.aptana.core.util.CollectionsUtil;
+import com.aptana.core.util.PlatformUtil;
 import com.aptana.core.util.StringUtil;
+import com.aptana.index.core.IDocumentNameResolver;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexPlugin;
 import com.aptana.index.core.QueryResult;
 import com.aptana.index.core.SearchPattern;
 
 /**
- * Yuck this needs to be a random access file that stores the index of documents, category names, and the relationship
- * between them. We need to be careful to allow for quick access into the categories when reading, and to keep filesize
- * down if possible.
+ * The on-disk part of an index: the sorted names of all indexed documents, the category names, and for each category
+ * a table mapping words to the documents that contain them. The file is read through a memory mapping and every
+ * structure in it is located through fixed-layout offset tables, so readers decode only what they touch and never
+ * need to lock or seek a shared stream. The layout is:
+ * 
+ * <pre>
+ * signature                      (string)
+ * offset to header info          (int)
+ * document name chunks           (prefix compressed, CHUNK_SIZE names each)
+ * for each category:
+ *   document number lists        (varint length, then the sorted references as varint deltas)
+ *   words                        (string)
+ *   table                        (int size, then size * [int word offset, int document number list offset],
+ *                                 sorted by word)
+ * header info:
+ *   number of chunks (int), size of last chunk (byte), separator (byte),
+ *   chunk offsets (int[]), start of category tables (int), category count (int), [name (string), table offset (int)]*,
+ *   removed document count (int), [removed document name (string)]*
+ * </pre>
+ * 
+ * The removed documents are only written for segments of a {@link SegmentedDiskIndex} which sit on top of older
+ * segments: they hide the entries older segments hold for documents that have since been deleted.
+ * <p>
+ * A DiskIndex never changes once it has been initialized; merging a {@link MemoryIndex} writes a new file and returns
+ * a new instance for it.
  * 
  * @author cwilliams
  */
-public class DiskIndex
+public class DiskIndex implements IDocumentNameResolver
 {
-	private static final String SIGNATURE = "INDEX VERSION 0.1"; //$NON-NLS-1$
+	private static final String SIGNATURE = "INDEX VERSION 0.5"; //$NON-NLS-1$
+	private static final String SIGNATURE_WITHOUT_REMOVED_DOCUMENTS = "INDEX VERSION 0.4"; //$NON-NLS-1$
 	private static final int CHUNK_SIZE = 100;
 	private static final int RE_INDEXED = -1;
 	private static final int DELETED = -2;
@@ -52,21 +76,24 @@ public class DiskIndex
 
 	public File indexFile;
 	private int headerInfoOffset;
-	private int streamRead;
 	private int numberOfChunks;
 	private int sizeOfLastChunk;
-	private int documentReferenceSize;
 	private char separator = Index.DEFAULT_SEPARATOR;
 	private int[] chunkOffsets;
 	private int startOfCategoryTables;
 	private Map<String, Integer> categoryOffsets;
-	// Usually a map from string to map from string to list of integer. But may also be a single integer (to represent a
-	// pointer to long array)
-	// FIXME YUCK!! This "usually a list of integers, sometimes one integer that acts as a pointer" stuff is killing me!
-	private Map<String, Map<String, Object>> categoryTables;
+	private Set<String> removedDocuments;
 
+	// Read side: the mapped file and the structures decoded from it. These are only assigned while the index is being
+	// initialized, afterwards they're safe to share between any number of concurrent readers
+	private ByteBuffer buffer;
+	private AtomicReferenceArray<String[]> cachedChunks;
+	private ConcurrentHashMap<String, CategoryTable> categoryTableCache;
+	private volatile List<String> documentNames;
+
+	// Write side: category name -> word -> document numbers, built up while merging into a new file
+	private Map<String, Map<String, List<Integer>>> categoryTables;
 	private int streamEnd;
-	private String[][] cachedChunks;
 	private String[] categoriesToDiscard;
 
 	/**
@@ -83,9 +110,9 @@ public class DiskIndex
 		this.numberOfChunks = -1;
 		this.sizeOfLastChunk = -1;
 		this.chunkOffsets = null;
-		this.documentReferenceSize = -1;
 		this.categoryTables = null;
 		this.categoryOffsets = null;
+		this.removedDocuments = Collections.emptySet();
 		this.categoriesToDiscard = null;
 	}
 
@@ -99,54 +126,100 @@ public class DiskIndex
 	 */
 	public Set<String> addDocumentNames(String substring, MemoryIndex memoryIndex) throws IOException
 	{
-		// must skip over documents which have been added/changed/deleted in the memory index
+		return addDocumentNames(substring, null, memoryIndex);
+	}
+
+	/**
+	 * Returns the names of the documents in this index that start with the specified substring, skipping documents
+	 * which have been added/changed/deleted in either of the specified memory indexes
+	 * 
+	 * @param substring
+	 * @param frozenIndex
+	 *            a memory index that is being merged into a new disk index, may be null
+	 * @param memoryIndex
+	 *            the memory index receiving new changes, may be null
+	 * @return
+	 * @throws IOException
+	 */
+	public Set<String> addDocumentNames(String substring, MemoryIndex frozenIndex, MemoryIndex memoryIndex)
+			throws IOException
+	{
+		return addDocumentNames(substring, new HashSet<String>(), new DocumentOverrides(null, 0, frozenIndex,
+				memoryIndex));
+	}
+
+	/**
+	 * Add the names of the documents in this index that start with the specified substring to results, skipping
+	 * documents whose entries have been replaced by a newer index
+	 * 
+	 * @param substring
+	 * @param results
+	 * @param overrides
+	 * @return
+	 * @throws IOException
+	 */
+	Set<String> addDocumentNames(String substring, Set<String> results, DocumentOverrides overrides)
+			throws IOException
+	{
 		List<String> docNames = readAllDocumentNames();
-		Set<String> results = new HashSet<String>(docNames.size());
 
-		if (substring == null)
+		if (substring == null && overrides.isEmpty())
+		{
+			results.addAll(docNames);
+			return results;
+		}
+
+		for (String docName : docNames)
 		{
-			if (memoryIndex == null)
+			if ((substring == null || docName.startsWith(substring, 0)) && !overrides.contains(docName))
 			{
-				return new HashSet<String>(docNames);
+				results.add(docName);
 			}
+		}
 
-			Map<String, Map<String, Set<String>>> docsToRefs = memoryIndex.getDocumentsToReferences();
+		return results;
+	}
 
-			for (String docName : docNames)
-			{
-				if (!docsToRefs.containsKey(docName))
-				{
-					results.add(docName);
-				}
-			}
+	/**
+	 * Add every entry of this index to the specified memory index, replacing the entries it holds for the documents in
+	 * this index and marking the documents this index lists as removed. Used to fold newer segments into an older one.
+	 * 
+	 * @param memoryIndex
+	 * @throws IOException
+	 */
+	void addTo(MemoryIndex memoryIndex) throws IOException
+	{
+		List<String> docNames = readAllDocumentNames();
+
+		for (String docName : docNames)
+		{
+			memoryIndex.remove(docName);
+			memoryIndex.addDocument(docName);
 		}
-		else
+
+		for (String docName : this.removedDocuments)
 		{
-			if (memoryIndex == null)
-			{
-				for (String docName : docNames)
-				{
-					if (docName.startsWith(substring, 0))
-					{
-						results.add(docName);
-					}
-				}
-			}
-			else
-			{
-				Map<String, Map<String, Set<String>>> docsToRefs = memoryIndex.getDocumentsToReferences();
+			memoryIndex.remove(docName);
+		}
+
+		if (this.categoryOffsets == null)
+		{
+			return;
+		}
+
+		for (String categoryName : this.categoryOffsets.keySet())
+		{
+			CategoryTable table = getCategoryTable(categoryName);
+			String[] words = table.getWords();
 
-				for (String docName : docNames)
+			for (int i = 0; i < words.length; i++)
+			{
+				for (int docNumber : table.getDocumentNumbers(i))
 				{
-					if (docName.startsWith(substring, 0) && !docsToRefs.containsKey(docName))
-					{
-						results.add(docName);
-					}
+					memoryIndex.addEntry(categoryName, words[i], docNames.get(docNumber));
 				}
 			}
 		}
-
-		return results;
 	}
 
 	/**
@@ -154,55 +227,47 @@ public class DiskIndex
 	 * 
 	 * @param results
 	 * @param word
-	 * @param wordsToDocNumbers
-	 * @param memoryIndex
+	 * @param table
+	 * @param index
+	 * @param overrides
 	 * @return
 	 * @throws IOException
 	 */
 	private Map<String, QueryResult> addQueryResult(Map<String, QueryResult> results, String word,
-			Map<String, Object> wordsToDocNumbers, MemoryIndex memoryIndex) throws IOException
+			CategoryTable table, int index, DocumentOverrides overrides) throws IOException
 	{
-		// must skip over documents which have been added/changed/deleted in the memory index
+		// must skip over documents which have been added/changed/deleted in newer segments or the memory indexes
 		if (results == null)
 		{
 			results = new HashMap<String, QueryResult>(13);
 		}
 
 		QueryResult result = results.get(word);
+		int[] docNumbers = table.getDocumentNumbers(index);
 
-		if (memoryIndex == null)
+		if (overrides.isEmpty())
 		{
 			if (result == null)
 			{
-				result = new QueryResult(word, null);
+				result = new QueryResult(word);
 				results.put(word, result);
 			}
 
-			result.addDocumentTable(wordsToDocNumbers);
-
-			List<Integer> docNumbers = readDocumentNumbers(wordsToDocNumbers.get(word));
-
-			for (Integer docNumber : docNumbers)
-			{
-				result.addDocumentName(readDocumentName(docNumber));
-			}
+			// names are looked up lazily, if the caller ever asks for the documents
+			result.addDocumentNumbers(this, docNumbers);
 		}
 		else
 		{
-			Map<String, Map<String, Set<String>>> docsToRefs = memoryIndex.getDocumentsToReferences();
-
 			if (result == null)
 			{
-				result = new QueryResult(word, null);
+				result = new QueryResult(word);
 			}
 
-			List<Integer> docNumbers = readDocumentNumbers(wordsToDocNumbers.get(word));
-
-			for (Integer docNumber : docNumbers)
+			for (int docNumber : docNumbers)
 			{
-				String docName = readDocumentName(docNumber);
+				String docName = getDocumentName(docNumber);
 
-				if (!docsToRefs.containsKey(docName))
+				if (!overrides.contains(docName))
 				{
 					result.addDocumentName(docName);
 				}
@@ -230,14 +295,51 @@ public class DiskIndex
 	public Map<String, QueryResult> addQueryResults(String[] categories, String key, int matchRule,
 			MemoryIndex memoryIndex) throws IOException
 	{
-		// assumes sender has called startQuery() & will call stopQuery() when finished
+		return addQueryResults(categories, key, matchRule, null, memoryIndex);
+	}
+
+	/**
+	 * Query this index, skipping documents which have been added/changed/deleted in either of the specified memory
+	 * indexes
+	 * 
+	 * @param categories
+	 * @param key
+	 * @param matchRule
+	 * @param frozenIndex
+	 *            a memory index that is being merged into a new disk index, may be null
+	 * @param memoryIndex
+	 *            the memory index receiving new changes, may be null
+	 * @return
+	 * @throws IOException
+	 */
+	public Map<String, QueryResult> addQueryResults(String[] categories, String key, int matchRule,
+			MemoryIndex frozenIndex, MemoryIndex memoryIndex) throws IOException
+	{
+		return addQueryResults(categories, key, matchRule, null, new DocumentOverrides(null, 0, frozenIndex,
+				memoryIndex));
+	}
+
+	/**
+	 * Add the results of a query against this index to results, skipping documents whose entries have been replaced by
+	 * a newer index
+	 * 
+	 * @param categories
+	 * @param key
+	 * @param matchRule
+	 * @param results
+	 *            initialized if needed
+	 * @param overrides
+	 * @return
+	 * @throws IOException
+	 */
+	Map<String, QueryResult> addQueryResults(String[] categories, String key, int matchRule,
+			Map<String, QueryResult> results, DocumentOverrides overrides) throws IOException
+	{
 		if (this.categoryOffsets == null)
 		{
-			return null; // file is empty
+			return results; // file is empty
 		}
 
-		Map<String, QueryResult> results = null; // initialized if needed
-
 		// Add perf fixes for common ways of searching for everything:
 		// PREFIX_MATCH with an empty key
 		if ((matchRule == SearchPattern.PREFIX_MATCH || matchRule == (SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE))
@@ -256,31 +358,23 @@ public class DiskIndex
 		{
 			for (int i = 0, l = categories.length; i < l; i++)
 			{
-				Map<String, Object> wordsToDocNumbers = readCategoryTable(categories[i], true); // cache if key
-				// is null
-				// since its a definite
-				// match
-				if (wordsToDocNumbers != null)
+				CategoryTable table = getCategoryTable(categories[i]);
+
+				if (table != null)
 				{
 					if (results == null)
 					{
-						results = new HashMap<String, QueryResult>(wordsToDocNumbers.size());
+						results = new HashMap<String, QueryResult>(table.size());
 					}
 
-					for (String word : wordsToDocNumbers.keySet())
+					String[] words = table.getWords();
+
+					for (int j = 0; j < words.length; j++)
 					{
-						if (word != null)
-						{
-							results = addQueryResult(results, word, wordsToDocNumbers, memoryIndex);
-						}
+						results = addQueryResult(results, words[j], table, j, overrides);
 					}
 				}
 			}
-
-			if (results != null && this.cachedChunks == null)
-			{
-				cacheDocumentNames();
-			}
 		}
 		else
 		{
@@ -289,11 +383,16 @@ public class DiskIndex
 				case SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE:
 					for (int i = 0, l = categories.length; i < l; i++)
 					{
-						Map<String, Object> wordsToDocNumbers = readCategoryTable(categories[i], false);
+						CategoryTable table = getCategoryTable(categories[i]);
 
-						if (wordsToDocNumbers != null && wordsToDocNumbers.containsKey(key))
+						if (table != null)
 						{
-							results = addQueryResult(results, key, wordsToDocNumbers, memoryIndex);
+							int index = table.indexOf(key);
+
+							if (index >= 0)
+							{
+								results = addQueryResult(results, key, table, index, overrides);
+							}
 						}
 					}
 					break;
@@ -301,16 +400,21 @@ public class DiskIndex
 				case SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE:
 					for (int i = 0, l = categories.length; i < l; i++)
 					{
-						Map<String, Object> wordsToDocNumbers = readCategoryTable(categories[i], false);
+						CategoryTable table = getCategoryTable(categories[i]);
 
-						if (wordsToDocNumbers != null)
+						if (table != null)
 						{
-							for (String word : wordsToDocNumbers.keySet())
+							// matching words are a contiguous run starting at the first word >= key
+							for (int j = table.lowerBound(key), size = table.size(); j < size; j++)
 							{
-								if (word != null && word.startsWith(key))
+								String word = table.getWord(j);
+
+								if (!word.startsWith(key))
 								{
-									results = addQueryResult(results, word, wordsToDocNumbers, memoryIndex);
+									break;
 								}
+
+								results = addQueryResult(results, word, table, j, overrides);
 							}
 						}
 					}
@@ -319,15 +423,17 @@ public class DiskIndex
 				default:
 					for (int i = 0, l = categories.length; i < l; i++)
 					{
-						Map<String, Object> wordsToDocNumbers = readCategoryTable(categories[i], false);
+						CategoryTable table = getCategoryTable(categories[i]);
 
-						if (wordsToDocNumbers != null)
+						if (table != null)
 						{
-							for (String word : wordsToDocNumbers.keySet())
+							String[] words = table.getWords();
+
+							for (int j = 0; j < words.length; j++)
 							{
-								if (word != null && Index.isMatch(key, word, matchRule))
+								if (Index.isMatch(key, words[j], matchRule))
 								{
-									results = addQueryResult(results, word, wordsToDocNumbers, memoryIndex);
+									results = addQueryResult(results, words[j], table, j, overrides);
 								}
 							}
 						}
@@ -338,44 +444,6 @@ public class DiskIndex
 		return results;
 	}
 
-	/**
-	 * cacheDocumentNames
-	 * 
-	 * @throws IOException
-	 */
-	private void cacheDocumentNames() throws IOException
-	{
-		// will need all document names so get them now
-		this.cachedChunks = new String[this.numberOfChunks][];
-
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
-
-		try
-		{
-			// if (this.numberOfChunks > 5)
-			// BUFFER_READ_SIZE <<= 1;
-			int offset = this.chunkOffsets[0];
-
-			skip(stream, offset);
-
-			for (int i = 0; i < this.numberOfChunks; i++)
-			{
-				int size = i == this.numberOfChunks - 1 ? this.sizeOfLastChunk : CHUNK_SIZE;
-
-				readChunk(this.cachedChunks[i] = new String[size], stream, 0, size);
-			}
-		}
-		catch (IOException e)
-		{
-			this.cachedChunks = null;
-			throw e;
-		}
-		finally
-		{
-			stream.close();
-		}
-	}
-
 	/**
 	 * computeDocumentNames
 	 * 
@@ -547,7 +615,6 @@ public class DiskIndex
 	 * @param categoryToWords
 	 * @param newPosition
 	 */
-	@SuppressWarnings("unchecked")
 	private void copyQueryResults(Map<String, Set<String>> categoryToWords, int newPosition)
 	{
 		for (Map.Entry<String, Set<String>> entry : categoryToWords.entrySet())
@@ -559,11 +626,11 @@ public class DiskIndex
 				continue;
 			}
 
-			Map<String, Object> wordsToDocs = this.categoryTables.get(categoryName);
+			Map<String, List<Integer>> wordsToDocs = this.categoryTables.get(categoryName);
 
 			if (wordsToDocs == null)
 			{
-				this.categoryTables.put(categoryName, wordsToDocs = new HashMap<String, Object>());
+				this.categoryTables.put(categoryName, wordsToDocs = new HashMap<String, List<Integer>>());
 			}
 
 			for (String word : entry.getValue())
@@ -573,18 +640,32 @@ public class DiskIndex
 					continue;
 				}
 
-				Object positions = wordsToDocs.get(word);
+				List<Integer> positions = wordsToDocs.get(word);
 
 				if (positions == null)
 				{
 					wordsToDocs.put(word, positions = new ArrayList<Integer>());
 				}
 
-				((List<Integer>) positions).add(newPosition);
+				positions.add(newPosition);
 			}
 		}
 	}
 
+	/**
+	 * Determine if this index holds entries for the specified document or lists it as removed. In either case the
+	 * entries older segments hold for the document should be ignored
+	 * 
+	 * @param docName
+	 * @return
+	 * @throws IOException
+	 */
+	boolean containsDocument(String docName) throws IOException
+	{
+		// document names are written in sorted order
+		return this.removedDocuments.contains(docName) || Collections.binarySearch(readAllDocumentNames(), docName) >= 0;
+	}
+
 	/**
 	 * getCategories
 	 * 
@@ -606,6 +687,78 @@ public class DiskIndex
 		return result;
 	}
 
+	/**
+	 * Returns the read-only view of the named category's table, or null if the category isn't in this index
+	 * 
+	 * @param categoryName
+	 * @return
+	 * @throws IOException
+	 */
+	private CategoryTable getCategoryTable(String categoryName) throws IOException
+	{
+		CategoryTable table = this.categoryTableCache.get(categoryName);
+
+		if (table == null)
+		{
+			Integer offset = this.categoryOffsets.get(categoryName);
+
+			if (offset == null)
+			{
+				return null;
+			}
+
+			table = new CategoryTable(this.buffer, offset);
+
+			CategoryTable existing = this.categoryTableCache.putIfAbsent(categoryName, table);
+
+			if (existing != null)
+			{
+				table = existing;
+			}
+		}
+
+		return table;
+	}
+
+	/**
+	 * Returns the decoded document names of the specified chunk, decoding and caching it on first access
+	 * 
+	 * @param chunkNumber
+	 * @return
+	 * @throws IOException
+	 */
+	private String[] getChunk(int chunkNumber) throws IOException
+	{
+		String[] chunk = this.cachedChunks.get(chunkNumber);
+
+		if (chunk == null)
+		{
+			int numberOfNames = (chunkNumber == this.numberOfChunks - 1) ? this.sizeOfLastChunk : CHUNK_SIZE;
+
+			chunk = new String[numberOfNames];
+			readChunk(new IndexBufferReader(this.buffer, this.chunkOffsets[chunkNumber]), chunk, 0, numberOfNames);
+
+			// benign race: concurrent readers decode identical chunks
+			this.cachedChunks.set(chunkNumber, chunk);
+		}
+
+		return chunk;
+	}
+
+	/**
+	 * Returns the name of the document with the specified number
+	 * 
+	 * @param docNumber
+	 * @return
+	 * @throws IOException
+	 */
+	public String getDocumentName(int docNumber) throws IOException
+	{
+		int chunkNumber = docNumber / CHUNK_SIZE;
+
+		return getChunk(chunkNumber)[docNumber - (chunkNumber * CHUNK_SIZE)];
+	}
+
 	/**
 	 * getDocuments
 	 * 
@@ -626,6 +779,16 @@ public class DiskIndex
 		return result;
 	}
 
+	/**
+	 * Determine if this index holds no documents and lists no removed documents
+	 * 
+	 * @return
+	 */
+	boolean isEmpty()
+	{
+		return this.numberOfChunks <= 0 && this.removedDocuments.isEmpty();
+	}
+
 	/**
 	 * initialize
 	 * 
@@ -638,36 +801,34 @@ public class DiskIndex
 			if (reuseExistingFile)
 			{
 				// read it in!
-				InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
+				mapIndexFile();
 
-				try
-				{
-					streamRead = 0;
+				IndexBufferReader reader = new IndexBufferReader(this.buffer, 0);
+				String signature = reader.readString();
 
-					String signature = readString(stream);
+				if (LegacyDiskIndexReader.SIGNATURE.equals(signature))
+				{
+					migrateLegacyIndex();
+					return;
+				}
 
-					if (!signature.equals(SIGNATURE))
-					{
-						throw new IOException(Messages.DiskIndex_Wrong_Format);
-					}
+				if (!signature.equals(SIGNATURE) && !signature.equals(SIGNATURE_WITHOUT_REMOVED_DOCUMENTS))
+				{
+					throw new IOException(Messages.DiskIndex_Wrong_Format);
+				}
 
-					this.headerInfoOffset = readStreamInt(stream);
+				this.headerInfoOffset = reader.readInt();
 
-					if (this.headerInfoOffset > 0)
-					{ // file is empty if its not set
-						skip(stream, this.headerInfoOffset - this.streamRead); // assume that the header info offset is
-						// over
-						// current buffer end
-						readHeaderInfo(stream);
-					}
-				}
-				finally
-				{
-					stream.close();
+				if (this.headerInfoOffset > 0)
+				{ // file is empty if its not set
+					reader.seek(this.headerInfoOffset);
+					readHeaderInfo(reader, signature.equals(SIGNATURE));
 				}
 				return;
 			}
 
+			this.buffer = null;
+
 			if (!this.indexFile.delete())
 			{
 				if (DEBUG)
@@ -682,17 +843,19 @@ public class DiskIndex
 		// create a new empty one!
 		if (indexFile.createNewFile())
 		{
-			FileOutputStream stream = new FileOutputStream(this.indexFile, false);
+			OutputStream stream = new BufferedOutputStream(new FileOutputStream(this.indexFile, false));
 
 			try
 			{
 				writeString(stream, SIGNATURE);
-				stream.write(-1);
+				writeStreamInt(stream, -1);
 			}
 			finally
 			{
 				stream.close();
 			}
+
+			mapIndexFile();
 		}
 		else
 		{
@@ -733,11 +896,57 @@ public class DiskIndex
 
 		int size = diskIndex.categoryOffsets == null ? 8 : diskIndex.categoryOffsets.size();
 		this.categoryOffsets = new HashMap<String, Integer>(size);
-		this.categoryTables = new HashMap<String, Map<String, Object>>(size);
+		this.categoryTables = new HashMap<String, Map<String, List<Integer>>>(size);
 		this.separator = diskIndex.separator;
 		this.categoriesToDiscard = diskIndex.categoriesToDiscard;
 	}
 
+	/**
+	 * Map the index file into memory so it can be shared by concurrent readers. The mapping remains valid after the
+	 * channel is closed.
+	 * 
+	 * @throws IOException
+	 */
+	private void mapIndexFile() throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(this.indexFile, "r"); //$NON-NLS-1$
+
+		try
+		{
+			FileChannel channel = file.getChannel();
+			long size = channel.size();
+
+			if (size > Integer.MAX_VALUE)
+			{
+				throw new IOException(MessageFormat.format("Index file {0} is too large to map: {1} bytes", //$NON-NLS-1$
+						this.indexFile, size));
+			}
+
+			if (PlatformUtil.isWindows())
+			{
+				// Windows won't delete or rename a file while a mapping of it is still alive, and mappings are only
+				// released when they get garbage collected. Read into the heap instead so merges can replace the file.
+				ByteBuffer heapBuffer = ByteBuffer.allocate((int) size);
+
+				while (heapBuffer.hasRemaining() && channel.read(heapBuffer) >= 0)
+				{
+					// keep reading
+				}
+
+				heapBuffer.flip();
+				this.buffer = heapBuffer;
+			}
+			else
+			{
+				this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
 	/**
 	 * mergeCategories
 	 * 
@@ -781,34 +990,28 @@ public class DiskIndex
 	 * @param stream
 	 * @throws IOException
 	 */
-	@SuppressWarnings("unchecked")
 	private void mergeCategory(String categoryName, DiskIndex onDisk, int[] positions, OutputStream stream)
 			throws IOException
 	{
-		Map<String, Object> wordsToDocs = this.categoryTables.get(categoryName);
+		Map<String, List<Integer>> wordsToDocs = this.categoryTables.get(categoryName);
 
 		if (wordsToDocs == null)
 		{
-			wordsToDocs = new HashMap<String, Object>(3);
+			wordsToDocs = new HashMap<String, List<Integer>>(3);
 		}
 
-		Map<String, Object> oldWordsToDocs = onDisk.readCategoryTable(categoryName, true);
+		CategoryTable oldTable = onDisk.getCategoryTable(categoryName);
 
-		if (oldWordsToDocs != null)
+		if (oldTable != null)
 		{
-			nextWord: for (Map.Entry<String, Object> entry : oldWordsToDocs.entrySet())
-			{
-				String oldWord = entry.getKey();
+			String[] oldWords = oldTable.getWords();
 
-				if (oldWord == null)
-				{
-					continue;
-				}
-
-				List<Integer> oldDocNumbers = (List<Integer>) entry.getValue();
-				List<Integer> mappedNumbers = new ArrayList<Integer>(oldDocNumbers.size());
+			nextWord: for (int i = 0; i < oldWords.length; i++)
+			{
+				int[] oldDocNumbers = oldTable.getDocumentNumbers(i);
+				List<Integer> mappedNumbers = new ArrayList<Integer>(oldDocNumbers.length);
 
-				for (Integer oldDocNumber : oldDocNumbers)
+				for (int oldDocNumber : oldDocNumbers)
 				{
 					int pos = positions[oldDocNumber];
 
@@ -823,31 +1026,17 @@ public class DiskIndex
 					continue nextWord; // skip words which no longer have any references
 				}
 
-				Object o = wordsToDocs.get(oldWord);
+				List<Integer> list = wordsToDocs.get(oldWords[i]);
 
-				if (o == null)
+				if (list == null)
 				{
-					wordsToDocs.put(oldWord, mappedNumbers);
+					wordsToDocs.put(oldWords[i], mappedNumbers);
 				}
 				else
 				{
-					List<Integer> list = null;
-
-					if (o instanceof List<?>)
-					{
-						list = (List<Integer>) o;
-					}
-					else
-					{
-						list = new ArrayList<Integer>();
-						wordsToDocs.put(oldWord, list);
-					}
-
 					list.addAll(mappedNumbers);
 				}
 			}
-
-			onDisk.categoryTables.put(categoryName, null); // flush cached table
 		}
 
 		writeCategoryTable(categoryName, wordsToDocs, stream);
@@ -862,9 +1051,25 @@ public class DiskIndex
 	 */
 	public DiskIndex mergeWith(MemoryIndex memoryIndex) throws IOException
 	{
-		// assume write lock is held
-		// compute & write out new docNames
-		List<String> names = readAllDocumentNames();
+		return mergeWith(memoryIndex, false);
+	}
+
+	/**
+	 * Write a new index file holding the entries of this index updated with the changes in the specified memory index,
+	 * and return the index for it. The new file replaces the file of this index.
+	 * 
+	 * @param memoryIndex
+	 * @param keepRemovedDocuments
+	 *            true if this index is a segment on top of older segments, in which case documents removed by the
+	 *            memory index (or already listed as removed by this index) are listed as removed in the new file
+	 * @return
+	 * @throws IOException
+	 */
+	DiskIndex mergeWith(MemoryIndex memoryIndex, boolean keepRemovedDocuments) throws IOException
+	{
+		// assume write lock is held
+		// compute & write out new docNames
+		List<String> names = readAllDocumentNames();
 		int previousLength = names.size();
 		int[] positions = new int[previousLength]; // keeps track of the position of each document in the new sorted
 		// docNames
@@ -873,9 +1078,33 @@ public class DiskIndex
 
 		names = computeDocumentNames(names, positions, indexedDocuments, memoryIndex);
 
-		if (names.isEmpty())
+		Set<String> removed = Collections.emptySet();
+
+		if (keepRemovedDocuments)
+		{
+			removed = new HashSet<String>(this.removedDocuments);
+
+			for (Map.Entry<String, Map<String, Set<String>>> entry : memoryIndex.getDocumentsToReferences().entrySet())
+			{
+				if (entry.getKey() != null && entry.getValue() == null)
+				{
+					removed.add(entry.getKey());
+				}
+			}
+
+			// documents that have been indexed again are no longer removed
+			if (!removed.isEmpty())
+			{
+				for (String name : names)
+				{
+					removed.remove(name);
+				}
+			}
+		}
+
+		if (names.isEmpty() && removed.isEmpty())
 		{
-			if (previousLength == 0)
+			if (previousLength == 0 && this.removedDocuments.isEmpty())
 			{
 				return this; // nothing to do... memory index contained deleted documents that had never been saved
 			}
@@ -887,13 +1116,12 @@ public class DiskIndex
 			return newDiskIndex;
 		}
 
-		this.streamEnd = 0;
-
 		DiskIndex newDiskIndex = new DiskIndex(this.indexFile.getPath() + ".tmp"); //$NON-NLS-1$
 
 		try
 		{
 			newDiskIndex.initializeFrom(this, newDiskIndex.indexFile);
+			newDiskIndex.removedDocuments = removed;
 			OutputStream stream = new BufferedOutputStream(new FileOutputStream(newDiskIndex.indexFile, false));
 			int offsetToHeader = -1;
 
@@ -917,8 +1145,6 @@ public class DiskIndex
 
 				indexedDocuments = null; // free up the space
 
-				// TODO Check list of categories we wanted removed and wipe them out of "categoryTables"?
-
 				// merge each category table with the new ones & write them out
 				if (previousLength == 0)
 				{
@@ -964,25 +1190,40 @@ public class DiskIndex
 			throw e;
 		}
 
-		newDiskIndex.indexFile = this.indexFile;
+		// map the file we just wrote so readers see exactly what is on disk
+		DiskIndex result = new DiskIndex(this.indexFile.getPath());
+		result.initialize(true);
 
-		return newDiskIndex;
+		return result;
 	}
 
 	/**
-	 * read
+	 * Replace the contents of an "INDEX VERSION 0.1" file with the same entries in the current format. The old file is
+	 * only touched once it has been read successfully, so a corrupt legacy file still fails with an IOException.
 	 * 
-	 * @param stream
-	 * @return
 	 * @throws IOException
 	 */
-	private int read(InputStream stream) throws IOException
+	private void migrateLegacyIndex() throws IOException
 	{
-		int val = stream.read();
+		MemoryIndex memoryIndex = new LegacyDiskIndexReader(this.buffer).read();
+
+		initialize(false);
 
-		streamRead++;
+		DiskIndex migrated = mergeWith(memoryIndex);
 
-		return val;
+		if (migrated != this)
+		{
+			this.buffer = migrated.buffer;
+			this.headerInfoOffset = migrated.headerInfoOffset;
+			this.numberOfChunks = migrated.numberOfChunks;
+			this.sizeOfLastChunk = migrated.sizeOfLastChunk;
+			this.separator = migrated.separator;
+			this.chunkOffsets = migrated.chunkOffsets;
+			this.startOfCategoryTables = migrated.startOfCategoryTables;
+			this.categoryOffsets = migrated.categoryOffsets;
+			this.cachedChunks = migrated.cachedChunks;
+			this.categoryTableCache = migrated.categoryTableCache;
+		}
 	}
 
 	/**
@@ -991,239 +1232,57 @@ public class DiskIndex
 	 * @return
 	 * @throws IOException
 	 */
-	private synchronized List<String> readAllDocumentNames() throws IOException
+	private List<String> readAllDocumentNames() throws IOException
 	{
 		if (this.numberOfChunks <= 0)
 		{
 			return Collections.emptyList();
 		}
 
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
-
-		try
-		{
-			int offset = this.chunkOffsets[0];
-
-			skip(stream, offset);
-
-			int lastIndex = this.numberOfChunks - 1;
-
-			String[] docNames = new String[lastIndex * CHUNK_SIZE + sizeOfLastChunk];
-
-			for (int i = 0; i < this.numberOfChunks; i++)
-			{
-				readChunk(docNames, stream, i * CHUNK_SIZE, i < lastIndex ? CHUNK_SIZE : sizeOfLastChunk);
-			}
-
-			return Arrays.asList(docNames);
-		}
-		finally
-		{
-			stream.close();
-		}
-	}
-
-	/**
-	 * readCategoryTable
-	 * 
-	 * @param categoryName
-	 * @param readDocNumbers
-	 * @return
-	 * @throws IOException
-	 */
-	private synchronized Map<String, Object> readCategoryTable(String categoryName, boolean readDocNumbers)
-			throws IOException
-	{
-		// result will be null if categoryName is unknown
-		Integer offset = this.categoryOffsets.get(categoryName);
+		List<String> result = this.documentNames;
 
-		if (offset == null)
-		{
-			return null;
-		}
-
-		if (this.categoryTables == null)
-		{
-			this.categoryTables = new HashMap<String, Map<String, Object>>(3);
-		}
-		else
+		if (result != null)
 		{
-			Map<String, Object> cachedTable = this.categoryTables.get(categoryName);
-
-			if (cachedTable != null)
-			{
-				if (readDocNumbers)
-				{ // must cache remaining document number arrays
-					Map<String, Object> copy = new HashMap<String, Object>(cachedTable);
-
-					for (Map.Entry<String, Object> entry : cachedTable.entrySet())
-					{
-						Object arrayOffset = entry.getValue();
-
-						if (arrayOffset instanceof Integer)
-						{
-							copy.put(entry.getKey(), readDocumentNumbers(arrayOffset));
-						}
-					}
-
-					cachedTable = copy;
-				}
-
-				return cachedTable;
-			}
+			return result;
 		}
 
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
-		Map<String, Object> categoryTable = null;
-		String[] matchingWords = null;
-		int count = 0;
-		int firstOffset = -1;
+		int lastIndex = this.numberOfChunks - 1;
+		String[] docNames = new String[lastIndex * CHUNK_SIZE + sizeOfLastChunk];
 
-		try
+		for (int i = 0; i < this.numberOfChunks; i++)
 		{
-			// skip to start of category
-			skip(stream, offset);
-
-			// Read the number of words in the category
-			int size = readStreamInt(stream);
-
-			try
-			{
-				if (size < 0)
-				{
-					// DEBUG
-					StringBuilder debug = new StringBuilder();
-					debug.append("-------------------- DEBUG --------------------\n"); //$NON-NLS-1$
-					debug.append("file = ").append(this.indexFile).append('\n'); //$NON-NLS-1$
-					debug.append("offset = ").append(offset).append('\n'); //$NON-NLS-1$
-					debug.append("size = ").append(size).append('\n'); //$NON-NLS-1$
-					debug.append("--------------------   END   --------------------\n"); //$NON-NLS-1$
-					System.err.print(debug.toString());
-					IdeLog.logError(
-							IndexPlugin.getDefault(),
-							MessageFormat.format(
-									"Size of category ''{0}'' negative:\n{1}", categoryName, debug.toString())); //$NON-NLS-1$
-					size = 0;
-				}
-
-				categoryTable = new HashMap<String, Object>(size);
-			}
-			catch (OutOfMemoryError oom)
-			{
-				// Here we hope that those string allocation will not throw another OutOfMemoryError...
-				// DEBUG
-				oom.printStackTrace();
-				String error = MessageFormat
-						.format("Index error in readCategoryTable. \nfile = {0} \noffset = {1} \n size = {2}", this.indexFile, offset, size); //$NON-NLS-1$
-				System.err.println("-------------------- DEBUG --------------------\n"); //$NON-NLS-1$
-				System.err.println(error);
-				System.err.println("--------------------   END   --------------------\n"); //$NON-NLS-1$
-				IdeLog.logError(IndexPlugin.getDefault(), error, oom);
-				throw oom;
-			}
-
-			int largeArraySize = 256;
-
-			for (int i = 0; i < size; i++)
-			{
-				String word = readString(stream);
-				int arrayOffset = readStreamInt(stream);
-
-				// if arrayOffset is:
-				// <= 0 then the array size == 1 with the value -> -arrayOffset
-				// > 1 & < 256 then the size of the array is > 1 & < 256, the document array follows immediately
-				// 256 if the array size >= 256 followed by another int which is the offset to the array (written prior
-				// to the table)
-				if (arrayOffset <= 0)
-				{
-					categoryTable.put(word, CollectionsUtil.newList(-arrayOffset)); // store 1 element array by negating
-					// documentNumber
-				}
-				else if (arrayOffset < largeArraySize)
-				{
-					categoryTable.put(word, readStreamDocumentArray(stream, arrayOffset)); // read in-lined array
-					// providing size
-				}
-				else
-				{
-					arrayOffset = readStreamInt(stream); // read actual offset
-
-					if (readDocNumbers)
-					{
-						if (matchingWords == null)
-						{
-							matchingWords = new String[size];
-						}
-
-						if (count == 0)
-						{
-							firstOffset = arrayOffset;
-						}
-
-						matchingWords[count++] = word;
-					}
-
-					categoryTable.put(word, new Integer(arrayOffset)); // offset to array in the file
-				}
-			}
+			String[] chunk = getChunk(i);
 
-			this.categoryTables.put(categoryName, categoryTable);
-		}
-		catch (IOException ioe)
-		{
-			throw ioe;
-		}
-		finally
-		{
-			stream.close();
+			System.arraycopy(chunk, 0, docNames, i * CHUNK_SIZE, chunk.length);
 		}
 
-		if (matchingWords != null && count > 0)
-		{
-			stream = new BufferedInputStream(new FileInputStream(this.indexFile));
-
-			try
-			{
-				skip(stream, firstOffset);
-
-				for (int i = 0; i < count; i++)
-				{ // each array follows the previous one
-					categoryTable.put(matchingWords[i], readStreamDocumentArray(stream, readStreamInt(stream)));
-				}
-			}
-			catch (IOException ioe)
-			{
-				throw ioe;
-			}
-			finally
-			{
-				stream.close();
-			}
-		}
+		// benign race: concurrent readers build identical lists
+		result = Collections.unmodifiableList(Arrays.asList(docNames));
+		this.documentNames = result;
 
-		return categoryTable;
+		return result;
 	}
 
 	/**
-	 * readChunk
+	 * Decode a chunk of prefix/suffix compressed document names starting at the reader's current position
 	 * 
+	 * @param reader
 	 * @param docNames
-	 * @param stream
 	 * @param index
 	 * @param size
 	 * @throws IOException
 	 */
-	private void readChunk(String[] docNames, InputStream stream, int index, int size) throws IOException
+	static void readChunk(IndexBufferReader reader, String[] docNames, int index, int size) throws IOException
 	{
-		String current = readString(stream);
+		String current = reader.readString();
 
 		docNames[index++] = current;
 
 		for (int i = 1; i < size; i++)
 		{
-			int start = read(stream) & 0xFF;
-			int end = read(stream) & 0xFF;
-			String next = readString(stream);
+			int start = reader.readUnsignedByte();
+			int end = reader.readUnsignedByte();
+			String next = reader.readString();
 
 			if (start > 0)
 			{
@@ -1250,263 +1309,66 @@ public class DiskIndex
 		}
 	}
 
-	/**
-	 * readDocumentName
-	 * 
-	 * @param docNumber
-	 * @return
-	 * @throws IOException
-	 */
-	private synchronized String readDocumentName(int docNumber) throws IOException
-	{
-		if (this.cachedChunks == null)
-		{
-			this.cachedChunks = new String[this.numberOfChunks][];
-		}
-
-		int chunkNumber = docNumber / CHUNK_SIZE;
-		String[] chunk = this.cachedChunks[chunkNumber];
-
-		if (chunk == null)
-		{
-			boolean isLastChunk = chunkNumber == this.numberOfChunks - 1;
-			int start = this.chunkOffsets[chunkNumber];
-			int numberOfBytes = (isLastChunk ? this.startOfCategoryTables : this.chunkOffsets[chunkNumber + 1]) - start;
-
-			if (numberOfBytes < 0)
-			{
-				throw new IllegalArgumentException();
-			}
-
-			InputStream file = new BufferedInputStream(new FileInputStream(this.indexFile));
-
-			try
-			{
-				skip(file, start);
-
-				int numberOfNames = isLastChunk ? this.sizeOfLastChunk : CHUNK_SIZE;
-
-				chunk = new String[numberOfNames];
-				readChunk(chunk, file, 0, numberOfNames);
-			}
-			catch (IOException ioe)
-			{
-				throw ioe;
-			}
-			finally
-			{
-				file.close();
-			}
-
-			this.cachedChunks[chunkNumber] = chunk;
-		}
-
-		return chunk[docNumber - (chunkNumber * CHUNK_SIZE)];
-	}
-
-	/**
-	 * readDocumentNumbers
-	 * 
-	 * @param arrayOffset
-	 * @return
-	 * @throws IOException
-	 */
-	private @SuppressWarnings("unchecked")
-	synchronized List<Integer> readDocumentNumbers(Object arrayOffset) throws IOException
-	{
-		// arrayOffset is either a cached array of docNumbers or an Integer offset in the file
-		if (arrayOffset instanceof List<?>)
-		{
-			return (List<Integer>) arrayOffset;
-		}
-
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
-
-		try
-		{
-			int offset = ((Integer) arrayOffset).intValue();
-
-			skip(stream, offset);
-
-			return readStreamDocumentArray(stream, readStreamInt(stream));
-		}
-		finally
-		{
-			stream.close();
-		}
-	}
-
 	/**
 	 * readHeaderInfo
 	 * 
-	 * @param stream
+	 * @param reader
+	 * @param hasRemovedDocuments
 	 * @throws IOException
 	 */
-	private void readHeaderInfo(InputStream stream) throws IOException
+	private void readHeaderInfo(IndexBufferReader reader, boolean hasRemovedDocuments) throws IOException
 	{
 		// must be same order as writeHeaderInfo()
-		this.numberOfChunks = readStreamInt(stream);
+		this.numberOfChunks = reader.readInt();
 		if (this.numberOfChunks < 0)
 		{
 			throw new IOException(MessageFormat.format("Corrupt index file, reported {0} chunks", numberOfChunks)); //$NON-NLS-1$
 		}
-		this.sizeOfLastChunk = read(stream) & 0xFF;
-		this.documentReferenceSize = read(stream) & 0xFF;
-		this.separator = (char) (read(stream) & 0xFF);
+		this.sizeOfLastChunk = reader.readUnsignedByte();
+		this.separator = (char) reader.readUnsignedByte();
 
 		this.chunkOffsets = new int[this.numberOfChunks];
 		for (int i = 0; i < this.numberOfChunks; i++)
 		{
-			this.chunkOffsets[i] = readStreamInt(stream);
+			this.chunkOffsets[i] = reader.readInt();
 		}
 
-		this.startOfCategoryTables = readStreamInt(stream);
+		this.startOfCategoryTables = reader.readInt();
 
 		// Build the table of categories to offsets where they start
-		int categoryCount = readStreamInt(stream);
+		int categoryCount = reader.readInt();
+		if (categoryCount < 0)
+		{
+			throw new IOException(MessageFormat.format("Corrupt index file, reported {0} categories", categoryCount)); //$NON-NLS-1$
+		}
 		this.categoryOffsets = new HashMap<String, Integer>(categoryCount);
 		for (int i = 0; i < categoryCount; i++)
 		{
-			String categoryName = readString(stream);
-			int offset = readStreamInt(stream);
+			String categoryName = reader.readString();
+			int offset = reader.readInt();
 			this.categoryOffsets.put(categoryName, offset); // cache offset to category table
 		}
 
-		this.categoryTables = new HashMap<String, Map<String, Object>>(3);
-	}
-
-	/**
-	 * readStreamDocumentArray
-	 * 
-	 * @param stream
-	 * @param arraySize
-	 * @return
-	 * @throws IOException
-	 */
-	private List<Integer> readStreamDocumentArray(InputStream stream, int arraySize) throws IOException
-	{
-		if (arraySize == 0)
-		{
-			return Collections.emptyList();
-		}
-
-		List<Integer> indexes = new ArrayList<Integer>();
-
-		for (int i = 0; i < arraySize; i++)
+		if (hasRemovedDocuments)
 		{
-			int value = 0;
-
-			switch (this.documentReferenceSize)
+			int removedCount = reader.readInt();
+			if (removedCount < 0)
 			{
-				case 1:
-					value = read(stream) & 0xFF;
-					break;
-
-				case 2:
-					value = (read(stream) & 0xFF) << 8;
-					value = value + (read(stream) & 0xFF);
-					break;
-
-				default:
-					value = readStreamInt(stream);
-					break;
+				throw new IOException(MessageFormat.format(
+						"Corrupt index file, reported {0} removed documents", removedCount)); //$NON-NLS-1$
 			}
-
-			indexes.add(value);
-		}
-
-		return indexes;
-	}
-
-	/**
-	 * readStreamInt
-	 * 
-	 * @param stream
-	 * @return
-	 * @throws IOException
-	 */
-	private int readStreamInt(InputStream stream) throws IOException
-	{
-		int val = (read(stream) & 0xFF) << 24;
-
-		val += (read(stream) & 0xFF) << 16;
-		val += (read(stream) & 0xFF) << 8;
-
-		return val + (read(stream) & 0xFF);
-	}
-
-	/**
-	 * readString
-	 * 
-	 * @param stream
-	 * @return
-	 * @throws IOException
-	 */
-	private String readString(InputStream stream) throws IOException
-	{
-		int length = (read(stream) & 0xFF) << 8;
-		length += read(stream) & 0xFF;
-
-		// fill the chars from bytes buffer
-		char[] word = new char[length];
-		int i = 0;
-
-		while (i < length)
-		{
-			byte b = (byte) read(stream);
-
-			switch (b & 0xF0)
+			if (removedCount > 0)
 			{
-				case 0x00:
-				case 0x10:
-				case 0x20:
-				case 0x30:
-				case 0x40:
-				case 0x50:
-				case 0x60:
-				case 0x70:
-					word[i++] = (char) b;
-					break;
-
-				case 0xC0:
-				case 0xD0:
-					char next = (char) read(stream);
-
-					if ((next & 0xC0) != 0x80)
-					{
-						throw new UTFDataFormatException();
-					}
-
-					char ch = (char) ((b & 0x1F) << 6);
-
-					ch |= next & 0x3F;
-					word[i++] = ch;
-					break;
-
-				case 0xE0:
-					char first = (char) read(stream);
-					char second = (char) read(stream);
-
-					if ((first & second & 0xC0) != 0x80)
-					{
-						throw new UTFDataFormatException();
-					}
-
-					ch = (char) ((b & 0x0F) << 12);
-					ch |= ((first & 0x3F) << 6);
-					ch |= second & 0x3F;
-					word[i++] = ch;
-					break;
-
-				default:
-					throw new UTFDataFormatException(
-							MessageFormat
-									.format("Unexpected byte value ''{0}'' at index {1}, reading string of length {2}. Read so far: ''{3}''. Possibly corrupt index file: ''{4}''", //$NON-NLS-1$
-											b, i, length, new String(word), indexFile.getAbsolutePath()));
+				this.removedDocuments = new HashSet<String>(removedCount);
+				for (int i = 0; i < removedCount; i++)
+				{
+					this.removedDocuments.add(reader.readString());
+				}
 			}
 		}
 
-		return new String(word);
+		this.cachedChunks = new AtomicReferenceArray<String[]>(this.numberOfChunks);
+		this.categoryTableCache = new ConcurrentHashMap<String, CategoryTable>(categoryCount);
 	}
 
 	/**
@@ -1538,45 +1400,6 @@ public class DiskIndex
 		return newIndex;
 	}
 
-	/**
-	 * skip
-	 * 
-	 * @param stream
-	 * @param n
-	 * @return
-	 * @throws IOException
-	 */
-	private long skip(InputStream stream, long n) throws IOException
-	{
-		final long wantToSkip = n;
-		long actuallySkipped = 0;
-
-		while (n > 0)
-		{
-			long skipped = stream.skip(n);
-
-			actuallySkipped += skipped;
-			n = n - skipped;
-
-			if (actuallySkipped == wantToSkip)
-			{
-				return actuallySkipped;
-			}
-
-			int read = stream.read();
-
-			if (read == -1)
-			{
-				return actuallySkipped;
-			}
-
-			n--;
-			actuallySkipped++;
-		}
-
-		return actuallySkipped;
-	}
-
 	/**
 	 * writeCategories
 	 * 
@@ -1585,7 +1408,7 @@ public class DiskIndex
 	 */
 	private void writeCategories(OutputStream stream) throws IOException
 	{
-		for (Map.Entry<String, Map<String, Object>> entry : categoryTables.entrySet())
+		for (Map.Entry<String, Map<String, List<Integer>>> entry : categoryTables.entrySet())
 		{
 			String categoryName = entry.getKey();
 
@@ -1606,8 +1429,7 @@ public class DiskIndex
 	 * @param stream
 	 * @throws IOException
 	 */
-	@SuppressWarnings("unchecked")
-	private void writeCategoryTable(String categoryName, Map<String, Object> wordsToDocs, OutputStream stream)
+	private void writeCategoryTable(String categoryName, Map<String, List<Integer>> wordsToDocs, OutputStream stream)
 			throws IOException
 	{
 		if (this.categoriesToDiscard != null)
@@ -1622,59 +1444,24 @@ public class DiskIndex
 		}
 
 		// the format of a category table is as follows:
-		// any document number arrays with >= 256 elements are written before the table (the offset to each array is
-		// remembered)
-		// then the number of word->int[] pairs in the table is written
-		// for each word -> int[] pair, the word is written followed by:
-		// an int <= 0 if the array size == 1
-		// an int > 1 & < 256 for the size of the array if its > 1 & < 256, the document array follows immediately
-		// 256 if the array size >= 256 followed by another int which is the offset to the array (written prior to the
-		// table)
-
-		Map<String, Integer> longArrays = new HashMap<String, Integer>();
-		int largeArraySize = 256;
+		// each word is written followed by its document number array (the offsets of both are remembered)
+		// then the number of entries in the table is written, followed by a word offset & document array offset pair
+		// for each entry. The fixed size pairs let readers jump straight to any entry, and since entries are sorted by
+		// word readers can binary search them.
+		String[] words = wordsToDocs.keySet().toArray(new String[wordsToDocs.size()]);
+		Arrays.sort(words);
+
+		int[] wordOffsets = new int[words.length];
+		int[] documentOffsets = new int[words.length];
+		int count = 0;
 
-		for (Map.Entry<String, Object> entry : wordsToDocs.entrySet())
+		for (String word : words)
 		{
-			List<Integer> docNumbers = (List<Integer>) entry.getValue();
+			int wordOffset = this.streamEnd;
 
-			if (docNumbers.size() >= largeArraySize)
-			{
-				longArrays.put(entry.getKey(), new Integer(this.streamEnd));
-				writeDocumentNumbers(docNumbers, stream);
-			}
-		}
-
-		this.categoryOffsets.put(categoryName, this.streamEnd); // remember the offset to the start of the table
-		this.categoryTables.put(categoryName, null); // flush cached table
-		writeStreamInt(stream, wordsToDocs.size());
-
-		for (Map.Entry<String, Object> entry : wordsToDocs.entrySet())
-		{
 			try
 			{
-				writeString(stream, entry.getKey());
-
-				if (longArrays.containsKey(entry.getKey()))
-				{
-					writeStreamInt(stream, largeArraySize); // mark to identify that an offset follows
-					writeStreamInt(stream, longArrays.get(entry.getKey()).intValue()); // offset in the file of the
-																						// array of
-					// document numbers
-				}
-				else
-				{
-					List<Integer> documentNumbers = (List<Integer>) entry.getValue();
-
-					if (documentNumbers.size() == 1)
-					{
-						writeStreamInt(stream, -documentNumbers.get(0));
-					}
-					else
-					{
-						writeDocumentNumbers(documentNumbers, stream);
-					}
-				}
+				writeString(stream, word);
 			}
 			catch (IOException ioe)
 			{
@@ -1682,7 +1469,22 @@ public class DiskIndex
 				IdeLog.logError(IndexPlugin.getDefault(), ioe);
 				// To limit the damage, we're going to effectively skip writing one entry into the index. This will
 				// break our knowledge of some property/type in JS but will allow indexing to continue.
+				continue;
 			}
+
+			wordOffsets[count] = wordOffset;
+			documentOffsets[count] = this.streamEnd;
+			writeDocumentNumbers(wordsToDocs.get(word), stream);
+			count++;
+		}
+
+		this.categoryOffsets.put(categoryName, this.streamEnd); // remember the offset to the start of the table
+		writeStreamInt(stream, count);
+
+		for (int i = 0; i < count; i++)
+		{
+			writeStreamInt(stream, wordOffsets[i]);
+			writeStreamInt(stream, documentOffsets[i]);
 		}
 	}
 
@@ -1709,9 +1511,6 @@ public class DiskIndex
 			this.sizeOfLastChunk = CHUNK_SIZE;
 		}
 
-		this.documentReferenceSize = size <= 0x7F ? 1 : (size <= 0x7FFF ? 2 : 4); // number of bytes used to encode a
-		// reference
-
 		this.chunkOffsets = new int[this.numberOfChunks];
 		int lastIndex = this.numberOfChunks - 1;
 
@@ -1794,36 +1593,22 @@ public class DiskIndex
 	 */
 	private void writeDocumentNumbers(List<Integer> documentNumbers, OutputStream stream) throws IOException
 	{
-		// must store length as a positive int to detect in-lined array of 1 element
+		// the length is followed by the sorted document numbers, each stored as the difference from the previous one.
+		// Most lists reference documents that are close together, so the deltas usually fit in a single byte
 		int length = documentNumbers.size();
 
-		writeStreamInt(stream, length);
+		writeVarInt(stream, length);
 		Collections.sort(documentNumbers);
 
+		int previous = 0;
+
 		for (Integer docNumber : documentNumbers)
 		{
 			int value = docNumber.intValue();
 
-			switch (this.documentReferenceSize)
-			{
-				case 1:
-					stream.write((byte) value);
-					this.streamEnd++;
-					break;
-
-				case 2:
-					stream.write((byte) (value >> 8));
-					stream.write((byte) value);
-					this.streamEnd += 2;
-					break;
-
-				default:
-					writeStreamInt(stream, value);
-					break;
-			}
+			writeVarInt(stream, value - previous);
+			previous = value;
 		}
-
-		stream.flush();
 	}
 
 	/**
@@ -1837,9 +1622,8 @@ public class DiskIndex
 		writeStreamInt(stream, this.numberOfChunks);
 
 		stream.write((byte) this.sizeOfLastChunk);
-		stream.write((byte) this.documentReferenceSize);
 		stream.write((byte) this.separator);
-		this.streamEnd += 3;
+		this.streamEnd += 2;
 
 		// apend the file with chunk offsets
 		for (int i = 0; i < this.numberOfChunks; i++)
@@ -1859,7 +1643,13 @@ public class DiskIndex
 			writeStreamInt(stream, entry.getValue());
 		}
 
-		stream.flush();
+		// append the documents this segment hides from older segments
+		writeStreamInt(stream, this.removedDocuments.size());
+
+		for (String removedDocument : this.removedDocuments)
+		{
+			writeString(stream, removedDocument);
+		}
 	}
 
 	/**
@@ -1901,7 +1691,6 @@ public class DiskIndex
 		stream.write((byte) (val >> 8));
 		stream.write((byte) val);
 		this.streamEnd += 4;
-		stream.flush();
 	}
 
 	/**
@@ -1972,7 +1761,26 @@ public class DiskIndex
 				streamEnd++;
 			}
 		}
+	}
+
+	/**
+	 * Write a non-negative int using seven bits per byte, least significant group first, setting the high bit on every
+	 * byte but the last
+	 * 
+	 * @param stream
+	 * @param val
+	 * @throws IOException
+	 */
+	private void writeVarInt(OutputStream stream, int val) throws IOException
+	{
+		while ((val & ~0x7F) != 0)
+		{
+			stream.write((byte) ((val & 0x7F) | 0x80));
+			this.streamEnd++;
+			val >>>= 7;
+		}
 
-		stream.flush();
+		stream.write((byte) val);
+		this.streamEnd++;
 	}
 }
@@ -0,0 +1,87 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.IOException;
+
+/**
+ * The indexes that are newer than the disk index segment being queried: the segments written after it, the memory
+ * index being merged to disk, the memory index receiving new changes and any changes an indexing thread hasn't applied
+ * yet. Any document one of them holds entries for or
+ * lists as removed replaces the entries the older segment holds for it.
+ */
+class DocumentOverrides
+{
+	private final DiskIndex[] segments;
+	private final int firstSegment;
+	private final MemoryIndex[] memoryIndexes;
+
+	/**
+	 * DocumentOverrides
+	 * 
+	 * @param segments
+	 *            may be null
+	 * @param firstSegment
+	 *            the index of the oldest segment that overrides the one being queried
+	 * @param memoryIndexes
+	 *            null entries are ignored
+	 */
+	DocumentOverrides(DiskIndex[] segments, int firstSegment, MemoryIndex... memoryIndexes)
+	{
+		this.segments = segments;
+		this.firstSegment = (segments == null) ? 0 : firstSegment;
+		this.memoryIndexes = memoryIndexes;
+	}
+
+	/**
+	 * Determine if the entries of a document have been replaced by one of the newer indexes
+	 * 
+	 * @param docName
+	 * @return
+	 * @throws IOException
+	 */
+	boolean contains(String docName) throws IOException
+	{
+		if (MemoryIndex.isOverridden(docName, memoryIndexes))
+		{
+			return true;
+		}
+
+		// check the newest segments first, they're the smallest
+		for (int i = (segments == null) ? -1 : segments.length - 1; i >= firstSegment; i--)
+		{
+			if (segments[i].containsDocument(docName))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Determine if there are no newer indexes, in which case every entry of the queried segment is current
+	 * 
+	 * @return
+	 */
+	boolean isEmpty()
+	{
+		if (memoryIndexes != null)
+		{
+			for (MemoryIndex memoryIndex : memoryIndexes)
+			{
+				if (memoryIndex != null)
+				{
+					return false;
+				}
+			}
+		}
+
+		return segments == null || firstSegment >= segments.length;
+	}
+}
@@ -0,0 +1,224 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.text.MessageFormat;
+
+/**
+ * A cursor over a (usually memory-mapped) index buffer. The underlying buffer is only ever accessed through absolute
+ * gets, so any number of readers may share the same buffer without locking as long as each one uses its own cursor.
+ */
+class IndexBufferReader
+{
+	private final ByteBuffer buffer;
+	private int position;
+
+	/**
+	 * IndexBufferReader
+	 * 
+	 * @param buffer
+	 * @param position
+	 */
+	IndexBufferReader(ByteBuffer buffer, int position)
+	{
+		this.buffer = buffer;
+		this.position = position;
+	}
+
+	/**
+	 * Returns the current offset of this cursor into the buffer
+	 * 
+	 * @return
+	 */
+	int position()
+	{
+		return position;
+	}
+
+	/**
+	 * Moves this cursor to the specified absolute offset
+	 * 
+	 * @param position
+	 */
+	void seek(int position)
+	{
+		this.position = position;
+	}
+
+	/**
+	 * Returns the number of bytes left between the cursor and the end of the buffer
+	 * 
+	 * @return
+	 */
+	int remaining()
+	{
+		return buffer.limit() - position;
+	}
+
+	/**
+	 * readUnsignedByte
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	int readUnsignedByte() throws IOException
+	{
+		try
+		{
+			return buffer.get(position++) & 0xFF;
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			throw corrupt(e);
+		}
+	}
+
+	/**
+	 * Reads a big-endian int, matching the format written by DiskIndex.writeStreamInt
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	int readInt() throws IOException
+	{
+		try
+		{
+			int value = buffer.getInt(position);
+			position += 4;
+			return value;
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			throw corrupt(e);
+		}
+	}
+
+	/**
+	 * Reads a variable-length int written by DiskIndex.writeVarInt: seven bits per byte, least significant group
+	 * first, with the high bit set on every byte except the last
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	int readVarInt() throws IOException
+	{
+		try
+		{
+			int value = 0;
+
+			for (int shift = 0; shift < 35; shift += 7)
+			{
+				byte b = buffer.get(position++);
+
+				value |= (b & 0x7F) << shift;
+
+				if (b >= 0)
+				{
+					return value;
+				}
+			}
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			throw corrupt(e);
+		}
+
+		throw new IOException("Malformed variable-length int at offset " + position); //$NON-NLS-1$
+	}
+
+	/**
+	 * Reads a string in the format written by DiskIndex.writeString: a two byte char count followed by the modified
+	 * UTF-8 bytes of each char
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	String readString() throws IOException
+	{
+		try
+		{
+			int length = (buffer.get(position++) & 0xFF) << 8;
+			length += buffer.get(position++) & 0xFF;
+
+			char[] word = new char[length];
+			int i = 0;
+
+			while (i < length)
+			{
+				byte b = buffer.get(position++);
+
+				switch (b & 0xF0)
+				{
+					case 0x00:
+					case 0x10:
+					case 0x20:
+					case 0x30:
+					case 0x40:
+					case 0x50:
+					case 0x60:
+					case 0x70:
+						word[i++] = (char) b;
+						break;
+
+					case 0xC0:
+					case 0xD0:
+						int next = buffer.get(position++);
+
+						if ((next & 0xC0) != 0x80)
+						{
+							throw new UTFDataFormatException();
+						}
+
+						word[i++] = (char) (((b & 0x1F) << 6) | (next & 0x3F));
+						break;
+
+					case 0xE0:
+						int first = buffer.get(position++);
+						int second = buffer.get(position++);
+
+						if ((first & second & 0xC0) != 0x80)
+						{
+							throw new UTFDataFormatException();
+						}
+
+						word[i++] = (char) (((b & 0x0F) << 12) | ((first & 0x3F) << 6) | (second & 0x3F));
+						break;
+
+					default:
+						throw new UTFDataFormatException(MessageFormat.format(
+								"Unexpected byte value ''{0}'' at index {1}, reading string of length {2}", b, i, //$NON-NLS-1$
+								length));
+				}
+			}
+
+			return new String(word);
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			throw corrupt(e);
+		}
+	}
+
+	/**
+	 * Reading past the end of the buffer means the file was truncated or the offsets we were given are bad. Surface that
+	 * as an IOException so callers treat it like any other corrupt index and rebuild.
+	 * 
+	 * @param e
+	 * @return
+	 */
+	private IOException corrupt(IndexOutOfBoundsException e)
+	{
+		IOException ioe = new IOException(MessageFormat.format(
+				"Attempted to read past the end of the index buffer at offset {0}, limit {1}", position, buffer.limit())); //$NON-NLS-1$
+		ioe.initCause(e);
+		return ioe;
+	}
+}
@@ -0,0 +1,240 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.text.MessageFormat;
+
+/**
+ * Reads an index file written in the original "INDEX VERSION 0.1" stream format and replays its contents into a
+ * {@link MemoryIndex}, so that the entries can be merged into an index file in the current format instead of forcing a
+ * full re-index of the container.
+ */
+class LegacyDiskIndexReader
+{
+	static final String SIGNATURE = "INDEX VERSION 0.1"; //$NON-NLS-1$
+
+	private static final int CHUNK_SIZE = 100;
+	private static final int LARGE_ARRAY_SIZE = 256;
+
+	private final ByteBuffer buffer;
+	private int documentReferenceSize;
+
+	/**
+	 * LegacyDiskIndexReader
+	 * 
+	 * @param buffer
+	 */
+	LegacyDiskIndexReader(ByteBuffer buffer)
+	{
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Read every document and category entry of the legacy file into a new memory index
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	MemoryIndex read() throws IOException
+	{
+		MemoryIndex memoryIndex = new MemoryIndex();
+		IndexBufferReader reader = new IndexBufferReader(buffer, 0);
+
+		if (!SIGNATURE.equals(reader.readString()))
+		{
+			throw new IOException(Messages.DiskIndex_Wrong_Format);
+		}
+
+		// empty legacy files only wrote a single byte in place of the header offset
+		if (reader.remaining() < 4)
+		{
+			return memoryIndex;
+		}
+
+		int headerInfoOffset = reader.readInt();
+
+		if (headerInfoOffset <= 0)
+		{
+			return memoryIndex;
+		}
+
+		// must be same order as the old writeHeaderInfo()
+		reader.seek(headerInfoOffset);
+
+		int numberOfChunks = reader.readInt();
+
+		if (numberOfChunks < 0)
+		{
+			throw new IOException(MessageFormat.format("Corrupt index file, reported {0} chunks", numberOfChunks)); //$NON-NLS-1$
+		}
+
+		int sizeOfLastChunk = reader.readUnsignedByte();
+		this.documentReferenceSize = reader.readUnsignedByte();
+		reader.readUnsignedByte(); // separator
+
+		int[] chunkOffsets = new int[numberOfChunks];
+
+		for (int i = 0; i < numberOfChunks; i++)
+		{
+			chunkOffsets[i] = reader.readInt();
+		}
+
+		reader.readInt(); // start of category tables
+
+		int categoryCount = reader.readInt();
+
+		if (categoryCount < 0)
+		{
+			throw new IOException(MessageFormat.format("Corrupt index file, reported {0} categories", categoryCount)); //$NON-NLS-1$
+		}
+
+		String[] categoryNames = new String[categoryCount];
+		int[] categoryOffsets = new int[categoryCount];
+
+		for (int i = 0; i < categoryCount; i++)
+		{
+			categoryNames[i] = reader.readString();
+			categoryOffsets[i] = reader.readInt();
+		}
+
+		// chunks are written back to back, so read all document names in one pass
+		String[] documentNames = new String[0];
+
+		if (numberOfChunks > 0)
+		{
+			int lastIndex = numberOfChunks - 1;
+
+			documentNames = new String[lastIndex * CHUNK_SIZE + sizeOfLastChunk];
+			reader.seek(chunkOffsets[0]);
+
+			for (int i = 0; i < numberOfChunks; i++)
+			{
+				DiskIndex.readChunk(reader, documentNames, i * CHUNK_SIZE, i < lastIndex ? CHUNK_SIZE
+						: sizeOfLastChunk);
+			}
+		}
+
+		for (int i = 0; i < categoryCount; i++)
+		{
+			readCategoryTable(reader, categoryNames[i], categoryOffsets[i], documentNames, memoryIndex);
+		}
+
+		return memoryIndex;
+	}
+
+	/**
+	 * readCategoryTable
+	 * 
+	 * @param reader
+	 * @param categoryName
+	 * @param offset
+	 * @param documentNames
+	 * @param memoryIndex
+	 * @throws IOException
+	 */
+	private void readCategoryTable(IndexBufferReader reader, String categoryName, int offset,
+			String[] documentNames, MemoryIndex memoryIndex) throws IOException
+	{
+		reader.seek(offset);
+
+		int size = reader.readInt();
+
+		if (size < 0)
+		{
+			throw new IOException(MessageFormat.format("Size of category ''{0}'' negative: {1}", categoryName, size)); //$NON-NLS-1$
+		}
+
+		for (int i = 0; i < size; i++)
+		{
+			String word = reader.readString();
+			int arrayOffset = reader.readInt();
+
+			// if arrayOffset is:
+			// <= 0 then the array size == 1 with the value -> -arrayOffset
+			// > 1 & < 256 then the size of the array is > 1 & < 256, the document array follows immediately
+			// 256 if the array size >= 256 followed by another int which is the offset to the array (written prior
+			// to the table)
+			if (arrayOffset <= 0)
+			{
+				addEntry(memoryIndex, categoryName, word, documentNames, -arrayOffset);
+			}
+			else if (arrayOffset < LARGE_ARRAY_SIZE)
+			{
+				readDocumentArray(reader, arrayOffset, categoryName, word, documentNames, memoryIndex);
+			}
+			else
+			{
+				IndexBufferReader arrayReader = new IndexBufferReader(buffer, reader.readInt());
+
+				readDocumentArray(arrayReader, arrayReader.readInt(), categoryName, word, documentNames, memoryIndex);
+			}
+		}
+	}
+
+	/**
+	 * readDocumentArray
+	 * 
+	 * @param reader
+	 * @param arraySize
+	 * @param categoryName
+	 * @param word
+	 * @param documentNames
+	 * @param memoryIndex
+	 * @throws IOException
+	 */
+	private void readDocumentArray(IndexBufferReader reader, int arraySize, String categoryName, String word,
+			String[] documentNames, MemoryIndex memoryIndex) throws IOException
+	{
+		for (int i = 0; i < arraySize; i++)
+		{
+			int value;
+
+			switch (this.documentReferenceSize)
+			{
+				case 1:
+					value = reader.readUnsignedByte();
+					break;
+
+				case 2:
+					value = (reader.readUnsignedByte() << 8) + reader.readUnsignedByte();
+					break;
+
+				default:
+					value = reader.readInt();
+					break;
+			}
+
+			addEntry(memoryIndex, categoryName, word, documentNames, value);
+		}
+	}
+
+	/**
+	 * addEntry
+	 * 
+	 * @param memoryIndex
+	 * @param categoryName
+	 * @param word
+	 * @param documentNames
+	 * @param documentNumber
+	 * @throws IOException
+	 */
+	private void addEntry(MemoryIndex memoryIndex, String categoryName, String word, String[] documentNames,
+			int documentNumber) throws IOException
+	{
+		if (documentNumber < 0 || documentNumber >= documentNames.length)
+		{
+			throw new IOException(MessageFormat.format(
+					"Corrupt index file, category ''{0}'' references unknown document {1}", categoryName, //$NON-NLS-1$
+					documentNumber));
+		}
+
+		memoryIndex.addEntry(categoryName, word, documentNames[documentNumber]);
+	}
+}
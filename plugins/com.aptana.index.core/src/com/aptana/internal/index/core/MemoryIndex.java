@@ -14,6 +14,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import com.aptana.index.core.Index;
 import com.aptana.index.core.QueryResult;
@@ -24,12 +26,17 @@ public class MemoryIndex
 	private static final int MERGE_THRESHOLD = 100;
 	private HashMap<String, Map<String, Set<String>>> documentsToTable;
 
+	// Inverse of documentsToTable: category -> words (sorted) -> documents. Lets queries binary search a category's
+	// words instead of walking every document
+	private HashMap<String, TreeMap<String, Set<String>>> categoryTables;
+
 	/**
 	 * MemoryIndex
 	 */
 	public MemoryIndex()
 	{
 		documentsToTable = new HashMap<String, Map<String, Set<String>>>();
+		categoryTables = new HashMap<String, TreeMap<String, Set<String>>>();
 	}
 
 	/**
@@ -39,29 +46,79 @@ public class MemoryIndex
 	 * @return
 	 */
 	public Set<String> addDocumentNames(String substring)
+	{
+		return addDocumentNames(substring, (MemoryIndex) null);
+	}
+
+	/**
+	 * Returns the names of the new/changed documents in this index that start with the specified substring, skipping
+	 * documents which have been added/changed/deleted in any of the newer memory indexes
+	 * 
+	 * @param substring
+	 * @param newerIndexes
+	 *            null entries are ignored
+	 * @return
+	 */
+	public Set<String> addDocumentNames(String substring, MemoryIndex... newerIndexes)
 	{
 		// assumed the disk index already skipped over documents which have been added/changed/deleted
 		Set<String> results = new HashSet<String>();
 
 		for (Map.Entry<String, Map<String, Set<String>>> entry : documentsToTable.entrySet())
 		{
-			if (substring == null)
-			{ // add all new/changed documents
-				if (entry.getValue() != null)
-				{
-					results.add(entry.getKey());
-				}
+			String documentName = entry.getKey();
+
+			if (entry.getValue() != null && (substring == null || documentName.startsWith(substring, 0))
+					&& !isOverridden(documentName, newerIndexes))
+			{
+				results.add(documentName);
 			}
-			else
+		}
+
+		return results;
+	}
+
+	/**
+	 * Copy the document entries of another memory index into this one, replacing any entries this index holds for the
+	 * same documents. Removed documents stay marked as removed.
+	 * 
+	 * @param other
+	 */
+	public void addAll(MemoryIndex other)
+	{
+		for (Map.Entry<String, Map<String, Set<String>>> entry : other.documentsToTable.entrySet())
+		{
+			String documentName = entry.getKey();
+			Map<String, Set<String>> categoriesToWords = entry.getValue();
+
+			remove(documentName);
+
+			if (categoriesToWords != null)
 			{
-				if (entry.getValue() != null && (entry.getKey()).startsWith(substring, 0))
+				documentsToTable.put(documentName, new HashMap<String, Set<String>>());
+
+				for (Map.Entry<String, Set<String>> category : categoriesToWords.entrySet())
 				{
-					results.add(entry.getKey());
+					for (String word : category.getValue())
+					{
+						addEntry(category.getKey(), word, documentName);
+					}
 				}
 			}
 		}
+	}
 
-		return results;
+	/**
+	 * Record the specified document as indexed, even if no entries are added for it
+	 * 
+	 * @param documentName
+	 */
+	void addDocument(String documentName)
+	{
+		if (documentsToTable.get(documentName) == null)
+		{
+			documentsToTable.put(documentName, new HashMap<String, Set<String>>());
+		}
 	}
 
 	/**
@@ -89,7 +146,127 @@ public class MemoryIndex
 			categoriesToWords.put(category, words);
 		}
 
-		words.add(key);
+		if (words.add(key) && key != null)
+		{
+			TreeMap<String, Set<String>> wordsToDocuments = this.categoryTables.get(category);
+
+			if (wordsToDocuments == null)
+			{
+				wordsToDocuments = new TreeMap<String, Set<String>>();
+				this.categoryTables.put(category, wordsToDocuments);
+			}
+
+			Set<String> documents = wordsToDocuments.get(key);
+
+			if (documents == null)
+			{
+				documents = new HashSet<String>();
+				wordsToDocuments.put(key, documents);
+			}
+
+			documents.add(filePath);
+		}
+	}
+
+	/**
+	 * Add a set of entries for one document. Unlike calling {@link #addEntry(String, String, String)} for each entry,
+	 * the document and category tables are only looked up once per category and new sets are sized for their entries.
+	 * 
+	 * @param documentName
+	 * @param entries
+	 *            the keys to add, by category
+	 */
+	public void addEntries(String documentName, Map<String, Set<String>> entries)
+	{
+		Map<String, Set<String>> categoriesToWords = documentsToTable.get(documentName);
+
+		if (categoriesToWords == null)
+		{
+			categoriesToWords = new HashMap<String, Set<String>>(getCapacity(entries.size()));
+			documentsToTable.put(documentName, categoriesToWords);
+		}
+
+		for (Map.Entry<String, Set<String>> entry : entries.entrySet())
+		{
+			String category = entry.getKey();
+			Set<String> keys = entry.getValue();
+			Set<String> words = categoriesToWords.get(category);
+
+			if (words == null)
+			{
+				words = new HashSet<String>(getCapacity(keys.size()));
+				categoriesToWords.put(category, words);
+			}
+
+			TreeMap<String, Set<String>> wordsToDocuments = null;
+
+			for (String key : keys)
+			{
+				if (words.add(key) && key != null)
+				{
+					if (wordsToDocuments == null)
+					{
+						wordsToDocuments = this.categoryTables.get(category);
+
+						if (wordsToDocuments == null)
+						{
+							wordsToDocuments = new TreeMap<String, Set<String>>();
+							this.categoryTables.put(category, wordsToDocuments);
+						}
+					}
+
+					Set<String> documents = wordsToDocuments.get(key);
+
+					if (documents == null)
+					{
+						documents = new HashSet<String>();
+						wordsToDocuments.put(key, documents);
+					}
+
+					documents.add(documentName);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the initial capacity a hash based collection needs to hold the specified number of elements without
+	 * rehashing
+	 * 
+	 * @param size
+	 * @return
+	 */
+	private static int getCapacity(int size)
+	{
+		return Math.max(size * 4 / 3 + 1, 16);
+	}
+
+	/**
+	 * addQueryResult
+	 * 
+	 * @param results
+	 * @param word
+	 * @param documents
+	 * @param newerIndexes
+	 */
+	private void addQueryResult(Map<String, QueryResult> results, String word, Set<String> documents,
+			MemoryIndex[] newerIndexes)
+	{
+		QueryResult result = results.get(word);
+
+		for (String document : documents)
+		{
+			if (!isOverridden(document, newerIndexes))
+			{
+				if (result == null)
+				{
+					result = new QueryResult(word);
+					results.put(word, result);
+				}
+
+				result.addDocumentName(document);
+			}
+		}
 	}
 
 	/**
@@ -103,70 +280,95 @@ public class MemoryIndex
 	 */
 	public Map<String, QueryResult> addQueryResults(String[] categories, String key, int matchRules,
 			Map<String, QueryResult> results)
+	{
+		return addQueryResults(categories, key, matchRules, results, (MemoryIndex) null);
+	}
+
+	/**
+	 * Add the results of a query against this index, skipping documents which have been added/changed/deleted in any
+	 * of the newer memory indexes
+	 * 
+	 * @param categories
+	 * @param key
+	 * @param matchRules
+	 * @param results
+	 * @param newerIndexes
+	 *            null entries are ignored
+	 * @return
+	 */
+	public Map<String, QueryResult> addQueryResults(String[] categories, String key, int matchRules,
+			Map<String, QueryResult> results, MemoryIndex... newerIndexes)
 	{
 		if (results == null)
 		{
 			results = new HashMap<String, QueryResult>();
 		}
 
-		for (Map.Entry<String, Map<String, Set<String>>> entry : documentsToTable.entrySet())
+		for (String category : categories)
 		{
-			Map<String, Set<String>> categoriesToWords = entry.getValue();
+			TreeMap<String, Set<String>> wordsToDocuments = this.categoryTables.get(category);
 
-			if (categoriesToWords == null)
+			if (wordsToDocuments == null)
 			{
 				continue;
 			}
 
-			for (String category : categories)
+			switch (matchRules)
 			{
-				Set<String> words = categoriesToWords.get(category);
-				if (words == null)
-				{
-					continue;
-				}
+				case SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE:
+					// When we're looking for exact matches, case sensitive, just ask the map if it contains key!
+					Set<String> documents = (key == null) ? null : wordsToDocuments.get(key);
 
-				// When we're looking for exact matches, case sensitive, just ask wordset if it contains key!
-				if (matchRules == (SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE))
-				{
-					if (words.contains(key))
+					if (documents != null)
 					{
-						QueryResult result = results.get(key);
+						addQueryResult(results, key, documents, newerIndexes);
+					}
+					break;
+
+				case SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE:
+					// words starting with key are a contiguous range beginning at key
+					SortedMap<String, Set<String>> tail = (key == null) ? wordsToDocuments : wordsToDocuments
+							.tailMap(key);
 
-						if (result == null)
+					for (Map.Entry<String, Set<String>> entry : tail.entrySet())
+					{
+						if (key != null && !entry.getKey().startsWith(key))
 						{
-							result = new QueryResult(key);
+							break;
 						}
 
-						result.addDocumentName(entry.getKey());
-						results.put(key, result);
+						addQueryResult(results, entry.getKey(), entry.getValue(), newerIndexes);
 					}
-				}
-				else
-				{
+					break;
+
+				default:
 					// Otherwise we need to check each word individually
-					for (String word : words)
+					for (Map.Entry<String, Set<String>> entry : wordsToDocuments.entrySet())
 					{
-						if (Index.isMatch(key, word, matchRules))
+						if (Index.isMatch(key, entry.getKey(), matchRules))
 						{
-							QueryResult result = results.get(word);
-
-							if (result == null)
-							{
-								result = new QueryResult(word);
-							}
-
-							result.addDocumentName(entry.getKey());
-							results.put(word, result);
+							addQueryResult(results, entry.getKey(), entry.getValue(), newerIndexes);
 						}
 					}
-				}
+					break;
 			}
 		}
 
 		return results;
 	}
 
+	/**
+	 * Determine if this index holds new entries for the specified document or has marked it as removed. In either case
+	 * the entries of older indexes for the document should be ignored
+	 * 
+	 * @param documentName
+	 * @return
+	 */
+	public boolean containsDocument(String documentName)
+	{
+		return documentsToTable.containsKey(documentName);
+	}
+
 	/**
 	 * getCategories
 	 * 
@@ -229,6 +431,30 @@ public class MemoryIndex
 		return documentsToTable.get(documentName) != null;
 	}
 
+	/**
+	 * Determine if any of the specified indexes holds entries for the document or has marked it as removed
+	 * 
+	 * @param documentName
+	 * @param indexes
+	 *            null entries are ignored
+	 * @return
+	 */
+	static boolean isOverridden(String documentName, MemoryIndex[] indexes)
+	{
+		if (indexes != null)
+		{
+			for (MemoryIndex index : indexes)
+			{
+				if (index != null && index.containsDocument(documentName))
+				{
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
 	/**
 	 * numberOfChanges
 	 * 
@@ -246,7 +472,35 @@ public class MemoryIndex
 	 */
 	public void remove(String documentName)
 	{
-		this.documentsToTable.put(documentName, null);
+		Map<String, Set<String>> categoriesToWords = this.documentsToTable.put(documentName, null);
+
+		if (categoriesToWords != null)
+		{
+			for (Map.Entry<String, Set<String>> entry : categoriesToWords.entrySet())
+			{
+				TreeMap<String, Set<String>> wordsToDocuments = this.categoryTables.get(entry.getKey());
+
+				if (wordsToDocuments == null)
+				{
+					continue;
+				}
+
+				for (String word : entry.getValue())
+				{
+					Set<String> documents = wordsToDocuments.get(word);
+
+					if (documents != null && documents.remove(documentName) && documents.isEmpty())
+					{
+						wordsToDocuments.remove(word);
+					}
+				}
+
+				if (wordsToDocuments.isEmpty())
+				{
+					this.categoryTables.remove(entry.getKey());
+				}
+			}
+		}
 	}
 
 	/**
@@ -266,6 +520,11 @@ public class MemoryIndex
 				}
 			}
 		}
+
+		for (String category : categoryNames)
+		{
+			this.categoryTables.remove(category);
+		}
 	}
 
 	/**
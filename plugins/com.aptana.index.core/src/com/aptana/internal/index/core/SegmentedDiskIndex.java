@@ -0,0 +1,520 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.aptana.index.core.QueryResult;
+
+/**
+ * The on-disk part of an index, stored as a stack of {@link DiskIndex} segment files. The base segment lives at the
+ * index file path, newer segments are written next to it with a generation number appended to the name
+ * ("&lt;index&gt;.1", "&lt;index&gt;.2", ...). Saving a memory index appends a new small segment instead of rewriting
+ * everything, queries fan out across all segments, and the entries a segment holds for a document replace the ones
+ * older segments hold for it. Segments list the documents removed since older segments were written so those entries
+ * stay hidden.
+ * <p>
+ * Segments pile up as the index is saved, so runs of segments of a similar size get merged into one by
+ * {@link #getCompaction()}, keeping the number of segments logarithmic in the size of the index.
+ * <p>
+ * Like a DiskIndex, a SegmentedDiskIndex never changes once created; appending and compacting return new instances.
+ */
+public class SegmentedDiskIndex
+{
+	/**
+	 * A run of this many segments in the same size tier gets merged into one segment
+	 */
+	private static final int MERGE_FACTOR = 4;
+
+	/**
+	 * Segments smaller than this (in bytes) are all in the lowest size tier
+	 */
+	private static final long MIN_TIER_SIZE = 64 * 1024;
+
+	/**
+	 * Once there are more segments than this, all segments on top of the base get merged regardless of their size
+	 */
+	private static final int MAX_SEGMENTS = 16;
+
+	/**
+	 * Merges a run of consecutive segments into one. The merged segment is written in place of the oldest segment of
+	 * the run, so it keeps its position in the stack.
+	 */
+	public static class Compaction
+	{
+		private final DiskIndex[] run;
+		private final boolean includesBase;
+		private DiskIndex merged;
+
+		private Compaction(DiskIndex[] run, boolean includesBase)
+		{
+			this.run = run;
+			this.includesBase = includesBase;
+		}
+
+		/**
+		 * Write the merged segment. This doesn't touch any segment readers may be using, so it doesn't need to hold any
+		 * lock.
+		 * 
+		 * @throws IOException
+		 */
+		public void run() throws IOException
+		{
+			MemoryIndex newer = new MemoryIndex();
+
+			for (int i = 1; i < run.length; i++)
+			{
+				run[i].addTo(newer);
+			}
+
+			// nothing is older than the base, so there is nothing left for removed documents to hide
+			this.merged = run[0].mergeWith(newer, !includesBase);
+		}
+
+		/**
+		 * Replace the run with the merged segment in the specified index, which must still contain the run
+		 * 
+		 * @param current
+		 * @return
+		 */
+		public SegmentedDiskIndex apply(SegmentedDiskIndex current)
+		{
+			DiskIndex[] segments = current.segments;
+			int start = 0;
+
+			while (start < segments.length && segments[start] != run[0])
+			{
+				start++;
+			}
+
+			if (start + run.length > segments.length)
+			{
+				throw new IllegalStateException("Compacted segments are no longer part of the index"); //$NON-NLS-1$
+			}
+
+			DiskIndex[] result = new DiskIndex[segments.length - run.length + 1];
+
+			System.arraycopy(segments, 0, result, 0, start);
+			result[start] = merged;
+			System.arraycopy(segments, start + run.length, result, start + 1, segments.length - start - run.length);
+
+			return new SegmentedDiskIndex(current.baseFile, result, current.nextGeneration, current.minTierSize);
+		}
+
+		/**
+		 * Delete the files of the segments that were merged. Call this once readers no longer use them.
+		 */
+		public void deleteMergedSegments()
+		{
+			// delete the oldest first: if we stop half way, the segments left over are the newest ones of the run, and
+			// their entries still replace the older ones in the merged segment correctly
+			for (int i = 1; i < run.length; i++)
+			{
+				run[i].indexFile.delete();
+			}
+		}
+	}
+
+	private final File baseFile;
+	private final DiskIndex[] segments;
+	private final AtomicInteger nextGeneration;
+	private final long minTierSize;
+
+	/**
+	 * SegmentedDiskIndex
+	 * 
+	 * @param baseFile
+	 * @param segments
+	 *            oldest first, the first one is the base segment
+	 * @param nextGeneration
+	 *            shared by all instances derived from the same index, so generation numbers are never reused
+	 * @param minTierSize
+	 */
+	private SegmentedDiskIndex(File baseFile, DiskIndex[] segments, AtomicInteger nextGeneration, long minTierSize)
+	{
+		this.baseFile = baseFile;
+		this.segments = segments;
+		this.nextGeneration = nextGeneration;
+		this.minTierSize = minTierSize;
+	}
+
+	/**
+	 * Open the segments of the index stored at the specified path
+	 * 
+	 * @param fileName
+	 * @param reuseExistingFiles
+	 *            if false, any existing segments are deleted and an empty index is created
+	 * @return
+	 * @throws IOException
+	 */
+	public static SegmentedDiskIndex open(String fileName, boolean reuseExistingFiles) throws IOException
+	{
+		return open(fileName, reuseExistingFiles, MIN_TIER_SIZE);
+	}
+
+	/**
+	 * Open the segments of the index stored at the specified path, using the specified size (in bytes) for the lowest
+	 * size tier. Segments are only appended once the index is larger than that.
+	 * 
+	 * @param fileName
+	 * @param reuseExistingFiles
+	 * @param minTierSize
+	 * @return
+	 * @throws IOException
+	 */
+	static SegmentedDiskIndex open(String fileName, boolean reuseExistingFiles, long minTierSize) throws IOException
+	{
+		DiskIndex base = new DiskIndex(fileName);
+		base.initialize(reuseExistingFiles);
+
+		File[] files = listSegmentFiles(base.indexFile);
+		List<DiskIndex> segments = new ArrayList<DiskIndex>(files.length + 1);
+		int nextGeneration = 1;
+
+		segments.add(base);
+
+		for (File file : files)
+		{
+			if (reuseExistingFiles)
+			{
+				DiskIndex segment = new DiskIndex(file.getPath());
+				segment.initialize(true);
+				segments.add(segment);
+			}
+			else if (!file.delete())
+			{
+				throw new IOException("Failed to delete index segment " + file); //$NON-NLS-1$
+			}
+
+			nextGeneration = Math.max(nextGeneration, getGeneration(base.indexFile, file) + 1);
+		}
+
+		return new SegmentedDiskIndex(base.indexFile, segments.toArray(new DiskIndex[segments.size()]),
+				new AtomicInteger(nextGeneration), minTierSize);
+	}
+
+	/**
+	 * Returns the generation number of a segment file, or -1 if the file isn't a segment of the specified base file
+	 * 
+	 * @param baseFile
+	 * @param file
+	 * @return
+	 */
+	private static int getGeneration(File baseFile, File file)
+	{
+		String prefix = baseFile.getName() + '.';
+		String name = file.getName();
+
+		if (!name.startsWith(prefix) || name.length() == prefix.length() || name.length() - prefix.length() > 9)
+		{
+			return -1;
+		}
+
+		for (int i = prefix.length(); i < name.length(); i++)
+		{
+			char c = name.charAt(i);
+
+			if (c < '0' || c > '9')
+			{
+				return -1;
+			}
+		}
+
+		return Integer.parseInt(name.substring(prefix.length()));
+	}
+
+	/**
+	 * Returns the segment files written next to the specified base file, oldest first
+	 * 
+	 * @param baseFile
+	 * @return
+	 */
+	private static File[] listSegmentFiles(final File baseFile)
+	{
+		File directory = baseFile.getAbsoluteFile().getParentFile();
+		File[] files = (directory == null) ? null : directory.listFiles(new FileFilter()
+		{
+			public boolean accept(File file)
+			{
+				return getGeneration(baseFile, file) > 0;
+			}
+		});
+
+		if (files == null)
+		{
+			return new File[0];
+		}
+
+		Arrays.sort(files, new Comparator<File>()
+		{
+			public int compare(File file1, File file2)
+			{
+				return getGeneration(baseFile, file1) - getGeneration(baseFile, file2);
+			}
+		});
+
+		return files;
+	}
+
+	/**
+	 * Returns the size tier of a segment: segments in the same tier are within a factor of MERGE_FACTOR in size
+	 * 
+	 * @param segment
+	 * @return
+	 */
+	private int getTier(DiskIndex segment)
+	{
+		long size = segment.indexFile.length();
+		int tier = 0;
+
+		while (size >= minTierSize)
+		{
+			size /= MERGE_FACTOR;
+			tier++;
+		}
+
+		return tier;
+	}
+
+	/**
+	 * Add the names of the documents in this index that start with the specified substring, skipping documents which
+	 * have been added/changed/deleted in any of the specified memory indexes
+	 * 
+	 * @param substring
+	 * @param memoryIndexes
+	 *            the memory indexes holding changes that haven't been written to disk yet, null entries are ignored
+	 * @return
+	 * @throws IOException
+	 */
+	public Set<String> addDocumentNames(String substring, MemoryIndex... memoryIndexes) throws IOException
+	{
+		Set<String> results = new HashSet<String>();
+
+		for (int i = segments.length - 1; i >= 0; i--)
+		{
+			segments[i].addDocumentNames(substring, results, new DocumentOverrides(segments, i + 1, memoryIndexes));
+		}
+
+		return results;
+	}
+
+	/**
+	 * Query every segment, skipping documents whose entries have been replaced by a newer segment or any of the
+	 * specified memory indexes
+	 * 
+	 * @param categories
+	 * @param key
+	 * @param matchRule
+	 * @param memoryIndexes
+	 *            the memory indexes holding changes that haven't been written to disk yet, null entries are ignored
+	 * @return
+	 * @throws IOException
+	 */
+	public Map<String, QueryResult> addQueryResults(String[] categories, String key, int matchRule,
+			MemoryIndex... memoryIndexes) throws IOException
+	{
+		Map<String, QueryResult> results = null;
+
+		for (int i = segments.length - 1; i >= 0; i--)
+		{
+			results = segments[i].addQueryResults(categories, key, matchRule, results, new DocumentOverrides(segments,
+					i + 1, memoryIndexes));
+		}
+
+		return results;
+	}
+
+	/**
+	 * Write the changes in the specified memory index to a new segment on top of this index
+	 * 
+	 * @param memoryIndex
+	 * @return
+	 * @throws IOException
+	 */
+	public SegmentedDiskIndex append(MemoryIndex memoryIndex) throws IOException
+	{
+		// while the index is small, rewriting it is cheap and saves queries from fanning out
+		if (segments.length == 1 && baseFile.length() < minTierSize)
+		{
+			return new SegmentedDiskIndex(baseFile, new DiskIndex[] { segments[0].mergeWith(memoryIndex) },
+					nextGeneration, minTierSize);
+		}
+
+		String fileName = baseFile.getPath() + '.' + nextGeneration.getAndIncrement();
+		DiskIndex segment = new DiskIndex(fileName);
+		segment.initialize(false);
+		segment = segment.mergeWith(memoryIndex, true);
+
+		if (segment.isEmpty())
+		{
+			// memory index only removed documents that had never been saved
+			segment.indexFile.delete();
+			return this;
+		}
+
+		DiskIndex[] result = new DiskIndex[segments.length + 1];
+
+		System.arraycopy(segments, 0, result, 0, segments.length);
+		result[segments.length] = segment;
+
+		return new SegmentedDiskIndex(baseFile, result, nextGeneration, minTierSize);
+	}
+
+	/**
+	 * Delete the files of all segments
+	 */
+	public void delete()
+	{
+		for (int i = segments.length - 1; i >= 0; i--)
+		{
+			File file = segments[i].indexFile;
+
+			if (file.exists())
+			{
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * getCategories
+	 * 
+	 * @return
+	 */
+	public List<String> getCategories()
+	{
+		Set<String> categories = new HashSet<String>();
+
+		for (DiskIndex segment : segments)
+		{
+			categories.addAll(segment.getCategories());
+		}
+
+		return new ArrayList<String>(categories);
+	}
+
+	/**
+	 * Returns the next run of segments that should be merged, or null if the segments are balanced
+	 * 
+	 * @return
+	 */
+	public Compaction getCompaction()
+	{
+		// look for MERGE_FACTOR or more consecutive segments in the same size tier, newest first since that's where
+		// small segments pile up
+		for (int end = segments.length; end > 0;)
+		{
+			int tier = getTier(segments[end - 1]);
+			int start = end - 1;
+
+			while (start > 0 && getTier(segments[start - 1]) == tier)
+			{
+				start--;
+			}
+
+			if (end - start >= MERGE_FACTOR)
+			{
+				return createCompaction(start, end);
+			}
+
+			end = start;
+		}
+
+		if (segments.length > MAX_SEGMENTS)
+		{
+			return createCompaction(1, segments.length);
+		}
+
+		return null;
+	}
+
+	/**
+	 * createCompaction
+	 * 
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	private Compaction createCompaction(int start, int end)
+	{
+		DiskIndex[] run = new DiskIndex[end - start];
+
+		System.arraycopy(segments, start, run, 0, run.length);
+
+		return new Compaction(run, start == 0);
+	}
+
+	/**
+	 * Returns the file of the newest segment, which was last modified when the index was last saved
+	 * 
+	 * @return
+	 */
+	public File getIndexFile()
+	{
+		return segments[segments.length - 1].indexFile;
+	}
+
+	/**
+	 * Merge all segments and the specified memory index into the base segment, dropping the specified categories
+	 * 
+	 * @param categoryNames
+	 * @param memoryIndex
+	 * @return
+	 * @throws IOException
+	 */
+	public SegmentedDiskIndex removeCategories(String[] categoryNames, MemoryIndex memoryIndex) throws IOException
+	{
+		MemoryIndex newer = new MemoryIndex();
+
+		for (int i = 1; i < segments.length; i++)
+		{
+			segments[i].addTo(newer);
+		}
+
+		newer.addAll(memoryIndex);
+		newer.removeCategories(categoryNames);
+
+		DiskIndex base = segments[0].removeCategories(categoryNames, newer);
+
+		for (int i = 1; i < segments.length; i++)
+		{
+			segments[i].indexFile.delete();
+		}
+
+		return new SegmentedDiskIndex(baseFile, new DiskIndex[] { base }, nextGeneration, minTierSize);
+	}
+
+	/**
+	 * Delete all segments and return an empty index stored at the same path
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public SegmentedDiskIndex reset() throws IOException
+	{
+		for (int i = segments.length - 1; i > 0; i--)
+		{
+			segments[i].indexFile.delete();
+		}
+
+		DiskIndex base = new DiskIndex(baseFile.getCanonicalPath());
+		base.initialize(false/* do not reuse the index file */);
+
+		return new SegmentedDiskIndex(baseFile, new DiskIndex[] { base }, nextGeneration, minTierSize);
+	}
+}
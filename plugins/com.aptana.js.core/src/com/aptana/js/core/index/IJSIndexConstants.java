@@ -9,6 +9,9 @@ package com.aptana.js.core.index;
 
 import java.util.Random;
 
+import com.aptana.index.core.record.BinaryRecordCodec;
+import com.aptana.index.core.record.IRecordCodec;
+
 public interface IJSIndexConstants
 {
 	// the content format version of the JS index files
@@ -41,7 +44,8 @@ public interface IJSIndexConstants
 	// 0.35 - Add JS Core types as properties of Global
 	// 0.36 - Include Module definition mappings to autogenerated UUID type names holding the exported object, remove
 	// requires keys
-	public static final double INDEX_VERSION = 0.36;
+	// 0.37 - Store type and member entries as binary records
+	public static final double INDEX_VERSION = 0.37;
 
 	// for debugging, comment the line above, and uncomment the following
 	// public static final double INDEX_VERSION = new Random().nextDouble() * 1e6;
@@ -55,6 +59,9 @@ public interface IJSIndexConstants
 	static final String CORE = "JS Core"; //$NON-NLS-1$
 	static final String NESTED_TYPE_SEPARATOR = "#"; //$NON-NLS-1$
 
+	// type and member entries are stored as binary records keyed by type name (and member name)
+	static final IRecordCodec RECORD_CODEC = new BinaryRecordCodec(1, DELIMITER, SUB_DELIMITER);
+
 	// index categories
 	static final String TYPE = PREFIX + "type"; //$NON-NLS-1$
 	static final String FUNCTION = PREFIX + "function"; //$NON-NLS-1$
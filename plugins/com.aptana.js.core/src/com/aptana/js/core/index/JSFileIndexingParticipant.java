@@ -25,6 +25,7 @@ import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.ArrayUtil;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.index.core.AbstractFileIndexingParticipant;
+import com.aptana.index.core.DocumentBatch;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.build.BuildContext;
 import com.aptana.js.core.IDebugScopes;
@@ -391,11 +392,13 @@ public class JSFileIndexingParticipant extends AbstractFileIndexingParticipant
 		moduleExportsType.addProperty(uriElement);
 
 		// Now write our hand-generated module type and module instance type.
-		indexWriter.writeType(index, moduleExportsType, location);
-		indexWriter.writeType(index, moduleType, location);
+		DocumentBatch batch = index.createDocumentBatch(location);
+		indexWriter.writeType(batch, moduleExportsType);
+		indexWriter.writeType(batch, moduleType);
 
 		// Record a mapping for the auto-generated type name we're recording (so we can look it up by the filepath)
-		index.addEntry(IJSIndexConstants.MODULE_DEFINITION, moduleTypeName, location);
+		batch.addEntry(IJSIndexConstants.MODULE_DEFINITION, moduleTypeName);
+		batch.commit();
 	}
 
 	/**
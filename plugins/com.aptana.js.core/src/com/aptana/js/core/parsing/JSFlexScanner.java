@@ -18,8 +18,7 @@ import java.util.List;
 
 import beaver.Symbol;
 import beaver.Scanner;
-
-import org.eclipse.core.internal.utils.StringPool;
+import beaver.TextPool;
 
 
 
@@ -509,7 +508,8 @@ public class JSFlexScanner extends Scanner {
 	// last token used for look behind. Also needed when implementing the ITokenScanner interface
 	private Symbol _lastToken;
 	
-	private StringPool _stringPool;
+	// pool of the values of identifiers, numbers, strings, etc., read straight from the scanner buffer
+	private final TextPool _textPool = new TextPool();
 
 	// flag indicating if we should collect comments or not
 	private boolean _collectComments = true;
@@ -563,9 +563,9 @@ public class JSFlexScanner extends Scanner {
 		return newToken(type.getIndex(), type.getName());
 	}
 	
-	private String pool(String value)
+	private String pool()
 	{
-		return _stringPool.add(value);
+		return _textPool.add(zzBuffer, zzStartRead, zzMarkedPos - zzStartRead);
 	}
 
 	private Symbol newToken(short id, Object value)
@@ -640,7 +640,7 @@ public class JSFlexScanner extends Scanner {
 	{
 		yyreset(new StringReader(source));
 
-		_stringPool = new StringPool();
+		_textPool.clear();
 
 		// clear last token
 		_lastToken = null;
@@ -1033,7 +1033,7 @@ public class JSFlexScanner extends Scanner {
           }
         case 104: break;
         case 10: 
-          { return newToken(Terminals.NUMBER, pool(yytext()));
+          { return newToken(Terminals.NUMBER, pool());
           }
         case 105: break;
         case 45: 
@@ -1092,7 +1092,7 @@ public class JSFlexScanner extends Scanner {
           }
         case 118: break;
         case 37: 
-          { return newToken(Terminals.STRING, pool(yytext()));
+          { return newToken(Terminals.STRING, pool());
           }
         case 119: break;
         case 17: 
@@ -1240,7 +1240,7 @@ public class JSFlexScanner extends Scanner {
           }
         case 154: break;
         case 9: 
-          { return newToken(Terminals.IDENTIFIER, pool(yytext()));
+          { return newToken(Terminals.IDENTIFIER, pool());
           }
         case 155: break;
         case 20: 
@@ -1272,7 +1272,7 @@ public class JSFlexScanner extends Scanner {
         case 161: break;
         case 63: 
           { yybegin(YYINITIAL);
-						return newToken(Terminals.REGEX, pool(yytext()));
+						return newToken(Terminals.REGEX, pool());
           }
         case 162: break;
         case 46: 
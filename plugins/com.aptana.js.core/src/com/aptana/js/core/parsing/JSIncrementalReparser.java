@@ -0,0 +1,115 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.core.parsing;
+
+import com.aptana.parsing.IParseState;
+import com.aptana.parsing.IParser;
+import com.aptana.parsing.IncrementalReparser;
+
+/**
+ * Reparses the top-level statements touched by an edit. As statements may end without a semicolon, the source is only
+ * split after statements ending with a semicolon, or with a closing brace which the following text can't continue
+ * (i.e.: a function expression followed by an argument list, or an object literal followed by an in or instanceof
+ * operator).
+ */
+class JSIncrementalReparser extends IncrementalReparser
+{
+	/**
+	 * The operators spelled like identifiers, which continue the expression ending before them
+	 */
+	private static final String[] KEYWORD_OPERATORS = { "instanceof", "in" }; //$NON-NLS-1$ //$NON-NLS-2$
+
+	/**
+	 * JSIncrementalReparser
+	 * 
+	 * @param parser
+	 */
+	JSIncrementalReparser(IParser parser)
+	{
+		super(parser);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IncrementalReparser#createFragmentState(com.aptana.parsing.IParseState,
+	 * java.lang.String)
+	 */
+	@Override
+	protected IParseState createFragmentState(IParseState parseState, String source)
+	{
+		if (parseState instanceof JSParseState)
+		{
+			JSParseState jsParseState = (JSParseState) parseState;
+			JSParseState fragmentState = new JSParseState(source, 0, jsParseState.attachComments(),
+					jsParseState.collectComments());
+			fragmentState.setProgressMonitor(parseState.getProgressMonitor());
+
+			return fragmentState;
+		}
+
+		return super.createFragmentState(parseState, source);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IncrementalReparser#isTerminated(java.lang.String, int)
+	 */
+	@Override
+	protected boolean isTerminated(String source, int endIndex)
+	{
+		if (endIndex < 0 || endIndex >= source.length())
+		{
+			return false;
+		}
+
+		char c = source.charAt(endIndex);
+		if (c == ';')
+		{
+			return true;
+		}
+		if (c != '}')
+		{
+			return false;
+		}
+
+		for (int i = endIndex + 1; i < source.length(); i++)
+		{
+			char next = source.charAt(i);
+			if (!Character.isWhitespace(next))
+			{
+				if (Character.isJavaIdentifierStart(next))
+				{
+					return !isKeywordOperator(source, i);
+				}
+				return next == '{' || next == '}' || next == ';' || next == '"' || next == '\'';
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Tells whether an operator spelled like an identifier starts at the given index of the source
+	 * 
+	 * @param source
+	 * @param index
+	 * @return
+	 */
+	private boolean isKeywordOperator(String source, int index)
+	{
+		for (String keyword : KEYWORD_OPERATORS)
+		{
+			int end = index + keyword.length();
+			if (source.startsWith(keyword, index)
+					&& (end == source.length() || !Character.isJavaIdentifierPart(source.charAt(end))))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+}
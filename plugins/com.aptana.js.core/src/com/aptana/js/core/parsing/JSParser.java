@@ -13,6 +13,8 @@ import com.aptana.js.core.preferences.IPreferenceConstants;
 import com.aptana.js.core.parsing.ast.*;
 import beaver.*;
 import com.aptana.parsing.IParser;
+import com.aptana.parsing.IIncrementalParser;
+import org.eclipse.jface.text.DocumentEvent;
 import com.aptana.js.core.JSCorePlugin;
 import com.aptana.parsing.ast.IParseNode;
 import com.aptana.parsing.IParseState;
@@ -26,7 +28,7 @@ import com.aptana.core.build.IProblem;
  * from the grammar specification "JS.grammar".
  */
 @SuppressWarnings({ "unchecked", "rawtypes" })
-public class JSParser extends Parser implements IParser {
+public class JSParser extends Parser implements IIncrementalParser {
 
 	static final ParsingTables PARSING_TABLES = new ParsingTables(
 		"U9pjNGTyKsNtFkScQPk4lLesj43PYE9YYmCdGq0KHQR8a2bRXWmHH97fOCZUIxPxxu6AY7i" +
@@ -323,6 +325,11 @@ public class JSParser extends Parser implements IParser {
         return working.getImmutableResult();
     }
 
+    public synchronized ParseResult parse(IParseState parseState, ParseResult previous, DocumentEvent edit) throws java.lang.Exception
+    {
+        return new JSIncrementalReparser(this).parse(parseState, previous, edit);
+    }
+
 
 	/*
 	 * (non-Javadoc)
@@ -9,6 +9,8 @@ package com.aptana.js.core.parsing.ast;
 
 import beaver.Symbol;
 
+import com.aptana.parsing.util.ParseUtil;
+
 public class JSArrayNode extends JSNode
 {
 	private Symbol _leftBracket;
@@ -37,6 +39,19 @@ public class JSArrayNode extends JSNode
 		walker.visit(this);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#addOffset(int)
+	 */
+	@Override
+	public void addOffset(int offset)
+	{
+		super.addOffset(offset);
+
+		_leftBracket = ParseUtil.moveSymbol(_leftBracket, offset);
+		_rightBracket = ParseUtil.moveSymbol(_rightBracket, offset);
+	}
+
 	/**
 	 * getLeftBracket
 	 * 
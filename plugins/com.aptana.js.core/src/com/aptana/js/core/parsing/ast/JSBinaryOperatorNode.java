@@ -10,6 +10,7 @@ package com.aptana.js.core.parsing.ast;
 import beaver.Symbol;
 
 import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.util.ParseUtil;
 
 public abstract class JSBinaryOperatorNode extends JSNode
 {
@@ -41,6 +42,18 @@ public abstract class JSBinaryOperatorNode extends JSNode
 		this._operator = operator;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#addOffset(int)
+	 */
+	@Override
+	public void addOffset(int offset)
+	{
+		super.addOffset(offset);
+
+		_operator = ParseUtil.moveSymbol(_operator, offset);
+	}
+
 	/**
 	 * getLeftHandSide
 	 * 
@@ -10,6 +10,7 @@ package com.aptana.js.core.parsing.ast;
 import beaver.Symbol;
 
 import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.util.ParseUtil;
 
 public class JSCaseNode extends JSNode
 {
@@ -42,6 +43,18 @@ public class JSCaseNode extends JSNode
 		walker.visit(this);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#addOffset(int)
+	 */
+	@Override
+	public void addOffset(int offset)
+	{
+		super.addOffset(offset);
+
+		_colon = ParseUtil.moveSymbol(_colon, offset);
+	}
+
 	/**
 	 * getColon
 	 * 
@@ -10,6 +10,7 @@ package com.aptana.js.core.parsing.ast;
 import beaver.Symbol;
 
 import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.util.ParseUtil;
 
 public class JSConditionalNode extends JSNode
 {
@@ -39,6 +40,19 @@ public class JSConditionalNode extends JSNode
 		walker.visit(this);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#addOffset(int)
+	 */
+	@Override
+	public void addOffset(int offset)
+	{
+		super.addOffset(offset);
+
+		_questionMark = ParseUtil.moveSymbol(_questionMark, offset);
+		_colon = ParseUtil.moveSymbol(_colon, offset);
+	}
+
 	/**
 	 * getColon
 	 * 
@@ -10,6 +10,7 @@ package com.aptana.js.core.parsing.ast;
 import beaver.Symbol;
 
 import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.util.ParseUtil;
 
 public class JSDeclarationNode extends JSNode
 {
@@ -37,6 +38,18 @@ public class JSDeclarationNode extends JSNode
 		walker.visit(this);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#addOffset(int)
+	 */
+	@Override
+	public void addOffset(int offset)
+	{
+		super.addOffset(offset);
+
+		_equalSign = ParseUtil.moveSymbol(_equalSign, offset);
+	}
+
 	/**
 	 * getEqualSign
 	 * 
@@ -9,6 +9,8 @@ package com.aptana.js.core.parsing.ast;
 
 import beaver.Symbol;
 
+import com.aptana.parsing.util.ParseUtil;
+
 public class JSDefaultNode extends JSNode
 {
 	private Symbol _colon;
@@ -36,6 +38,18 @@ public class JSDefaultNode extends JSNode
 		walker.visit(this);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#addOffset(int)
+	 */
+	@Override
+	public void addOffset(int offset)
+	{
+		super.addOffset(offset);
+
+		_colon = ParseUtil.moveSymbol(_colon, offset);
+	}
+
 	/**
 	 * getColon
 	 * 
@@ -10,6 +10,7 @@ package com.aptana.js.core.parsing.ast;
 import beaver.Symbol;
 
 import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.util.ParseUtil;
 
 public class JSForNode extends JSNode
 {
@@ -44,6 +45,21 @@ public class JSForNode extends JSNode
 		walker.visit(this);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#addOffset(int)
+	 */
+	@Override
+	public void addOffset(int offset)
+	{
+		super.addOffset(offset);
+
+		_leftParenthesis = ParseUtil.moveSymbol(_leftParenthesis, offset);
+		_semicolon1 = ParseUtil.moveSymbol(_semicolon1, offset);
+		_semicolon2 = ParseUtil.moveSymbol(_semicolon2, offset);
+		_rightParenthesis = ParseUtil.moveSymbol(_rightParenthesis, offset);
+	}
+
 	/**
 	 * getAdvance
 	 * 
@@ -9,6 +9,8 @@ package com.aptana.js.core.parsing.ast;
 
 import beaver.Symbol;
 
+import com.aptana.parsing.util.ParseUtil;
+
 public class JSGetElementNode extends JSBinaryOperatorNode
 {
 	private Symbol _rightBracket;
@@ -37,6 +39,18 @@ public class JSGetElementNode extends JSBinaryOperatorNode
 		walker.visit(this);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#addOffset(int)
+	 */
+	@Override
+	public void addOffset(int offset)
+	{
+		super.addOffset(offset);
+
+		_rightBracket = ParseUtil.moveSymbol(_rightBracket, offset);
+	}
+
 	/**
 	 * getLeftBracket
 	 * 
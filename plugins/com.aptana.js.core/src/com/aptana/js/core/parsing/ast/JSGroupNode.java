@@ -9,6 +9,8 @@ package com.aptana.js.core.parsing.ast;
 
 import beaver.Symbol;
 
+import com.aptana.parsing.util.ParseUtil;
+
 public class JSGroupNode extends JSPreUnaryOperatorNode
 {
 	private Symbol _leftParenthesis;
@@ -37,6 +39,19 @@ public class JSGroupNode extends JSPreUnaryOperatorNode
 		walker.visit(this);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#addOffset(int)
+	 */
+	@Override
+	public void addOffset(int offset)
+	{
+		super.addOffset(offset);
+
+		_leftParenthesis = ParseUtil.moveSymbol(_leftParenthesis, offset);
+		_rightParenthesis = ParseUtil.moveSymbol(_rightParenthesis, offset);
+	}
+
 	/**
 	 * getLeftParenthesis
 	 * 
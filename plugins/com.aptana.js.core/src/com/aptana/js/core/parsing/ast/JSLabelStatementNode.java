@@ -9,6 +9,8 @@ package com.aptana.js.core.parsing.ast;
 
 import beaver.Symbol;
 
+import com.aptana.parsing.util.ParseUtil;
+
 /**
  * Represents continue and break statements.
  */
@@ -39,6 +41,18 @@ public abstract class JSLabelStatementNode extends JSNode
 		this._label = label;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#addOffset(int)
+	 */
+	@Override
+	public void addOffset(int offset)
+	{
+		super.addOffset(offset);
+
+		_label = ParseUtil.moveSymbol(_label, offset);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.editor.js.parsing.ast.JSNode#equals(java.lang.Object)
@@ -9,6 +9,8 @@ package com.aptana.js.core.parsing.ast;
 
 import beaver.Symbol;
 
+import com.aptana.parsing.util.ParseUtil;
+
 public class JSObjectNode extends JSNode
 {
 	private Symbol _leftBrace;
@@ -39,6 +41,19 @@ public class JSObjectNode extends JSNode
 		walker.visit(this);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#addOffset(int)
+	 */
+	@Override
+	public void addOffset(int offset)
+	{
+		super.addOffset(offset);
+
+		_leftBrace = ParseUtil.moveSymbol(_leftBrace, offset);
+		_rightBrace = ParseUtil.moveSymbol(_rightBrace, offset);
+	}
+
 	/**
 	 * getLeftBrace
 	 * 
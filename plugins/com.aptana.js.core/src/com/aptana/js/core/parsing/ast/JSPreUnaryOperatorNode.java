@@ -11,6 +11,7 @@ import beaver.Symbol;
 
 import com.aptana.js.core.parsing.JSTokenType;
 import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.util.ParseUtil;
 
 public class JSPreUnaryOperatorNode extends JSNode
 {
@@ -98,6 +99,18 @@ public class JSPreUnaryOperatorNode extends JSNode
 		walker.visit(this);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#addOffset(int)
+	 */
+	@Override
+	public void addOffset(int offset)
+	{
+		super.addOffset(offset);
+
+		_operator = ParseUtil.moveSymbol(_operator, offset);
+	}
+
 	/**
 	 * getExpression
 	 * 
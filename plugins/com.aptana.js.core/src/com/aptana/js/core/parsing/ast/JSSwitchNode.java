@@ -10,6 +10,7 @@ package com.aptana.js.core.parsing.ast;
 import beaver.Symbol;
 
 import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.util.ParseUtil;
 
 public class JSSwitchNode extends JSNode
 {
@@ -54,6 +55,21 @@ public class JSSwitchNode extends JSNode
 		walker.visit(this);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#addOffset(int)
+	 */
+	@Override
+	public void addOffset(int offset)
+	{
+		super.addOffset(offset);
+
+		_leftParenthesis = ParseUtil.moveSymbol(_leftParenthesis, offset);
+		_rightParenthesis = ParseUtil.moveSymbol(_rightParenthesis, offset);
+		_leftBrace = ParseUtil.moveSymbol(_leftBrace, offset);
+		_rightBrace = ParseUtil.moveSymbol(_rightBrace, offset);
+	}
+
 	/**
 	 * getExpression
 	 * 
@@ -113,9 +113,14 @@ public class JSLintValidator extends AbstractBuildParticipant
 			return Collections.emptyList();
 		}
 
-		script.runLint(source, getOptions());
-
-		List<IProblem> collected = script.getProblems(source, path);
+		// JSLint keeps the errors of the last run in its (shared) scope
+		Map<String, Object> options = getOptions();
+		List<IProblem> collected;
+		synchronized (script)
+		{
+			script.runLint(source, options);
+			collected = script.getProblems(source, path);
+		}
 		final List<String> filters = getFilters();
 		return CollectionsUtil.filter(collected, new IFilter<IProblem>()
 		{
@@ -128,33 +133,37 @@ public class JSLintValidator extends AbstractBuildParticipant
 	}
 
 	/**
-	 * Lazily grab the JSLint script.
+	 * Lazily grab the JSLint script. The script is shared by all the validators, which may be created and run on
+	 * several threads, so it is created and read under the lock of the class.
 	 * 
 	 * @return
 	 */
-	private synchronized JSLint getJSLintScript()
+	private JSLint getJSLintScript()
 	{
-		if (JS_LINT_SCRIPT == null)
+		synchronized (JSLintValidator.class)
 		{
-			URL url = FileLocator.find(JSCorePlugin.getDefault().getBundle(), Path.fromPortableString(JSLINT_FILENAME),
-					null);
-			if (url != null)
+			if (JS_LINT_SCRIPT == null)
 			{
-				try
+				URL url = FileLocator.find(JSCorePlugin.getDefault().getBundle(),
+						Path.fromPortableString(JSLINT_FILENAME), null);
+				if (url != null)
 				{
-					String source = StreamUtil.readContent(url.openStream());
-					if (source != null)
+					try
 					{
-						JS_LINT_SCRIPT = getJSLintScript(source);
+						String source = StreamUtil.readContent(url.openStream());
+						if (source != null)
+						{
+							JS_LINT_SCRIPT = getJSLintScript(source);
+						}
+					}
+					catch (IOException e)
+					{
+						IdeLog.logError(JSCorePlugin.getDefault(), Messages.JSLintValidator_ERR_FailToGetJSLint, e);
 					}
-				}
-				catch (IOException e)
-				{
-					IdeLog.logError(JSCorePlugin.getDefault(), Messages.JSLintValidator_ERR_FailToGetJSLint, e);
 				}
 			}
+			return JS_LINT_SCRIPT;
 		}
-		return JS_LINT_SCRIPT;
 	}
 
 	/**
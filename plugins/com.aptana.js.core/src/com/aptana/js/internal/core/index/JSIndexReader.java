@@ -8,20 +8,22 @@
 package com.aptana.js.internal.core.index;
 
 import java.io.IOException;
-import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import com.aptana.core.IMap;
 import com.aptana.core.util.CollectionsUtil;
-import com.aptana.core.util.RegexUtil;
 import com.aptana.core.util.StringUtil;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexReader;
 import com.aptana.index.core.QueryResult;
 import com.aptana.index.core.SearchPattern;
+import com.aptana.index.core.record.IRecordCodec;
+import com.aptana.index.core.record.IRecordView;
 import com.aptana.js.core.JSTypeConstants;
 import com.aptana.js.core.index.IJSIndexConstants;
 import com.aptana.js.core.model.EventElement;
@@ -108,40 +110,30 @@ public class JSIndexReader extends IndexReader
 	 */
 	protected TypeElement createType(QueryResult type)
 	{
-		TypeElement result;
-		String[] columns = this.getDelimiterPattern().split(type.getWord());
-		int column = 0;
+		IRecordView record = this.getRecordCodec().decode(type.getWord());
 
 		// create type
-		result = new TypeElement();
+		TypeElement result = new TypeElement();
 
 		// name
-		result.setName(columns[column]);
-		column++;
+		result.setName(record.getString(0));
 
 		// super types
-		if (column < columns.length)
+		for (String parentType : record.getList(1))
 		{
-			for (String parentType : this.getSubDelimiterPattern().split(columns[column]))
-			{
-				result.addParentType(parentType);
-			}
+			result.addParentType(parentType);
 		}
-		column++;
 
 		// description
-		if (column < columns.length)
+		String description = record.getString(2);
+
+		if (description != null)
 		{
-			result.setDescription(columns[column]);
+			result.setDescription(description);
 		}
-		column++;
 
 		// deprecated
-		if (column < columns.length)
-		{
-			result.setIsDeprecated(columns[column].equals("1")); //$NON-NLS-1$
-		}
-		column++;
+		result.setIsDeprecated(record.getBoolean(3));
 
 		// documents
 		for (String document : type.getDocuments())
@@ -176,10 +168,10 @@ public class JSIndexReader extends IndexReader
 		{
 			// read events
 			// @formatter:off
-			List<QueryResult> events = index.query(
-				new String[] { IJSIndexConstants.EVENT },
-				this.getMemberPattern(owningTypes),
-				SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE
+			List<QueryResult> events = this.getMembers(
+				index,
+				IJSIndexConstants.EVENT,
+				owningTypes
 			);
 			// @formatter:on
 
@@ -256,10 +248,10 @@ public class JSIndexReader extends IndexReader
 		{
 			// read functions
 			// @formatter:off
-			List<QueryResult> functions = index.query(
-				new String[] { IJSIndexConstants.FUNCTION },
-				this.getMemberPattern(owningTypes),
-				SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE
+			List<QueryResult> functions = this.getMembers(
+				index,
+				IJSIndexConstants.FUNCTION,
+				owningTypes
 			);
 			// @formatter:on
 
@@ -322,23 +314,48 @@ public class JSIndexReader extends IndexReader
 	}
 
 	/**
-	 * getMemberPattern
+	 * Find all member entries in the specified category that belong to one of the specified owning types. Member keys
+	 * start with their owning type followed by the delimiter and categories are kept sorted by key, so the members of
+	 * each type form a contiguous range that can be located with a case-sensitive prefix query instead of running a
+	 * regular expression against every key in the category.
 	 * 
-	 * @param typeNames
+	 * @param index
+	 * @param category
+	 * @param owningTypes
 	 * @return
 	 */
-	private String getMemberPattern(List<String> typeNames)
+	private List<QueryResult> getMembers(Index index, String category, List<String> owningTypes)
 	{
-		typeNames = CollectionsUtil.map(typeNames, new IMap<String, String>()
+		// a type may be listed more than once, but its members should only be returned once
+		Set<String> prefixes = new LinkedHashSet<String>(owningTypes.size());
+
+		for (String owningType : owningTypes)
+		{
+			if (!StringUtil.isEmpty(owningType))
+			{
+				prefixes.add(this.getRecordCodec().encodeKey(stripGenericsFromType(owningType)));
+			}
+		}
+
+		List<QueryResult> result = new ArrayList<QueryResult>();
+
+		for (String prefix : prefixes)
 		{
-			public String map(String item)
+			// @formatter:off
+			List<QueryResult> members = index.query(
+				new String[] { category },
+				prefix,
+				SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE
+			);
+			// @formatter:on
+
+			if (members != null)
 			{
-				return stripGenericsFromType(item);
+				result.addAll(members);
 			}
-		});
-		String typePattern = RegexUtil.createQuotedListPattern(typeNames);
+		}
 
-		return MessageFormat.format("^{1}{0}", new Object[] { this.getDelimiter(), typePattern }); //$NON-NLS-1$
+		return result;
 	}
 
 	/**
@@ -350,8 +367,7 @@ public class JSIndexReader extends IndexReader
 	 */
 	private String getMemberPattern(String typeName, String memberName)
 	{
-		return MessageFormat.format(
-				"{1}{0}{2}{0}", new Object[] { this.getDelimiter(), stripGenericsFromType(typeName), memberName }); //$NON-NLS-1$
+		return this.getRecordCodec().encodeKey(stripGenericsFromType(typeName), memberName);
 	}
 
 	/**
@@ -383,10 +399,10 @@ public class JSIndexReader extends IndexReader
 		{
 			// read properties
 			// @formatter:off
-			List<QueryResult> properties = index.query(
-				new String[] { IJSIndexConstants.PROPERTY },
-				this.getMemberPattern(owningTypes),
-				SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE
+			List<QueryResult> properties = this.getMembers(
+				index,
+				IJSIndexConstants.PROPERTY,
+				owningTypes
 			);
 			// @formatter:on
 
@@ -448,6 +464,16 @@ public class JSIndexReader extends IndexReader
 		return Collections.emptyList();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IndexReader#getRecordCodec()
+	 */
+	@Override
+	protected IRecordCodec getRecordCodec()
+	{
+		return IJSIndexConstants.RECORD_CODEC;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.index.core.IndexReader#getSubDelimiter()
@@ -472,7 +498,7 @@ public class JSIndexReader extends IndexReader
 
 		if (index != null && !StringUtil.isEmpty(typeName))
 		{
-			String pattern = stripGenericsFromType(typeName) + this.getDelimiter();
+			String pattern = this.getRecordCodec().encodeKey(stripGenericsFromType(typeName));
 
 			// @formatter:off
 			List<QueryResult> types = index.query(
@@ -12,9 +12,11 @@ import java.text.MessageFormat;
 import java.util.List;
 
 import com.aptana.core.logging.IdeLog;
-import com.aptana.core.util.StringUtil;
+import com.aptana.core.util.CollectionsUtil;
+import com.aptana.index.core.DocumentBatch;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexWriter;
+import com.aptana.index.core.record.IRecordCodec;
 import com.aptana.js.core.IDebugScopes;
 import com.aptana.js.core.JSCorePlugin;
 import com.aptana.js.core.JSTypeConstants;
@@ -36,23 +38,40 @@ public class JSIndexWriter extends IndexWriter
 		return URI.create(IJSIndexConstants.METADATA_FILE_LOCATION);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IndexWriter#getRecordCodec()
+	 */
+	@Override
+	protected IRecordCodec getRecordCodec()
+	{
+		return IJSIndexConstants.RECORD_CODEC;
+	}
+
+	/**
+	 * Build the index key for a member of a type. The owning type must remain the first column: categories are sorted
+	 * by key, so this keeps all members of a type in one contiguous range, which JSIndexReader uses as its owning type
+	 * to member lookup.
+	 * 
+	 * @param owningType
+	 * @param name
+	 * @param value
+	 * @return
+	 */
+	protected String getMemberKey(String owningType, String name, String value)
+	{
+		return this.getRecordCodec().encode(2, owningType, name, value);
+	}
+
 	/**
 	 * writeEvent
 	 * 
-	 * @param index
+	 * @param batch
 	 * @param event
-	 * @param location
 	 */
-	protected void writeEvent(Index index, EventElement event, URI location)
+	protected void writeEvent(DocumentBatch batch, EventElement event)
 	{
-		// @formatter:off
-		String value = StringUtil.join(
-			IJSIndexConstants.DELIMITER,
-			event.getOwningType(),
-			event.getName(),
-			this.serialize(event)
-		);
-		// @formatter:on
+		String value = this.getMemberKey(event.getOwningType(), event.getName(), this.serialize(event));
 
 		if (IdeLog.isTraceEnabled(JSCorePlugin.getDefault(), IDebugScopes.INDEX_WRITES))
 		{
@@ -61,34 +80,26 @@ public class JSIndexWriter extends IndexWriter
 				"Writing event ''{0}.{1}'' from location ''{2}'' to index ''{3}''", //$NON-NLS-1$
 				event.getOwningType(),
 				event.getName(),
-				location.toString(),
-				index.toString()
+				batch.getDocumentURI().toString(),
+				batch.getIndex().toString()
 			);
 			// @formatter:on
 
 			IdeLog.logTrace(JSCorePlugin.getDefault(), message, IDebugScopes.INDEX_WRITES);
 		}
 
-		index.addEntry(IJSIndexConstants.EVENT, value, location);
+		batch.addEntry(IJSIndexConstants.EVENT, value);
 	}
 
 	/**
 	 * writeFunction
 	 * 
-	 * @param index
+	 * @param batch
 	 * @param function
-	 * @param location
 	 */
-	protected void writeFunction(Index index, FunctionElement function, URI location)
+	protected void writeFunction(DocumentBatch batch, FunctionElement function)
 	{
-		// @formatter:off
-		String value = StringUtil.join(
-			IJSIndexConstants.DELIMITER,
-			function.getOwningType(),
-			function.getName(),
-			this.serialize(function)
-		);
-		// @formatter:on
+		String value = this.getMemberKey(function.getOwningType(), function.getName(), this.serialize(function));
 
 		if (IdeLog.isTraceEnabled(JSCorePlugin.getDefault(), IDebugScopes.INDEX_WRITES))
 		{
@@ -97,34 +108,26 @@ public class JSIndexWriter extends IndexWriter
 				"Writing function ''{0}.{1}'' from location ''{2}'' to index ''{3}''", //$NON-NLS-1$
 				function.getOwningType(),
 				function.getName(),
-				location.toString(),
-				index.toString()
+				batch.getDocumentURI().toString(),
+				batch.getIndex().toString()
 			);
 			// @formatter:on
 
 			IdeLog.logTrace(JSCorePlugin.getDefault(), message, IDebugScopes.INDEX_WRITES);
 		}
 
-		index.addEntry(IJSIndexConstants.FUNCTION, value, location);
+		batch.addEntry(IJSIndexConstants.FUNCTION, value);
 	}
 
 	/**
 	 * writeProperty
 	 * 
-	 * @param index
+	 * @param batch
 	 * @param property
-	 * @param location
 	 */
-	public void writeProperty(Index index, PropertyElement property, URI location)
+	public void writeProperty(DocumentBatch batch, PropertyElement property)
 	{
-		// @formatter:off
-		String value = StringUtil.join(
-			IJSIndexConstants.DELIMITER,
-			property.getOwningType(),
-			property.getName(),
-			this.serialize(property)
-		);
-		// @formatter:on
+		String value = this.getMemberKey(property.getOwningType(), property.getName(), this.serialize(property));
 
 		if (IdeLog.isTraceEnabled(JSCorePlugin.getDefault(), IDebugScopes.INDEX_WRITES))
 		{
@@ -133,15 +136,33 @@ public class JSIndexWriter extends IndexWriter
 				"Writing property ''{0}.{1}'' from location ''{2}'' to index ''{3}''", //$NON-NLS-1$
 				property.getOwningType(),
 				property.getName(),
-				location.toString(),
-				index.toString()
+				batch.getDocumentURI().toString(),
+				batch.getIndex().toString()
 			);
 			// @formatter:on
 
 			IdeLog.logTrace(JSCorePlugin.getDefault(), message, IDebugScopes.INDEX_WRITES);
 		}
 
-		index.addEntry(IJSIndexConstants.PROPERTY, value, location);
+		batch.addEntry(IJSIndexConstants.PROPERTY, value);
+	}
+
+	/**
+	 * writeProperty
+	 * 
+	 * @param index
+	 * @param property
+	 * @param location
+	 */
+	public void writeProperty(Index index, PropertyElement property, URI location)
+	{
+		if (index != null && property != null && location != null)
+		{
+			DocumentBatch batch = index.createDocumentBatch(location);
+
+			this.writeProperty(batch, property);
+			batch.commit();
+		}
 	}
 
 	/**
@@ -165,32 +186,39 @@ public class JSIndexWriter extends IndexWriter
 	public void writeType(Index index, TypeElement type, URI location)
 	{
 		if (index != null && type != null && location != null)
+		{
+			DocumentBatch batch = index.createDocumentBatch(location);
+
+			this.writeType(batch, type);
+			batch.commit();
+		}
+	}
+
+	/**
+	 * Add the entries for a type and its members to a batch
+	 * 
+	 * @param batch
+	 * @param type
+	 */
+	public void writeType(DocumentBatch batch, TypeElement type)
+	{
+		if (batch != null && type != null)
 		{
 			List<String> parentTypes = type.getParentTypes();
-			String parentType;
 
-			if (!parentTypes.isEmpty())
-			{
-				parentType = StringUtil.join(IJSIndexConstants.SUB_DELIMITER, parentTypes);
-			}
-			else if (!type.getName().equals(JSTypeConstants.OBJECT_TYPE))
-			{
-				parentType = JSTypeConstants.OBJECT_TYPE;
-			}
-			else
+			if (parentTypes.isEmpty() && !type.getName().equals(JSTypeConstants.OBJECT_TYPE))
 			{
-				//
-				parentType = StringUtil.EMPTY;
+				parentTypes = CollectionsUtil.newList(JSTypeConstants.OBJECT_TYPE);
 			}
 
 			// calculate key value and add to index
 			// @formatter:off
-			String value = StringUtil.join(
-				IJSIndexConstants.DELIMITER,
+			String value = this.getRecordCodec().encode(
+				1,
 				type.getName(),
-				parentType,
+				parentTypes,
 				type.getDescription(),
-				type.isDeprecated() ? '1' : '0'
+				type.isDeprecated()
 			);
 			// @formatter:on
 
@@ -200,33 +228,33 @@ public class JSIndexWriter extends IndexWriter
 				String message = MessageFormat.format(
 					"Writing type ''{0}'' from location ''{1}'' to index ''{2}''", //$NON-NLS-1$
 					type.getName(),
-					location.toString(),
-					index.toString()
+					batch.getDocumentURI().toString(),
+					batch.getIndex().toString()
 				);
 				// @formatter:on
 
 				IdeLog.logTrace(JSCorePlugin.getDefault(), message, IDebugScopes.INDEX_WRITES);
 			}
 
-			index.addEntry(IJSIndexConstants.TYPE, value, location);
+			batch.addEntry(IJSIndexConstants.TYPE, value);
 
 			// write properties
 			for (PropertyElement property : type.getProperties())
 			{
 				if (property instanceof FunctionElement)
 				{
-					this.writeFunction(index, (FunctionElement) property, location);
+					this.writeFunction(batch, (FunctionElement) property);
 				}
 				else
 				{
-					this.writeProperty(index, property, location);
+					this.writeProperty(batch, property);
 				}
 			}
 
 			// write events
 			for (EventElement event : type.getEvents())
 			{
-				this.writeEvent(index, event, location);
+				this.writeEvent(batch, event);
 			}
 		}
 	}
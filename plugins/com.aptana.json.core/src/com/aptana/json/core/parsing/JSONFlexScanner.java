@@ -15,8 +15,7 @@ import java.io.StringReader;
 
 import beaver.Symbol;
 import beaver.Scanner;
-
-import org.eclipse.core.internal.utils.StringPool;
+import beaver.TextPool;
 
 
 /**
@@ -264,7 +263,8 @@ public class JSONFlexScanner extends Scanner {
 	// last token used for look behind. Also needed when implementing the ITokenScanner interface
 	private Symbol _lastToken;
 	
-	private StringPool _stringPool;
+	// pool of the values of identifiers, numbers, strings, etc., read straight from the scanner buffer
+	private final TextPool _textPool = new TextPool();
 
 
 	public JSONFlexScanner()
@@ -277,9 +277,9 @@ public class JSONFlexScanner extends Scanner {
 		return _lastToken;
 	}
 	
-	private String pool(String value)
+	private String pool()
 	{
-		return _stringPool.add(value);
+		return _textPool.add(zzBuffer, zzStartRead, zzMarkedPos - zzStartRead);
 	}
 	
 	private Symbol newToken(short id)
@@ -315,7 +315,7 @@ public class JSONFlexScanner extends Scanner {
 	{
 		yyreset(new StringReader(source));
 
-		_stringPool = new StringPool();
+		_textPool.clear();
 
 		// clear last token
 		_lastToken = null;
@@ -642,7 +642,7 @@ public class JSONFlexScanner extends Scanner {
           }
         case 18: break;
         case 3: 
-          { return newToken(Terminals.NUMBER, pool(yytext()));
+          { return newToken(Terminals.NUMBER, pool());
           }
         case 19: break;
         case 12: 
@@ -672,7 +672,7 @@ public class JSONFlexScanner extends Scanner {
           }
         case 25: break;
         case 10: 
-          { return newToken(Terminals.STRING, pool(yytext()));
+          { return newToken(Terminals.STRING, pool());
           }
         case 26: break;
         default: 
@@ -0,0 +1,131 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.json.core.parsing;
+
+import org.eclipse.jface.text.DocumentEvent;
+
+import com.aptana.json.core.parsing.ast.JSONArrayNode;
+import com.aptana.json.core.parsing.ast.JSONObjectNode;
+import com.aptana.parsing.IParseState;
+import com.aptana.parsing.IncrementalReparser;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+
+/**
+ * Reparses the entries (or values) of the top-level object (or array) touched by an edit. The reparsed entries are
+ * wrapped in braces, with placeholder entries standing in for the neighbours which are kept, so that the commas between
+ * entries stay valid.
+ */
+class JSONIncrementalReparser extends IncrementalReparser
+{
+	private static final String PLACEHOLDER_ENTRY = "\"\":0"; //$NON-NLS-1$
+	private static final String PLACEHOLDER_VALUE = "0"; //$NON-NLS-1$
+
+	private final JSONParser fParser;
+
+	/**
+	 * JSONIncrementalReparser
+	 * 
+	 * @param parser
+	 */
+	JSONIncrementalReparser(JSONParser parser)
+	{
+		super(parser);
+
+		fParser = parser;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IncrementalReparser#parse(com.aptana.parsing.IParseState, com.aptana.parsing.ParseResult,
+	 * org.eclipse.jface.text.DocumentEvent)
+	 */
+	@Override
+	public ParseResult parse(IParseState parseState, ParseResult previous, DocumentEvent edit) throws Exception
+	{
+		// the JSON parser always reports offsets from the start of the source
+		if (parseState.getStartingOffset() != 0)
+		{
+			return super.parse(parseState, null, null);
+		}
+
+		return super.parse(parseState, previous, edit);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IncrementalReparser#hasErrors(com.aptana.parsing.ParseResult)
+	 */
+	@Override
+	protected boolean hasErrors(ParseResult fragmentResult)
+	{
+		// the parser recovers from syntax errors without reporting them
+		return super.hasErrors(fragmentResult) || fParser.hasRecovered();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IncrementalReparser#getContainer(com.aptana.parsing.ast.IParseRootNode)
+	 */
+	@Override
+	protected IParseNode getContainer(IParseRootNode root)
+	{
+		if (root.getChildCount() == 1)
+		{
+			IParseNode value = root.getFirstChild();
+
+			if (value instanceof JSONObjectNode || value instanceof JSONArrayNode)
+			{
+				return value;
+			}
+		}
+
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IncrementalReparser#getDelimiterLength(com.aptana.parsing.ast.IParseNode)
+	 */
+	@Override
+	protected int getDelimiterLength(IParseNode container)
+	{
+		return 1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IncrementalReparser#getFragmentPrefix(com.aptana.parsing.ast.IParseNode, boolean)
+	 */
+	@Override
+	protected String getFragmentPrefix(IParseNode container, boolean hasPreviousUnit)
+	{
+		if (container instanceof JSONObjectNode)
+		{
+			return hasPreviousUnit ? "{" + PLACEHOLDER_ENTRY : "{"; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		return hasPreviousUnit ? "[" + PLACEHOLDER_VALUE : "["; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IncrementalReparser#getFragmentSuffix(com.aptana.parsing.ast.IParseNode, boolean)
+	 */
+	@Override
+	protected String getFragmentSuffix(IParseNode container, boolean hasNextUnit)
+	{
+		if (container instanceof JSONObjectNode)
+		{
+			return hasNextUnit ? PLACEHOLDER_ENTRY + "}" : "}"; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		return hasNextUnit ? PLACEHOLDER_VALUE + "]" : "]"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
@@ -7,6 +7,8 @@ import com.aptana.json.core.parsing.ast.*;
 import com.aptana.parsing.ast.IParseRootNode;
 import beaver.*;
 import com.aptana.parsing.IParser;
+import com.aptana.parsing.IIncrementalParser;
+import org.eclipse.jface.text.DocumentEvent;
 import com.aptana.parsing.ast.IParseNode;
 import com.aptana.parsing.IParseState;
 
@@ -16,7 +18,7 @@ import com.aptana.parsing.IParseState;
  * from the grammar specification "JSON.grammar".
  */
 @SuppressWarnings({ "unchecked", "rawtypes", "nls" })
-public class JSONParser extends Parser implements IParser {
+public class JSONParser extends Parser implements IIncrementalParser {
 
 	static final ParsingTables PARSING_TABLES = new ParsingTables(
 		"U9o5aTjIma0GHCyICAAG10AYm9DMyQ0Fy05#d1yiA7Y$ZfquKa1ftDIftivaDrqpmALzSi0" +
@@ -25,15 +27,20 @@ public class JSONParser extends Parser implements IParser {
 		"ragpeo$nJxitTxirLxisPxiKMyUnBsuA#jBSIjknCBcjYfowWa2zI$yILiacacYgNHAWleR" +
 		"gTir4MaA1O7U5r9NGne=");
 
+    // whether the last parse had to recover from an error
+    private boolean fRecovered;
+
     // suppress parser error reporting and let the custom error recovery mechanism handle it
-    private static class JSONEvents extends Events
+    private class JSONEvents extends Events
     {
         public void scannerError(Scanner.Exception e)
         {
+            fRecovered = true;
         }
 
         public void syntaxError(Symbol token)
         {
+            fRecovered = true;
         }
 
         public void unexpectedTokenRemoved(Symbol token)
@@ -61,6 +68,19 @@ public class JSONParser extends Parser implements IParser {
         return working.getImmutableResult();
     }
 
+    public synchronized ParseResult parse(IParseState parseState, ParseResult previous, DocumentEvent edit) throws java.lang.Exception
+    {
+        return new JSONIncrementalReparser(this).parse(parseState, previous, edit);
+    }
+
+    /**
+     * Returns whether the last parse had to recover from a syntax error. Errors aren't reported otherwise.
+     */
+    synchronized boolean hasRecovered()
+    {
+        return fRecovered;
+    }
+
     /*
      * (non-Javadoc)
      * @see com.aptana.parsing.IParser#parse(com.aptana.parsing.IParseState)
@@ -68,6 +88,7 @@ public class JSONParser extends Parser implements IParser {
     protected synchronized void parse(IParseState parseState, WorkingParseResult working) throws java.lang.Exception
     {
        	JSONFlexScanner scanner = new JSONFlexScanner();
+		fRecovered = false;
 
 		// send source to the scanner
 		scanner.setSource(parseState.getSource());
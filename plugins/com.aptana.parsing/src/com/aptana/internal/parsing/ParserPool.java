@@ -7,23 +7,93 @@
  */
 package com.aptana.internal.parsing;
 
+import java.text.MessageFormat;
+
 import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.Platform;
+import org.osgi.framework.Bundle;
 
 import com.aptana.core.logging.IdeLog;
-import com.aptana.core.util.ReapingObjectPool;
+import com.aptana.core.util.ElasticObjectPool;
+import com.aptana.core.util.StringUtil;
+import com.aptana.parsing.IDebugScopes;
 import com.aptana.parsing.IParser;
 import com.aptana.parsing.IParserPool;
 import com.aptana.parsing.ParsingPlugin;
 
-public class ParserPool extends ReapingObjectPool<IParser> implements IParserPool
+public class ParserPool extends ElasticObjectPool<IParser> implements IParserPool
 {
+	public static final String ATTR_MIN_POOL_SIZE = "min-pool-size"; //$NON-NLS-1$
+	private static final String ATTR_MAX_POOL_SIZE = "max-pool-size"; //$NON-NLS-1$
+	private static final String ATTR_COMPACT_AST_THRESHOLD = "compact-ast-threshold"; //$NON-NLS-1$
+	private static final String ATTR_SERIALIZABLE_AST = "serializable-ast"; //$NON-NLS-1$
+
+	/**
+	 * By default one parser is kept when the pool isn't used, and a pool has up to one parser per processor.
+	 */
+	private static final int DEFAULT_MIN_POOL_SIZE = 1;
+	private static final int DEFAULT_MAX_POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
 
 	private IConfigurationElement parserExtension;
+	private int compactASTThreshold;
+	private String parserVersion;
+	private boolean serializableAST;
+	private volatile ClassLoader astClassLoader;
 
 	public ParserPool(IConfigurationElement parserExtension)
 	{
+		super(getIntAttribute(parserExtension, ATTR_MIN_POOL_SIZE, DEFAULT_MIN_POOL_SIZE), getIntAttribute(
+				parserExtension, ATTR_MAX_POOL_SIZE, DEFAULT_MAX_POOL_SIZE));
 		this.parserExtension = parserExtension;
-		start();
+		this.compactASTThreshold = getIntAttribute(parserExtension, ATTR_COMPACT_AST_THRESHOLD, -1);
+		this.parserVersion = getParserVersion(parserExtension);
+		this.serializableAST = Boolean.parseBoolean(parserExtension.getAttribute(ATTR_SERIALIZABLE_AST));
+	}
+
+	/**
+	 * Reads a positive number (i.e.: the size from which the parser's results are compacted) from the parser's
+	 * extension
+	 * 
+	 * @param parserExtension
+	 * @param name
+	 * @param defaultValue
+	 * @return the value, or the default value if the attribute isn't set
+	 */
+	private static int getIntAttribute(IConfigurationElement parserExtension, String name, int defaultValue)
+	{
+		String value = parserExtension.getAttribute(name);
+
+		if (!StringUtil.isEmpty(value))
+		{
+			try
+			{
+				return Math.max(0, Integer.parseInt(value));
+			}
+			catch (NumberFormatException e)
+			{
+				IdeLog.logWarning(ParsingPlugin.getDefault(), e);
+			}
+		}
+
+		return defaultValue;
+	}
+
+	/**
+	 * Identifies the parser's implementation by its class and the version of the plugin contributing it
+	 * 
+	 * @param parserExtension
+	 * @return
+	 */
+	private static String getParserVersion(IConfigurationElement parserExtension)
+	{
+		Bundle bundle = Platform.getBundle(parserExtension.getContributor().getName());
+
+		if (bundle == null)
+		{
+			return null;
+		}
+
+		return parserExtension.getAttribute("class") + '@' + bundle.getVersion(); //$NON-NLS-1$
 	}
 
 	@Override
@@ -40,11 +110,63 @@ public class ParserPool extends ReapingObjectPool<IParser> implements IParserPoo
 		return null;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IParserPool#getCompactASTThreshold()
+	 */
+	public int getCompactASTThreshold()
+	{
+		return compactASTThreshold;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IParserPool#getParserVersion()
+	 */
+	public String getParserVersion()
+	{
+		return parserVersion;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IParserPool#getASTClassLoader()
+	 */
+	public ClassLoader getASTClassLoader()
+	{
+		if (!serializableAST)
+		{
+			return null;
+		}
+
+		ClassLoader classLoader = astClassLoader;
+		if (classLoader == null)
+		{
+			// the bundle of the parser sees the classes of the nodes it creates
+			Bundle bundle = Platform.getBundle(parserExtension.getContributor().getName());
+			try
+			{
+				if (bundle != null)
+				{
+					String className = parserExtension.getAttribute("class"); //$NON-NLS-1$
+					classLoader = bundle.loadClass(className).getClassLoader();
+					astClassLoader = classLoader;
+				}
+			}
+			catch (ClassNotFoundException e)
+			{
+				IdeLog.logError(ParsingPlugin.getDefault(), e);
+				serializableAST = false;
+			}
+		}
+		return classLoader;
+	}
+
 	@Override
 	public boolean validate(IParser o)
 	{
-		// Always keep one available parser
-		return unlockedItems() == 1;
+		// parsers don't keep state between parses
+		return true;
 	}
 
 	@Override
@@ -52,4 +174,17 @@ public class ParserPool extends ReapingObjectPool<IParser> implements IParserPoo
 	{
 		// no need to clean the parser up
 	}
+
+	@Override
+	public void dispose()
+	{
+		super.dispose();
+
+		if (IdeLog.isTraceEnabled(ParsingPlugin.getDefault(), IDebugScopes.PARSING))
+		{
+			IdeLog.logTrace(ParsingPlugin.getDefault(),
+					MessageFormat.format("Disposed parser pool for {0}: {1}", //$NON-NLS-1$
+							parserExtension.getAttribute("content-type"), this), IDebugScopes.PARSING); //$NON-NLS-1$
+		}
+	}
 }
@@ -0,0 +1,444 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.parsing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.aptana.core.build.IProblem.Severity;
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.StringUtil;
+import com.aptana.parsing.IDebugScopes;
+import com.aptana.parsing.IParseState;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParsingPlugin;
+import com.aptana.parsing.ast.CompactParseTree;
+import com.aptana.parsing.ast.IParseError;
+import com.aptana.parsing.ast.IParseRootNode;
+import com.aptana.parsing.ast.ParseError;
+
+/**
+ * Keeps parse results on disk, one file per result, so that a source which didn't change since it was last parsed
+ * (even in a previous session) doesn't need to be parsed again. A result is keyed by the content type, the version of
+ * the parser and the cache key and contents of the source, and stored compressed, as its errors and either its
+ * {@link CompactParseTree} or, for the parsers whose nodes are serializable, its serialized tree.
+ * <p>
+ * The last modification time of a file is used as its last access time: when the files take more space than the size
+ * of the cache, the least recently used ones are removed.
+ * </p>
+ */
+public class PersistentParseCache
+{
+	/**
+	 * Written at the start of each file. Must be changed when the format of the file or of the compact trees changes.
+	 */
+	private static final int FORMAT_VERSION = 0x41505302;
+
+	/**
+	 * The formats of the tree of a result
+	 */
+	private static final byte COMPACT_TREE = 0;
+	private static final byte SERIALIZED_TREE = 1;
+
+	private static final String EXTENSION = ".ast"; //$NON-NLS-1$
+
+	/**
+	 * When the cache is too large, files are removed until it's back to this fraction of its size.
+	 */
+	private static final double EVICTION_RATIO = 0.75;
+
+	private final File fDirectory;
+	private final long fMaximumSize;
+	private final AtomicLong fSize;
+	private final Object fEvictionLock = new Object();
+
+	/**
+	 * PersistentParseCache
+	 * 
+	 * @param directory
+	 *            where the results are kept (created if needed)
+	 * @param maximumSize
+	 *            the number of bytes the results may take
+	 */
+	public PersistentParseCache(File directory, long maximumSize)
+	{
+		fDirectory = directory;
+		fMaximumSize = maximumSize;
+		fSize = new AtomicLong();
+
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			IdeLog.logWarning(ParsingPlugin.getDefault(),
+					"Unable to create the parse cache directory " + directory, IDebugScopes.PARSING); //$NON-NLS-1$
+		}
+		for (File file : listFiles())
+		{
+			fSize.addAndGet(file.length());
+		}
+	}
+
+	/**
+	 * Returns the result stored for the given source.
+	 * 
+	 * @param contentTypeId
+	 * @param parserVersion
+	 * @param parseState
+	 * @param astClassLoader
+	 *            the class loader of the nodes of a serialized tree. When null, only compact trees are read back.
+	 * @return the result, or null if there's none
+	 */
+	public ParseResult get(String contentTypeId, String parserVersion, IParseState parseState,
+			ClassLoader astClassLoader)
+	{
+		File file = getFile(contentTypeId, parserVersion, parseState);
+		if (file == null || !file.isFile())
+		{
+			return null;
+		}
+
+		DataInputStream input = null;
+		try
+		{
+			input = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new FileInputStream(file))));
+			if (input.readInt() != FORMAT_VERSION || input.readInt() != parseState.getSource().length())
+			{
+				throw new IOException("Stale parse result " + file); //$NON-NLS-1$
+			}
+
+			int errorCount = input.readInt();
+			List<IParseError> errors = new ArrayList<IParseError>(errorCount);
+			for (int i = 0; i < errorCount; i++)
+			{
+				String language = input.readUTF();
+				int offset = input.readInt();
+				int length = input.readInt();
+				String message = input.readUTF();
+				Severity severity = Severity.create(input.readInt());
+
+				errors.add(new ParseError(language, offset, length, message, severity));
+			}
+			IParseRootNode root;
+			byte format = input.readByte();
+			if (format == COMPACT_TREE)
+			{
+				root = CompactParseTree.read(input);
+			}
+			else if (format == SERIALIZED_TREE && astClassLoader != null)
+			{
+				root = (IParseRootNode) new ASTInputStream(input, astClassLoader).readObject();
+			}
+			else
+			{
+				throw new IOException("Unexpected tree format in " + file); //$NON-NLS-1$
+			}
+
+			// mark the result as recently used
+			file.setLastModified(System.currentTimeMillis());
+			return new ParseResult(root, errors);
+		}
+		catch (IOException e)
+		{
+			IdeLog.logTrace(ParsingPlugin.getDefault(), e.getMessage(), e, IDebugScopes.PARSING);
+		}
+		catch (ClassNotFoundException e)
+		{
+			// i.e.: the node classes of an embedded language which went away
+			IdeLog.logTrace(ParsingPlugin.getDefault(), e.getMessage(), e, IDebugScopes.PARSING);
+		}
+		catch (RuntimeException e)
+		{
+			// i.e.: a corrupted file with indexes out of bounds
+			IdeLog.logWarning(ParsingPlugin.getDefault(), e);
+		}
+		catch (StackOverflowError e)
+		{
+			// i.e.: a tree too deep to be read back on this thread
+			IdeLog.logWarning(ParsingPlugin.getDefault(), "Parse result too deep to be read: " + file, //$NON-NLS-1$
+					IDebugScopes.PARSING);
+		}
+		finally
+		{
+			close(input);
+		}
+
+		// don't hit the broken file again
+		delete(file);
+		return null;
+	}
+
+	/**
+	 * Stores the result of parsing the given source. The tree of the result is serialized when its root node is, and
+	 * stored as its compact copy otherwise. Serialization recurses down the tree, so a tree too deep for the stack of
+	 * the calling thread (i.e.: a long chain of binary operators) is not stored.
+	 * 
+	 * @param contentTypeId
+	 * @param parserVersion
+	 * @param parseState
+	 * @param result
+	 */
+	public void put(String contentTypeId, String parserVersion, IParseState parseState, ParseResult result)
+	{
+		IParseRootNode root = result.getRootNode();
+		File file = getFile(contentTypeId, parserVersion, parseState);
+		if (root == null || file == null)
+		{
+			return;
+		}
+
+		File temp = null;
+		DataOutputStream output = null;
+		try
+		{
+			// write to a temporary file so that readers never see a partial result
+			temp = File.createTempFile("parse", null, fDirectory); //$NON-NLS-1$
+			output = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(new FileOutputStream(
+					temp))));
+			output.writeInt(FORMAT_VERSION);
+			output.writeInt(parseState.getSource().length());
+
+			List<IParseError> errors = result.getErrors();
+			output.writeInt(errors.size());
+			for (IParseError error : errors)
+			{
+				output.writeUTF(StringUtil.getStringValue(error.getLangauge()));
+				output.writeInt(error.getOffset());
+				output.writeInt(error.getLength());
+				output.writeUTF(StringUtil.truncate(StringUtil.getStringValue(error.getMessage()), 8 * 1024));
+				output.writeInt(error.getSeverity().intValue());
+			}
+			if (root instanceof Serializable)
+			{
+				output.writeByte(SERIALIZED_TREE);
+				ObjectOutputStream objectOutput = new ObjectOutputStream(output);
+				objectOutput.writeObject(root);
+				objectOutput.flush();
+			}
+			else
+			{
+				output.writeByte(COMPACT_TREE);
+				CompactParseTree.write(root, output);
+			}
+			output.close();
+			output = null;
+
+			long length = temp.length();
+			long previousLength = file.length();
+			if (!temp.renameTo(file))
+			{
+				// the target may need to be removed first on some platforms
+				delete(file);
+				previousLength = 0;
+				if (!temp.renameTo(file))
+				{
+					return;
+				}
+			}
+			temp = null;
+			fSize.addAndGet(length - previousLength);
+		}
+		catch (IOException e)
+		{
+			IdeLog.logWarning(ParsingPlugin.getDefault(), e);
+		}
+		catch (StackOverflowError e)
+		{
+			// the temporary file is removed below, parsing the source again is all it costs
+			IdeLog.logWarning(ParsingPlugin.getDefault(), "Parse result too deep to be stored: " + file, //$NON-NLS-1$
+					IDebugScopes.PARSING);
+		}
+		finally
+		{
+			close(output);
+			if (temp != null && !temp.delete())
+			{
+				temp.deleteOnExit();
+			}
+		}
+
+		if (fSize.get() > fMaximumSize)
+		{
+			evict();
+		}
+	}
+
+	/**
+	 * Removes all the results from the disk.
+	 */
+	public void clear()
+	{
+		synchronized (fEvictionLock)
+		{
+			for (File file : listFiles())
+			{
+				delete(file);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of bytes taken by the results on disk
+	 */
+	public long getSize()
+	{
+		return fSize.get();
+	}
+
+	/**
+	 * Removes the least recently used results until the cache is well below its maximum size, so that it isn't done
+	 * again on the next store.
+	 */
+	private void evict()
+	{
+		synchronized (fEvictionLock)
+		{
+			if (fSize.get() <= fMaximumSize)
+			{
+				return; // another thread did it meanwhile
+			}
+
+			File[] files = listFiles();
+			final long[] accessTimes = new long[files.length];
+			Integer[] order = new Integer[files.length];
+			for (int i = 0; i < files.length; i++)
+			{
+				accessTimes[i] = files[i].lastModified();
+				order[i] = i;
+			}
+			Arrays.sort(order, new Comparator<Integer>()
+			{
+				public int compare(Integer i1, Integer i2)
+				{
+					long t1 = accessTimes[i1];
+					long t2 = accessTimes[i2];
+					return (t1 < t2) ? -1 : ((t1 == t2) ? 0 : 1);
+				}
+			});
+
+			long target = (long) (fMaximumSize * EVICTION_RATIO);
+			for (int i = 0; i < order.length && fSize.get() > target; i++)
+			{
+				delete(files[order[i]]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the file of the result for the given source
+	 * 
+	 * @return the file, or null if no key could be computed
+	 */
+	private File getFile(String contentTypeId, String parserVersion, IParseState parseState)
+	{
+		String source = parseState.getSource();
+		if (source == null)
+		{
+			return null;
+		}
+
+		// The key of the in-memory cache only has a hash of the source: the one on disk lives much longer, so it uses a
+		// digest of the whole contents.
+		StringBuilder key = new StringBuilder(source.length() + 256);
+		key.append(contentTypeId).append('\n');
+		key.append(parserVersion).append('\n');
+		key.append(parseState.getCacheKey(contentTypeId)).append('\n');
+		key.append(source);
+
+		String digest = StringUtil.md5(key.toString());
+		return (digest == null) ? null : new File(fDirectory, digest + EXTENSION);
+	}
+
+	private File[] listFiles()
+	{
+		File[] files = fDirectory.listFiles();
+		if (files == null)
+		{
+			return new File[0];
+		}
+
+		List<File> results = new ArrayList<File>(files.length);
+		for (File file : files)
+		{
+			if (file.getName().endsWith(EXTENSION))
+			{
+				results.add(file);
+			}
+		}
+		return results.toArray(new File[results.size()]);
+	}
+
+	private void delete(File file)
+	{
+		long length = file.length();
+		if (file.delete())
+		{
+			fSize.addAndGet(-length);
+		}
+	}
+
+	/**
+	 * Reads a serialized tree, loading the classes of its nodes with the class loader of the parser which created them.
+	 */
+	private static class ASTInputStream extends ObjectInputStream
+	{
+		private final ClassLoader fClassLoader;
+
+		ASTInputStream(InputStream input, ClassLoader classLoader) throws IOException
+		{
+			super(input);
+			fClassLoader = classLoader;
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+		{
+			try
+			{
+				return Class.forName(desc.getName(), false, fClassLoader);
+			}
+			catch (ClassNotFoundException e)
+			{
+				// i.e.: primitive types
+				return super.resolveClass(desc);
+			}
+		}
+	}
+
+	private static void close(Closeable closeable)
+	{
+		if (closeable != null)
+		{
+			try
+			{
+				closeable.close();
+			}
+			catch (IOException e) // $codepro.audit.disable emptyCatchClause
+			{
+				// ignore
+			}
+		}
+	}
+}
@@ -0,0 +1,34 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing;
+
+import org.eclipse.jface.text.DocumentEvent;
+
+/**
+ * A parser which is able to reuse the result of a previous parse, reparsing only the part of the source affected by an
+ * edit.
+ */
+public interface IIncrementalParser extends IParser
+{
+	/**
+	 * Parse the content contained within the specified parse state, which is the result of applying the given edit to
+	 * the source of the previous result. The offsets of the edit are relative to the start of the source. The previous
+	 * result may be shared (i.e.: by the parse cache), so it must not be modified: the new result reuses copies of its
+	 * nodes.
+	 * 
+	 * @param parseState
+	 * @param previous
+	 *            the result of parsing the source before the edit
+	 * @param edit
+	 *            the change which was applied to the source since the previous result
+	 * @return
+	 * @throws Exception
+	 */
+	public ParseResult parse(IParseState parseState, ParseResult previous, DocumentEvent edit)
+			throws Exception; // $codepro.audit.disable declaredExceptions
+}
@@ -11,5 +11,27 @@ import com.aptana.core.util.IObjectPool;
 
 public interface IParserPool extends IObjectPool<IParser>
 {
+	/**
+	 * Returns the size (in chars) from which the results of the parsers of this pool are kept as a
+	 * {@link com.aptana.parsing.ast.CompactParseTree}.
+	 * 
+	 * @return the number of chars, or -1 if the results are never compacted
+	 */
+	public int getCompactASTThreshold();
 
+	/**
+	 * Returns the version of the parsers of this pool. Results persisted on disk by one version of a parser are never
+	 * read back by another.
+	 * 
+	 * @return the version, or null if the results of the parsers mustn't be persisted
+	 */
+	public String getParserVersion();
+
+	/**
+	 * Returns the class loader of the nodes created by the parsers of this pool, when their results can be persisted
+	 * as they are (through serialization) rather than as a {@link com.aptana.parsing.ast.CompactParseTree}.
+	 * 
+	 * @return the class loader, or null if the results of the parsers aren't serializable
+	 */
+	public ClassLoader getASTClassLoader();
 }
@@ -0,0 +1,23 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing;
+
+public interface IPreferenceConstants
+{
+	/**
+	 * Whether the results of the parsers which keep compact ASTs are also kept on disk, so that an unchanged file
+	 * opened again or rebuilt in a later session isn't parsed again. Off by default.
+	 */
+	public static final String PERSISTENT_PARSE_CACHE_ENABLED = "PERSISTENT_PARSE_CACHE_ENABLED"; //$NON-NLS-1$
+
+	/**
+	 * The size (in megabytes) of the persistent parse cache. The least recently used results are removed from the disk
+	 * when the cache grows larger.
+	 */
+	public static final String PERSISTENT_PARSE_CACHE_SIZE = "PERSISTENT_PARSE_CACHE_SIZE"; //$NON-NLS-1$
+}
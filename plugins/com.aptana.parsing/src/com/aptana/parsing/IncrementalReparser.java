@@ -0,0 +1,442 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jface.text.DocumentEvent;
+
+import com.aptana.core.util.StringUtil;
+import com.aptana.parsing.ast.IParseError;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+import com.aptana.parsing.ast.ParseError;
+import com.aptana.parsing.ast.ParseNode;
+import com.aptana.parsing.ast.ParseRootNode;
+import com.aptana.parsing.util.ParseUtil;
+
+/**
+ * Implements {@link IIncrementalParser#parse(IParseState, ParseResult, DocumentEvent)} for a parser. The children of a
+ * container node (the root by default, i.e.: the top-level statements, rules or elements) are the units which may be
+ * reused: the units touched by the edit are reparsed along with their neighbours, while the units before the edit are
+ * kept as is and the units after it are only shifted by the number of chars added or removed. The kept units are
+ * copies, as the previous result may still be used by others: it's never modified.
+ * <p>
+ * When the reparsed part of the source has errors or isn't a sequence of complete units, a full parse is done instead.
+ * Subclasses may customize which node holds the units and how the reparsed part is presented to the parser.
+ */
+public class IncrementalReparser
+{
+	private final IParser fParser;
+
+	/**
+	 * IncrementalReparser
+	 * 
+	 * @param parser
+	 *            the parser used to reparse the edited part of the source (and to do full parses).
+	 */
+	public IncrementalReparser(IParser parser)
+	{
+		fParser = parser;
+	}
+
+	/**
+	 * Parse the source of the parse state, reusing the previous result where possible.
+	 * 
+	 * @param parseState
+	 * @param previous
+	 *            the result of parsing the source before the edit (may be null).
+	 * @param edit
+	 *            the change applied to the source since the previous result (may be null).
+	 * @return
+	 * @throws Exception
+	 */
+	public ParseResult parse(IParseState parseState, ParseResult previous, DocumentEvent edit)
+			throws Exception // $codepro.audit.disable declaredExceptions
+	{
+		ParseResult result = null;
+
+		if (previous != null && edit != null)
+		{
+			result = reparse(parseState, previous, edit);
+		}
+
+		return (result != null) ? result : fParser.parse(parseState);
+	}
+
+	/**
+	 * Returns the node whose children are the units to reuse, or null if the result can't be reused.
+	 * 
+	 * @param root
+	 * @return
+	 */
+	protected IParseNode getContainer(IParseRootNode root)
+	{
+		return root;
+	}
+
+	/**
+	 * Returns the number of chars at each end of the container which don't belong to its units (i.e.: the braces of a
+	 * block). The root has none.
+	 * 
+	 * @param container
+	 * @return
+	 */
+	protected int getDelimiterLength(IParseNode container)
+	{
+		return 0;
+	}
+
+	/**
+	 * Returns the text to put in front of the reparsed part of the source so that it can be parsed on its own.
+	 * 
+	 * @param container
+	 *            the container in the previous result
+	 * @param hasPreviousUnit
+	 *            whether a unit is kept before the reparsed part
+	 * @return
+	 */
+	protected String getFragmentPrefix(IParseNode container, boolean hasPreviousUnit)
+	{
+		return StringUtil.EMPTY;
+	}
+
+	/**
+	 * Returns the text to put after the reparsed part of the source so that it can be parsed on its own.
+	 * 
+	 * @param container
+	 *            the container in the previous result
+	 * @param hasNextUnit
+	 *            whether a unit is kept after the reparsed part
+	 * @return
+	 */
+	protected String getFragmentSuffix(IParseNode container, boolean hasNextUnit)
+	{
+		return StringUtil.EMPTY;
+	}
+
+	/**
+	 * Creates the parse state used to parse a part of the source.
+	 * 
+	 * @param parseState
+	 *            the parse state of the whole source
+	 * @param source
+	 *            the part of the source to parse (including the fragment prefix and suffix)
+	 * @return
+	 */
+	protected IParseState createFragmentState(IParseState parseState, String source)
+	{
+		ParseState fragmentState = new ParseState(source);
+		fragmentState.setProgressMonitor(parseState.getProgressMonitor());
+		return fragmentState;
+	}
+
+	/**
+	 * Returns whether the parse of a part of the source ran into errors, in which case a full parse is done instead.
+	 * 
+	 * @param fragmentResult
+	 * @return
+	 */
+	protected boolean hasErrors(ParseResult fragmentResult)
+	{
+		return !fragmentResult.getErrors().isEmpty();
+	}
+
+	/**
+	 * Returns whether the unit ending at the given index is complete, so that the text following it won't change how
+	 * it's parsed (i.e.: a statement ending with a semicolon).
+	 * 
+	 * @param source
+	 * @param endIndex
+	 *            the index of the last char of the unit in the source
+	 * @return
+	 */
+	protected boolean isTerminated(String source, int endIndex)
+	{
+		return true;
+	}
+
+	/**
+	 * Reparses the part of the source touched by the edit and merges it with the untouched units of the previous
+	 * result, or returns null if a full parse is needed.
+	 */
+	private ParseResult reparse(IParseState parseState, ParseResult previous, DocumentEvent edit)
+			throws Exception // $codepro.audit.disable declaredExceptions
+	{
+		IParseRootNode root = previous.getRootNode();
+		String source = parseState.getSource();
+		if (!(root instanceof ParseRootNode) || source == null || parseState.getSkippedRanges() != null)
+		{
+			return null;
+		}
+
+		// make sure the edit matches the new source
+		String text = (edit.getText() != null) ? edit.getText() : StringUtil.EMPTY;
+		int delta = text.length() - edit.getLength();
+		int editOffset = edit.getOffset();
+		if (editOffset < 0 || editOffset + text.length() > source.length() || !source.startsWith(text, editOffset))
+		{
+			return null;
+		}
+
+		IParseNode container = getContainer(root);
+		if (container == null)
+		{
+			return null;
+		}
+
+		// Note: all offsets are in the coordinates of the previous result unless stated otherwise
+		int base = parseState.getStartingOffset();
+		int editStart = base + editOffset;
+		int editEnd = editStart + edit.getLength();
+		int innerStart;
+		int innerEnd;
+		if (container == root)
+		{
+			innerStart = base;
+			innerEnd = base + source.length() - delta;
+		}
+		else
+		{
+			int delimiterLength = getDelimiterLength(container);
+			innerStart = container.getStartingOffset() + delimiterLength;
+			innerEnd = container.getEndingOffset() + 1 - delimiterLength;
+		}
+		if (editStart < innerStart || editEnd > innerEnd)
+		{
+			return null;
+		}
+
+		// find the units touched by the edit and add a neighbour on each side
+		IParseNode[] units = container.getChildren();
+		int unitCount = units.length;
+		int first = 0;
+		while (first < unitCount && units[first].getEndingOffset() + 1 < editStart)
+		{
+			first++;
+		}
+		int last = unitCount - 1;
+		while (last >= 0 && units[last].getStartingOffset() > editEnd)
+		{
+			last--;
+		}
+		int keptBefore = Math.max(first - 1, 0);
+		int keptAfter = Math.min(last + 2, unitCount);
+
+		// only split the source after complete units
+		while (keptBefore > 0 && !isTerminated(source, units[keptBefore - 1].getEndingOffset() - base))
+		{
+			keptBefore--;
+		}
+		while (keptAfter < unitCount && !isTerminated(source, units[keptAfter - 1].getEndingOffset() + delta - base))
+		{
+			keptAfter++;
+		}
+		if (keptBefore == 0 && keptAfter == unitCount)
+		{
+			// nothing to reuse
+			return null;
+		}
+
+		int fragmentStart = (keptBefore > 0) ? units[keptBefore - 1].getEndingOffset() + 1 : innerStart;
+		int fragmentEnd = (keptAfter < unitCount) ? units[keptAfter].getStartingOffset() : innerEnd;
+		String fragment = source.substring(fragmentStart - base, fragmentEnd + delta - base);
+		String prefix = getFragmentPrefix(container, keptBefore > 0);
+		String suffix = getFragmentSuffix(container, keptAfter < unitCount);
+
+		String fragmentSource = prefix + fragment + suffix;
+		ParseResult fragmentResult;
+		try
+		{
+			fragmentResult = fParser.parse(createFragmentState(parseState, fragmentSource));
+		}
+		catch (Exception e)
+		{
+			// let the full parse report it
+			return null;
+		}
+		IParseRootNode fragmentRoot = fragmentResult.getRootNode();
+		if (hasErrors(fragmentResult) || !(fragmentRoot instanceof ParseRootNode))
+		{
+			return null;
+		}
+		IParseNode fragmentContainer = getContainer(fragmentRoot);
+		if (!(fragmentContainer instanceof ParseNode))
+		{
+			return null;
+		}
+		if (!isFullyParsed((ParseRootNode) fragmentRoot, fragmentContainer, fragmentSource))
+		{
+			return null;
+		}
+
+		// collect the new units, skipping the ones coming from the prefix and suffix
+		int localStart = prefix.length();
+		int localEnd = localStart + fragment.length();
+		List<IParseNode> newUnits = new ArrayList<IParseNode>();
+		for (IParseNode unit : fragmentContainer.getChildren())
+		{
+			int unitStart = unit.getStartingOffset();
+			int unitEnd = unit.getEndingOffset();
+			if (unitStart >= localStart && unitEnd < localEnd)
+			{
+				newUnits.add(unit);
+			}
+			else if (unitEnd >= localStart && unitStart < localEnd)
+			{
+				return null;
+			}
+		}
+		int shift = fragmentStart - localStart;
+		if (keptAfter < unitCount && !newUnits.isEmpty()
+				&& !isTerminated(source, newUnits.get(newUnits.size() - 1).getEndingOffset() + shift - base))
+		{
+			return null;
+		}
+
+		// merge the errors before doing any change, as some errors may not be moved
+		List<IParseError> errors = new ArrayList<IParseError>();
+		for (IParseError error : previous.getErrors())
+		{
+			int errorStart = error.getOffset();
+			if (errorStart + error.getLength() <= fragmentStart)
+			{
+				errors.add(error);
+			}
+			else if (errorStart >= fragmentEnd)
+			{
+				if (!(error instanceof ParseError))
+				{
+					return null;
+				}
+				errors.add(moveError((ParseError) error, delta));
+			}
+		}
+
+		// merge the comments
+		List<IParseNode> comments = new ArrayList<IParseNode>();
+		for (IParseNode comment : ((ParseRootNode) root).getCommentNodes())
+		{
+			if (comment.getEndingOffset() < fragmentStart)
+			{
+				comments.add(moveNode(comment, 0));
+			}
+			else if (comment.getStartingOffset() >= fragmentEnd)
+			{
+				comments.add(moveNode(comment, delta));
+			}
+		}
+		for (IParseNode comment : ((ParseRootNode) fragmentRoot).getCommentNodes())
+		{
+			if (comment.getStartingOffset() >= localStart && comment.getEndingOffset() < localEnd)
+			{
+				ParseUtil.addOffset(comment, shift);
+				comments.add(comment);
+			}
+		}
+
+		// merge the units
+		IParseNode[] children = new IParseNode[keptBefore + newUnits.size() + unitCount - keptAfter];
+		int index = 0;
+		for (int i = 0; i < keptBefore; i++)
+		{
+			children[index++] = moveNode(units[i], 0);
+		}
+		for (IParseNode unit : newUnits)
+		{
+			ParseUtil.addOffset(unit, shift);
+			children[index++] = unit;
+		}
+		for (int i = keptAfter; i < unitCount; i++)
+		{
+			children[index++] = moveNode(units[i], delta);
+		}
+
+		// the new root comes from the fragment, so it's already of the right type
+		ParseRootNode newRoot = (ParseRootNode) fragmentRoot;
+		ParseNode newContainer = (ParseNode) fragmentContainer;
+		newContainer.setChildren(children);
+		if (newContainer != newRoot)
+		{
+			newContainer.setLocation(container.getStartingOffset(), container.getEndingOffset() + delta);
+		}
+		newRoot.setLocation(root.getStartingOffset(), root.getEndingOffset() + delta);
+		newRoot.setCommentNodes(comments.toArray(new IParseNode[comments.size()]));
+
+		return new ParseResult(newRoot, errors);
+	}
+
+	/**
+	 * Checks that the parser didn't stop before the end of the fragment, as the parsers accept their goal without
+	 * reporting an error when there's some text left.
+	 */
+	private boolean isFullyParsed(ParseRootNode fragmentRoot, IParseNode fragmentContainer, String fragmentSource)
+	{
+		if (fragmentContainer != fragmentRoot)
+		{
+			// the delimiters of the container are the first and last chars of the fragment
+			return fragmentContainer.getStartingOffset() == 0
+					&& fragmentContainer.getEndingOffset() == fragmentSource.length() - 1;
+		}
+
+		int end = -1;
+		IParseNode lastChild = fragmentRoot.getLastChild();
+		if (lastChild != null)
+		{
+			end = lastChild.getEndingOffset();
+		}
+		for (IParseNode comment : fragmentRoot.getCommentNodes())
+		{
+			end = Math.max(end, comment.getEndingOffset());
+		}
+
+		// only whitespace may follow the last node
+		for (int i = end + 1; i < fragmentSource.length(); i++)
+		{
+			if (!Character.isWhitespace(fragmentSource.charAt(i)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a copy of a node of the previous result moved by the given number of chars. The previous result may be
+	 * held by others (i.e.: the parse cache, or the clients of the editor which asked for it), so it's left untouched.
+	 */
+	private IParseNode moveNode(IParseNode node, int delta)
+	{
+		IParseNode moved = ((ParseNode) node).copy();
+
+		if (delta != 0)
+		{
+			ParseUtil.addOffset(moved, delta);
+		}
+
+		return moved;
+	}
+
+	/**
+	 * Returns a copy of an error moved by the given number of chars.
+	 */
+	private ParseError moveError(ParseError error, int delta)
+	{
+		ParseError moved = new ParseError(error.getLangauge(), error.getOffset() + delta, error.getLength(),
+				error.getMessage(), error.getSeverity());
+
+		for (Map.Entry<String, Object> attribute : error.getAttributes().entrySet())
+		{
+			moved.setAttribute(attribute.getKey(), attribute.getValue());
+		}
+
+		return moved;
+	}
+}
@@ -157,10 +157,10 @@ public class InsertionRecoveryStrategy<T extends ITypePredicate> implements IRec
 
 			Collections.reverse(terminals);
 
-			// create a new simulator to test our updated token stream
+			// use the parser's simulator to test our updated token stream
 			if (parser instanceof Parser)
 			{
-				Simulator sim = ((Parser) parser).new Simulator();
+				Simulator sim = ((Parser) parser).getSimulator();
 
 				// insert test tokens into stream
 				for (Symbol terminal : terminals)
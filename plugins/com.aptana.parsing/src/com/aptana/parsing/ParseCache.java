@@ -0,0 +1,410 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing;
+
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The parse cache used by {@link ParsingEngine}. Entries are kept in a {@link ConcurrentHashMap}, so lookups don't
+ * contend on a shared lock. Each entry is registered before its parse runs and holds the parse as a future, so
+ * concurrent requests for the same key wait for that one parse instead of starting their own.
+ * <p>
+ * Like LRUCacheWithSoftPrunedValues, results are kept with strong references up to a total weight (the number of chars
+ * parsed); the least recently used results beyond that are only kept softly and are moved back to the strong part when
+ * requested again. Only admitting, promoting and evicting entries takes the cache's lock.
+ */
+class ParseCache
+{
+	/**
+	 * A cached parse. The result is available from the future while the parse runs, and from the strong or soft
+	 * reference once it finished.
+	 */
+	static class Entry
+	{
+		final IParseStateCacheKey key;
+		final int weight;
+
+		private volatile FutureTask<ParseResult> parse;
+		private volatile ParseResult result;
+		private volatile SoftReference<ParseResult> softResult;
+		private volatile long lastAccess;
+
+		// guarded by the cache
+		private boolean strong;
+
+		/**
+		 * @param key
+		 *            the key for which the parse will be done.
+		 * @param weight
+		 *            the size that this entry should occupy in the cache (i.e.: number of chars in source being
+		 *            parsed. Note it's done based on the number of chars and not on the generated AST because we have
+		 *            to add the entry to the cache before the AST is actually computed -- as it's used as the
+		 *            synchronization mechanism so that we don't have 2 simultaneous parses for the same content).
+		 * @param parse
+		 */
+		Entry(IParseStateCacheKey key, int weight, FutureTask<ParseResult> parse)
+		{
+			this.key = key;
+			this.weight = weight;
+			this.parse = parse;
+		}
+
+		/**
+		 * @return the result from doing the parse. If it's still not available, blocks until it's provided. A parse
+		 *         that failed yields an empty parse result.
+		 */
+		ParseResult getResult()
+		{
+			FutureTask<ParseResult> pending = parse;
+
+			if (pending != null)
+			{
+				boolean interrupted = false;
+
+				try
+				{
+					while (true)
+					{
+						try
+						{
+							return pending.get();
+						}
+						catch (InterruptedException e)
+						{
+							// keep waiting: whoever asked for the parse still needs the result
+							interrupted = true;
+						}
+						catch (ExecutionException e)
+						{
+							return ParseResult.EMPTY;
+						}
+					}
+				}
+				finally
+				{
+					if (interrupted)
+					{
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+
+			ParseResult value = result;
+
+			if (value == null)
+			{
+				SoftReference<ParseResult> reference = softResult;
+				value = (reference != null) ? reference.get() : null;
+			}
+
+			return (value != null) ? value : ParseResult.EMPTY;
+		}
+
+		/**
+		 * @return true if the result is still being computed or still referenced
+		 */
+		boolean isAvailable()
+		{
+			if (parse != null || result != null)
+			{
+				return true;
+			}
+
+			SoftReference<ParseResult> reference = softResult;
+			return reference != null && reference.get() != null;
+		}
+	}
+
+	private final ConcurrentMap<IParseStateCacheKey, Entry> fEntries;
+	private final int fMaxWeight;
+	private final AtomicLong fClock = new AtomicLong();
+
+	private final AtomicLong fHits = new AtomicLong();
+	private final AtomicLong fMisses = new AtomicLong();
+	private final AtomicLong fEvictions = new AtomicLong();
+
+	// guarded by this
+	private long fWeight;
+
+	/**
+	 * @param maxWeight
+	 *            the maximum weight (in chars) of the results kept with strong references
+	 */
+	ParseCache(int maxWeight)
+	{
+		this.fEntries = new ConcurrentHashMap<IParseStateCacheKey, Entry>(64, 0.75f, 16);
+		this.fMaxWeight = maxWeight;
+	}
+
+	/**
+	 * Returns the entry whose result can be used for the specified key, waiting for it if it's still being parsed, or
+	 * null if the key has to be parsed.
+	 * 
+	 * @param key
+	 * @return
+	 */
+	Entry get(IParseStateCacheKey key)
+	{
+		Entry entry = fEntries.get(key);
+
+		if (entry != null && !entry.key.requiresReparse(key) && isUsable(entry))
+		{
+			fHits.incrementAndGet();
+			return entry;
+		}
+
+		fMisses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Add an entry which is about to be parsed. If another thread registered an entry for an equal key in the meantime
+	 * and its result can be used for the new entry's key, that entry is returned instead and the new one is dropped.
+	 * 
+	 * @param entry
+	 * @return the registered entry
+	 */
+	Entry register(Entry entry)
+	{
+		entry.lastAccess = fClock.incrementAndGet();
+
+		while (true)
+		{
+			Entry current = fEntries.putIfAbsent(entry.key, entry);
+
+			if (current == null)
+			{
+				admit(entry);
+				return entry;
+			}
+			if (!current.key.requiresReparse(entry.key) && isUsable(current))
+			{
+				return current;
+			}
+			if (fEntries.replace(entry.key, current, entry))
+			{
+				discard(current);
+				admit(entry);
+				return entry;
+			}
+		}
+	}
+
+	/**
+	 * Record the result of an entry's parse. A failed parse removes the entry, so that the next request parses
+	 * again. Completing an entry also marks it as recently used, so a parse which did sub-parses stays in the cache
+	 * before them.
+	 * 
+	 * @param entry
+	 * @param parseResult
+	 *            the result, or null if the parse failed
+	 */
+	void complete(Entry entry, ParseResult parseResult)
+	{
+		if (parseResult == null)
+		{
+			if (fEntries.remove(entry.key, entry))
+			{
+				discard(entry);
+			}
+			entry.parse = null;
+			return;
+		}
+
+		entry.softResult = new SoftReference<ParseResult>(parseResult);
+		entry.lastAccess = fClock.incrementAndGet();
+
+		synchronized (this)
+		{
+			if (entry.strong)
+			{
+				entry.result = parseResult;
+			}
+			entry.parse = null;
+		}
+
+		if (fEntries.get(entry.key) == entry)
+		{
+			promote(entry);
+		}
+	}
+
+	/**
+	 * Drop every entry
+	 */
+	synchronized void clear()
+	{
+		fEntries.clear();
+		fWeight = 0;
+	}
+
+	long getEvictionCount()
+	{
+		return fEvictions.get();
+	}
+
+	long getHitCount()
+	{
+		return fHits.get();
+	}
+
+	long getMissCount()
+	{
+		return fMisses.get();
+	}
+
+	/**
+	 * @return the number of chars held with strong references
+	 */
+	synchronized long getWeight()
+	{
+		return fWeight;
+	}
+
+	/**
+	 * Check if an entry's result can still be provided, marking it as recently used and moving it back to the strong
+	 * part of the cache if it had been pruned
+	 * 
+	 * @param entry
+	 * @return
+	 */
+	private boolean isUsable(Entry entry)
+	{
+		if (!entry.isAvailable())
+		{
+			// the soft reference was cleared
+			if (fEntries.remove(entry.key, entry))
+			{
+				discard(entry);
+			}
+			return false;
+		}
+
+		entry.lastAccess = fClock.incrementAndGet();
+
+		if (entry.result == null && entry.parse == null)
+		{
+			promote(entry);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Add a new entry's weight, evicting the least recently used entries when needed
+	 * 
+	 * @param entry
+	 */
+	private synchronized void admit(Entry entry)
+	{
+		// too big for the strong part: only keep it softly
+		if (entry.weight > fMaxWeight)
+		{
+			return;
+		}
+
+		entry.strong = true;
+		fWeight += entry.weight;
+		evict(entry);
+	}
+
+	/**
+	 * Move a pruned entry back into the strong part of the cache
+	 * 
+	 * @param entry
+	 */
+	private synchronized void promote(Entry entry)
+	{
+		if (entry.strong || entry.weight > fMaxWeight)
+		{
+			return;
+		}
+
+		ParseResult value = null;
+		SoftReference<ParseResult> reference = entry.softResult;
+
+		if (reference != null)
+		{
+			value = reference.get();
+		}
+		if (value == null)
+		{
+			return;
+		}
+
+		entry.result = value;
+		entry.strong = true;
+		fWeight += entry.weight;
+		evict(entry);
+	}
+
+	/**
+	 * Forget the weight of an entry which has been removed from the map
+	 * 
+	 * @param entry
+	 */
+	private synchronized void discard(Entry entry)
+	{
+		if (entry.strong)
+		{
+			entry.strong = false;
+			fWeight -= entry.weight;
+		}
+		entry.result = null;
+	}
+
+	/**
+	 * Prune the least recently used entries until the strong part of the cache fits its maximum weight again. Entries
+	 * whose soft references were cleared are removed on the way.
+	 * 
+	 * @param keep
+	 *            the entry just added, which is only evicted if it's the only one left
+	 */
+	private void evict(Entry keep)
+	{
+		while (fWeight > fMaxWeight)
+		{
+			Entry victim = null;
+
+			for (Entry entry : fEntries.values())
+			{
+				if (entry.strong)
+				{
+					if (entry != keep && (victim == null || entry.lastAccess < victim.lastAccess))
+					{
+						victim = entry;
+					}
+				}
+				else if (!entry.isAvailable())
+				{
+					fEntries.remove(entry.key, entry);
+				}
+			}
+
+			if (victim == null)
+			{
+				victim = keep;
+			}
+
+			victim.strong = false;
+			victim.result = null;
+			fWeight -= victim.weight;
+			fEvictions.incrementAndGet();
+
+			if (victim == keep)
+			{
+				return;
+			}
+		}
+	}
+}
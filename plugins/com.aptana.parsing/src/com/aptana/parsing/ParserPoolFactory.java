@@ -16,6 +16,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.content.IContentType;
 import org.eclipse.core.runtime.content.IContentTypeManager;
+import org.eclipse.jface.text.DocumentEvent;
 
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.EclipseUtil;
@@ -117,6 +118,37 @@ public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
 		}
 	}
 
+	/**
+	 * Creates the parsers of the pools whose extension declares a minimum size, so that the first parses of their
+	 * languages (i.e.: by the first build after a start) don't pay for loading the parsers.
+	 */
+	void warmUp()
+	{
+		Map<String, IConfigurationElement> extensions;
+
+		synchronized (this)
+		{
+			if (parsers == null)
+			{
+				parsers = getParsers();
+			}
+			extensions = new HashMap<String, IConfigurationElement>(parsers);
+		}
+
+		for (Map.Entry<String, IConfigurationElement> entry : extensions.entrySet())
+		{
+			if (entry.getValue().getAttribute(ParserPool.ATTR_MIN_POOL_SIZE) != null)
+			{
+				IParserPool pool = getParserPool(entry.getKey());
+
+				if (pool instanceof ParserPool)
+				{
+					((ParserPool) pool).warmUp();
+				}
+			}
+		}
+	}
+
 	/**
 	 * The main use of this class. Pass in a content type and get back an IParserPool to use to "borrow" a parser
 	 * instance. If the specified content type does not exist in the parser pool, then we work our way up the base
@@ -229,4 +261,34 @@ public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
 	{
 		return getInstance().fParsingEngine.parse(contentTypeId, parseState);
 	}
+
+	/**
+	 * Parses several independent sources at once, e.g. the embedded language regions of a document.
+	 * 
+	 * @param contentTypeIds
+	 * @param parseStates
+	 * @return the results in the order of the parse states, null for the parses which failed
+	 * @see ParsingEngine#parseAll(String[], IParseState[])
+	 */
+	public static ParseResult[] parseAll(String[] contentTypeIds, IParseState[] parseStates)
+	{
+		return getInstance().fParsingEngine.parseAll(contentTypeIds, parseStates);
+	}
+
+	/**
+	 * Parse the source of the parse state, reparsing only the part of it affected by the edit done since the previous
+	 * result when the parser supports it. The previous result isn't modified.
+	 * 
+	 * @param contentTypeId
+	 * @param parseState
+	 * @param previous
+	 * @param edit
+	 * @return
+	 * @see ParsingEngine#parse(String, IParseState, ParseResult, DocumentEvent)
+	 */
+	public static ParseResult parse(String contentTypeId, IParseState parseState, ParseResult previous,
+			DocumentEvent edit) throws Exception // $codepro.audit.disable declaredExceptions
+	{
+		return getInstance().fParsingEngine.parse(contentTypeId, parseState, previous, edit);
+	}
 }
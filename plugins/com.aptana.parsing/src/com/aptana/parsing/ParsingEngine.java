@@ -8,13 +8,23 @@
 package com.aptana.parsing;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.jface.text.DocumentEvent;
 
-import org.eclipse.core.runtime.Assert;
-
-import com.aptana.core.epl.util.ILRUCacheable;
-import com.aptana.core.epl.util.LRUCacheWithSoftPrunedValues;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.StringUtil;
+import com.aptana.internal.parsing.PersistentParseCache;
+import com.aptana.parsing.ast.CompactParseTree;
+import com.aptana.parsing.ast.IParseRootNode;
 
 /**
  * This class is responsible for actually calling the parsing. It'll use the ParseState#getCacheKey() to know if an
@@ -32,118 +42,120 @@ public class ParsingEngine
 	}
 
 	/**
-	 * Internal class to help in the synchronization of the parsing results.
+	 * Does the parse for an entry of the cache with a parser from the given pool.
 	 */
-	private static class CacheValue implements ILRUCacheable
+	private static class ParseTask implements Callable<ParseResult>
 	{
-		/**
-		 * Key for the state.
-		 */
-		private IParseStateCacheKey fCachedParseStateKey;
-
-		/**
-		 * This is the state that was used for the parsing.
-		 */
-		private ParseResult fCachedParseResult;
+		private final String fContentTypeId;
+		private final IParserPool fPool;
+		private final IParseState fParseState;
+		private final boolean fPersistent;
 
 		/**
-		 * Lock to help in synchronizing (threads should wait in it while a result is not available).
+		 * @param persistent
+		 *            whether the result may be read from and stored to the persistent cache (i.e.: not worth it for
+		 *            small sources)
 		 */
-		private final Object fLock = new Object();
-
-		/**
-		 * Boolean determining if the results are available or not. Access should be synchronized with fLock.
-		 */
-		private volatile boolean fResultGotten = false;
-
-		private final int fcacheFootprint;
-
-		public int getCacheFootprint()
+		ParseTask(String contentTypeId, IParserPool pool, IParseState parseState, boolean persistent)
 		{
-			return fcacheFootprint;
+			fContentTypeId = contentTypeId;
+			fPool = pool;
+			fParseState = parseState;
+			fPersistent = persistent;
 		}
 
-		/**
-		 * @param parseStateKey
-		 *            the key for which the parse will be done.
-		 * @param cacheFootprint
-		 *            the size that this cache value should occupy in the cache (i.e.: number of chars in source being
-		 *            parsed. Note it's done based on the number of chars and not on the generated AST because we have
-		 *            to add the result to the cache before the AST is actually computed -- as it's used as the
-		 *            synchronization mechanism so that we don't have 2 simultaneous parses for the same content).
-		 */
-		public CacheValue(IParseStateCacheKey parseStateKey, int cacheFootprint)
-		{
-			fCachedParseStateKey = parseStateKey;
-			this.fcacheFootprint = cacheFootprint;
-		}
-
-		/**
-		 * @return true if the new cache key requires a reparse.
-		 */
-		public boolean requiresReparse(IParseStateCacheKey newCacheKey)
-		{
-			return fCachedParseStateKey.requiresReparse(newCacheKey);
-		}
-
-		/**
-		 * @return the result from doing the parse. If it's still not available, blocks until it's provided.
-		 */
-		public ParseResult getResult()
+		public ParseResult call() throws Exception
 		{
-			while (!fResultGotten) // Double-check pattern for speed.
+			ParsingPlugin plugin = ParsingPlugin.getDefault();
+			int threshold = fPool.getCompactASTThreshold();
+			boolean compact = threshold >= 0 && fParseState.getSource().length() >= threshold;
+
+			// Compact results can always be restored, the others only when the parser's nodes are serializable
+			PersistentParseCache persistentCache = null;
+			String parserVersion = fPool.getParserVersion();
+			ClassLoader astClassLoader = fPool.getASTClassLoader();
+			if (fPersistent && (compact || astClassLoader != null) && parserVersion != null && plugin != null)
+			{
+				persistentCache = plugin.getPersistentParseCache();
+			}
+			if (persistentCache != null)
 			{
-				synchronized (fLock)
+				ParseResult result = persistentCache.get(fContentTypeId, parserVersion, fParseState, astClassLoader);
+				if (result != null)
 				{
-					if (!fResultGotten)
-					{
-						try
-						{
-							fLock.wait();
-						}
-						catch (InterruptedException e)
-						{
-							// ignore
-						}
-					}
+					return result;
 				}
 			}
-			return fCachedParseResult;
-		}
 
-		/**
-		 * Sets the result of the parse. Notifies any waiting thread that it has become available.
-		 */
-		public void setResult(ParseResult parseResult)
-		{
-			Assert.isNotNull(parseResult); // A parse result must NOT be null (should be an empty parse result if
-											// needed).
-			fCachedParseResult = parseResult;
-			synchronized (fLock)
+			IParser parser = fPool.checkOut();
+			if (parser == null)
+			{
+				String message = MessageFormat.format(Messages.ParserPoolFactory_Cannot_Acquire_Parser, fContentTypeId);
+				IdeLog.logError(plugin, message, IDebugScopes.PARSING);
+				return ParseResult.EMPTY;
+			}
+			try
+			{
+				if (plugin != null && IdeLog.isTraceEnabled(plugin, IDebugScopes.PARSING))
+				{
+					String source = fParseState.getSource();
+					IdeLog.logTrace(plugin, MessageFormat.format(
+							"Parsing content type {0}, length {1}, source ''{2}''", fContentTypeId, //$NON-NLS-1$
+							source.length(), StringUtil.truncate(source, 100).replaceAll("\\r|\\n", " ")), //$NON-NLS-1$ //$NON-NLS-2$
+							IDebugScopes.PARSING);
+				}
+
+				ParseResult result = parser.parse(fParseState);
+				IParseRootNode root = result.getRootNode();
+
+				if (compact && root != null)
+				{
+					// the result may stay in the cache for long: only keep a compact copy of the tree
+					result = new ParseResult(CompactParseTree.compact(root), result.getErrors());
+				}
+				if (persistentCache != null && root != null)
+				{
+					persistentCache.put(fContentTypeId, parserVersion, fParseState, result);
+				}
+				return result;
+			}
+			finally
 			{
-				fResultGotten = true;
-				fLock.notifyAll();
+				fPool.checkIn(parser);
 			}
 		}
+	}
 
+	/**
+	 * Creates the daemon threads used to parse several sources at once.
+	 */
+	private static class ParserThreadFactory implements ThreadFactory
+	{
+		public Thread newThread(Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, "Parser"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
 	}
 
+	/**
+	 * The maximum number of threads helping the calling thread in {@link #parseAll(String[], IParseState[])}.
+	 */
+	private static final int MAXIMUM_NUMBER_OF_PARSER_THREADS = Math.max(1,
+			Runtime.getRuntime().availableProcessors() - 1);
+
 	/**
 	 * A parse cache. Keyed by combo of content type and source hash, holds IParseRootNode result. Retains most recently
 	 * used ASTs.
 	 */
-	private LRUCacheWithSoftPrunedValues<IParseStateCacheKey, CacheValue> fParseCache;
+	private volatile ParseCache fParseCache;
 
 	/**
 	 * Object providing access to the pool provider.
 	 */
 	private IParserPoolProvider fParserPoolProvider;
 
-	/**
-	 * Any access to the fParseCache should have this lock in place.
-	 */
-	private final Object fParseCacheLock = new Object();
-
 	/**
 	 * Default for fMinimunNumberOfCharsToEnterCache.
 	 */
@@ -163,6 +175,11 @@ public class ParsingEngine
 	 */
 	private final int fMinimumNumberOfCharsToEnterCache;
 
+	/**
+	 * Runs the parses of {@link #parseAll(String[], IParseState[])}.
+	 */
+	private volatile ExecutorService fExecutor;
+
 	/**
 	 * Create a cache with N 'strong' references but still keep pruned values as soft references. Cache size based on
 	 * the number of chars.
@@ -174,9 +191,10 @@ public class ParsingEngine
 	 */
 	protected ParsingEngine(IParserPoolProvider parserPoolProvider, int cacheSize, int minCacheElementSize)
 	{
-		fParseCache = new LRUCacheWithSoftPrunedValues<IParseStateCacheKey, CacheValue>(cacheSize);
+		fParseCache = new ParseCache(cacheSize);
 		fParserPoolProvider = parserPoolProvider;
 		fMinimumNumberOfCharsToEnterCache = minCacheElementSize;
+		fExecutor = Executors.newFixedThreadPool(MAXIMUM_NUMBER_OF_PARSER_THREADS, new ParserThreadFactory());
 	}
 
 	public ParsingEngine(IParserPoolProvider parserPoolProvider)
@@ -188,6 +206,13 @@ public class ParsingEngine
 	public void dispose()
 	{
 		fParseCache = null;
+
+		ExecutorService executor = fExecutor;
+		if (executor != null)
+		{
+			fExecutor = null;
+			executor.shutdown();
+		}
 	}
 
 	/**
@@ -199,11 +224,144 @@ public class ParsingEngine
 		{
 			return;
 		}
-		fParseCache.flush();
+		fParseCache.clear();
+	}
+
+	/**
+	 * @return the number of parses whose result was found in the cache (or was already being computed)
+	 */
+	public long getCacheHitCount()
+	{
+		ParseCache parseCache = fParseCache;
+		return (parseCache != null) ? parseCache.getHitCount() : 0;
+	}
+
+	/**
+	 * @return the number of parses which could not be served by the cache
+	 */
+	public long getCacheMissCount()
+	{
+		ParseCache parseCache = fParseCache;
+		return (parseCache != null) ? parseCache.getMissCount() : 0;
+	}
+
+	/**
+	 * @return the number of times a result was pruned from the strong references of the cache
+	 */
+	public long getCacheEvictionCount()
+	{
+		ParseCache parseCache = fParseCache;
+		return (parseCache != null) ? parseCache.getEvictionCount() : 0;
+	}
+
+	/**
+	 * @return the number of chars of source whose results are currently kept with strong references
+	 */
+	public long getCacheWeight()
+	{
+		ParseCache parseCache = fParseCache;
+		return (parseCache != null) ? parseCache.getWeight() : 0;
 	}
 
 	public ParseResult parse(String contentTypeId, IParseState parseState) throws Exception // $codepro.audit.disable
 																							// declaredExceptions
+	{
+		return parse(contentTypeId, parseState, null, null);
+	}
+
+	/**
+	 * Parses several independent sources at once, such as the regions of a document written in embedded languages.
+	 * The parses are queued to the parser threads and the calling thread runs the queued parses too, from the other end
+	 * of the queue, so that parsers doing nested calls can't run out of threads. Each parse goes through
+	 * {@link #parse(String, IParseState)}, so it's cached like any other.
+	 * 
+	 * @param contentTypeIds
+	 *            the content type of each source
+	 * @param parseStates
+	 *            the parse state of each source
+	 * @return the result of each parse, in the order of the parse states. A parse which failed has a null result.
+	 */
+	public ParseResult[] parseAll(String[] contentTypeIds, IParseState[] parseStates)
+	{
+		int count = parseStates.length;
+		List<FutureTask<ParseResult>> tasks = new ArrayList<FutureTask<ParseResult>>(count);
+		ExecutorService executor = (count > 1) ? fExecutor : null;
+
+		for (int i = 0; i < count; i++)
+		{
+			final String contentTypeId = contentTypeIds[i];
+			final IParseState parseState = parseStates[i];
+			FutureTask<ParseResult> task = new FutureTask<ParseResult>(new Callable<ParseResult>()
+			{
+				public ParseResult call() throws Exception
+				{
+					return parse(contentTypeId, parseState);
+				}
+			});
+
+			tasks.add(task);
+			if (executor != null)
+			{
+				try
+				{
+					executor.execute(task);
+				}
+				catch (RejectedExecutionException e)
+				{
+					// disposed: the calling thread does all the parses
+					executor = null;
+				}
+			}
+		}
+
+		// Run the parses which weren't taken by a thread yet. Start from the end as the threads take them from the start.
+		// Running a task which is already running or done does nothing.
+		for (int i = count - 1; i >= 0; i--)
+		{
+			tasks.get(i).run();
+		}
+
+		ParseResult[] results = new ParseResult[count];
+		for (int i = 0; i < count; i++)
+		{
+			try
+			{
+				results[i] = tasks.get(i).get();
+			}
+			catch (ExecutionException e)
+			{
+				Throwable cause = e.getCause();
+				if (cause instanceof Error)
+				{
+					throw (Error) cause;
+				}
+				// a failed parse has no result, as when a parser throws on a single parse
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Parse the source of the parse state, which is the result of applying the given edit to the source of a previous
+	 * result. If the parser supports it ({@link IIncrementalParser}), only the part of the source affected by the edit
+	 * is reparsed. The previous result isn't modified. Results of incremental parses aren't cached.
+	 * 
+	 * @param contentTypeId
+	 * @param parseState
+	 * @param previous
+	 *            the result of parsing the source before the edit (may be null for a full parse).
+	 * @param edit
+	 *            the change applied to the source since the previous result (may be null for a full parse).
+	 * @return
+	 * @throws Exception
+	 */
+	public ParseResult parse(String contentTypeId, IParseState parseState, ParseResult previous, DocumentEvent edit)
+			throws Exception // $codepro.audit.disable declaredExceptions
 	{
 		try
 		{
@@ -221,6 +379,16 @@ public class ParsingEngine
 				return ParseResult.EMPTY;
 			}
 
+			if (previous != null && edit != null)
+			{
+				ParseResult result = incrementalParse(contentTypeId, parseState, previous, edit);
+				if (result != null)
+				{
+					return result;
+				}
+				// the parser can't reuse the previous result: do a regular parse
+			}
+
 			int sourceLen = source.length();
 			if (sourceLen < fMinimumNumberOfCharsToEnterCache)
 			{
@@ -230,164 +398,89 @@ public class ParsingEngine
 			}
 
 			IParseStateCacheKey newParseStateKey = parseState.getCacheKey(contentTypeId);
-			CacheValue cacheValue = null;
-			LRUCacheWithSoftPrunedValues<IParseStateCacheKey, CacheValue> parseCache = fParseCache;
+			ParseCache parseCache = fParseCache;
 			if (parseCache == null)
 			{
 				return ParseResult.EMPTY; // already disposed.
 			}
 
-			boolean getResultFromCache = false;
 			boolean traceEnabled = plugin != null && IdeLog.isTraceEnabled(plugin, IDebugScopes.PARSING);
-			IParserPool pool = null;
-			IParser parser = null;
-			try
+			ParseCache.Entry cacheEntry = parseCache.get(newParseStateKey);
+
+			if (cacheEntry != null)
 			{
-				synchronized (fParseCacheLock)
+				if (traceEnabled)
 				{
-					cacheValue = parseCache.get(newParseStateKey);
-
-					if (cacheValue != null && !cacheValue.requiresReparse(newParseStateKey))
-					{
-
-						if (traceEnabled)
-						{
-							IdeLog.logTrace(plugin,
-									MessageFormat.format("Parsing cache hit for key {0}", newParseStateKey), //$NON-NLS-1$
-									IDebugScopes.PARSING);
-						}
-
-						// Cache hit... it may still be in progress, but the cacheValue.getResult should handle that
-						// (but we'll get out of the synchronized block to actually do that).
-						getResultFromCache = true;
-					}
-					else
-					{
-						if (cacheValue == null)
-						{
-							if (traceEnabled)
-							{
-								IdeLog.logTrace(plugin,
-										MessageFormat.format("Parsing cache miss for key {0}", newParseStateKey), //$NON-NLS-1$
-										IDebugScopes.PARSING);
-							}
-						}
-						else if (cacheValue != null && cacheValue.requiresReparse(newParseStateKey))
-						{
-							if (traceEnabled)
-							{
-								IdeLog.logTrace(plugin, MessageFormat.format(
-										"Parsing cache hit for key {0}, but reparse required", newParseStateKey), //$NON-NLS-1$
-										IDebugScopes.PARSING);
-							}
-						}
-
-						// No cache-hit, we'll do the parsing here.
-						pool = fParserPoolProvider.getParserPool(contentTypeId);
-
-						// If we won't be able to do the parsing because we're unable to get the pool or the
-						// parser, don't even register the cache value (so that no one listens for something thot
-						// won't yield a correct return anyways).
-						if (pool == null)
-						{
-							if (IdeLog.isInfoEnabled(plugin, null))
-							{
-								String message = MessageFormat.format(
-										Messages.ParserPoolFactory_Cannot_Acquire_Parser_Pool, contentTypeId);
-								IdeLog.logInfo(plugin, message, IDebugScopes.PARSING);
-							}
-							return ParseResult.EMPTY;
-						}
-						parser = pool.checkOut();
-						if (parser == null)
-						{
-							String message = MessageFormat.format(Messages.ParserPoolFactory_Cannot_Acquire_Parser,
-									contentTypeId);
-							IdeLog.logError(plugin, message, IDebugScopes.PARSING);
-							return ParseResult.EMPTY;
-						}
-
-						// Ok, we're in a state where either there's no one parsing or the currently cached value does
-						// not match the one in the cache for this key (i.e.: parse without comments and later with
-						// comments).
-						cacheValue = new CacheValue(newParseStateKey, sourceLen);
-						parseCache.put(newParseStateKey, cacheValue);
-						// Important: after we put it here (in the situation getResultFromCache), we MUST have a result
-						// cacheValue.setResult(), otherwise we may end up with a listener waiting eternally for a
-						// result.
-					}
+					IdeLog.logTrace(plugin,
+							MessageFormat.format("Parsing cache hit for key {0}", newParseStateKey), //$NON-NLS-1$
+							IDebugScopes.PARSING);
 				}
+
+				// Cache hit... it may still be in progress, in which case we block until it finishes.
+				return cacheEntry.getResult();
+			}
+
+			if (traceEnabled)
+			{
+				IdeLog.logTrace(plugin,
+						MessageFormat.format("Parsing cache miss for key {0}", newParseStateKey), //$NON-NLS-1$
+						IDebugScopes.PARSING);
 			}
-			catch (Throwable e)
+
+			// No cache-hit, we'll do the parsing here.
+			IParserPool pool = fParserPoolProvider.getParserPool(contentTypeId);
+
+			// If we won't be able to do the parsing because we're unable to get the pool, don't even register the
+			// cache entry (so that no one waits for something that won't yield a correct return anyways).
+			if (pool == null)
 			{
-				if (!getResultFromCache)
+				if (IdeLog.isInfoEnabled(plugin, null))
 				{
-					// Clean up if something bad happened at somewhere there (to avoid any possible deadlock).
-					if (pool != null && parser != null)
-					{
-						try
-						{
-							pool.checkIn(parser);
-						}
-						catch (Throwable e1)
-						{
-							// Don't even log this one (we're already in a bad state if something happened and we'll
-							// throw the original exception).
-						}
-					}
-					if (cacheValue != null)
-					{
-						// We really HAVE to call this one to avoid possible deadlocks.
-						cacheValue.setResult(ParseResult.EMPTY);
-					}
+					String message = MessageFormat.format(Messages.ParserPoolFactory_Cannot_Acquire_Parser_Pool,
+							contentTypeId);
+					IdeLog.logInfo(plugin, message, IDebugScopes.PARSING);
 				}
-				throw new RuntimeException(e);
+				return ParseResult.EMPTY;
+			}
 
+			FutureTask<ParseResult> parse = new FutureTask<ParseResult>(new ParseTask(contentTypeId, pool, parseState,
+					true));
+
+			// Either there's no one parsing or the currently cached entry does not match this key (i.e.: parse without
+			// comments and later with comments). If another thread registered a matching parse meanwhile, use it.
+			ParseCache.Entry newEntry = new ParseCache.Entry(newParseStateKey, sourceLen, parse);
+			cacheEntry = parseCache.register(newEntry);
+			if (cacheEntry != newEntry)
+			{
+				return cacheEntry.getResult();
 			}
 
-			if (getResultFromCache)
+			// Important: after the entry is registered we MUST complete it, otherwise others may end up waiting
+			// eternally for a result.
+			ParseResult result = null;
+			try
 			{
-				return cacheValue.getResult();
+				parse.run();
+				result = parse.get();
 			}
-			else
+			catch (ExecutionException e)
 			{
-				ParseResult result = ParseResult.EMPTY;
-				try
-				{
-					try
-					{
-						if (traceEnabled)
-						{
-							IdeLog.logTrace(plugin, MessageFormat.format(
-									"Parsing content type {0}, length {1}, source ''{2}''", contentTypeId, //$NON-NLS-1$
-									parseState.getSource().length(), StringUtil.truncate(parseState.getSource(), 100)
-											.replaceAll("\\r|\\n", " ")), //$NON-NLS-1$ //$NON-NLS-2$
-									IDebugScopes.PARSING);
-						}
-
-						result = parser.parse(parseState);
-
-					}
-					finally
-					{
-						pool.checkIn(parser);
-					}
-					synchronized (fParseCacheLock)
-					{
-						// Make a get just to update time stamp or change it from the soft map back into the main LRU.
-						// Done because we may have the situation where the a main parse has multiple sub-parses, and
-						// it's more important to persist the main parse than the sub-parses.
-						parseCache.get(newParseStateKey);
-					}
-				}
-				finally
+				Throwable cause = e.getCause();
+				if (cause instanceof Error)
 				{
-					// Set the result even if this means setting null (otherwise it's possible that some listener
-					// deadlocks because of that).
-					cacheValue.setResult(result);
+					throw (Error) cause;
 				}
-				return result;
+				throw (Exception) cause;
+			}
+			finally
+			{
+				// An empty result means we couldn't get a parser: don't keep it so that the next request tries again.
+				// Completing the entry also updates its time stamp, done because we may have the situation where the a
+				// main parse has multiple sub-parses, and it's more important to persist the main parse than the
+				// sub-parses.
+				parseCache.complete(cacheEntry, (result == ParseResult.EMPTY) ? null : result);
 			}
+			return result;
 		}
 		finally
 		{
@@ -397,31 +490,32 @@ public class ParsingEngine
 
 	}
 
-	private ParseResult noCacheParse(String contentTypeId, IParseState parseState) throws Exception
+	/**
+	 * Does an incremental parse if the parser for the content type supports it. The result isn't cached.
+	 * 
+	 * @return the result, or null if the parser isn't able to reuse the previous result.
+	 */
+	private ParseResult incrementalParse(String contentTypeId, IParseState parseState, ParseResult previous,
+			DocumentEvent edit) throws Exception
 	{
-		IParserPool pool = null;
-		IParser parser = null;
-		pool = fParserPoolProvider.getParserPool(contentTypeId);
+		IParserPool pool = fParserPoolProvider.getParserPool(contentTypeId);
 		if (pool == null)
 		{
-			if (IdeLog.isInfoEnabled(ParsingPlugin.getDefault(), null))
-			{
-				String message = MessageFormat.format(Messages.ParserPoolFactory_Cannot_Acquire_Parser_Pool,
-						contentTypeId);
-				IdeLog.logInfo(ParsingPlugin.getDefault(), message, IDebugScopes.PARSING);
-			}
-			return ParseResult.EMPTY;
+			return null;
 		}
-		parser = pool.checkOut();
+		IParser parser = pool.checkOut();
 		if (parser == null)
 		{
-			String message = MessageFormat.format(Messages.ParserPoolFactory_Cannot_Acquire_Parser, contentTypeId);
-			IdeLog.logError(ParsingPlugin.getDefault(), message, IDebugScopes.PARSING);
-			return ParseResult.EMPTY;
+			return null;
 		}
 		try
 		{
-			return parser.parse(parseState);
+			if (!(parser instanceof IIncrementalParser))
+			{
+				return null;
+			}
+
+			return ((IIncrementalParser) parser).parse(parseState, previous, edit);
 		}
 		finally
 		{
@@ -429,4 +523,20 @@ public class ParsingEngine
 		}
 	}
 
+	private ParseResult noCacheParse(String contentTypeId, IParseState parseState) throws Exception
+	{
+		IParserPool pool = fParserPoolProvider.getParserPool(contentTypeId);
+		if (pool == null)
+		{
+			if (IdeLog.isInfoEnabled(ParsingPlugin.getDefault(), null))
+			{
+				String message = MessageFormat.format(Messages.ParserPoolFactory_Cannot_Acquire_Parser_Pool,
+						contentTypeId);
+				IdeLog.logInfo(ParsingPlugin.getDefault(), message, IDebugScopes.PARSING);
+			}
+			return ParseResult.EMPTY;
+		}
+		return new ParseTask(contentTypeId, pool, parseState, false).call();
+	}
+
 }
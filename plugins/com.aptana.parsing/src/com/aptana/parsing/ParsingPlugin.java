@@ -7,9 +7,19 @@
  */
 package com.aptana.parsing;
 
+import java.io.File;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Plugin;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.osgi.framework.BundleContext;
 
+import com.aptana.core.util.EclipseUtil;
+import com.aptana.internal.parsing.PersistentParseCache;
+
 /**
  * The activator class controls the plug-in life cycle
  */
@@ -19,6 +29,13 @@ public class ParsingPlugin extends Plugin
 	public static final String PLUGIN_ID = "com.aptana.parsing"; //$NON-NLS-1$
 	private static ParsingPlugin PLUGIN;
 
+	/**
+	 * The default size (in megabytes) of the persistent parse cache.
+	 */
+	private static final int DEFAULT_PERSISTENT_PARSE_CACHE_SIZE = 64;
+
+	private PersistentParseCache persistentParseCache;
+
 	/**
 	 * The constructor
 	 */
@@ -34,6 +51,19 @@ public class ParsingPlugin extends Plugin
 	{
 		super.start(context);
 		PLUGIN = this;
+
+		Job job = new Job("Warm up parser pools") //$NON-NLS-1$
+		{
+			@Override
+			protected IStatus run(IProgressMonitor monitor)
+			{
+				ParserPoolFactory.getInstance().warmUp();
+				return Status.OK_STATUS;
+			}
+		};
+		EclipseUtil.setSystemForJob(job);
+		job.setPriority(Job.DECORATE);
+		job.schedule();
 	}
 
 	/*
@@ -53,6 +83,28 @@ public class ParsingPlugin extends Plugin
 		}
 	}
 
+	/**
+	 * Returns the cache keeping parse results on disk, under the state location of this plugin.
+	 * 
+	 * @return the cache, or null if it's disabled ({@link IPreferenceConstants#PERSISTENT_PARSE_CACHE_ENABLED})
+	 */
+	public synchronized PersistentParseCache getPersistentParseCache()
+	{
+		if (!Platform.getPreferencesService().getBoolean(PLUGIN_ID,
+				IPreferenceConstants.PERSISTENT_PARSE_CACHE_ENABLED, false, null))
+		{
+			return null;
+		}
+		if (persistentParseCache == null)
+		{
+			long size = Platform.getPreferencesService().getInt(PLUGIN_ID,
+					IPreferenceConstants.PERSISTENT_PARSE_CACHE_SIZE, DEFAULT_PERSISTENT_PARSE_CACHE_SIZE, null);
+			File directory = getStateLocation().append("parse-cache").toFile(); //$NON-NLS-1$
+			persistentParseCache = new PersistentParseCache(directory, Math.max(1, size) * 1024 * 1024);
+		}
+		return persistentParseCache;
+	}
+
 	/**
 	 * Returns the shared instance
 	 * 
@@ -0,0 +1,439 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing.ast;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A view of a node of a {@link CompactParseTree}. Views are created when requested and only hold their tree and the
+ * index of their node, so two views of the same node are equal but not identical. The tree is read-only: the methods
+ * changing the children throw an {@link UnsupportedOperationException}.
+ */
+public class CompactParseNode implements IParseNode
+{
+	protected final CompactParseTree fTree;
+	protected final int fIndex;
+
+	/**
+	 * CompactParseNode
+	 * 
+	 * @param tree
+	 * @param index
+	 */
+	CompactParseNode(CompactParseTree tree, int index)
+	{
+		fTree = tree;
+		fIndex = index;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#addChild(com.aptana.parsing.ast.IParseNode)
+	 */
+	public void addChild(IParseNode child)
+	{
+		throw new UnsupportedOperationException(); // $codepro.audit.disable exceptionUsage.exceptionCreation
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.lexer.IRange#contains(int)
+	 */
+	public boolean contains(int offset)
+	{
+		return getStartingOffset() <= offset && offset <= getEndingOffset();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		if (!(obj instanceof CompactParseNode))
+		{
+			return false;
+		}
+
+		CompactParseNode other = (CompactParseNode) obj;
+
+		return fTree == other.fTree && fIndex == other.fIndex;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getAttributes()
+	 */
+	public IParseNodeAttribute[] getAttributes()
+	{
+		return fTree.getAttributes(fIndex, this);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getChild(int)
+	 */
+	public IParseNode getChild(int index)
+	{
+		return fTree.getNode(fTree.getChild(fIndex, index));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getChildCount()
+	 */
+	public int getChildCount()
+	{
+		return fTree.getChildCount(fIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getChildIndex(com.aptana.parsing.ast.IParseNode)
+	 */
+	public int getChildIndex(IParseNode child)
+	{
+		if (child instanceof CompactParseNode)
+		{
+			CompactParseNode node = (CompactParseNode) child;
+
+			if (node.fTree == fTree && fTree.getParent(node.fIndex) == fIndex)
+			{
+				return fTree.getIndex(node.fIndex);
+			}
+		}
+
+		return -1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getChildren()
+	 */
+	public IParseNode[] getChildren()
+	{
+		int count = getChildCount();
+
+		if (count == 0)
+		{
+			return ParseNode.NO_CHILDREN;
+		}
+
+		IParseNode[] result = new IParseNode[count];
+
+		for (int i = 0; i < count; i++)
+		{
+			result[i] = getChild(i);
+		}
+
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getElementName()
+	 */
+	public String getElementName()
+	{
+		return fTree.getElementName(fIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.lexer.IRange#getEndingOffset()
+	 */
+	public int getEndingOffset()
+	{
+		return fTree.getEndingOffset(fIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getFirstChild()
+	 */
+	public IParseNode getFirstChild()
+	{
+		return getChild(0);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getIndex()
+	 */
+	public int getIndex()
+	{
+		return fTree.getIndex(fIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ILanguageNode#getLanguage()
+	 */
+	public String getLanguage()
+	{
+		return fTree.getLanguage(fIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getLastChild()
+	 */
+	public IParseNode getLastChild()
+	{
+		return getChild(getChildCount() - 1);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.lexer.IRange#getLength()
+	 */
+	public int getLength()
+	{
+		return getEndingOffset() - getStartingOffset() + 1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getNameNode()
+	 */
+	public INameNode getNameNode()
+	{
+		return fTree.getNameNode(fIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getNextNode()
+	 */
+	public IParseNode getNextNode()
+	{
+		if (getChildCount() > 0)
+		{
+			return getFirstChild();
+		}
+
+		int index = fIndex;
+
+		while (index != -1)
+		{
+			int sibling = fTree.getNextSibling(index);
+
+			if (sibling != -1)
+			{
+				return fTree.getNode(sibling);
+			}
+
+			index = fTree.getParent(index);
+		}
+
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getNextSibling()
+	 */
+	public IParseNode getNextSibling()
+	{
+		return fTree.getNode(fTree.getNextSibling(fIndex));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getNodeAtOffset(int)
+	 */
+	public IParseNode getNodeAtOffset(int offset)
+	{
+		if (!contains(offset))
+		{
+			return null;
+		}
+
+		return fTree.getNode(fTree.getEnclosingNode(fIndex, offset, offset));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getNodeType()
+	 */
+	public short getNodeType()
+	{
+		return fTree.getNodeType(fIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getParent()
+	 */
+	public IParseNode getParent()
+	{
+		return fTree.getNode(fTree.getParent(fIndex));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getPreviousNode()
+	 */
+	public IParseNode getPreviousNode()
+	{
+		int index = fTree.getPreviousSibling(fIndex);
+
+		if (index == -1)
+		{
+			return getParent();
+		}
+
+		// the last descendant of the previous sibling
+		int count;
+
+		while ((count = fTree.getChildCount(index)) > 0)
+		{
+			index = fTree.getChild(index, count - 1);
+		}
+
+		return fTree.getNode(index);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getPreviousSibling()
+	 */
+	public IParseNode getPreviousSibling()
+	{
+		return fTree.getNode(fTree.getPreviousSibling(fIndex));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#getRootNode()
+	 */
+	public IParseNode getRootNode()
+	{
+		int index = fIndex;
+		int parent;
+
+		while ((parent = fTree.getParent(index)) != -1)
+		{
+			index = parent;
+		}
+
+		return fTree.getNode(index);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.lexer.IRange#getStartingOffset()
+	 */
+	public int getStartingOffset()
+	{
+		return fTree.getStartingOffset(fIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.lexer.ILexeme#getText()
+	 */
+	public String getText()
+	{
+		return fTree.getText(fIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#hasChildren()
+	 */
+	public boolean hasChildren()
+	{
+		return getChildCount() > 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode()
+	{
+		return 31 * System.identityHashCode(fTree) + fIndex;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.lexer.IRange#isEmpty()
+	 */
+	public boolean isEmpty()
+	{
+		return getEndingOffset() < getStartingOffset();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#isFilteredFromOutline()
+	 */
+	public boolean isFilteredFromOutline()
+	{
+		return fTree.isFilteredFromOutline(fIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Iterable#iterator()
+	 */
+	public Iterator<IParseNode> iterator()
+	{
+		return new Iterator<IParseNode>()
+		{
+			private int index = 0;
+
+			public boolean hasNext()
+			{
+				return index < getChildCount();
+			}
+
+			public IParseNode next()
+			{
+				if (!hasNext())
+				{
+					throw new NoSuchElementException(); // $codepro.audit.disable exceptionUsage.exceptionCreation
+				}
+
+				return getChild(index++);
+			}
+
+			public void remove()
+			{
+				throw new UnsupportedOperationException(); // $codepro.audit.disable exceptionUsage.exceptionCreation
+			}
+		};
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseNode#replaceChild(int, com.aptana.parsing.ast.IParseNode)
+	 */
+	public void replaceChild(int index, IParseNode child) throws IndexOutOfBoundsException
+	{
+		throw new UnsupportedOperationException(); // $codepro.audit.disable exceptionUsage.exceptionCreation
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return getText();
+	}
+}
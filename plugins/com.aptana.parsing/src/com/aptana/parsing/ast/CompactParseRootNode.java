@@ -0,0 +1,86 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The root of a {@link CompactParseTree}. Unlike the views of the other nodes, there's only one instance of it per
+ * tree.
+ */
+public final class CompactParseRootNode extends CompactParseNode implements IParseRootNode
+{
+	/**
+	 * CompactParseRootNode
+	 * 
+	 * @param tree
+	 */
+	CompactParseRootNode(CompactParseTree tree)
+	{
+		super(tree, 0);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseRootNode#getCommentNodes()
+	 */
+	public IParseNode[] getCommentNodes()
+	{
+		int[] indexes = fTree.getCommentIndexes();
+		IParseNode[] result = new IParseNode[indexes.length];
+
+		for (int i = 0; i < indexes.length; i++)
+		{
+			result[i] = fTree.getNode(indexes[i]);
+		}
+
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseRootNode#getEnclosingNode(int, int)
+	 */
+	public IParseNode getEnclosingNode(int start, int end)
+	{
+		if (start > end || start < getStartingOffset() || end > getEndingOffset())
+		{
+			return null;
+		}
+
+		return fTree.getNode(fTree.getEnclosingNode(fIndex, start, end));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseRootNode#getNodesInRange(int, int)
+	 */
+	public IParseNode[] getNodesInRange(int start, int end)
+	{
+		if (start > end)
+		{
+			return ParseNode.NO_CHILDREN;
+		}
+
+		List<IParseNode> nodes = new ArrayList<IParseNode>();
+		fTree.collectNodes(fIndex, start, end, nodes);
+
+		return nodes.toArray(new IParseNode[nodes.size()]);
+	}
+
+	/**
+	 * Returns the tree holding the nodes
+	 * 
+	 * @return
+	 */
+	public CompactParseTree getTree()
+	{
+		return fTree;
+	}
+}
@@ -0,0 +1,780 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing.ast;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
+
+/**
+ * A read-only copy of a parse tree which keeps its nodes in primitive arrays instead of node objects: a large AST
+ * (i.e.: the one of a multi-megabyte JS file kept by the parse cache) then costs a few dozens of bytes per node. The
+ * nodes are stored breadth-first, so the children of a node are contiguous: a node only needs the index of its first
+ * child and its number of children, and its next sibling is the following index. Strings (texts, names, element names
+ * and languages) are shared through a table.
+ * <p>
+ * Nodes are accessed through {@link CompactParseNode} views, which are created on demand and compared by index, so
+ * the walkers using the {@link IParseNode} API keep working. Code which depends on the classes of the original nodes
+ * (i.e.: <code>instanceof JSFunctionNode</code>) doesn't see them anymore, so this is only used for the parsers
+ * which ask for it with the compact-ast-threshold attribute of their extension.
+ */
+public final class CompactParseTree
+{
+	private static final byte FILTERED_FROM_OUTLINE = 1;
+	private static final byte SORTED_CHILDREN = 2;
+
+	private static final int NO_NODE = -1;
+
+	private final short[] fTypes;
+	private final int[] fStarts;
+	private final int[] fEnds;
+	private final int[] fParents;
+	private final int[] fFirstChildren;
+	private final int[] fChildCounts;
+	private final int[] fTexts;
+	private final int[] fElementNames;
+	private final int[] fLanguages;
+	private final byte[] fFlags;
+
+	/**
+	 * The names and name ranges of the nodes whose name node isn't made of their text and range. Null if there are
+	 * none.
+	 */
+	private int[] fNames;
+	private int[] fNameStarts;
+	private int[] fNameEnds;
+
+	/**
+	 * The name/value pairs of the nodes which have attributes.
+	 */
+	private final Map<Integer, String[]> fAttributes;
+
+	private final String[] fStrings;
+	private final int[] fComments;
+	private final CompactParseRootNode fRoot;
+
+	/**
+	 * Returns a compact copy of the given tree (including its comments). The original tree isn't modified.
+	 * 
+	 * @param root
+	 * @return the root of the copy
+	 */
+	public static IParseRootNode compact(IParseRootNode root)
+	{
+		if (root instanceof CompactParseRootNode)
+		{
+			return root;
+		}
+
+		return new CompactParseTree(root).fRoot;
+	}
+
+	/**
+	 * Reads a tree written by {@link #write(IParseRootNode, DataOutput)}.
+	 * 
+	 * @param input
+	 * @return the root of the tree
+	 * @throws IOException
+	 *             if the input can't be read or doesn't hold a tree
+	 */
+	public static IParseRootNode read(DataInput input) throws IOException
+	{
+		return new CompactParseTree(input).fRoot;
+	}
+
+	/**
+	 * Writes the compact copy of the given tree, so that it can be restored with {@link #read(DataInput)} without
+	 * parsing its source again (i.e.: by a persistent parse cache).
+	 * 
+	 * @param root
+	 * @param output
+	 * @throws IOException
+	 */
+	public static void write(IParseRootNode root, DataOutput output) throws IOException
+	{
+		CompactParseTree tree = ((CompactParseRootNode) compact(root)).getTree();
+		int size = tree.fTypes.length;
+
+		output.writeInt(size);
+		for (int i = 0; i < size; i++)
+		{
+			output.writeShort(tree.fTypes[i]);
+			output.writeInt(tree.fStarts[i]);
+			output.writeInt(tree.fEnds[i]);
+			output.writeInt(tree.fParents[i]);
+			output.writeInt(tree.fFirstChildren[i]);
+			output.writeInt(tree.fChildCounts[i]);
+			output.writeInt(tree.fTexts[i]);
+			output.writeInt(tree.fElementNames[i]);
+			output.writeInt(tree.fLanguages[i]);
+			output.writeByte(tree.fFlags[i]);
+		}
+
+		output.writeBoolean(tree.fNames != null);
+		if (tree.fNames != null)
+		{
+			for (int i = 0; i < size; i++)
+			{
+				output.writeInt(tree.fNames[i]);
+				output.writeInt(tree.fNameStarts[i]);
+				output.writeInt(tree.fNameEnds[i]);
+			}
+		}
+
+		output.writeInt(tree.fAttributes.size());
+		for (Map.Entry<Integer, String[]> entry : tree.fAttributes.entrySet())
+		{
+			String[] pairs = entry.getValue();
+
+			output.writeInt(entry.getKey());
+			output.writeInt(pairs.length);
+			for (String value : pairs)
+			{
+				writeString(value, output);
+			}
+		}
+
+		output.writeInt(tree.fStrings.length);
+		for (String value : tree.fStrings)
+		{
+			writeString(value, output);
+		}
+
+		output.writeInt(tree.fComments.length);
+		for (int comment : tree.fComments)
+		{
+			output.writeInt(comment);
+		}
+	}
+
+	/**
+	 * CompactParseTree
+	 * 
+	 * @param root
+	 */
+	private CompactParseTree(IParseRootNode root)
+	{
+		// lay out the nodes breadth-first, starting with the roots of the tree and of the comments
+		List<IParseNode> nodes = new ArrayList<IParseNode>();
+		IParseNode[] comments = root.getCommentNodes();
+		int commentCount = (comments != null) ? comments.length : 0;
+
+		nodes.add(root);
+		for (int i = 0; i < commentCount; i++)
+		{
+			nodes.add(comments[i]);
+		}
+
+		for (int i = 0; i < nodes.size(); i++)
+		{
+			IParseNode node = nodes.get(i);
+			int count = node.getChildCount();
+
+			for (int j = 0; j < count; j++)
+			{
+				nodes.add(node.getChild(j));
+			}
+		}
+
+		int size = nodes.size();
+
+		fTypes = new short[size];
+		fStarts = new int[size];
+		fEnds = new int[size];
+		fParents = new int[size];
+		fFirstChildren = new int[size];
+		fChildCounts = new int[size];
+		fTexts = new int[size];
+		fElementNames = new int[size];
+		fLanguages = new int[size];
+		fFlags = new byte[size];
+		fAttributes = new HashMap<Integer, String[]>();
+		fComments = new int[commentCount];
+
+		Map<String, Integer> strings = new HashMap<String, Integer>();
+		List<String> stringTable = new ArrayList<String>();
+		int nextChild = commentCount + 1;
+
+		fParents[0] = NO_NODE;
+		for (int i = 0; i < commentCount; i++)
+		{
+			fParents[i + 1] = NO_NODE;
+			fComments[i] = i + 1;
+		}
+
+		for (int i = 0; i < size; i++)
+		{
+			IParseNode node = nodes.get(i);
+			int count = node.getChildCount();
+			String text = node.getText();
+
+			fTypes[i] = node.getNodeType();
+			fStarts[i] = node.getStartingOffset();
+			fEnds[i] = node.getEndingOffset();
+			fTexts[i] = intern(text, strings, stringTable);
+			fElementNames[i] = intern(node.getElementName(), strings, stringTable);
+			fLanguages[i] = intern(node.getLanguage(), strings, stringTable);
+			fFirstChildren[i] = nextChild;
+			fChildCounts[i] = count;
+
+			for (int j = 0; j < count; j++)
+			{
+				fParents[nextChild + j] = i;
+			}
+			nextChild += count;
+
+			if (node.isFilteredFromOutline())
+			{
+				fFlags[i] |= FILTERED_FROM_OUTLINE;
+			}
+			if (isSorted(node, count))
+			{
+				fFlags[i] |= SORTED_CHILDREN;
+			}
+
+			setName(i, node, text, strings, stringTable);
+			setAttributes(i, node);
+		}
+
+		fStrings = stringTable.toArray(new String[stringTable.size()]);
+		fRoot = new CompactParseRootNode(this);
+	}
+
+	/**
+	 * CompactParseTree
+	 * 
+	 * @param input
+	 * @throws IOException
+	 */
+	private CompactParseTree(DataInput input) throws IOException
+	{
+		int size = readCount(input);
+
+		if (size == 0)
+		{
+			throw new IOException("A parse tree needs a root node"); //$NON-NLS-1$
+		}
+
+		fTypes = new short[size];
+		fStarts = new int[size];
+		fEnds = new int[size];
+		fParents = new int[size];
+		fFirstChildren = new int[size];
+		fChildCounts = new int[size];
+		fTexts = new int[size];
+		fElementNames = new int[size];
+		fLanguages = new int[size];
+		fFlags = new byte[size];
+
+		for (int i = 0; i < size; i++)
+		{
+			fTypes[i] = input.readShort();
+			fStarts[i] = input.readInt();
+			fEnds[i] = input.readInt();
+			fParents[i] = input.readInt();
+			fFirstChildren[i] = input.readInt();
+			fChildCounts[i] = input.readInt();
+			fTexts[i] = input.readInt();
+			fElementNames[i] = input.readInt();
+			fLanguages[i] = input.readInt();
+			fFlags[i] = input.readByte();
+		}
+
+		if (input.readBoolean())
+		{
+			fNames = new int[size];
+			fNameStarts = new int[size];
+			fNameEnds = new int[size];
+
+			for (int i = 0; i < size; i++)
+			{
+				fNames[i] = input.readInt();
+				fNameStarts[i] = input.readInt();
+				fNameEnds[i] = input.readInt();
+			}
+		}
+
+		int attributeCount = readCount(input);
+
+		fAttributes = new HashMap<Integer, String[]>();
+		for (int i = 0; i < attributeCount; i++)
+		{
+			int index = input.readInt();
+			String[] pairs = new String[readCount(input)];
+
+			for (int j = 0; j < pairs.length; j++)
+			{
+				pairs[j] = readString(input);
+			}
+			fAttributes.put(index, pairs);
+		}
+
+		fStrings = new String[readCount(input)];
+		for (int i = 0; i < fStrings.length; i++)
+		{
+			fStrings[i] = readString(input);
+		}
+
+		fComments = new int[readCount(input)];
+		for (int i = 0; i < fComments.length; i++)
+		{
+			fComments[i] = input.readInt();
+		}
+
+		fRoot = new CompactParseRootNode(this);
+	}
+
+	private static int readCount(DataInput input) throws IOException
+	{
+		int count = input.readInt();
+
+		if (count < 0)
+		{
+			throw new IOException("Invalid count: " + count); //$NON-NLS-1$
+		}
+
+		return count;
+	}
+
+	/**
+	 * Reads a string written by {@link #writeString(String, DataOutput)}
+	 * 
+	 * @param input
+	 * @return
+	 * @throws IOException
+	 */
+	private static String readString(DataInput input) throws IOException
+	{
+		int length = input.readInt();
+
+		if (length < 0)
+		{
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+
+		input.readFully(bytes);
+		return new String(bytes, IOUtil.UTF_8);
+	}
+
+	/**
+	 * Writes a string as its length and UTF-8 bytes: unlike DataOutput#writeUTF(), texts aren't limited to 64k.
+	 * 
+	 * @param value
+	 * @param output
+	 * @throws IOException
+	 */
+	private static void writeString(String value, DataOutput output) throws IOException
+	{
+		if (value == null)
+		{
+			output.writeInt(-1);
+			return;
+		}
+
+		byte[] bytes = value.getBytes(IOUtil.UTF_8);
+
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	/**
+	 * Returns the index of the given string in the table, adding it if needed
+	 * 
+	 * @param value
+	 * @param strings
+	 * @param stringTable
+	 * @return
+	 */
+	private static int intern(String value, Map<String, Integer> strings, List<String> stringTable)
+	{
+		if (value == null)
+		{
+			return NO_NODE;
+		}
+
+		Integer index = strings.get(value);
+
+		if (index == null)
+		{
+			index = stringTable.size();
+			strings.put(value, index);
+			stringTable.add(value);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Returns whether the children of the node are sorted by offset and don't overlap
+	 * 
+	 * @param node
+	 * @param count
+	 * @return
+	 */
+	private static boolean isSorted(IParseNode node, int count)
+	{
+		for (int i = 1; i < count; i++)
+		{
+			IParseNode previous = node.getChild(i - 1);
+			IParseNode child = node.getChild(i);
+
+			if (previous.getEndingOffset() >= child.getStartingOffset()
+					|| previous.getStartingOffset() > child.getStartingOffset())
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Record the name node of a node, unless it's the one built from the node's text and range
+	 * 
+	 * @param index
+	 * @param node
+	 * @param text
+	 * @param strings
+	 * @param stringTable
+	 */
+	private void setName(int index, IParseNode node, String text, Map<String, Integer> strings,
+			List<String> stringTable)
+	{
+		INameNode nameNode = node.getNameNode();
+
+		if (nameNode == null)
+		{
+			return;
+		}
+
+		String name = nameNode.getName();
+		int start = node.getStartingOffset();
+		int end = node.getEndingOffset();
+
+		if (nameNode.getNameRange() != null)
+		{
+			start = nameNode.getNameRange().getStartingOffset();
+			end = nameNode.getNameRange().getEndingOffset();
+		}
+
+		if (StringUtil.areEqual(name, text) && start == fStarts[index] && end == fEnds[index])
+		{
+			return;
+		}
+
+		if (fNames == null)
+		{
+			int size = fTypes.length;
+
+			fNames = new int[size];
+			fNameStarts = new int[size];
+			fNameEnds = new int[size];
+
+			for (int i = 0; i < size; i++)
+			{
+				fNames[i] = NO_NODE;
+			}
+		}
+
+		fNames[index] = intern(name, strings, stringTable);
+		fNameStarts[index] = start;
+		fNameEnds[index] = end;
+	}
+
+	/**
+	 * Record the attributes of a node, if any
+	 * 
+	 * @param index
+	 * @param node
+	 */
+	private void setAttributes(int index, IParseNode node)
+	{
+		IParseNodeAttribute[] attributes = node.getAttributes();
+
+		if (attributes == null || attributes.length == 0)
+		{
+			return;
+		}
+
+		String[] pairs = new String[attributes.length * 2];
+
+		for (int i = 0; i < attributes.length; i++)
+		{
+			pairs[i * 2] = attributes[i].getName();
+			pairs[i * 2 + 1] = attributes[i].getValue();
+		}
+
+		fAttributes.put(index, pairs);
+	}
+
+	/**
+	 * Returns a view of the node at the given index
+	 * 
+	 * @param index
+	 * @return the view, or null if index doesn't reference a node
+	 */
+	IParseNode getNode(int index)
+	{
+		if (index == 0)
+		{
+			return fRoot;
+		}
+		if (index < 0 || index >= fTypes.length)
+		{
+			return null;
+		}
+
+		return new CompactParseNode(this, index);
+	}
+
+	/**
+	 * Returns the number of nodes in the tree, including the comments
+	 * 
+	 * @return
+	 */
+	public int getNodeCount()
+	{
+		return fTypes.length;
+	}
+
+	IParseNodeAttribute[] getAttributes(int index, IParseNode view)
+	{
+		String[] pairs = fAttributes.get(index);
+
+		if (pairs == null)
+		{
+			return ParseNode.NO_ATTRIBUTES;
+		}
+
+		IParseNodeAttribute[] result = new IParseNodeAttribute[pairs.length / 2];
+
+		for (int i = 0; i < result.length; i++)
+		{
+			result[i] = new ParseNodeAttribute(view, pairs[i * 2], pairs[i * 2 + 1]);
+		}
+
+		return result;
+	}
+
+	int getChild(int index, int childIndex)
+	{
+		if (childIndex < 0 || childIndex >= fChildCounts[index])
+		{
+			return NO_NODE;
+		}
+
+		return fFirstChildren[index] + childIndex;
+	}
+
+	int getChildCount(int index)
+	{
+		return fChildCounts[index];
+	}
+
+	int[] getCommentIndexes()
+	{
+		return fComments;
+	}
+
+	String getElementName(int index)
+	{
+		return getString(fElementNames[index]);
+	}
+
+	int getEndingOffset(int index)
+	{
+		return fEnds[index];
+	}
+
+	/**
+	 * Returns the index of the node among the children of its parent
+	 * 
+	 * @param index
+	 * @return the index, or -1 for the root and the comments
+	 */
+	int getIndex(int index)
+	{
+		int parent = fParents[index];
+
+		return (parent == NO_NODE) ? NO_NODE : index - fFirstChildren[parent];
+	}
+
+	String getLanguage(int index)
+	{
+		return getString(fLanguages[index]);
+	}
+
+	INameNode getNameNode(int index)
+	{
+		if (fNames != null && fNames[index] != NO_NODE)
+		{
+			return new ParseNode.NameNode(getString(fNames[index]), fNameStarts[index], fNameEnds[index]);
+		}
+
+		return new ParseNode.NameNode(getText(index), fStarts[index], fEnds[index]);
+	}
+
+	short getNodeType(int index)
+	{
+		return fTypes[index];
+	}
+
+	int getNextSibling(int index)
+	{
+		int parent = fParents[index];
+
+		if (parent == NO_NODE || index == fFirstChildren[parent] + fChildCounts[parent] - 1)
+		{
+			return NO_NODE;
+		}
+
+		return index + 1;
+	}
+
+	int getParent(int index)
+	{
+		return fParents[index];
+	}
+
+	int getPreviousSibling(int index)
+	{
+		int parent = fParents[index];
+
+		if (parent == NO_NODE || index == fFirstChildren[parent])
+		{
+			return NO_NODE;
+		}
+
+		return index - 1;
+	}
+
+	int getStartingOffset(int index)
+	{
+		return fStarts[index];
+	}
+
+	String getText(int index)
+	{
+		String text = getString(fTexts[index]);
+
+		return (text != null) ? text : StringUtil.EMPTY;
+	}
+
+	boolean isFilteredFromOutline(int index)
+	{
+		return (fFlags[index] & FILTERED_FROM_OUTLINE) != 0;
+	}
+
+	/**
+	 * Returns the first child of the node which contains the given range
+	 * 
+	 * @param index
+	 * @param start
+	 * @param end
+	 * @return the index of the child, or -1 if no child contains the range
+	 */
+	int getChildContaining(int index, int start, int end)
+	{
+		int first = fFirstChildren[index];
+		int last = first + fChildCounts[index] - 1;
+
+		if ((fFlags[index] & SORTED_CHILDREN) != 0)
+		{
+			// the only candidate is the last child starting before the range
+			int low = first;
+			int high = last;
+
+			while (low <= high)
+			{
+				int mid = (low + high) >>> 1;
+
+				if (fStarts[mid] <= start)
+				{
+					low = mid + 1;
+				}
+				else
+				{
+					high = mid - 1;
+				}
+			}
+
+			return (high >= first && end <= fEnds[high]) ? high : NO_NODE;
+		}
+
+		for (int i = first; i <= last; i++)
+		{
+			if (fStarts[i] <= start && end <= fEnds[i])
+			{
+				return i;
+			}
+		}
+
+		return NO_NODE;
+	}
+
+	/**
+	 * Returns the deepest descendant of the node containing the range, or the node itself
+	 * 
+	 * @param index
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	int getEnclosingNode(int index, int start, int end)
+	{
+		int child;
+
+		while ((child = getChildContaining(index, start, end)) != NO_NODE)
+		{
+			index = child; // $codepro.audit.disable questionableAssignment
+		}
+
+		return index;
+	}
+
+	/**
+	 * Adds the descendants of the node which overlap the given range to the list, in document order
+	 * 
+	 * @param index
+	 * @param start
+	 * @param end
+	 * @param result
+	 */
+	void collectNodes(int index, int start, int end, List<IParseNode> result)
+	{
+		int first = fFirstChildren[index];
+		int last = first + fChildCounts[index] - 1;
+
+		for (int i = first; i <= last; i++)
+		{
+			if (fStarts[i] <= end && fEnds[i] >= start)
+			{
+				result.add(getNode(i));
+				collectNodes(i, start, end, result);
+			}
+			else if ((fFlags[index] & SORTED_CHILDREN) != 0 && fStarts[i] > end)
+			{
+				break;
+			}
+		}
+	}
+
+	private String getString(int index)
+	{
+		return (index == NO_NODE) ? null : fStrings[index];
+	}
+}
@@ -16,4 +16,29 @@ public interface IParseRootNode extends IParseNode
 	 * @return an array of comment nodes
 	 */
 	public IParseNode[] getCommentNodes();
+
+	/**
+	 * Returns the deepest node which contains the given range, i.e.: the node a selection belongs to. Like
+	 * {@link #getNodeAtOffset(int)}, lookups descend through the children of the nodes and use an index built the first
+	 * time the tree is queried, so they don't scan every child of a node.
+	 * 
+	 * @param start
+	 *            the starting offset of the range
+	 * @param end
+	 *            the ending offset of the range (inclusive)
+	 * @return the node containing the range, or null if it's outside of this root
+	 */
+	public IParseNode getEnclosingNode(int start, int end);
+
+	/**
+	 * Returns all the descendants of this root which overlap the given range, in document order (parents before their
+	 * children).
+	 * 
+	 * @param start
+	 *            the starting offset of the range
+	 * @param end
+	 *            the ending offset of the range (inclusive)
+	 * @return the nodes overlapping the range
+	 */
+	public IParseNode[] getNodesInRange(int start, int end);
 }
@@ -0,0 +1,220 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing.ast;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Offset lookups for the nodes of a tree. The nodes whose children are sorted by offset and don't overlap are recorded
+ * when the index is built, so the child at an offset can be found with a binary search on those instead of scanning
+ * every child.
+ * <p>
+ * The offsets are read from the nodes when querying, so the index remains valid when a whole tree is moved (i.e.:
+ * {@link com.aptana.parsing.util.ParseUtil#addOffset(IParseNode, int)}). Nodes whose number of children changed since
+ * the index was built are scanned.
+ */
+final class OffsetIndex
+{
+	/**
+	 * Nodes with fewer children are always scanned.
+	 */
+	private static final int MIN_INDEXED_CHILDREN = 8;
+
+	/**
+	 * The nodes with sorted children, mapped to their number of children when the index was built.
+	 */
+	private final Map<IParseNode, Integer> fSortedNodes;
+
+	/**
+	 * OffsetIndex
+	 * 
+	 * @param root
+	 */
+	OffsetIndex(IParseNode root)
+	{
+		fSortedNodes = new IdentityHashMap<IParseNode, Integer>();
+
+		List<IParseNode> stack = new ArrayList<IParseNode>();
+		stack.add(root);
+
+		while (!stack.isEmpty())
+		{
+			IParseNode node = stack.remove(stack.size() - 1);
+			int count = node.getChildCount();
+
+			if (count >= MIN_INDEXED_CHILDREN && isSorted(node, count))
+			{
+				fSortedNodes.put(node, count);
+			}
+			for (int i = 0; i < count; i++)
+			{
+				IParseNode child = node.getChild(i);
+
+				if (child != null)
+				{
+					stack.add(child);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the first child of the node containing the given range.
+	 * 
+	 * @param node
+	 * @param start
+	 * @param end
+	 * @return the child, or null if no child contains the range
+	 */
+	IParseNode getChild(IParseNode node, int start, int end)
+	{
+		int count = node.getChildCount();
+
+		if (isIndexed(node, count))
+		{
+			// the only candidate is the last child starting before the range
+			int low = 0;
+			int high = count - 1;
+
+			while (low <= high)
+			{
+				int mid = (low + high) >>> 1;
+
+				if (node.getChild(mid).getStartingOffset() <= start)
+				{
+					low = mid + 1;
+				}
+				else
+				{
+					high = mid - 1;
+				}
+			}
+
+			if (high >= 0)
+			{
+				IParseNode child = node.getChild(high);
+
+				if (child.getStartingOffset() <= start && end <= child.getEndingOffset())
+				{
+					return child;
+				}
+			}
+			return null;
+		}
+
+		for (int i = 0; i < count; i++)
+		{
+			IParseNode child = node.getChild(i);
+
+			if (child != null && child.getStartingOffset() <= start && end <= child.getEndingOffset())
+			{
+				return child;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds the descendants of the node which overlap the given range to the list, in document order.
+	 * 
+	 * @param node
+	 * @param start
+	 * @param end
+	 * @param result
+	 */
+	void collectNodes(IParseNode node, int start, int end, List<IParseNode> result)
+	{
+		int count = node.getChildCount();
+		int first = 0;
+
+		if (isIndexed(node, count))
+		{
+			// the children don't overlap, so their ending offsets are sorted as well
+			int high = count - 1;
+
+			while (first <= high)
+			{
+				int mid = (first + high) >>> 1;
+
+				if (node.getChild(mid).getEndingOffset() < start)
+				{
+					first = mid + 1;
+				}
+				else
+				{
+					high = mid - 1;
+				}
+			}
+
+			for (int i = first; i < count; i++)
+			{
+				IParseNode child = node.getChild(i);
+
+				if (child.getStartingOffset() > end)
+				{
+					break;
+				}
+				if (child.getEndingOffset() >= start)
+				{
+					result.add(child);
+					collectNodes(child, start, end, result);
+				}
+			}
+			return;
+		}
+
+		for (int i = 0; i < count; i++)
+		{
+			IParseNode child = node.getChild(i);
+
+			if (child != null && child.getStartingOffset() <= end && child.getEndingOffset() >= start)
+			{
+				result.add(child);
+				collectNodes(child, start, end, result);
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the children of the node can still be searched with a binary search.
+	 */
+	private boolean isIndexed(IParseNode node, int count)
+	{
+		Integer indexedCount = fSortedNodes.get(node);
+
+		return indexedCount != null && indexedCount == count;
+	}
+
+	/**
+	 * Returns whether the children of the node are sorted by offset and don't overlap.
+	 */
+	private static boolean isSorted(IParseNode node, int count)
+	{
+		IParseNode previous = node.getChild(0);
+
+		if (previous == null)
+		{
+			return false;
+		}
+		for (int i = 1; i < count; i++)
+		{
+			IParseNode child = node.getChild(i);
+
+			if (child == null || previous.getEndingOffset() >= child.getStartingOffset()
+					|| previous.getStartingOffset() > child.getStartingOffset())
+			{
+				return false;
+			}
+			previous = child;
+		}
+		return true;
+	}
+}
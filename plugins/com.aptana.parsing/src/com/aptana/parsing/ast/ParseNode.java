@@ -22,7 +22,7 @@ import com.aptana.parsing.ParsingPlugin;
 import com.aptana.parsing.lexer.IRange;
 import com.aptana.parsing.lexer.Range;
 
-public abstract class ParseNode extends Node implements IParseNode
+public abstract class ParseNode extends Node implements IParseNode, Cloneable
 {
 	protected static final class NameNode implements INameNode
 	{
@@ -125,6 +125,38 @@ public abstract class ParseNode extends Node implements IParseNode
 		return this.getStartingOffset() <= offset && offset <= this.getEndingOffset();
 	}
 
+	/**
+	 * Returns a copy of this node and of its descendants, which has no parent. The copy may be moved or attached to
+	 * another tree without changing this one. Subclasses keeping nodes which aren't their children must copy them too.
+	 * 
+	 * @return the copy
+	 */
+	public ParseNode copy()
+	{
+		ParseNode copy;
+
+		try
+		{
+			copy = (ParseNode) clone();
+		}
+		catch (CloneNotSupportedException e)
+		{
+			throw new IllegalStateException(e);
+		}
+
+		IParseNode[] children = new IParseNode[fChildrenCount];
+
+		for (int i = 0; i < fChildrenCount; i++)
+		{
+			children[i] = ((ParseNode) fChildren[i]).copy();
+		}
+
+		copy.fParent = null;
+		copy.setChildren(children);
+
+		return copy;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see java.lang.Object#equals(java.lang.Object)
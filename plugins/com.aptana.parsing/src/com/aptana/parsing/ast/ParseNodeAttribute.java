@@ -7,12 +7,14 @@
  */
 package com.aptana.parsing.ast;
 
+import java.io.Serializable;
+
 import com.aptana.parsing.lexer.IRange;
 
 /**
  * @author Kevin Lindsey
  */
-public class ParseNodeAttribute implements IParseNodeAttribute
+public class ParseNodeAttribute implements IParseNodeAttribute, Serializable
 {
 	private final IParseNode _parent;
 	private final String _name;
@@ -16,6 +16,11 @@ public abstract class ParseRootNode extends ParseNode implements IParseRootNode
 {
 	private IParseNode[] fComments;
 
+	/**
+	 * Built the first time the tree is queried by offset and dropped when the children of this root change.
+	 */
+	private transient volatile OffsetIndex fOffsetIndex;
+
 	/**
 	 * Constructor to be used if the start will be the start of the first node and the end the end of the last node.
 	 * 
@@ -87,13 +92,164 @@ public abstract class ParseRootNode extends ParseNode implements IParseRootNode
 		fComments = NO_CHILDREN;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#addChild(com.aptana.parsing.ast.IParseNode)
+	 */
+	@Override
+	public void addChild(IParseNode child)
+	{
+		super.addChild(child);
+
+		fOffsetIndex = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#copy()
+	 */
+	@Override
+	public ParseRootNode copy()
+	{
+		ParseRootNode copy = (ParseRootNode) super.copy();
+
+		if (fComments != null)
+		{
+			IParseNode[] comments = new IParseNode[fComments.length];
+
+			for (int i = 0; i < comments.length; i++)
+			{
+				comments[i] = ((ParseNode) fComments[i]).copy();
+			}
+
+			copy.fComments = comments;
+		}
+
+		return copy;
+	}
+
 	public IParseNode[] getCommentNodes()
 	{
 		return fComments;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseRootNode#getEnclosingNode(int, int)
+	 */
+	public IParseNode getEnclosingNode(int start, int end)
+	{
+		if (start > end || start < getStartingOffset() || end > getEndingOffset())
+		{
+			return null;
+		}
+
+		OffsetIndex index = getOffsetIndex();
+		IParseNode result = this;
+		IParseNode child;
+
+		while ((child = index.getChild(result, start, end)) != null)
+		{
+			result = child;
+		}
+
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#getNodeAtOffset(int)
+	 */
+	@Override
+	public IParseNode getNodeAtOffset(int offset)
+	{
+		if (!contains(offset))
+		{
+			return null;
+		}
+
+		OffsetIndex index = getOffsetIndex();
+		IParseNode node = index.getChild(this, offset, offset);
+
+		if (node == null)
+		{
+			return this;
+		}
+
+		IParseNode child;
+
+		while ((child = index.getChild(node, offset, offset)) != null)
+		{
+			node = child;
+		}
+
+		// no child contains the offset: let the node check the nodes it doesn't expose as children (i.e.: the
+		// selectors of a CSS rule)
+		return node.getNodeAtOffset(offset);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.IParseRootNode#getNodesInRange(int, int)
+	 */
+	public IParseNode[] getNodesInRange(int start, int end)
+	{
+		if (start > end)
+		{
+			return NO_CHILDREN;
+		}
+
+		List<IParseNode> nodes = new ArrayList<IParseNode>();
+		getOffsetIndex().collectNodes(this, start, end, nodes);
+
+		return nodes.toArray(new IParseNode[nodes.size()]);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#replaceChild(int, com.aptana.parsing.ast.IParseNode)
+	 */
+	@Override
+	public void replaceChild(int index, IParseNode child) throws IndexOutOfBoundsException
+	{
+		super.replaceChild(index, child);
+
+		fOffsetIndex = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#setChildren(com.aptana.parsing.ast.IParseNode[])
+	 */
+	@Override
+	public void setChildren(IParseNode[] children)
+	{
+		super.setChildren(children);
+
+		fOffsetIndex = null;
+	}
+
 	public void setCommentNodes(IParseNode[] comments)
 	{
 		fComments = comments;
 	}
+
+	/**
+	 * Returns the offset index of this tree, building it if needed.
+	 * 
+	 * @return
+	 */
+	private OffsetIndex getOffsetIndex()
+	{
+		OffsetIndex index = fOffsetIndex;
+
+		if (index == null)
+		{
+			// if two threads get here at the same time, each builds its own copy, which is harmless
+			index = new OffsetIndex(this);
+			fOffsetIndex = index;
+		}
+
+		return index;
+	}
 }
@@ -7,9 +7,10 @@
  */
 package com.aptana.parsing.lexer;
 
+import java.io.Serializable;
 import java.text.MessageFormat;
 
-public class Range implements IRange
+public class Range implements IRange, Serializable
 {
 	public static final Range EMPTY = new Range(0, -1);
 
@@ -12,6 +12,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 
+import beaver.Symbol;
+
 import com.aptana.core.IFilter;
 import com.aptana.core.util.StringUtil;
 import com.aptana.parsing.ast.IParseNode;
@@ -60,6 +62,25 @@ public class ParseUtil
 		treeApply(node, function, recursive);
 	}
 
+	/**
+	 * Returns a copy of the specified symbol moved by the specified amount. Nodes which keep references to the tokens
+	 * they were built from (i.e.: operators or parentheses) use this to move those along with the node.
+	 * 
+	 * @param symbol
+	 *            may be null
+	 * @param offset
+	 * @return
+	 */
+	public static Symbol moveSymbol(Symbol symbol, int offset)
+	{
+		if (symbol == null || offset == 0)
+		{
+			return symbol;
+		}
+
+		return new Symbol(symbol.getId(), symbol.getStart() + offset, symbol.getEnd() + offset, symbol.value);
+	}
+
 	/**
 	 * Convert the specified node to a lisp-like syntax to expose the tree structure of the node and its descendants in
 	 * a form that is easy test during unit testing
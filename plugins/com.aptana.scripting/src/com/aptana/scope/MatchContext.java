@@ -8,12 +8,9 @@
 package com.aptana.scope;
 
 import java.util.Stack;
-import java.util.regex.Pattern;
 
 public class MatchContext
 {
-	private static final Pattern spaces = Pattern.compile("\\s+"); //$NON-NLS-1$
-
 	private String[] _steps;
 	private int _currentIndex;
 	private Stack<Integer> _savedPositions;
@@ -25,7 +22,18 @@ public class MatchContext
 	 */
 	MatchContext(String scope)
 	{
-		this._steps = (scope != null) ? spaces.split(scope) : new String[0];
+		this(ScopeAtoms.get(scope).steps);
+	}
+
+	/**
+	 * MatchContext
+	 * 
+	 * @param steps
+	 *            the steps of the scope, which aren't modified
+	 */
+	MatchContext(String[] steps)
+	{
+		this._steps = steps;
 		this._currentIndex = this._steps.length - 1;
 		this._savedPositions = new Stack<Integer>();
 	}
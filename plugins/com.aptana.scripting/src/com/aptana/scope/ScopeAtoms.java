@@ -0,0 +1,106 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scope;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.aptana.core.epl.util.LRUCache;
+
+/**
+ * A scope split in its steps (the space-delimited parts), with the first segment of each step, i.e. the part before
+ * the first period. The same scopes are matched over and over (once per token and selector), so they're split once and
+ * cached, and their atoms are interned: all the scopes share the same instances of the steps and segments.
+ */
+class ScopeAtoms
+{
+	private static final Pattern SPACES = Pattern.compile("\\s+"); //$NON-NLS-1$
+
+	private static final ScopeAtoms EMPTY = new ScopeAtoms(new String[0], new String[0]);
+
+	/**
+	 * Cache used to hold the atoms of the last scopes.
+	 */
+	private static final LRUCache<String, ScopeAtoms> cacheScopes = new LRUCache<String, ScopeAtoms>(500);
+
+	/**
+	 * The interned atoms. Scopes are made of the names declared by the grammars, so there's a limited number of them.
+	 */
+	private static final Map<String, String> atoms = new HashMap<String, String>();
+
+	/**
+	 * Lock to access cacheScopes and atoms.
+	 */
+	private static final Object lock = new Object();
+
+	final String[] steps;
+	final String[] heads;
+
+	/**
+	 * Returns the atoms of a scope
+	 * 
+	 * @param scope
+	 * @return
+	 */
+	static ScopeAtoms get(String scope)
+	{
+		if (scope == null)
+		{
+			return EMPTY;
+		}
+
+		synchronized (lock)
+		{
+			ScopeAtoms result = cacheScopes.get(scope);
+			if (result == null)
+			{
+				String[] steps = SPACES.split(scope);
+				String[] heads = new String[steps.length];
+				for (int i = 0; i < steps.length; i++)
+				{
+					steps[i] = intern(steps[i]);
+					heads[i] = intern(getHead(steps[i]));
+				}
+				result = new ScopeAtoms(steps, heads);
+				cacheScopes.put(scope, result);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Returns the first segment of a step or name, the part a name selector must match exactly
+	 * 
+	 * @param name
+	 * @return
+	 */
+	static String getHead(String name)
+	{
+		int index = name.indexOf('.');
+		return (index == -1) ? name : name.substring(0, index);
+	}
+
+	private static String intern(String atom)
+	{
+		String result = atoms.get(atom);
+		if (result == null)
+		{
+			// don't keep the whole scope with the substring
+			result = new String(atom);
+			atoms.put(result, result);
+		}
+		return result;
+	}
+
+	private ScopeAtoms(String[] steps, String[] heads)
+	{
+		this.steps = steps;
+		this.heads = heads;
+	}
+}
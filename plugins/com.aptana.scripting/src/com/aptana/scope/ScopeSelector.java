@@ -41,27 +41,43 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 	 * @return
 	 */
 	public static IScopeSelector bestMatch(Collection<IScopeSelector> selectors, String scope)
+	{
+		if (CollectionsUtil.isEmpty(selectors))
+		{
+			return null;
+		}
+
+		return bestMatch(selectors.toArray(new IScopeSelector[selectors.size()]), null, scope);
+	}
+
+	/**
+	 * Returns the best match among some selectors (see {@link #bestMatch(Collection, String)}). When selectors are
+	 * equally good matches, the last one wins.
+	 * 
+	 * @param selectors
+	 * @param candidates
+	 *            the selectors to try (at the same indices), or null to try them all
+	 * @param scope
+	 * @return
+	 */
+	static IScopeSelector bestMatch(IScopeSelector[] selectors, boolean[] candidates, String scope)
 	{
 		IScopeSelector bestMatch = null;
+		ScopeAtoms atoms = ScopeAtoms.get(scope);
 
-		if (!CollectionsUtil.isEmpty(selectors))
+		for (int i = selectors.length - 1; i >= 0; i--)
 		{
-			List<IScopeSelector> reversed = new ArrayList<IScopeSelector>(selectors);
-
-			Collections.reverse(reversed);
+			IScopeSelector selector = selectors[i];
 
-			for (IScopeSelector selector : reversed)
+			if (selector != null && (candidates == null || candidates[i]) && matches(selector, atoms, scope))
 			{
-				if (selector != null && selector.matches(scope))
+				if (bestMatch == null)
 				{
-					if (bestMatch == null)
-					{
-						bestMatch = selector;
-					}
-					else if (selector.compareTo(bestMatch) > 0)
-					{
-						bestMatch = selector;
-					}
+					bestMatch = selector;
+				}
+				else if (selector.compareTo(bestMatch) > 0)
+				{
+					bestMatch = selector;
 				}
 			}
 		}
@@ -69,6 +85,16 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 		return bestMatch;
 	}
 
+	private static boolean matches(IScopeSelector selector, ScopeAtoms atoms, String scope)
+	{
+		if (selector instanceof ScopeSelector)
+		{
+			// don't split the scope again for each selector
+			return ((ScopeSelector) selector).matches(atoms);
+		}
+		return selector.matches(scope);
+	}
+
 	private static int compare(List<Integer> results, List<Integer> matchResults)
 	{
 		// offset in list is offset of space-delimited part
@@ -76,32 +102,12 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 		// winner is the one with longest deepest match
 		// so first look for highest offset with a non-zero value
 
-		// if lists are not of same length, expand smaller one to match by filling with zeros
-		while (results.size() > matchResults.size())
-		{
-			if (matchResults.isEmpty())
-			{
-				matchResults = new ArrayList<Integer>();
-			}
-
-			matchResults.add(0);
-		}
-
-		while (matchResults.size() > results.size())
-		{
-			if (results.isEmpty())
-			{
-				results = new ArrayList<Integer>();
-			}
-
-			results.add(0);
-		}
-
+		// if lists are not of same length, the smaller one is considered filled with zeros
 		// So starting at the end of the lists, look for the highest match length, ties go back an offset to be broken
-		for (int i = results.size() - 1; i >= 0; i--)
+		for (int i = Math.max(results.size(), matchResults.size()) - 1; i >= 0; i--)
 		{
-			int firstVal = results.get(i);
-			int secondVal = matchResults.get(i);
+			int firstVal = (i < results.size()) ? results.get(i) : 0;
+			int secondVal = (i < matchResults.size()) ? matchResults.get(i) : 0;
 
 			// If one of the two has a longer match at the offset, it wins
 			if (firstVal != secondVal)
@@ -247,14 +253,26 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 	 */
 	public boolean matches(String scope)
 	{
-		matchResults = new ArrayList<Integer>();
+		return matches(ScopeAtoms.get(scope));
+	}
+
+	/**
+	 * Determines if this selector matches the scope split in the given atoms
+	 * 
+	 * @param atoms
+	 * @return
+	 */
+	boolean matches(ScopeAtoms atoms)
+	{
+		String[] steps = atoms.steps;
+		List<Integer> results = new ArrayList<Integer>(steps.length);
 		boolean result = false;
 
-		if (this._root != null && scope != null)
+		if (this._root != null)
 		{
-			MatchContext context = new MatchContext(scope);
+			MatchContext context = new MatchContext(steps);
 
-			for (int i = 0; i < context.getLength(); i++)
+			for (int i = steps.length - 1; i >= 0; i--)
 			{
 				// save current position so we can advance later
 				context.pushCurrentStep();
@@ -262,33 +280,31 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 				// see if we match at this point within the context
 				if (this._root.matches(context))
 				{
-					// Add match results. If more than one value, we need to replace existing zeros in our list...
-					Collection<Integer> tmpResults = this._root.getMatchResults();
-					int toRemove = tmpResults.size() - 1;
-					for (int x = 0; x < toRemove; x++)
+					// Fill with preceding zeros and add match results, which start at this step
+					for (int j = 0; j < i; j++)
 					{
-						matchResults.remove(0);
-					}
-					matchResults.addAll(0, tmpResults);
-
-					// Fill with preceding zeros.
-					while (matchResults.size() < context.getLength())
-					{
-						matchResults.add(0, 0);
+						results.add(0);
 					}
+					results.addAll(this._root.getMatchResults());
 
 					// we matched, so report success and stop looking for a match
 					result = true;
 					break;
 				}
-				matchResults.add(0, 0); // Add a non-match
 
-				// restore position where we started and move forward one
+				// restore position where we started and move back one
 				context.popCurrentStep();
 				context.backup();
 			}
+
+			// the steps after the match (or all the steps) didn't match
+			while (results.size() < steps.length)
+			{
+				results.add(0);
+			}
 		}
 
+		matchResults = results;
 		return result;
 	}
 
@@ -0,0 +1,193 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scope;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the best match for a scope among a fixed set of selectors, which is compiled once to be matched against many
+ * scopes (e.g. the rules of a theme, which are matched against the scope of every token).
+ * <p>
+ * A name selector only matches the steps of a scope which start with the same segment as its name (the part before the
+ * first period), so every selector is indexed by the first segments of the names it needs to match. Matching a scope
+ * then only tries the selectors indexed by the first segments of its steps, keeping the ranking of
+ * {@link ScopeSelector#bestMatch(Collection, String)}.
+ * </p>
+ * <p>
+ * Like {@link IScopeSelector#matches(String)}, matching isn't thread-safe.
+ * </p>
+ */
+public class ScopeSelectorMatcher
+{
+	private final IScopeSelector[] selectors;
+
+	/**
+	 * The indices of the selectors which may match a step starting with a given segment
+	 */
+	private final Map<String, int[]> selectorsByHead;
+
+	/**
+	 * The indices of the selectors which must be tried for any scope
+	 */
+	private final int[] anyScopeSelectors;
+
+	/**
+	 * ScopeSelectorMatcher
+	 * 
+	 * @param selectors
+	 */
+	public ScopeSelectorMatcher(Collection<IScopeSelector> selectors)
+	{
+		this.selectors = selectors.toArray(new IScopeSelector[selectors.size()]);
+
+		Map<String, List<Integer>> indices = new HashMap<String, List<Integer>>();
+		List<Integer> anyScope = new ArrayList<Integer>();
+		for (int i = 0; i < this.selectors.length; i++)
+		{
+			IScopeSelector selector = this.selectors[i];
+			if (selector == null)
+			{
+				continue;
+			}
+
+			Set<String> heads = null;
+			if (selector instanceof ScopeSelector)
+			{
+				heads = new HashSet<String>();
+				if (!addHeads(((ScopeSelector) selector).getRoot(), heads))
+				{
+					heads = null;
+				}
+			}
+
+			if (heads == null)
+			{
+				anyScope.add(i);
+				continue;
+			}
+			for (String head : heads)
+			{
+				List<Integer> list = indices.get(head);
+				if (list == null)
+				{
+					list = new ArrayList<Integer>();
+					indices.put(head, list);
+				}
+				list.add(i);
+			}
+		}
+
+		selectorsByHead = new HashMap<String, int[]>(indices.size());
+		for (Map.Entry<String, List<Integer>> entry : indices.entrySet())
+		{
+			selectorsByHead.put(entry.getKey(), toArray(entry.getValue()));
+		}
+		anyScopeSelectors = toArray(anyScope);
+	}
+
+	/**
+	 * Returns the selector which best matches the scope, see {@link ScopeSelector#bestMatch(Collection, String)}
+	 * 
+	 * @param scope
+	 * @return the selector, or null if none matches
+	 */
+	public IScopeSelector bestMatch(String scope)
+	{
+		if (selectors.length == 0)
+		{
+			return null;
+		}
+
+		boolean[] candidates = new boolean[selectors.length];
+		for (int i : anyScopeSelectors)
+		{
+			candidates[i] = true;
+		}
+		for (String head : ScopeAtoms.get(scope).heads)
+		{
+			int[] indices = selectorsByHead.get(head);
+			if (indices != null)
+			{
+				for (int i : indices)
+				{
+					candidates[i] = true;
+				}
+			}
+		}
+
+		return ScopeSelector.bestMatch(selectors, candidates, scope);
+	}
+
+	/**
+	 * Adds the first segments of the names a node needs to match, one of which at least must start a step of a scope
+	 * for the node to match it.
+	 * 
+	 * @param node
+	 * @param heads
+	 * @return false if the node may match any scope
+	 */
+	private static boolean addHeads(ISelectorNode node, Set<String> heads)
+	{
+		if (node instanceof NameSelector)
+		{
+			String name = node.toString();
+			if (name == null)
+			{
+				return false;
+			}
+			heads.add(ScopeAtoms.getHead(name));
+			return true;
+		}
+		if (node instanceof GroupSelector)
+		{
+			return addHeads(((GroupSelector) node).getChild(), heads);
+		}
+		if (node instanceof BinarySelector)
+		{
+			BinarySelector selector = (BinarySelector) node;
+			ISelectorNode left = selector.getLeftChild();
+			ISelectorNode right = selector.getRightChild();
+			if (left == null || right == null)
+			{
+				return false;
+			}
+			if (node instanceof OrSelector)
+			{
+				// either side
+				return addHeads(left, heads) && addHeads(right, heads);
+			}
+			if (node instanceof NegativeLookaheadSelector)
+			{
+				// the right side must not match
+				return addHeads(left, heads);
+			}
+			if (node instanceof DescendantSelector || node instanceof IntersectionSelector)
+			{
+				// both sides: the deepest one is the most selective
+				return addHeads(right, heads);
+			}
+		}
+		return false;
+	}
+
+	private static int[] toArray(List<Integer> list)
+	{
+		int[] result = new int[list.size()];
+		for (int i = 0; i < result.length; i++)
+		{
+			result[i] = list.get(i);
+		}
+		return result;
+	}
+}
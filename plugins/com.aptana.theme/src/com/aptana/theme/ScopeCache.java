@@ -0,0 +1,116 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.theme;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded cache of values by scope, which can be read and written concurrently without locking. It's set
+ * associative: the hash code of a scope picks a set of {@link #WAYS} slots, so that a few scopes sharing a set don't
+ * evict each other. A lookup doesn't allocate anything; a new entry goes first in its set, pushing out the entry put
+ * the longest ago.
+ * <p>
+ * Concurrent puts in the same set may lose or duplicate an entry, which only costs a later miss.
+ * </p>
+ */
+/* default */class ScopeCache<V>
+{
+	/**
+	 * The number of slots of a set
+	 */
+	static final int WAYS = 4;
+
+	private final AtomicReferenceArray<Entry<V>> entries;
+	private final int mask;
+
+	/**
+	 * ScopeCache
+	 * 
+	 * @param size
+	 *            the number of entries cached, a power of 2 of at least {@link #WAYS}
+	 */
+	ScopeCache(int size)
+	{
+		entries = new AtomicReferenceArray<Entry<V>>(size);
+		mask = size / WAYS - 1;
+	}
+
+	V get(String scope)
+	{
+		int start = indexOf(scope);
+		for (int i = start; i < start + WAYS; i++)
+		{
+			Entry<V> entry = entries.get(i);
+			if (entry == null)
+			{
+				break;
+			}
+			if (entry.scope.equals(scope))
+			{
+				return entry.value;
+			}
+		}
+		return null;
+	}
+
+	void put(String scope, V value)
+	{
+		int start = indexOf(scope);
+		// shift the entries put before this one, up to the one it replaces
+		int i = start;
+		while (i < start + WAYS - 1)
+		{
+			Entry<V> entry = entries.get(i);
+			if (entry == null || entry.scope.equals(scope))
+			{
+				break;
+			}
+			i++;
+		}
+		for (; i > start; i--)
+		{
+			entries.set(i, entries.get(i - 1));
+		}
+		entries.set(start, new Entry<V>(scope, value));
+	}
+
+	List<String> getScopes()
+	{
+		List<String> scopes = new ArrayList<String>();
+		for (int i = 0; i < entries.length(); i++)
+		{
+			Entry<V> entry = entries.get(i);
+			if (entry != null)
+			{
+				scopes.add(entry.scope);
+			}
+		}
+		return scopes;
+	}
+
+	private int indexOf(String scope)
+	{
+		// mix the high bits of the hash code in the set
+		int hash = scope.hashCode();
+		return ((hash ^ (hash >>> 16)) & mask) * WAYS;
+	}
+
+	private static class Entry<V>
+	{
+		final String scope;
+		final V value;
+
+		Entry(String scope, V value)
+		{
+			this.scope = scope;
+			this.value = value;
+		}
+	}
+}
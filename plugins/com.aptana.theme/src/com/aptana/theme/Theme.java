@@ -85,8 +85,14 @@ public class Theme
 
 	/**
 	 * Access to get the text attribute. May cache internal information, so, must be recreated when the theme changes.
+	 * Each instance is a generation of the cache, used by the editors from other threads.
 	 */
-	private ThemeGetTextAttribute themeGetTextAttribute;
+	private volatile ThemeGetTextAttribute themeGetTextAttribute;
+
+	/**
+	 * The scopes cached by the last generation of the cache that was wiped, to warm up the next one
+	 */
+	private volatile List<String> wipedScopes = Collections.emptyList();
 
 	public Theme(ColorManager colormanager, Properties props)
 	{
@@ -98,11 +104,14 @@ public class Theme
 
 	private ThemeGetTextAttribute obtainGetThemeTextAttribute()
 	{
-		if (themeGetTextAttribute == null)
+		// read the field once: another thread may wipe it
+		ThemeGetTextAttribute result = themeGetTextAttribute;
+		if (result == null)
 		{
-			themeGetTextAttribute = new ThemeGetTextAttribute(this);
+			result = new ThemeGetTextAttribute(this);
+			themeGetTextAttribute = result;
 		}
-		return themeGetTextAttribute;
+		return result;
 	}
 
 	private void parseProps(Properties props)
@@ -739,9 +748,26 @@ public class Theme
 
 	private void wipeCache()
 	{
+		ThemeGetTextAttribute current = this.themeGetTextAttribute;
+		if (current != null)
+		{
+			wipedScopes = current.getCachedScopes();
+		}
 		this.themeGetTextAttribute = null;
 	}
 
+	/**
+	 * Returns the scopes whose text attributes are cached, or were cached before the last change to the theme. Those
+	 * are the scopes used by the open editors, which are worth resolving in advance when the theme is applied.
+	 * 
+	 * @return
+	 */
+	public List<String> getCachedScopes()
+	{
+		ThemeGetTextAttribute current = this.themeGetTextAttribute;
+		return (current == null) ? wipedScopes : current.getCachedScopes();
+	}
+
 	public void updateLineHighlight(RGB newColor)
 	{
 		if (newColor == null || (lineHighlight != null && lineHighlight.toRGB().equals(newColor)))
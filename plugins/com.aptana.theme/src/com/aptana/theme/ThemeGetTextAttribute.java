@@ -9,9 +9,7 @@ package com.aptana.theme;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.eclipse.jface.text.TextAttribute;
 import org.eclipse.swt.SWT;
@@ -21,6 +19,7 @@ import org.eclipse.swt.graphics.RGB;
 import com.aptana.core.util.ImmutableTuple;
 import com.aptana.scope.IScopeSelector;
 import com.aptana.scope.ScopeSelector;
+import com.aptana.scope.ScopeSelectorMatcher;
 
 /**
  * Helper class used to get the text attribute for a given scope (given the related theme). Should not be manipulated
@@ -29,6 +28,10 @@ import com.aptana.scope.ScopeSelector;
  */
 /* default */class ThemeGetTextAttribute
 {
+	/**
+	 * The number of text attributes cached (a power of 2)
+	 */
+	private static final int CACHE_SIZE = 1024;
 
 	/**
 	 * Used for recursion in getDelayedTextAttribute to avoid matching same rule on scope twice
@@ -38,12 +41,13 @@ import com.aptana.scope.ScopeSelector;
 	private final Theme theme;
 	private final RGB defaultFG;
 	private final RGB defaultBG;
-	private final Collection<IScopeSelector> selectors;
+	private final ScopeSelectorMatcher selectors;
 
 	/**
-	 * A cache to memoize the ultimate TextAttribute generated for a given fully qualified scope.
+	 * A cache to memoize the ultimate TextAttribute generated for a given fully qualified scope. It's read without
+	 * locking, so that the presentation of several editors can be computed at the same time.
 	 */
-	private final Map<String, TextAttribute> cacheGetTextAttribute;
+	private final ScopeCache<TextAttribute> cacheGetTextAttribute;
 	private static volatile ImmutableTuple<ScopeSelector, DelayedTextAttribute>[] scopeToAttribute;
 	private static volatile ImmutableTuple<ScopeSelector, DelayedTextAttribute>[] scopeToAttributeLight;
 	private static volatile ImmutableTuple<ScopeSelector, DelayedTextAttribute>[] scopeToAttributeDark;
@@ -51,7 +55,7 @@ import com.aptana.scope.ScopeSelector;
 	/**
 	 * A cache to memoize internally gotten delayed text attributes.
 	 */
-	private final Map<String, DelayedTextAttribute> cacheDelayedGetTextAttribute;
+	private final ScopeCache<DelayedTextAttribute> cacheDelayedGetTextAttribute;
 
 	public ThemeGetTextAttribute(Theme theme)
 	{
@@ -59,11 +63,11 @@ import com.aptana.scope.ScopeSelector;
 		this.colorManager = theme.getColorManager();
 		this.defaultFG = theme.getForeground();
 		this.defaultBG = theme.getBackground();
-		this.cacheGetTextAttribute = new HashMap<String, TextAttribute>();
-		this.cacheDelayedGetTextAttribute = new HashMap<String, DelayedTextAttribute>();
+		this.cacheGetTextAttribute = new ScopeCache<TextAttribute>(CACHE_SIZE);
+		this.cacheDelayedGetTextAttribute = new ScopeCache<DelayedTextAttribute>(CACHE_SIZE);
 
 		List<ThemeRule> tokens = theme.getTokens();
-		selectors = new ArrayList<IScopeSelector>(tokens.size());
+		Collection<IScopeSelector> tokenSelectors = new ArrayList<IScopeSelector>(tokens.size());
 
 		for (ThemeRule rule : tokens)
 		{
@@ -71,27 +75,45 @@ import com.aptana.scope.ScopeSelector;
 			{
 				continue;
 			}
-			selectors.add(rule.getScopeSelector());
+			tokenSelectors.add(rule.getScopeSelector());
 		}
+		selectors = new ScopeSelectorMatcher(tokenSelectors);
 	}
 
-	/* default */IScopeSelector findMatch(String scope)
+	/* default */synchronized IScopeSelector findMatch(String scope)
 	{
-		return ScopeSelector.bestMatch(selectors, scope);
+		return selectors.bestMatch(scope);
 	}
 
-	/* default */synchronized TextAttribute getTextAttribute(String scope)
+	/* default */TextAttribute getTextAttribute(String scope)
 	{
 		TextAttribute ta = cacheGetTextAttribute.get(scope);
 		if (ta != null)
 		{
 			return ta;
 		}
-		ta = internalGetTextAttribute(scope);
-		cacheGetTextAttribute.put(scope, ta);
+
+		// resolving the attribute isn't thread-safe
+		synchronized (this)
+		{
+			ta = cacheGetTextAttribute.get(scope);
+			if (ta == null)
+			{
+				ta = internalGetTextAttribute(scope);
+				cacheGetTextAttribute.put(scope, ta);
+			}
+		}
 		return ta;
 	}
 
+	/**
+	 * @return the scopes whose text attributes are currently cached
+	 */
+	/* default */List<String> getCachedScopes()
+	{
+		return cacheGetTextAttribute.getScopes();
+	}
+
 	private TextAttribute internalGetTextAttribute(String scope)
 	{
 		lastSelectorMatch = null;
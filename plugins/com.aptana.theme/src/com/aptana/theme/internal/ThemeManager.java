@@ -18,6 +18,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 
@@ -203,8 +204,12 @@ public class ThemeManager implements IThemeManager
 	 */
 	public void setCurrentTheme(Theme theme)
 	{
+		Theme previousTheme = fCurrentTheme;
 		fCurrentTheme = theme;
 
+		// Resolve the colors of the scopes used by the open editors before they ask for them
+		warmUpTextAttributes(theme, ((previousTheme == null) ? theme : previousTheme).getCachedScopes());
+
 		// Set the find in file search color
 		setSearchResultColor(theme);
 
@@ -233,6 +238,35 @@ public class ThemeManager implements IThemeManager
 		forceFontsUpToDate();
 	}
 
+	private void warmUpTextAttributes(final Theme theme, final List<String> scopes)
+	{
+		if (scopes.isEmpty())
+		{
+			return;
+		}
+
+		Job job = new Job("Resolving theme colors") //$NON-NLS-1$
+		{
+			@Override
+			protected IStatus run(IProgressMonitor monitor)
+			{
+				for (String scope : scopes)
+				{
+					// stop if another theme was applied in the meantime
+					if (monitor.isCanceled() || theme != fCurrentTheme)
+					{
+						return Status.CANCEL_STATUS;
+					}
+					theme.getTextAttribute(scope);
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		EclipseUtil.setSystemForJob(job);
+		job.setPriority(Job.DECORATE);
+		job.schedule();
+	}
+
 	// APSTUD-4152
 	private void setCompareColors(String nodeName, boolean override)
 	{
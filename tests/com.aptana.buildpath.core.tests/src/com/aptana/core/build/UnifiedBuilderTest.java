@@ -4,8 +4,11 @@ import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.TestCase;
 
@@ -285,6 +288,142 @@ public class UnifiedBuilderTest extends TestCase
 		// PROBLEM/TASK types?
 	}
 
+	public void testParallelFullBuild() throws Exception
+	{
+		final String taskMessage = "Fake task";
+		final AtomicInteger overlaps = new AtomicInteger();
+		final AtomicInteger outsideBuild = new AtomicInteger();
+		final AtomicInteger started = new AtomicInteger();
+		final AtomicInteger ended = new AtomicInteger();
+		final Set<IBuildParticipant> building = Collections.synchronizedSet(new HashSet<IBuildParticipant>());
+		final Set<Thread> serialThreads = Collections.synchronizedSet(new HashSet<Thread>());
+		manager = new BuildParticipantManager()
+		{
+			public List<IBuildParticipant> getBuildParticipants(String contentTypeId)
+			{
+				return filterParticipants(getAllBuildParticipants(), contentTypeId);
+			}
+
+			public List<IBuildParticipant> getAllBuildParticipants()
+			{
+				// a new instance every time, like the extension registry does
+				IBuildParticipant created = new RequiredBuildParticipant()
+				{
+					private final AtomicInteger running = new AtomicInteger();
+					private volatile boolean inBuild;
+
+					@Override
+					public boolean isThreadSafe()
+					{
+						return true;
+					}
+
+					public void buildStarting(IProject project, int kind, IProgressMonitor monitor)
+					{
+						inBuild = true;
+						started.incrementAndGet();
+					}
+
+					public void buildEnding(IProgressMonitor monitor)
+					{
+						inBuild = false;
+						ended.incrementAndGet();
+					}
+
+					public void deleteFile(BuildContext context, IProgressMonitor monitor)
+					{
+					}
+
+					public void buildFile(BuildContext context, IProgressMonitor monitor)
+					{
+						// a participant must never build two files at once, nor outside of a build
+						if (running.incrementAndGet() > 1)
+						{
+							overlaps.incrementAndGet();
+						}
+						if (!inBuild)
+						{
+							outsideBuild.incrementAndGet();
+						}
+						building.add(this);
+						try
+						{
+							Thread.sleep(5);
+						}
+						catch (InterruptedException e)
+						{
+						}
+						Collection<IProblem> problems = new ArrayList<IProblem>();
+						problems.add(createTask(context.getURI().toString(), taskMessage, IMarker.PRIORITY_HIGH, 1, 0,
+								9));
+						context.putProblems(IMarkerConstants.TASK_MARKER, problems);
+						running.decrementAndGet();
+					}
+				};
+				// participants that aren't thread-safe must stay on the thread running the build
+				IBuildParticipant serial = new RequiredBuildParticipant()
+				{
+					public void deleteFile(BuildContext context, IProgressMonitor monitor)
+					{
+					}
+
+					public void buildFile(BuildContext context, IProgressMonitor monitor)
+					{
+						serialThreads.add(Thread.currentThread());
+					}
+				};
+				return CollectionsUtil.newList(created, serial);
+			}
+		};
+		builder = new UnifiedBuilder()
+		{
+			@Override
+			protected IProject getProjectHandle()
+			{
+				return project;
+			}
+
+			@Override
+			protected IBuildParticipantManager getBuildParticipantManager()
+			{
+				return manager;
+			}
+
+			@Override
+			protected int getWorkerCount()
+			{
+				return 4;
+			}
+		};
+
+		// more files than a batch of marker updates
+		IFolder folder = project.getFolder("folder");
+		folder.create(true, true, null);
+		List<IFile> files = new ArrayList<IFile>();
+		for (int i = 0; i < 120; i++)
+		{
+			IFile file = folder.getFile("file" + i + ".txt");
+			file.create(new ByteArrayInputStream(("File " + i).getBytes()), true, null);
+			files.add(file);
+		}
+		files.add(project.getFile(IProjectDescription.DESCRIPTION_FILE_NAME));
+
+		builder.build(IncrementalProjectBuilder.FULL_BUILD, null, new NullProgressMonitor());
+
+		assertEquals(0, overlaps.get());
+		assertEquals(0, outsideBuild.get());
+		assertEquals(started.get(), ended.get());
+		// the workers built with participants of their own
+		assertTrue(building.size() > 1);
+		assertEquals(Collections.singleton(Thread.currentThread()), serialThreads);
+		for (IFile file : files)
+		{
+			IMarker[] markers = file.findMarkers(IMarkerConstants.TASK_MARKER, true, IResource.DEPTH_ZERO);
+			assertEquals(file.getName(), 1, markers.length);
+			assertEquals(taskMessage, markers[0].getAttribute(IMarker.MESSAGE));
+		}
+	}
+
 	public void testIncrementalBuildWithNoDeltaDoesFullBuild() throws Exception
 	{
 		context.checking(new Expectations()
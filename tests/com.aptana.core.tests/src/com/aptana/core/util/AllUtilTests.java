@@ -31,6 +31,7 @@ public class AllUtilTests
 		suite.addTestSuite(ClassUtilTest.class);
 		suite.addTestSuite(CollectionsUtilTest.class);
 		suite.addTestSuite(EclipseUtilTest.class);
+		suite.addTestSuite(ElasticObjectPoolTest.class);
 		suite.addTestSuite(ExecutableUtilTest.class);
 		suite.addTestSuite(ExpiringMapTests.class);
 		suite.addTestSuite(FileUtilTest.class);
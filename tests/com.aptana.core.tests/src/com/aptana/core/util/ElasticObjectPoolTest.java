@@ -0,0 +1,193 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class ElasticObjectPoolTest extends TestCase
+{
+
+	private static class Pool extends ElasticObjectPool<Object>
+	{
+		final AtomicInteger expired = new AtomicInteger();
+
+		Pool(int minimumSize, int maximumSize, long maximumWait, long trimPeriod)
+		{
+			super(minimumSize, maximumSize, maximumWait, trimPeriod);
+		}
+
+		@Override
+		public Object create()
+		{
+			return new Object();
+		}
+
+		@Override
+		public void expire(Object o)
+		{
+			expired.incrementAndGet();
+		}
+
+		@Override
+		public boolean validate(Object o)
+		{
+			return true;
+		}
+	}
+
+	public void testReuse()
+	{
+		Pool pool = new Pool(1, 4, 1000, 60000);
+		Object o = pool.checkOut();
+		pool.checkIn(o);
+
+		assertSame(o, pool.checkOut());
+		assertEquals(1, pool.getCreatedCount());
+		assertEquals(2, pool.getCheckOutCount());
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	public void testWarmUp()
+	{
+		Pool pool = new Pool(3, 4, 1000, 60000);
+		pool.warmUp();
+
+		assertEquals(3, pool.getSize());
+		assertEquals(3, pool.getIdleCount());
+
+		pool.checkOut();
+		assertEquals(3, pool.getCreatedCount());
+	}
+
+	public void testWaitForCheckIn() throws InterruptedException
+	{
+		final Pool pool = new Pool(0, 1, 10000, 60000);
+		final Object o = pool.checkOut();
+		Thread thread = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					Thread.sleep(100);
+				}
+				catch (InterruptedException e)
+				{
+					// ignore
+				}
+				pool.checkIn(o);
+			}
+		};
+		thread.start();
+
+		assertSame(o, pool.checkOut());
+		assertEquals(1, pool.getCreatedCount());
+		assertEquals(1, pool.getWaitCount());
+		assertTrue(pool.getWaitTime() > 0);
+		thread.join();
+	}
+
+	public void testGrowPastMaximumAfterWaiting()
+	{
+		Pool pool = new Pool(0, 1, 50, 60000);
+		Object o1 = pool.checkOut();
+		Object o2 = pool.checkOut();
+
+		assertNotSame(o1, o2);
+		assertEquals(2, pool.getSize());
+
+		// the extra object is dropped on check in
+		pool.checkIn(o2);
+		assertEquals(1, pool.getSize());
+		assertEquals(1, pool.expired.get());
+	}
+
+	public void testTrim()
+	{
+		Pool pool = new Pool(1, 4, 1000, 60000);
+		List<Object> objects = new ArrayList<Object>();
+		for (int i = 0; i < 4; i++)
+		{
+			objects.add(pool.checkOut());
+		}
+		for (Object o : objects)
+		{
+			pool.checkIn(o);
+		}
+		pool.trim();
+
+		// a single object is used during the next period: the 3 others are expired by the next trim
+		pool.checkIn(pool.checkOut());
+		pool.trim();
+
+		assertEquals(1, pool.getSize());
+		assertEquals(3, pool.getExpiredCount());
+
+		// the minimum size is kept
+		pool.trim();
+		assertEquals(1, pool.getSize());
+	}
+
+	public void testConcurrentCheckOuts() throws InterruptedException
+	{
+		final Pool pool = new Pool(0, 3, 10000, 60000);
+		final AtomicInteger inUse = new AtomicInteger();
+		final AtomicInteger maximumInUse = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(8);
+
+		for (int i = 0; i < 8; i++)
+		{
+			new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int j = 0; j < 1000; j++)
+					{
+						Object o = pool.checkOut();
+						int count = inUse.incrementAndGet();
+						int max;
+						while (count > (max = maximumInUse.get()) && !maximumInUse.compareAndSet(max, count))
+						{
+							// retry
+						}
+						inUse.decrementAndGet();
+						pool.checkIn(o);
+					}
+					done.countDown();
+				}
+			}.start();
+		}
+		done.await();
+
+		assertTrue(maximumInUse.get() <= 3);
+		assertTrue(pool.getCreatedCount() <= 3);
+		assertEquals(8000, pool.getCheckOutCount());
+		assertEquals(pool.getSize(), pool.getIdleCount());
+	}
+
+	public void testDispose()
+	{
+		Pool pool = new Pool(2, 4, 1000, 60000);
+		pool.warmUp();
+		Object o = pool.checkOut();
+		pool.dispose();
+
+		assertEquals(1, pool.expired.get());
+
+		pool.checkIn(o);
+		assertEquals(2, pool.expired.get());
+		assertEquals(0, pool.getSize());
+	}
+}
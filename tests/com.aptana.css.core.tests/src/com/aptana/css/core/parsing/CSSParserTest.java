@@ -17,6 +17,8 @@ import junit.framework.TestCase;
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
 
 import beaver.Symbol;
 
@@ -34,6 +36,7 @@ import com.aptana.css.core.parsing.ast.ICSSNodeTypes;
 import com.aptana.parsing.IParseState;
 import com.aptana.parsing.ParseResult;
 import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ast.ASTUtil;
 import com.aptana.parsing.ast.IParseNode;
 import com.aptana.parsing.ast.IParseRootNode;
 import com.aptana.parsing.ast.ParseNode;
@@ -1156,6 +1159,45 @@ public class CSSParserTest extends TestCase
 		parseErrorTest("svg:not(:not(:root)) {overflow: hidden;}" + EOL);
 	}
 
+	public void testIncrementalReparse() throws Exception
+	{
+		String source = "a {color: red;}" + EOL + "b {color: blue;}" + EOL + "/* c */" + EOL + "c {margin: 0;}" + EOL
+				+ "d {padding: 0;}" + EOL + "e {border: none;}" + EOL;
+		ParseResult previous = fParser.parse(new ParseState(source));
+		IParseNode[] rules = previous.getRootNode().getChildren();
+		String previousTree = ASTUtil.dumpTree(previous.getRootNode());
+
+		// "margin: 0" becomes "margin: 10px"
+		int offset = source.indexOf("0;");
+		String newSource = source.substring(0, offset) + "10px" + source.substring(offset + 1);
+		DocumentEvent edit = new DocumentEvent(new Document(newSource), offset, 1, "10px");
+		ParseResult result = fParser.parse(new ParseState(newSource), previous, edit);
+		IParseRootNode root = result.getRootNode();
+		IParseRootNode expected = fParser.parse(new ParseState(newSource)).getRootNode();
+
+		assertEquals(expected.getEndingOffset(), root.getEndingOffset());
+		assertEquals(expected.getChildCount(), root.getChildCount());
+		for (int i = 0; i < expected.getChildCount(); i++)
+		{
+			assertEquals(expected.getChild(i).toString(), root.getChild(i).toString());
+			assertEquals(expected.getChild(i).getStartingOffset(), root.getChild(i).getStartingOffset());
+			assertEquals(expected.getChild(i).getEndingOffset(), root.getChild(i).getEndingOffset());
+		}
+		assertEquals(1, root.getCommentNodes().length);
+		assertEquals(newSource.indexOf("/*"), root.getCommentNodes()[0].getStartingOffset());
+		assertEquals(newSource.indexOf("e {"), ((CSSRuleNode) root.getChild(4)).getSelectors()[0].getStartingOffset());
+
+		// the previous result may be held by others (i.e.: the parse cache), so it's left as it was
+		assertEquals(previousTree, ASTUtil.dumpTree(previous.getRootNode()));
+		assertNotSame(rules[0], root.getChild(0));
+		assertNotSame(rules[4], root.getChild(4));
+		CSSRuleNode rule = (CSSRuleNode) rules[4];
+		assertSame(rule, rule.getSelectors()[0].getParent());
+		assertEquals(source.indexOf("e {"), rule.getSelectors()[0].getStartingOffset());
+		assertEquals(source.indexOf("border"), rule.getDeclarations()[0].getStartingOffset());
+		assertEquals(source.indexOf("/*"), previous.getRootNode().getCommentNodes()[0].getStartingOffset());
+	}
+
 	/**
 	 * This method is not being used for formal testing, but it's useful to determine how effective
 	 * {@link ParseNode#trimToSize()} is.
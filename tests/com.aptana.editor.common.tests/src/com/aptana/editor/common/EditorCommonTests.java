@@ -26,6 +26,7 @@ public class EditorCommonTests
 			}
 		};
 		//$JUnit-BEGIN$
+		suite.addTestSuite(IdentifierIndexTest.class);
 		suite.addTestSuite(RegionsTest.class);
 		suite.addTestSuite(SequenceCharacterScannerTest.class);
 		suite.addTestSuite(TextUtilsTest.class);
@@ -0,0 +1,146 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+
+import com.aptana.core.util.StringUtil;
+import com.aptana.editor.findbar.api.IdentifierIndex;
+
+public class IdentifierIndexTest extends TestCase
+{
+
+	public void testIsIdentifier()
+	{
+		assertTrue(IdentifierIndex.isIdentifier("foo_1"));
+		assertFalse(IdentifierIndex.isIdentifier("foo.bar"));
+		assertFalse(IdentifierIndex.isIdentifier(""));
+		assertFalse(IdentifierIndex.isIdentifier(null));
+	}
+
+	public void testOccurrences()
+	{
+		IDocument document = new Document("var foo = foobar(foo);\nfoo.bar = 1;");
+		IdentifierIndex index = IdentifierIndex.getIndex(document);
+
+		assertSame(index, IdentifierIndex.getIndex(document));
+		assertOccurrences(new int[] { 4, 17, 23 }, index.getOccurrences("foo"));
+		assertOccurrences(new int[] { 10 }, index.getOccurrences("foobar"));
+		assertOccurrences(new int[0], index.getOccurrences("oo"));
+	}
+
+	public void testInsertShiftsOccurrences() throws Exception
+	{
+		IDocument document = new Document("foo bar foo");
+		IdentifierIndex index = IdentifierIndex.getIndex(document);
+		index.getOccurrences("foo");
+
+		document.replace(0, 0, "  ");
+		assertOccurrences(new int[] { 2, 10 }, index.getOccurrences("foo"));
+		assertOccurrences(new int[] { 6 }, index.getOccurrences("bar"));
+	}
+
+	public void testEditSplitsAndJoinsIdentifiers() throws Exception
+	{
+		IDocument document = new Document("foo bar foo");
+		IdentifierIndex index = IdentifierIndex.getIndex(document);
+		index.getOccurrences("foo");
+
+		// join the first two identifiers
+		document.replace(3, 1, StringUtil.EMPTY);
+		assertOccurrences(new int[] { 7 }, index.getOccurrences("foo"));
+		assertOccurrences(new int[] { 0 }, index.getOccurrences("foobar"));
+		assertOccurrences(new int[0], index.getOccurrences("bar"));
+
+		// and split the joined one again elsewhere
+		document.replace(2, 0, ".");
+		assertOccurrences(new int[] { 0 }, index.getOccurrences("fo"));
+		assertOccurrences(new int[] { 3 }, index.getOccurrences("obar"));
+		assertOccurrences(new int[] { 8 }, index.getOccurrences("foo"));
+	}
+
+	public void testMatchesWordSearchAfterEdits() throws Exception
+	{
+		IDocument document = new Document("a foo(b, foo); foo.a = b;");
+		IdentifierIndex index = IdentifierIndex.getIndex(document);
+		index.getOccurrences("foo");
+
+		String[] edits = { "foo", " ", "a", ".", "b\n", StringUtil.EMPTY };
+		for (int i = 0; i < 100; i++)
+		{
+			int offset = (i * 7) % (document.getLength() + 1);
+			int length = Math.min(i % 3, document.getLength() - offset);
+			document.replace(offset, length, edits[i % edits.length]);
+
+			for (String word : new String[] { "foo", "a", "b", "afoo", "foob" })
+			{
+				assertOccurrences(search(document.get(), word), index.getOccurrences(word));
+			}
+		}
+	}
+
+	public void testMatchesWordSearchAfterManyUnqueriedEdits() throws Exception
+	{
+		IDocument document = new Document("a foo(b, foo); foo.a = b;");
+		IdentifierIndex index = IdentifierIndex.getIndex(document);
+		index.getOccurrences("foo");
+
+		// more edits than the shifts logged at once, with only one identifier looked up in between
+		String[] edits = { "foo", " ", "a", ".", "b\n", StringUtil.EMPTY };
+		for (int i = 0; i < 1000; i++)
+		{
+			int offset = (i * 13) % (document.getLength() + 1);
+			int length = Math.min(i % 2, document.getLength() - offset);
+			document.replace(offset, length, edits[i % edits.length]);
+
+			if (i % 100 == 0)
+			{
+				assertOccurrences(search(document.get(), "b"), index.getOccurrences("b"));
+			}
+		}
+
+		for (String word : new String[] { "foo", "a", "b", "afoo", "foob" })
+		{
+			assertOccurrences(search(document.get(), word), index.getOccurrences(word));
+		}
+	}
+
+	private int[] search(String text, String word)
+	{
+		List<Integer> offsets = new ArrayList<Integer>();
+		Matcher matcher = Pattern.compile("\\b" + word + "\\b").matcher(text);
+		while (matcher.find())
+		{
+			offsets.add(matcher.start());
+		}
+
+		int[] result = new int[offsets.size()];
+		for (int i = 0; i < result.length; i++)
+		{
+			result[i] = offsets.get(i);
+		}
+		return result;
+	}
+
+	private void assertOccurrences(int[] expected, int[] actual)
+	{
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++)
+		{
+			assertEquals(expected[i], actual[i]);
+		}
+	}
+}
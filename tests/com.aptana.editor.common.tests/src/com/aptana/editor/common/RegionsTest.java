@@ -259,4 +259,57 @@ public class RegionsTest extends TestCase {
 		assertTrue("Regions is empty", regions.isEmpty());
 	}
 
+	public void testReplaceBefore() {
+		Regions regions = new Regions(new Region(10, 5), new Region(20, 7));
+		regions.replace(2, 3, 6);
+		Iterator<IRegion> i = regions.iterator();
+		IRegion r = i.next();
+		assertEquals("Offset doesn't match", 13, r.getOffset());
+		assertEquals("Length doesn't match", 5, r.getLength());
+		r = i.next();
+		assertEquals("Offset doesn't match", 23, r.getOffset());
+		assertEquals("Length doesn't match", 7, r.getLength());
+		assertFalse("Last region element", i.hasNext());
+	}
+
+	public void testReplaceAfter() {
+		Regions regions = new Regions(new Region(10, 5));
+		regions.replace(15, 3, 0);
+		Iterator<IRegion> i = regions.iterator();
+		IRegion r = i.next();
+		assertEquals("Offset doesn't match", 10, r.getOffset());
+		assertEquals("Length doesn't match", 5, r.getLength());
+		assertFalse("Last region element", i.hasNext());
+	}
+
+	public void testReplaceInner() {
+		Regions regions = new Regions(new Region(10, 5));
+		regions.replace(11, 2, 10);
+		Iterator<IRegion> i = regions.iterator();
+		IRegion r = i.next();
+		assertEquals("Offset doesn't match", 10, r.getOffset());
+		assertEquals("Length doesn't match", 13, r.getLength());
+		assertFalse("Last region element", i.hasNext());
+	}
+
+	public void testReplaceOverlapping() {
+		Regions regions = new Regions(new Region(10, 5), new Region(20, 7));
+		regions.replace(12, 10, 1);
+		Iterator<IRegion> i = regions.iterator();
+		IRegion r = i.next();
+		assertEquals("Offset doesn't match", 10, r.getOffset());
+		assertEquals("Length doesn't match", 8, r.getLength());
+		assertFalse("Last region element", i.hasNext());
+	}
+
+	public void testReplaceWide() {
+		Regions regions = new Regions(new Region(10, 5), new Region(30, 5));
+		regions.replace(5, 20, 0);
+		Iterator<IRegion> i = regions.iterator();
+		IRegion r = i.next();
+		assertEquals("Offset doesn't match", 10, r.getOffset());
+		assertEquals("Length doesn't match", 5, r.getLength());
+		assertFalse("Last region element", i.hasNext());
+	}
+
 }
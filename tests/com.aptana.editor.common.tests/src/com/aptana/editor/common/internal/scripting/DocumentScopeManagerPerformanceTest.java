@@ -4,10 +4,17 @@ import java.io.File;
 import java.net.URL;
 
 import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.IAdaptable;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.TypedPosition;
 import org.eclipse.jface.text.source.ISourceViewer;
 import org.eclipse.test.performance.GlobalTimePerformanceTestCase;
 import org.eclipse.ui.IEditorReference;
@@ -15,16 +22,25 @@ import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.ide.IDE;
 import org.eclipse.ui.texteditor.ITextEditor;
 
+import com.aptana.core.tests.TestProject;
+import com.aptana.core.util.ArrayUtil;
+import com.aptana.core.util.IOUtil;
 import com.aptana.core.util.ResourceUtil;
+import com.aptana.core.util.StringUtil;
+import com.aptana.editor.common.AbstractThemeableEditor;
 import com.aptana.editor.common.CommonEditorPlugin;
+import com.aptana.editor.common.ICommonConstants;
 import com.aptana.editor.common.scripting.IDocumentScopeManager;
 import com.aptana.editor.common.scripting.commands.TextEditorUtils;
+import com.aptana.editor.common.util.EditorUtil;
 import com.aptana.editor.epl.tests.EditorTestHelper;
 import com.aptana.ui.util.UIUtils;
 
 public class DocumentScopeManagerPerformanceTest extends GlobalTimePerformanceTestCase
 {
 
+	private static final String WEB_NATURE = "com.aptana.projects.webnature";
+
 	/**
 	 * This version will return token level Scopes.
 	 * 
@@ -77,4 +93,186 @@ public class DocumentScopeManagerPerformanceTest extends GlobalTimePerformanceTe
 			}
 		}
 	}
+
+	/**
+	 * Looks up the scopes of an open editor, the way content assist, hovers and commands do while typing.
+	 * 
+	 * @throws Exception
+	 */
+	public void testGetScopeAtOffsetOpenEditor() throws Exception
+	{
+		IDocumentScopeManager manager = CommonEditorPlugin.getDefault().getDocumentScopeManager();
+		TestProject project = new TestProject("scope_performance", new String[] { WEB_NATURE });
+		ITextEditor editor = null;
+		try
+		{
+			editor = openDojo(project);
+			ISourceViewer viewer = TextEditorUtils.getSourceViewer(editor);
+			int length = viewer.getDocument().getLength();
+			for (int i = 0; i < 50; i++)
+			{
+				startMeasuring();
+				for (int x = 0; x < length; x += 100)
+				{
+					manager.getScopeAtOffset(viewer, x);
+				}
+				stopMeasuring();
+			}
+			commitMeasurements();
+			assertPerformance();
+		}
+		finally
+		{
+			if (editor != null)
+			{
+				EditorTestHelper.closeEditor(editor);
+			}
+			project.delete();
+		}
+	}
+
+	/**
+	 * The same lookups as {@link #testGetScopeAtOffsetOpenEditor()}, done the way DocumentScopeManager used to: the
+	 * project natures are read and the token scope positions copied on every call. This is the baseline.
+	 * 
+	 * @throws Exception
+	 */
+	public void testGetScopeAtOffsetOpenEditorUncached() throws Exception
+	{
+		IDocumentScopeManager manager = CommonEditorPlugin.getDefault().getDocumentScopeManager();
+		TestProject project = new TestProject("scope_performance", new String[] { WEB_NATURE });
+		ITextEditor editor = null;
+		try
+		{
+			editor = openDojo(project);
+			ISourceViewer viewer = TextEditorUtils.getSourceViewer(editor);
+			int length = viewer.getDocument().getLength();
+			for (int i = 0; i < 50; i++)
+			{
+				startMeasuring();
+				for (int x = 0; x < length; x += 100)
+				{
+					getScopeAtOffsetUncached(manager, viewer, x);
+				}
+				stopMeasuring();
+			}
+			commitMeasurements();
+			assertPerformance();
+		}
+		finally
+		{
+			if (editor != null)
+			{
+				EditorTestHelper.closeEditor(editor);
+			}
+			project.delete();
+		}
+	}
+
+	private ITextEditor openDojo(TestProject project) throws Exception
+	{
+		URL url = FileLocator.find(Platform.getBundle("com.aptana.js.core.tests"),
+				Path.fromPortableString("performance/dojo.js.uncompressed.js"), null);
+		IFile file = project.createFile("dojo.js", IOUtil.read(url.openStream()));
+		return (ITextEditor) EditorTestHelper.openInEditor(file, true);
+	}
+
+	/**
+	 * DocumentScopeManager#getScopeAtOffset(ITextViewer, int) as it was before the natures and token scopes were
+	 * cached. The partition scope is computed by the same code as before.
+	 */
+	private String getScopeAtOffsetUncached(IDocumentScopeManager manager, ITextViewer viewer, int offset)
+			throws Exception
+	{
+		IDocument document = viewer.getDocument();
+		String partitionFragment = manager.getScopeAtOffset(document, offset);
+		partitionFragment = prependNaturesToScope(viewer) + partitionFragment;
+
+		String tokenPortion = getTokenScopeFragments(document, offset);
+		if (tokenPortion != null)
+		{
+			if (tokenPortion.length() == 0)
+			{
+				return partitionFragment;
+			}
+
+			if (!partitionFragment.endsWith(tokenPortion))
+			{
+				return partitionFragment + ' ' + tokenPortion;
+			}
+		}
+		return partitionFragment;
+	}
+
+	private String prependNaturesToScope(ITextViewer viewer)
+	{
+		if (!(viewer instanceof IAdaptable))
+		{
+			return StringUtil.EMPTY;
+		}
+		AbstractThemeableEditor editor = (AbstractThemeableEditor) ((IAdaptable) viewer)
+				.getAdapter(AbstractThemeableEditor.class);
+		if (editor == null)
+		{
+			return StringUtil.EMPTY;
+		}
+		IProject project = EditorUtil.getProject(editor);
+		if (project == null)
+		{
+			return StringUtil.EMPTY;
+		}
+		try
+		{
+			String[] natures = project.getDescription().getNatureIds();
+			if (!ArrayUtil.isEmpty(natures))
+			{
+				return "meta.project." + StringUtil.join(" meta.project.", natures) + ' ';
+			}
+		}
+		catch (CoreException e)
+		{
+			// ignore
+		}
+		return StringUtil.EMPTY;
+	}
+
+	private String getTokenScopeFragments(IDocument document, int offset) throws Exception
+	{
+		document.addPositionCategory(ICommonConstants.SCOPE_CATEGORY);
+		Position[] scopes = document.getPositions(ICommonConstants.SCOPE_CATEGORY);
+		int index = document.computeIndexInCategory(ICommonConstants.SCOPE_CATEGORY, offset);
+		if (scopes == null || scopes.length == 0)
+		{
+			return null;
+		}
+		if (index >= scopes.length)
+		{
+			index = scopes.length - 1;
+		}
+		Position scope = scopes[index];
+		if (scope == null)
+		{
+			return null;
+		}
+		if (!scope.includes(offset))
+		{
+			if (index > 0)
+			{
+				scope = scopes[--index];
+				if (scope == null || !scope.includes(offset))
+				{
+					return null;
+				}
+			}
+			else
+			{
+				return null;
+			}
+		}
+		if (scope instanceof TypedPosition)
+		{
+			return ((TypedPosition) scope).getType();
+		}
+		return null;
+	}
 }
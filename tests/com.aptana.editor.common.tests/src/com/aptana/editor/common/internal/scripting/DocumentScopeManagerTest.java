@@ -8,6 +8,7 @@ import junit.framework.TestCase;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProjectDescription;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
@@ -191,6 +192,36 @@ public class DocumentScopeManagerTest extends TestCase
 		assertScope("meta.project.com.aptana.projects.webnature source.js support.class.js", 7);
 	}
 
+	public void testGetScopeAfterProjectNaturesChange() throws Exception
+	{
+		setUpStandardScopes();
+
+		project = new TestProject("scope_nature", new String[] { "com.aptana.projects.webnature" });
+
+		IFile iFile = project.createFile("project_scope.js", "if(Object.isUndefined(Effect))");
+		editor = (ITextEditor) EditorTestHelper.openInEditor(iFile, true);
+
+		assertScope("meta.project.com.aptana.projects.webnature source.js keyword.control.js", 1);
+
+		IProjectDescription description = project.getInnerProject().getDescription();
+		description.setNatureIds(new String[0]);
+		project.getInnerProject().setDescription(description, null);
+
+		assertScope("source.js keyword.control.js", 1);
+	}
+
+	public void testScopesAreShared() throws Exception
+	{
+		setUpStandardScopes();
+
+		createAndOpenFile("testing", ".js", "if(Object.isUndefined(Effect))");
+		ISourceViewer viewer = TextEditorUtils.getSourceViewer(editor);
+
+		String scope = getDocumentScopeManager().getScopeAtOffset(viewer, 1);
+		assertEquals("source.js keyword.control.js", scope);
+		assertSame(scope, getDocumentScopeManager().getScopeAtOffset(viewer, 0));
+	}
+
 	public void testGetScopeAtEndOfFile() throws Exception
 	{
 		setUpStandardScopes();
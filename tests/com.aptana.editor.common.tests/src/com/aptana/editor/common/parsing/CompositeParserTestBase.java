@@ -78,6 +78,26 @@ public abstract class CompositeParserTestBase extends TestCase
 			// TODO Auto-generated method stub
 			return null;
 		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.aptana.parsing.ast.IParseRootNode#getEnclosingNode(int, int)
+		 */
+		public IParseNode getEnclosingNode(int start, int end)
+		{
+			// TODO Auto-generated method stub
+			return null;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.aptana.parsing.ast.IParseRootNode#getNodesInRange(int, int)
+		 */
+		public IParseNode[] getNodesInRange(int start, int end)
+		{
+			// TODO Auto-generated method stub
+			return null;
+		}
 	}
 
 	protected abstract IMerger createMerger();
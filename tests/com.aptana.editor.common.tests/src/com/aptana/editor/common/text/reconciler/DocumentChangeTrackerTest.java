@@ -0,0 +1,87 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.text.reconciler;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+
+public class DocumentChangeTrackerTest extends TestCase
+{
+
+	private IDocument document;
+	private DocumentChangeTracker tracker;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		document = new Document("0123456789\nabcdefghij\n");
+		tracker = new DocumentChangeTracker(document);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		tracker.dispose();
+		tracker = null;
+		document = null;
+
+		super.tearDown();
+	}
+
+	public void testEverythingChangedInitially() throws Exception
+	{
+		assertTrue(tracker.hasChanged());
+		assertTrue(tracker.reset().isEverything());
+		assertFalse(tracker.hasChanged());
+		assertTrue(tracker.reset().isEmpty());
+	}
+
+	public void testEditsAreMerged() throws Exception
+	{
+		tracker.reset();
+		document.replace(2, 3, "xy"); // 01xy56789
+		document.replace(14, 0, "zzz"); // abcdzzzefghij
+
+		DocumentChangeTracker.Change change = tracker.reset();
+		assertFalse(change.isEverything());
+		assertEquals(2, change.getStart());
+		assertEquals(17, change.getEnd());
+		assertEquals(2, change.getDelta());
+		assertEquals("efghij\n", document.get(change.getEnd(), document.getLength() - change.getEnd()));
+	}
+
+	public void testEditBeforeRangeShiftsIt() throws Exception
+	{
+		tracker.reset();
+		document.replace(15, 1, "E"); // abcdEfghij
+		document.replace(0, 2, ""); // 23456789
+
+		DocumentChangeTracker.Change change = tracker.reset();
+		assertEquals(0, change.getStart());
+		assertEquals(14, change.getEnd());
+		assertEquals(-2, change.getDelta());
+	}
+
+	public void testInvalidate() throws Exception
+	{
+		tracker.reset();
+		tracker.invalidate();
+		assertTrue(tracker.reset().isEverything());
+	}
+
+	public void testNoChangesAfterDispose() throws Exception
+	{
+		tracker.reset();
+		tracker.dispose();
+		document.replace(0, 1, "x");
+		assertFalse(tracker.hasChanged());
+	}
+}
@@ -28,6 +28,7 @@ public class ReconcilerTests
 		// $JUnit-BEGIN$
 		suite.addTestSuite(CommonReconcilerTest.class);
 		suite.addTestSuite(CommonReconcilingStrategyTest.class);
+		suite.addTestSuite(DocumentChangeTrackerTest.class);
 		suite.addTestSuite(RubyRegexpFolderTest.class);
 		// $JUnit-END$
 		return suite;
@@ -178,4 +178,49 @@ public class RubyRegexpFolderTest extends TestCase
 		assertEquals(1, positions.size());
 		assertTrue(positions.contains(new Position(0, src.length()))); // eats whole line at end
 	}
+
+	public void testOnlyChangedLinesAreMatchedAgain() throws Exception
+	{
+		String src = "body {\n" + "	color: red;\n" + "}\n" + "\n" + "div p {\n" + "	background-color: green;\n"
+				+ "}\n";
+		IDocument document = new Document(src);
+		final int[] matchedLines = new int[1];
+		RubyRegexpFolder folder = new RubyRegexpFolder(null, document)
+		{
+			@Override
+			protected RubyRegexp getEndFoldRegexp(String scope)
+			{
+				return RubyRegexp.newRegexp(runtime, "(?<!\\*)\\*\\*\\/|^\\s*\\}", RegexpOptions.NULL_OPTIONS);
+			}
+
+			@Override
+			protected RubyRegexp getStartFoldRegexp(String scope)
+			{
+				matchedLines[0]++;
+				return RubyRegexp.newRegexp(runtime, "\\/\\*\\*(?!\\*)|\\{\\s*($|\\/\\*(?!.*?\\*\\/.*\\S))",
+						RegexpOptions.NULL_OPTIONS);
+			}
+
+			@Override
+			protected String getScopeAtOffset(int offset) throws BadLocationException
+			{
+				return "source.css";
+			}
+		};
+		Collection<Position> positions = folder.emitFoldingRegions(false, new NullProgressMonitor(), null).values();
+		assertEquals(2, positions.size());
+		assertEquals(8, matchedLines[0]);
+
+		matchedLines[0] = 0;
+		document.replace(22, 0, "a {\n}\n");
+		positions = folder.emitFoldingRegions(false, new NullProgressMonitor(), null).values();
+		assertEquals(3, positions.size());
+		assertTrue(positions.contains(new Position(0, 22)));
+		assertTrue(positions.contains(new Position(22, 6)));
+		assertTrue(positions.contains(new Position(29, 36))); // shifted by the insertion
+		// only the lines of the change are matched again
+		assertEquals(3, matchedLines[0]);
+
+		folder.dispose();
+	}
 }
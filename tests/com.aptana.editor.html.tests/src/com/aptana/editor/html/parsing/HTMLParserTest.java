@@ -10,6 +10,7 @@ package com.aptana.editor.html.parsing;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.List;
 
 import junit.framework.TestCase;
@@ -369,6 +370,86 @@ public class HTMLParserTest extends TestCase
 		assertEquals(new Range(19, 19), endTag.getNameRange());
 	}
 
+	public void testManyEmbeddedRegions() throws Exception
+	{
+		StringBuilder source = new StringBuilder("<html><body>");
+		for (int i = 0; i < 20; i++)
+		{
+			source.append("<div style=\"color: red;\" onclick=\"go(").append(i).append(");\"></div>");
+			source.append("<script>var v").append(i).append(" = ").append(i).append(";</script>");
+		}
+		source.append("</body></html>");
+		fParseState = new HTMLParseState(source.toString());
+
+		IParseNode body = parse().getChild(0).getChild(0);
+		assertEquals(40, body.getChildCount());
+		for (int i = 0; i < 20; i++)
+		{
+			HTMLElementNode div = (HTMLElementNode) body.getChild(2 * i);
+			assertEquals(1, div.getCSSStyleNodes().length);
+			assertEquals(1, div.getJSAttributeNodes().length);
+
+			IParseNode script = body.getChild(2 * i + 1);
+			JSParseRootNode js = (JSParseRootNode) script.getChild(0);
+			String expected = "var v" + i;
+			assertEquals(source.indexOf(expected + " "), js.getStartingOffset());
+		}
+	}
+
+	public void testEmbeddedRegionErrors() throws Exception
+	{
+		String source = "<html><script>fun(a,);</script><p></p><script>var a = 1;</script></html>";
+		fParseState = new HTMLParseState(source);
+		ParseResult parseResult = fParser.parse(fParseState);
+
+		// the offsets of the errors are shifted to the position of the script in the document
+		List<IParseError> errors = parseResult.getErrors();
+		assertEquals(1, errors.size());
+		assertEquals(IJSConstants.CONTENT_TYPE_JS, errors.get(0).getLangauge());
+		assertEquals(source.indexOf(");"), errors.get(0).getOffset());
+	}
+
+	public void testConcurrentParses() throws Exception
+	{
+		final String source = getSource("performance/amazon.html");
+		final String expected = toString(fParser.parse(new HTMLParseState(source)).getRootNode());
+		final List<Throwable> failures = new ArrayList<Throwable>();
+		Thread[] threads = new Thread[4];
+
+		for (int i = 0; i < threads.length; i++)
+		{
+			threads[i] = new Thread()
+			{
+				public void run()
+				{
+					try
+					{
+						for (int j = 0; j < 5; j++)
+						{
+							// the same parser is used by all the threads
+							assertEquals(expected, HTMLParserTest.toString(fParser.parse(new HTMLParseState(source))
+									.getRootNode()));
+						}
+					}
+					catch (Throwable t)
+					{
+						synchronized (failures)
+						{
+							failures.add(t);
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		assertTrue(failures.toString(), failures.isEmpty());
+	}
+
 	/**
 	 * This method is not being used for formal testing, but it's useful to determine how effective
 	 * {@link ParseNode#trimToSize()} is.
@@ -390,14 +471,17 @@ public class HTMLParserTest extends TestCase
 	protected void parseTest(String source, String expected) throws Exception
 	{
 		fParseState = new HTMLParseState(source);
-		IParseNode result = parse();
+		assertEquals(expected, toString(parse()));
+	}
 
+	private static String toString(IParseNode result)
+	{
 		StringBuilder text = new StringBuilder();
 		IParseNode[] children = result.getChildren();
 		for (IParseNode child : children)
 		{
 			text.append(child).append("\n");
 		}
-		assertEquals(expected, text.toString());
+		return text.toString();
 	}
 }
@@ -29,6 +29,7 @@ public class HTMLParsingTests extends TestCase
 		// $JUnit-BEGIN$
 		suite.addTestSuite(HTMLParserTest.class);
 		suite.addTestSuite(HTMLParserTypeAttributeTest.class);
+		suite.addTestSuite(HTMLPersistentParseCacheTest.class);
 		suite.addTestSuite(HTMLUtilsTest.class);
 		// $JUnit-END$
 		return suite;
@@ -0,0 +1,215 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.html.parsing;
+
+import java.io.File;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.aptana.css.core.ICSSConstants;
+import com.aptana.css.core.parsing.CSSParser;
+import com.aptana.css.core.parsing.ast.CSSParseRootNode;
+import com.aptana.editor.html.IHTMLConstants;
+import com.aptana.internal.parsing.PersistentParseCache;
+import com.aptana.js.core.IJSConstants;
+import com.aptana.js.core.parsing.JSParser;
+import com.aptana.js.core.parsing.ast.JSParseRootNode;
+import com.aptana.parsing.IParseState;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ast.IParseError;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+
+/**
+ * Stores the results of the real parsers in the persistent parse cache and reads them back. HTML trees embed the nodes
+ * of the JS and CSS parsers, which must be found through the class loader of the HTML bundle.
+ */
+@SuppressWarnings("nls")
+public class HTMLPersistentParseCacheTest extends TestCase
+{
+	private static final String VERSION = "test";
+
+	private File fDirectory;
+	private PersistentParseCache fCache;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		fDirectory = File.createTempFile("parseCache", null);
+		fDirectory.delete();
+		fCache = new PersistentParseCache(fDirectory, 16 * 1024 * 1024);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		fCache.clear();
+		fCache = null;
+		File[] files = fDirectory.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				file.delete();
+			}
+		}
+		fDirectory.delete();
+		fDirectory = null;
+
+		super.tearDown();
+	}
+
+	public void testJSRoundTrip() throws Exception
+	{
+		String source = "/* comment */\nfunction add(a, b) {\n  return a + b * 2;\n}\n"
+				+ "var x = { y: [1, 'two'] };\nx.y(;";
+		IParseState parseState = new ParseState(source);
+		ParseResult result = new JSParser().parse(parseState);
+		assertFalse(result.getErrors().isEmpty());
+
+		ParseResult restored = roundTrip(IJSConstants.CONTENT_TYPE_JS, parseState, result,
+				JSParser.class.getClassLoader());
+		assertTrue(restored.getRootNode() instanceof JSParseRootNode);
+	}
+
+	public void testCSSRoundTrip() throws Exception
+	{
+		String source = "/* comment */\n@media screen { a:hover { color: red; } }\n"
+				+ "body, div > p { margin: 0 auto !important; }\np {";
+		IParseState parseState = new ParseState(source);
+		ParseResult result = new CSSParser().parse(parseState);
+
+		ParseResult restored = roundTrip(ICSSConstants.CONTENT_TYPE_CSS, parseState, result,
+				CSSParser.class.getClassLoader());
+		assertTrue(restored.getRootNode() instanceof CSSParseRootNode);
+	}
+
+	public void testHTMLRoundTripWithEmbeddedLanguages() throws Exception
+	{
+		String source = "<html>\n<head>\n<script>\n/* JS comment */\nvar x = 1 + 2;\n</script>\n"
+				+ "<style>\n/* CSS comment */\np { color: red; }\n</style>\n</head>\n"
+				+ "<body><div id=\"main\"><p>text</body>\n</html>";
+		IParseState parseState = new HTMLParseState(source);
+		ParseResult result = new HTMLParser().parse(parseState);
+		assertFalse(result.getErrors().isEmpty());
+
+		ParseResult restored = roundTrip(IHTMLConstants.CONTENT_TYPE_HTML, parseState, result,
+				HTMLParser.class.getClassLoader());
+		assertTrue(contains(restored.getRootNode(), JSParseRootNode.class));
+		assertTrue(contains(restored.getRootNode(), CSSParseRootNode.class));
+	}
+
+	public void testTooDeepTreeIsNotStored() throws Exception
+	{
+		StringBuilder source = new StringBuilder("var x = a");
+		for (int i = 0; i < 5000; i++)
+		{
+			source.append(" + a");
+		}
+		source.append(';');
+		final IParseState parseState = new ParseState(source.toString());
+		final ParseResult result = new JSParser().parse(parseState);
+		final Throwable[] thrown = new Throwable[1];
+
+		// a small stack, so that serializing the tree overflows it whatever the VM
+		Thread thread = new Thread(null, new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					fCache.put(IJSConstants.CONTENT_TYPE_JS, VERSION, parseState, result);
+				}
+				catch (Throwable t)
+				{
+					thrown[0] = t;
+				}
+			}
+		}, "Parser", 128 * 1024);
+		thread.start();
+		thread.join();
+
+		assertNull(thrown[0]);
+		assertEquals(0, fCache.getSize());
+		assertNull(fCache.get(IJSConstants.CONTENT_TYPE_JS, VERSION, parseState, JSParser.class.getClassLoader()));
+	}
+
+	private ParseResult roundTrip(String contentTypeId, IParseState parseState, ParseResult result,
+			ClassLoader astClassLoader)
+	{
+		fCache.put(contentTypeId, VERSION, parseState, result);
+		ParseResult restored = fCache.get(contentTypeId, VERSION, parseState, astClassLoader);
+		assertNotNull(restored);
+		assertNotSame(result.getRootNode(), restored.getRootNode());
+
+		assertSameTree(result.getRootNode(), restored.getRootNode());
+
+		List<IParseError> errors = restored.getErrors();
+		assertEquals(result.getErrors().size(), errors.size());
+		for (int i = 0; i < errors.size(); i++)
+		{
+			IParseError expected = result.getErrors().get(i);
+			assertEquals(expected.getMessage(), errors.get(i).getMessage());
+			assertEquals(expected.getOffset(), errors.get(i).getOffset());
+			assertEquals(expected.getLength(), errors.get(i).getLength());
+			assertEquals(expected.getSeverity(), errors.get(i).getSeverity());
+		}
+		return restored;
+	}
+
+	private void assertSameTree(IParseNode expected, IParseNode actual)
+	{
+		assertEquals(expected.getClass(), actual.getClass());
+		assertEquals(expected.getLanguage(), actual.getLanguage());
+		assertEquals(expected.getNodeType(), actual.getNodeType());
+		assertEquals(expected.getStartingOffset(), actual.getStartingOffset());
+		assertEquals(expected.getEndingOffset(), actual.getEndingOffset());
+		assertEquals(expected.toString(), actual.toString());
+		assertEquals(expected.getChildCount(), actual.getChildCount());
+
+		for (int i = 0; i < expected.getChildCount(); i++)
+		{
+			assertSame(actual, actual.getChild(i).getParent());
+			assertSameTree(expected.getChild(i), actual.getChild(i));
+		}
+		if (expected instanceof IParseRootNode)
+		{
+			assertSameComments((IParseRootNode) expected, (IParseRootNode) actual);
+		}
+	}
+
+	private boolean contains(IParseNode node, Class<?> type)
+	{
+		if (type.isInstance(node))
+		{
+			return true;
+		}
+		for (IParseNode child : node.getChildren())
+		{
+			if (contains(child, type))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void assertSameComments(IParseRootNode expected, IParseRootNode actual)
+	{
+		IParseNode[] comments = actual.getCommentNodes();
+		assertEquals(expected.getCommentNodes().length, comments.length);
+		for (int i = 0; i < comments.length; i++)
+		{
+			assertSameTree(expected.getCommentNodes()[i], comments[i]);
+		}
+	}
+}
@@ -7,7 +7,11 @@
  */
 package com.aptana.editor.js.internal.text;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 
 import junit.framework.TestCase;
@@ -15,6 +19,7 @@ import junit.framework.TestCase;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.source.projection.ProjectionAnnotation;
 
@@ -177,6 +182,114 @@ public class JSFoldingComputerTest extends TestCase
 		assertFalse(annotations.keySet().iterator().next().isCollapsed());
 	}
 
+	public void testFoldingAfterEditsMatchesFreshComputation() throws Exception
+	{
+		String src = "/*\n" + //
+				" * This is a comment.\n" + //
+				" */\n" + //
+				"function a(x)\n" + //
+				"{\n" + //
+				"   if (x)\n" + //
+				"   {\n" + //
+				"      x++;\n" + //
+				"   }\n" + //
+				"   return x;\n" + //
+				"}\n" + //
+				"\n" + //
+				"var o = {\n" + //
+				"   \"a\": [\n" + //
+				"      1,\n" + //
+				"      2\n" + //
+				"   ]\n" + //
+				"};\n" + //
+				"\n" + //
+				"function b()\n" + //
+				"{\n" + //
+				"   return 1;\n" + //
+				"}\n"; //
+		IDocument document = new Document(src);
+		folder = new JSFoldingComputer(null, document);
+		assertSameFoldsAsFreshComputation(document);
+
+		// nothing changed
+		assertSameFoldsAsFreshComputation(document);
+
+		// before all the folds
+		document.replace(0, 0, "var v = 0;\n");
+		assertSameFoldsAsFreshComputation(document);
+
+		// on the line a fold starts at
+		document.replace(document.get().indexOf("(x)"), 3, "(x, y)");
+		assertSameFoldsAsFreshComputation(document);
+
+		// inside a folded block, adding a line
+		int offset = document.get().indexOf("x++;\n") + 5;
+		document.replace(offset, 0, "      x--;\n");
+		assertSameFoldsAsFreshComputation(document);
+
+		// inside a folded block, which then fits on a single line
+		offset = document.get().indexOf("[");
+		document.replace(offset, document.get().indexOf("]") + 1 - offset, "[1, 2]");
+		assertSameFoldsAsFreshComputation(document);
+
+		// between two folds, shifting the lines after it
+		document.replace(document.get().indexOf("function b"), 0, "\n\n");
+		assertSameFoldsAsFreshComputation(document);
+
+		// after all the folds
+		document.replace(document.getLength(), 0, "function c()\n{\n   return 2;\n}\n");
+		assertSameFoldsAsFreshComputation(document);
+
+		// removing a fold
+		offset = document.get().indexOf("function a");
+		document.replace(offset, document.get().indexOf("var o") - offset, "");
+		assertSameFoldsAsFreshComputation(document);
+
+		// several edits between two computations
+		document.replace(0, 0, "/*\n * Another comment.\n */\n");
+		document.replace(document.get().indexOf("return 1;"), 0, "b();\n   ");
+		assertSameFoldsAsFreshComputation(document);
+	}
+
+	/**
+	 * Checks the folding positions of the document, computed from its previous ones by the test's computer, are the
+	 * ones a new computer finds.
+	 * 
+	 * @param document
+	 * @throws Exception
+	 */
+	private void assertSameFoldsAsFreshComputation(IDocument document) throws Exception
+	{
+		String src = document.get();
+		Map<ProjectionAnnotation, Position> annotations = folder.emitFoldingRegions(false,
+				new NullProgressMonitor(), parse(new ParseState(src)));
+		IFoldingComputer fresh = new JSFoldingComputer(null, new Document(src));
+		try
+		{
+			Map<ProjectionAnnotation, Position> expected = fresh.emitFoldingRegions(false,
+					new NullProgressMonitor(), parse(new ParseState(src)));
+			assertFalse(expected.isEmpty());
+			assertEquals(src, sort(expected.values()), sort(annotations.values()));
+		}
+		finally
+		{
+			fresh.dispose();
+		}
+	}
+
+	private List<Position> sort(Collection<Position> positions)
+	{
+		List<Position> sorted = new ArrayList<Position>(positions);
+		Collections.sort(sorted, new Comparator<Position>()
+		{
+			public int compare(Position p1, Position p2)
+			{
+				return (p1.offset != p2.offset) ? p1.offset - p2.offset : p1.length - p2.length;
+			}
+		});
+		return sorted;
+	}
+
 	private ProjectionAnnotation getByPosition(Map<ProjectionAnnotation, Position> annotations, Position position)
 	{
 		for (Map.Entry<ProjectionAnnotation, Position> entry : annotations.entrySet())
@@ -30,6 +30,7 @@ public class AllTests
 			}
 		};
 		//$JUnit-BEGIN$
+		suite.addTestSuite(JSONParserTest.class);
 		suite.addTestSuite(JSONSourcePartitionerScannerTest.class);
 		//$JUnit-END$
 		return suite;
@@ -0,0 +1,172 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.json;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
+
+import com.aptana.json.core.parsing.JSONParser;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ast.ASTUtil;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+
+@SuppressWarnings("nls")
+public class JSONParserTest extends TestCase
+{
+	private static final String OBJECT = "{\n\"a\": 1,\n\"b\": [true, null],\n\"c\": {\"d\": \"e\"},\n\"f\": 2,\n"
+			+ "\"g\": 3\n}";
+	private static final String ARRAY = "[\n1,\n\"two\",\n[3, 4],\n{\"five\": 5},\n6,\n7\n]";
+
+	private JSONParser fParser;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		fParser = new JSONParser();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		fParser = null;
+	}
+
+	public void testIncrementalReparseObject() throws Exception
+	{
+		// a value, a key, a whole entry, and the first and last entries, which have no neighbour on one side
+		assertIncrementalReparse(OBJECT, "2", "20");
+		assertIncrementalReparse(OBJECT, "\"c\"", "\"cc\"");
+		assertIncrementalReparse(OBJECT, "\"f\": 2,\n", "");
+		assertIncrementalReparse(OBJECT, "1", "true");
+		assertIncrementalReparse(OBJECT, "3", "[3]");
+		assertIncrementalReparse(OBJECT, "\"f\": 2,", "\"f\": 2,\n\"h\": {},");
+	}
+
+	public void testIncrementalReparseArray() throws Exception
+	{
+		assertIncrementalReparse(ARRAY, "[3, 4]", "[3, 4, 5]");
+		assertIncrementalReparse(ARRAY, "{\"five\": 5},\n", "");
+		assertIncrementalReparse(ARRAY, "1", "\"one\"");
+		assertIncrementalReparse(ARRAY, "7", "{}");
+		assertIncrementalReparse(ARRAY, "6,", "6,\n6.5,");
+	}
+
+	public void testIncrementalReparseNextToPlaceholders() throws Exception
+	{
+		// the reparsed entries are wrapped with "":0 (or 0) entries standing in for their kept neighbours: edits which
+		// look like them, or which merge with them when a comma goes away, must give the result of a full parse
+		assertIncrementalReparse(OBJECT, "\"c\": {\"d\": \"e\"}", "\"\": 0");
+		assertIncrementalReparse(OBJECT, "\"f\": 2", "\"\":0");
+		assertIncrementalReparse(OBJECT, "\"c\"", "\"\"");
+		assertIncrementalReparse(OBJECT, "2", "0");
+		assertIncrementalReparse(ARRAY, "[3, 4]", "0");
+		assertIncrementalReparse(ARRAY, "6", "0");
+	}
+
+	public void testIncrementalReparseWithErrors() throws Exception
+	{
+		// the parser skips stray commas without reporting them: the recovered trees must be the ones of a full parse
+		assertIncrementalReparse(OBJECT, "2,", "2,,");
+		assertIncrementalReparse(OBJECT, "\"c\"", ",\"c\"");
+		assertIncrementalReparse(OBJECT, "{\"d\": \"e\"}", "{,\"d\": \"e\"}");
+		assertIncrementalReparse(ARRAY, "6,", "6,,");
+		assertIncrementalReparse(ARRAY, "[3, 4]", "[3,, 4]");
+
+		// and so are the edits of a source which was recovered
+		String recovered = OBJECT.replace("2,", "2,,");
+		assertIncrementalReparse(recovered, "2,,", "2,");
+		assertIncrementalReparse(recovered, "3", "30");
+		assertIncrementalReparse(recovered, "\"c\"", "\"cc\"");
+	}
+
+	public void testIncrementalReparseUnrecoverableErrors() throws Exception
+	{
+		// the edits the parser can't recover from fail as a full parse does, even when the fragment parses
+		assertIncrementalReparseFails(OBJECT, "2,", "2");
+		assertIncrementalReparseFails(OBJECT, "\"f\": 2,", "\"f\" 2,");
+		assertIncrementalReparseFails(OBJECT, "\"f\": 2,", "\"f\":,");
+		assertIncrementalReparseFails(OBJECT, "[true, null]", "[true, null");
+		assertIncrementalReparseFails(OBJECT, "\"g\": 3", "\"g\": 3,");
+		assertIncrementalReparseFails(ARRAY, "\"two\",", "\"two\"");
+		assertIncrementalReparseFails(ARRAY, "6,", "6: 6,");
+	}
+
+	/**
+	 * Parses the source, replaces the first occurrence of the given text in it, and checks the incremental parse of
+	 * the new source gives the tree a full parse does, without changing the previous tree
+	 * 
+	 * @param source
+	 * @param text
+	 * @param replacement
+	 * @throws Exception
+	 */
+	protected void assertIncrementalReparse(String source, String text, String replacement) throws Exception
+	{
+		ParseResult previous = fParser.parse(new ParseState(source));
+		String previousTree = ASTUtil.dumpTree(previous.getRootNode());
+		String newSource = replace(source, text, replacement);
+		DocumentEvent edit = new DocumentEvent(new Document(newSource), source.indexOf(text), text.length(),
+				replacement);
+		IParseRootNode root = fParser.parse(new ParseState(newSource), previous, edit).getRootNode();
+		IParseRootNode expected = fParser.parse(new ParseState(newSource)).getRootNode();
+
+		assertEquals(newSource, ASTUtil.dumpTree(expected), ASTUtil.dumpTree(root));
+		for (IParseNode child : root.getChildren())
+		{
+			assertSame(root, child.getParent());
+		}
+		assertEquals(previousTree, ASTUtil.dumpTree(previous.getRootNode()));
+	}
+
+	/**
+	 * Checks that an edit which the parser can't recover from makes the incremental parse fail as well
+	 * 
+	 * @param source
+	 * @param text
+	 * @param replacement
+	 * @throws Exception
+	 */
+	protected void assertIncrementalReparseFails(String source, String text, String replacement) throws Exception
+	{
+		ParseResult previous = fParser.parse(new ParseState(source));
+		String newSource = replace(source, text, replacement);
+		DocumentEvent edit = new DocumentEvent(new Document(newSource), source.indexOf(text), text.length(),
+				replacement);
+
+		try
+		{
+			fParser.parse(new ParseState(newSource));
+			fail("Full parse of " + newSource);
+		}
+		catch (Exception e)
+		{
+			// expected
+		}
+		try
+		{
+			fParser.parse(new ParseState(newSource), previous, edit);
+			fail("Incremental parse of " + newSource);
+		}
+		catch (Exception e)
+		{
+			// expected
+		}
+	}
+
+	private String replace(String source, String text, String replacement)
+	{
+		int offset = source.indexOf(text);
+		assertTrue(text, offset >= 0);
+
+		return source.substring(0, offset) + replacement + source.substring(offset + text.length());
+	}
+}
@@ -2,11 +2,16 @@ package com.aptana.index.core;
 
 import java.io.File;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import junit.framework.TestCase;
 
 import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
@@ -112,7 +117,10 @@ public class IndexContainerJobTest extends TestCase
 				oneOf(index).getIndexFile();
 				will(returnValue(indexFile));
 
-				// We remove and index the files.
+				// We remove and index the files, collecting the changes of each file before applying them
+				allowing(index).beginDocumentChanges();
+				allowing(index).endDocumentChanges();
+				allowing(index).applyDocumentChanges(with(any(List.class)));
 				oneOf(index).remove(URI.create(file1.toURI().toString()));
 				oneOf(index).remove(URI.create(file2.toURI().toString()));
 				oneOf(index).remove(URI.create(file3.toURI().toString()));
@@ -128,4 +136,108 @@ public class IndexContainerJobTest extends TestCase
 		job.run(new NullProgressMonitor());
 		context.assertIsSatisfied();
 	}
+
+	public void testParallelIndexMatchesSerialIndex() throws Exception
+	{
+		for (int i = 0; i < 60; i++)
+		{
+			File dir = new File(tmpDir, "dir" + (i % 4));
+			dir.mkdirs();
+			new File(dir, "file" + i).createNewFile();
+		}
+
+		Map<String, List<String>> serial = indexContainer(1);
+		Map<String, List<String>> parallel = indexContainer(4);
+
+		assertEquals(60, serial.get("file").size());
+		assertEquals(serial, parallel);
+	}
+
+	/**
+	 * Index the temp dir into a new index with the specified number of workers, and return each indexed word with the
+	 * sorted names of the documents referencing it
+	 * 
+	 * @param workerCount
+	 * @return
+	 * @throws Exception
+	 */
+	private Map<String, List<String>> indexContainer(final int workerCount) throws Exception
+	{
+		File indexFile = File.createTempFile("parallel_index", ".index");
+		final IndexManager manager = IndexPlugin.getDefault().getIndexManager();
+		final Index index = manager.getIndex(indexFile.toURI());
+		final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+
+		try
+		{
+			final IFileStoreIndexingParticipant participant = new IFileStoreIndexingParticipant()
+			{
+				public void index(BuildContext context, Index index, IProgressMonitor monitor) throws CoreException
+				{
+					URI uri = context.getURI();
+					String name = context.getName();
+
+					index.addEntry("category", "file", uri);
+					index.addEntry("category", name, uri);
+					index.addEntry("parent", new File(uri).getParentFile().getName(), uri);
+
+					// participants must see their own entries before they are applied to the index
+					List<QueryResult> results = index.query(new String[] { "category" }, name,
+							SearchPattern.EXACT_MATCH);
+
+					if (CollectionsUtil.isEmpty(results))
+					{
+						errors.add(name);
+					}
+				}
+
+				public int getPriority()
+				{
+					return DEFAULT_PRIORITY;
+				}
+			};
+			IndexContainerJob job = new IndexContainerJob(tmpDir.toURI())
+			{
+				@Override
+				protected Index getIndex()
+				{
+					return index;
+				}
+
+				@Override
+				protected List<IFileStoreIndexingParticipant> getIndexParticipants(IFileStore file)
+				{
+					return CollectionsUtil.newList(participant);
+				}
+
+				@Override
+				protected int getWorkerCount()
+				{
+					return workerCount;
+				}
+			};
+			assertTrue(job.run(new NullProgressMonitor()).isOK());
+			assertEquals(Collections.emptyList(), errors);
+
+			Map<String, List<String>> words = new HashMap<String, List<String>>();
+
+			List<QueryResult> results = index.query(new String[] { "category", "parent" }, "",
+					SearchPattern.PREFIX_MATCH);
+
+			for (QueryResult result : results)
+			{
+				List<String> documents = new ArrayList<String>(result.getDocuments());
+
+				Collections.sort(documents);
+				words.put(result.getWord(), documents);
+			}
+
+			return words;
+		}
+		finally
+		{
+			manager.removeIndex(index.getRoot());
+			indexFile.delete();
+		}
+	}
 }
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ConcurrentModificationException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -137,6 +138,71 @@ public class IndexTest extends TestCase
 		assertFalse("Received a ConcurrentModificationException while accessing index", failures[0]);
 	}
 
+	/**
+	 * Queries run while the memory index is being merged to disk must still see every entry that was added before the
+	 * query started, whether it is in the memory index, the one being merged or the new disk index.
+	 * 
+	 * @throws Exception
+	 */
+	public void testQueryWhileSaving() throws Exception
+	{
+		createIndex("query_while_saving");
+
+		final int NUM_ENTRIES = 500;
+		final int[] added = new int[1];
+		final String[] failure = new String[1];
+
+		Thread writer = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					for (int i = 0; i < NUM_ENTRIES; i++)
+					{
+						index.addEntry("category", "key" + i, new URI("file" + i + ".js"));
+						synchronized (added)
+						{
+							added[0] = i + 1;
+						}
+						if (i % 50 == 0)
+						{
+							index.save();
+						}
+					}
+				}
+				catch (Exception e)
+				{
+					failure[0] = e.getMessage();
+				}
+			}
+		});
+
+		writer.start();
+		while (writer.isAlive() && failure[0] == null)
+		{
+			int expected;
+			synchronized (added)
+			{
+				expected = added[0];
+			}
+
+			List<QueryResult> result = index.query(new String[] { "category" }, "key", SearchPattern.PREFIX_MATCH
+					| SearchPattern.CASE_SENSITIVE);
+			int size = (result == null) ? 0 : result.size();
+			if (size < expected)
+			{
+				failure[0] = "Expected at least " + expected + " results, but found " + size;
+			}
+		}
+		writer.join();
+
+		assertNull(failure[0], failure[0]);
+		index.save();
+		assertEquals(NUM_ENTRIES, index.query(new String[] { "category" }, "key", SearchPattern.PREFIX_MATCH
+				| SearchPattern.CASE_SENSITIVE).size());
+	}
+
 	public void testAddEntry() throws Exception
 	{
 		createIndex("add_entry");
@@ -145,6 +211,32 @@ public class IndexTest extends TestCase
 		assertEntryAdded();
 	}
 
+	public void testDocumentBatch() throws Exception
+	{
+		createIndex("document_batch");
+		index.addEntry("other", "key", new URI("relative_path.rb"));
+
+		DocumentBatch batch = index.createDocumentBatch(new URI("relative_path.rb"));
+		batch.addEntry("category", "key1");
+		batch.addEntry("category", "key2");
+		batch.addEntry("category", "key1");
+		batch.addEntry("other", "key2");
+		assertEquals(3, batch.size());
+
+		// entries aren't added until the batch is committed
+		assertTrue(index.query(new String[] { "category" }, "key", SearchPattern.PREFIX_MATCH).isEmpty());
+
+		batch.commit();
+		assertEquals(0, batch.size());
+		assertEquals(2, index.query(new String[] { "category" }, "key", SearchPattern.PREFIX_MATCH).size());
+		// committing adds to the document's existing entries
+		assertEquals(2, index.query(new String[] { "other" }, "key", SearchPattern.PREFIX_MATCH).size());
+
+		index.save();
+		assertEquals(2, index.query(new String[] { "category" }, "key", SearchPattern.PREFIX_MATCH).size());
+		assertEquals(2, index.query(new String[] { "other" }, "key", SearchPattern.PREFIX_MATCH).size());
+	}
+
 	protected void assertEntryAdded()
 	{
 		List<String> categories = index.getCategories();
@@ -272,4 +364,53 @@ public class IndexTest extends TestCase
 		assertEntryAdded();
 	}
 
+	public void testPrefixQueryBeforeAndAfterSave() throws Exception
+	{
+		createIndex("prefix_query");
+		index.addEntry("category", "alpha", new URI("file1.js"));
+		index.addEntry("category", "alphabet", new URI("file2.js"));
+		index.addEntry("category", "alps", new URI("file1.js"));
+		index.addEntry("category", "Alpha", new URI("file3.js"));
+		index.addEntry("category", "beta", new URI("file3.js"));
+		index.addEntry("other", "alpha", new URI("file4.js"));
+
+		assertPrefixResults();
+
+		index.save();
+
+		assertPrefixResults();
+	}
+
+	protected void assertPrefixResults()
+	{
+		List<QueryResult> result = index.query(new String[] { "category" }, "alp", SearchPattern.PREFIX_MATCH
+				| SearchPattern.CASE_SENSITIVE);
+		assertNotNull(result);
+		assertEquals(3, result.size());
+
+		Set<String> words = new HashSet<String>();
+		for (QueryResult qr : result)
+		{
+			words.add(qr.getWord());
+		}
+		assertTrue(words.contains("alpha"));
+		assertTrue(words.contains("alphabet"));
+		assertTrue(words.contains("alps"));
+
+		// case-insensitive prefix matching still picks up "Alpha"
+		result = index.query(new String[] { "category" }, "alpha", SearchPattern.PREFIX_MATCH);
+		assertNotNull(result);
+		assertEquals(3, result.size());
+
+		result = index.query(new String[] { "category" }, "alpha", SearchPattern.EXACT_MATCH
+				| SearchPattern.CASE_SENSITIVE);
+		assertNotNull(result);
+		assertEquals(1, result.size());
+		assertEquals(1, result.get(0).getDocuments().size());
+		assertEquals("file1.js", result.get(0).getDocuments().iterator().next());
+
+		result = index.query(new String[] { "category" }, "alpine", SearchPattern.PREFIX_MATCH
+				| SearchPattern.CASE_SENSITIVE);
+		assertTrue(result == null || result.isEmpty());
+	}
 }
@@ -0,0 +1,132 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core.record;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class BinaryRecordCodecTest extends TestCase
+{
+	private static final String DELIMITER = "\0";
+	private static final String SUB_DELIMITER = ",";
+
+	private IRecordCodec codec;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		codec = new BinaryRecordCodec(3, DELIMITER, SUB_DELIMITER);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		codec = null;
+
+		super.tearDown();
+	}
+
+	public void testRoundTrip()
+	{
+		List<String> parents = Arrays.asList("Object", "EventTarget");
+		String word = codec.encode(1, "Window", parents, null, "{\"a\":\"b,c\\u0000\"}", true);
+		IRecordView record = codec.decode(word);
+
+		assertEquals(3, record.getSchemaVersion());
+		assertEquals(5, record.getFieldCount());
+		assertEquals("Window", record.getString(0));
+		assertEquals(parents, record.getList(1));
+		assertEquals("", record.getString(2));
+		assertEquals("{\"a\":\"b,c\\u0000\"}", record.getField(3).toString());
+		assertTrue(record.getBoolean(4));
+		assertNull(record.getString(5));
+		assertEquals(Collections.emptyList(), record.getList(5));
+	}
+
+	public void testFieldsContainingDelimiters()
+	{
+		String value = "a\0b,c";
+		IRecordView record = codec.decode(codec.encode(1, "key", value, Arrays.asList(value, "")));
+
+		assertEquals(value, record.getString(1));
+		assertEquals(Arrays.asList(value, ""), record.getList(2));
+	}
+
+	public void testLongFields()
+	{
+		StringBuilder builder = new StringBuilder();
+
+		for (int i = 0; i < 70000; i++)
+		{
+			builder.append((char) ('a' + (i % 26)));
+		}
+
+		String value = builder.toString();
+		IRecordView record = codec.decode(codec.encode(0, value, "after"));
+
+		assertEquals(value, record.getString(0));
+		assertEquals("after", record.getString(1));
+	}
+
+	public void testKeyPrefix()
+	{
+		String word = codec.encode(2, "Foo", "bar", "{}");
+
+		assertTrue(word.startsWith(codec.encodeKey("Foo")));
+		assertTrue(word.startsWith(codec.encodeKey("Foo", "bar")));
+		assertFalse(word.startsWith(codec.encodeKey("Fo")));
+		assertFalse(codec.encode(1, "FooBar", "{}").startsWith(codec.encodeKey("Foo")));
+	}
+
+	public void testKeyContainingDelimiterIsRejected()
+	{
+		try
+		{
+			codec.encode(1, "a\0b", "value");
+			fail("Expected key with delimiter to be rejected");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// expected
+		}
+	}
+
+	public void testDecodeDelimitedRecord()
+	{
+		String word = new DelimitedRecordCodec(DELIMITER, SUB_DELIMITER).encode(1, "Window",
+				Arrays.asList("Object", "EventTarget"), "description", "1");
+		IRecordView record = codec.decode(word);
+
+		assertEquals(0, record.getSchemaVersion());
+		assertEquals(4, record.getFieldCount());
+		assertEquals("Window", record.getString(0));
+		assertEquals(Arrays.asList("Object", "EventTarget"), record.getList(1));
+		assertEquals("description", record.getString(2));
+		assertTrue(record.getBoolean(3));
+	}
+
+	public void testTruncatedRecord()
+	{
+		String word = codec.encode(1, "key", "value");
+
+		try
+		{
+			codec.decode(word.substring(0, word.length() - 1));
+			fail("Expected truncated record to be rejected");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// expected
+		}
+	}
+}
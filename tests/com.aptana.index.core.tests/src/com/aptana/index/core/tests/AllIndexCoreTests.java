@@ -7,7 +7,9 @@ import junit.framework.TestSuite;
 
 import com.aptana.index.core.IndexCoreTests;
 import com.aptana.index.core.build.BuildContextTest;
+import com.aptana.index.core.record.BinaryRecordCodecTest;
 import com.aptana.internal.index.core.DiskIndexTest;
+import com.aptana.internal.index.core.SegmentedDiskIndexTest;
 
 public class AllIndexCoreTests extends TestCase
 {
@@ -25,7 +27,9 @@ public class AllIndexCoreTests extends TestCase
 		};
 		// $JUnit-BEGIN$
 		suite.addTestSuite(DiskIndexTest.class);
+		suite.addTestSuite(SegmentedDiskIndexTest.class);
 		suite.addTestSuite(BuildContextTest.class);
+		suite.addTestSuite(BinaryRecordCodecTest.class);
 		suite.addTest(IndexCoreTests.suite());
 		// $JUnit-END$
 		return suite;
@@ -10,6 +10,8 @@ package com.aptana.internal.index.core;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Map;
+import java.util.Set;
 
 import junit.framework.TestCase;
 
@@ -17,7 +19,10 @@ import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
 
+import com.aptana.core.util.IOUtil;
 import com.aptana.core.util.ResourceUtil;
+import com.aptana.index.core.QueryResult;
+import com.aptana.index.core.SearchPattern;
 
 @SuppressWarnings("nls")
 public class DiskIndexTest extends TestCase
@@ -44,4 +49,77 @@ public class DiskIndexTest extends TestCase
 			fail("Expected an IOException, so that we'd catch it up the stack and clean up the index. Instead we got a NegativeArraySizeException!");
 		}
 	}
+
+	public void testMigrateLegacyIndex() throws Exception
+	{
+		URL url = FileLocator.find(Platform.getBundle("com.aptana.index.core.tests"),
+				Path.fromPortableString("files/legacy_0.1.index"), null);
+		File legacy = ResourceUtil.resourcePathToFile(url);
+
+		// migration rewrites the file, so work on a copy
+		File file = File.createTempFile("legacy", ".index");
+		file.deleteOnExit();
+		IOUtil.copyFile(legacy, file);
+
+		DiskIndex index = new DiskIndex(file.getAbsolutePath());
+		index.initialize(true);
+
+		assertEquals(2, index.getCategories().size());
+		assertEquals(3, index.getDocuments().size());
+
+		Map<String, QueryResult> results = index.addQueryResults(new String[] { "category1" }, "key1",
+				SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE, null);
+		assertNotNull(results);
+		assertEquals(1, results.size());
+		assertEquals(2, results.get("key1").getDocuments().size());
+		assertTrue(results.get("key1").getDocuments().contains("file1.js"));
+		assertTrue(results.get("key1").getDocuments().contains("file2.js"));
+
+		results = index.addQueryResults(new String[] { "category1", "category2" }, "", SearchPattern.PREFIX_MATCH,
+				null);
+		assertNotNull(results);
+		assertEquals(3, results.size());
+		assertEquals(2, results.get("otherkey").getDocuments().size());
+
+		// the file has been rewritten in the current format, so it should open again without migrating
+		index = new DiskIndex(file.getAbsolutePath());
+		index.initialize(true);
+		assertEquals(3, index.getDocuments().size());
+	}
+
+	public void testLargeDocumentNumberLists() throws Exception
+	{
+		File file = File.createTempFile("large_lists", ".index");
+		file.deleteOnExit();
+
+		DiskIndex index = new DiskIndex(file.getAbsolutePath());
+		index.initialize(false);
+
+		// enough documents that numbers and gaps between them need multi-byte encodings
+		MemoryIndex memoryIndex = new MemoryIndex();
+		for (int i = 0; i < 20000; i++)
+		{
+			String document = "file" + i + ".js";
+			memoryIndex.addEntry("category", "common", document);
+			if (i % 1000 == 0)
+			{
+				memoryIndex.addEntry("category", "sparse", document);
+			}
+		}
+		index = index.mergeWith(memoryIndex);
+
+		Map<String, QueryResult> results = index.addQueryResults(new String[] { "category" }, "common",
+				SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE, null);
+		assertNotNull(results);
+		assertEquals(20000, results.get("common").getDocuments().size());
+
+		results = index.addQueryResults(new String[] { "category" }, "sparse",
+				SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE, null);
+		assertNotNull(results);
+		Set<String> documents = results.get("sparse").getDocuments();
+		assertEquals(20, documents.size());
+		assertTrue(documents.contains("file0.js"));
+		assertTrue(documents.contains("file19000.js"));
+		assertFalse(documents.contains("file1.js"));
+	}
 }
@@ -0,0 +1,140 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.aptana.index.core.QueryResult;
+import com.aptana.index.core.SearchPattern;
+
+@SuppressWarnings("nls")
+public class SegmentedDiskIndexTest extends TestCase
+{
+	private File file;
+	private SegmentedDiskIndex index;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		file = File.createTempFile("segmented", ".index");
+		file.deleteOnExit();
+
+		// append a segment on every save, no matter how small the index is
+		index = SegmentedDiskIndex.open(file.getAbsolutePath(), false, 1);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		try
+		{
+			if (index != null)
+			{
+				index.delete();
+				index = null;
+			}
+		}
+		finally
+		{
+			super.tearDown();
+		}
+	}
+
+	protected Set<String> getDocuments(String word) throws IOException
+	{
+		Map<String, QueryResult> results = index.addQueryResults(new String[] { "category" }, word,
+				SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE, null, null);
+		if (results == null || !results.containsKey(word))
+		{
+			return null;
+		}
+		return results.get(word).getDocuments();
+	}
+
+	public void testNewerSegmentsReplaceOlderEntries() throws Exception
+	{
+		MemoryIndex memoryIndex = new MemoryIndex();
+		memoryIndex.addEntry("category", "old", "file1.js");
+		memoryIndex.addEntry("category", "old", "file2.js");
+		memoryIndex.addEntry("category", "kept", "file3.js");
+		index = index.append(memoryIndex);
+
+		// re-index file1, remove file2
+		memoryIndex = new MemoryIndex();
+		memoryIndex.remove("file1.js");
+		memoryIndex.addEntry("category", "new", "file1.js");
+		memoryIndex.remove("file2.js");
+		index = index.append(memoryIndex);
+
+		assertEquals(2, index.addDocumentNames(null, null, null).size());
+		assertNull(getDocuments("old"));
+		assertEquals(1, getDocuments("new").size());
+		assertEquals(1, getDocuments("kept").size());
+
+		// the removed document must stay hidden once the segments have been reopened
+		index = SegmentedDiskIndex.open(file.getAbsolutePath(), true, 1);
+		assertNull(getDocuments("old"));
+		assertTrue(getDocuments("new").contains("file1.js"));
+		assertFalse(index.addDocumentNames(null, null, null).contains("file2.js"));
+	}
+
+	public void testCompaction() throws Exception
+	{
+		for (int i = 0; i < 4; i++)
+		{
+			MemoryIndex memoryIndex = new MemoryIndex();
+			memoryIndex.addEntry("category", "common", "file" + i + ".js");
+			memoryIndex.addEntry("category", "word" + i, "file" + i + ".js");
+			index = index.append(memoryIndex);
+		}
+
+		// remove a document from an older segment, so the compacted one has to keep hiding it
+		MemoryIndex memoryIndex = new MemoryIndex();
+		memoryIndex.remove("file0.js");
+		index = index.append(memoryIndex);
+
+		SegmentedDiskIndex.Compaction compaction = index.getCompaction();
+		assertNotNull(compaction);
+		compaction.run();
+		index = compaction.apply(index);
+		compaction.deleteMergedSegments();
+
+		assertEquals(3, getDocuments("common").size());
+		assertFalse(getDocuments("common").contains("file0.js"));
+		assertNull(getDocuments("word0"));
+		assertEquals(1, getDocuments("word3").size());
+
+		index = SegmentedDiskIndex.open(file.getAbsolutePath(), true, 1);
+		assertEquals(3, getDocuments("common").size());
+		assertEquals(3, index.addDocumentNames(null, null, null).size());
+	}
+
+	public void testRemoveCategories() throws Exception
+	{
+		MemoryIndex memoryIndex = new MemoryIndex();
+		memoryIndex.addEntry("category", "word", "file1.js");
+		memoryIndex.addEntry("other", "word", "file1.js");
+		index = index.append(memoryIndex);
+
+		memoryIndex = new MemoryIndex();
+		memoryIndex.addEntry("other", "word", "file2.js");
+		index = index.append(memoryIndex);
+
+		index = index.removeCategories(new String[] { "other" }, new MemoryIndex());
+
+		assertFalse(index.getCategories().contains("other"));
+		assertEquals(1, getDocuments("word").size());
+	}
+}
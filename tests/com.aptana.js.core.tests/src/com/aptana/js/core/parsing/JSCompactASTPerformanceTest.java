@@ -0,0 +1,177 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.core.parsing;
+
+import java.io.InputStream;
+import java.text.MessageFormat;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.test.performance.GlobalTimePerformanceTestCase;
+
+import com.aptana.core.util.IOUtil;
+import com.aptana.js.core.JSCorePlugin;
+import com.aptana.js.core.tests.ITestFiles;
+import com.aptana.parsing.ast.CompactParseTree;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+
+/**
+ * Compares the compact AST backing with the regular JS nodes: the time needed to walk both trees, the time needed to
+ * compact a tree and the memory retained by each of them.
+ */
+public class JSCompactASTPerformanceTest extends GlobalTimePerformanceTestCase
+{
+	private IParseRootNode fRoot;
+
+	/*
+	 * (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		fRoot = parse(ITestFiles.DOJO_FILES[0]);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	@Override
+	protected void tearDown() throws Exception
+	{
+		fRoot = null;
+		super.tearDown();
+	}
+
+	/**
+	 * parse
+	 * 
+	 * @param resourceName
+	 * @return
+	 * @throws Exception
+	 */
+	private IParseRootNode parse(String resourceName) throws Exception
+	{
+		InputStream stream = FileLocator.openStream(Platform.getBundle(JSCorePlugin.PLUGIN_ID), new Path(resourceName),
+				false);
+		String source = IOUtil.read(stream);
+
+		return new JSParser().parse(new JSParseState(source)).getRootNode();
+	}
+
+	/**
+	 * Visit every node of the tree in document order, reading its offsets
+	 * 
+	 * @param root
+	 * @return
+	 */
+	private long walk(IParseNode root)
+	{
+		long sum = 0;
+
+		for (IParseNode node = root; node != null; node = node.getNextNode())
+		{
+			sum += node.getStartingOffset() + node.getEndingOffset();
+		}
+
+		return sum;
+	}
+
+	/**
+	 * Returns the memory in use after collecting the garbage
+	 * 
+	 * @return
+	 */
+	private long getUsedMemory()
+	{
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 5; i++)
+		{
+			System.gc();
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * testWalkParseNodes
+	 */
+	public void testWalkParseNodes()
+	{
+		for (int i = 0; i < 100; i++)
+		{
+			startMeasuring();
+			walk(fRoot);
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	/**
+	 * testWalkCompactNodes
+	 */
+	public void testWalkCompactNodes()
+	{
+		IParseRootNode compact = CompactParseTree.compact(fRoot);
+
+		assertEquals(walk(fRoot), walk(compact));
+
+		for (int i = 0; i < 100; i++)
+		{
+			startMeasuring();
+			walk(compact);
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	/**
+	 * testCompact
+	 */
+	public void testCompact()
+	{
+		for (int i = 0; i < 20; i++)
+		{
+			startMeasuring();
+			CompactParseTree.compact(fRoot);
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	/**
+	 * testRetainedMemory
+	 * 
+	 * @throws Exception
+	 */
+	public void testRetainedMemory() throws Exception
+	{
+		fRoot = null;
+
+		long base = getUsedMemory();
+		IParseRootNode root = parse(ITestFiles.DOJO_FILES[0]);
+		long full = getUsedMemory() - base;
+
+		root = CompactParseTree.compact(root);
+		long compact = getUsedMemory() - base;
+
+		System.err.println(MessageFormat.format(
+				"Retained AST memory: {0} bytes with parse nodes, {1} compacted", full, compact)); //$NON-NLS-1$
+		assertNotNull(root);
+		assertTrue("The compact tree should retain less memory than the parse nodes", compact < full); //$NON-NLS-1$
+	}
+}
@@ -16,12 +16,16 @@ import junit.framework.TestCase;
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
 
+import beaver.Parser;
 import beaver.Symbol;
 
 import com.aptana.core.util.FileUtil;
 import com.aptana.core.util.IOUtil;
 import com.aptana.js.core.JSCorePlugin;
+import com.aptana.js.core.parsing.ast.JSGroupNode;
 import com.aptana.parsing.ParseResult;
 import com.aptana.parsing.ParseState;
 import com.aptana.parsing.ast.ASTUtil;
@@ -965,6 +969,42 @@ public class JSParserTest extends TestCase
 		assertParseErrors("Syntax Error: unexpected token \"}\"");
 	}
 
+	public void testReuseAfterErrorRecovery() throws Exception
+	{
+		String[] sources = { "var x = { t };", "fun(a,);", "var a = 1;\nfunction f(b) { return b; }\n", "testing(",
+				"x.", "if (a) { b(); } else { c(); }\n" };
+
+		// the same parser goes through all recoveries, and must give the results of a new one each time
+		for (String source : sources)
+		{
+			ParseResult result = fParser.parse(new ParseState(source));
+			ParseResult expected = new JSParser().parse(new ParseState(source));
+
+			assertEquals(expected.getRootNode().toString(), result.getRootNode().toString());
+			assertEquals(expected.getErrors().size(), result.getErrors().size());
+		}
+	}
+
+	public void testReuseAfterDeepNesting() throws Exception
+	{
+		StringBuilder source = new StringBuilder("var x = ");
+		for (int i = 0; i < Parser.MAX_RETAINED_STACK_CAPACITY; i++)
+		{
+			source.append('(');
+		}
+		source.append('1');
+		for (int i = 0; i < Parser.MAX_RETAINED_STACK_CAPACITY; i++)
+		{
+			source.append(')');
+		}
+		int capacity = fParser.getStackCapacity();
+		fParser.parse(new ParseState(source.toString()));
+
+		// the stack grown for the nested source isn't kept, and the parser still works
+		assertEquals(capacity, fParser.getStackCapacity());
+		assertParseResult("var x = (1);" + EOL);
+	}
+
 	public void testSingleLineComment() throws Exception
 	{
 		String source = "// this is a single-line comment";
@@ -1064,6 +1104,83 @@ public class JSParserTest extends TestCase
 		assertParseErrors("Syntax Error: unexpected token \"/\"", "Syntax Error: unexpected token \";\"");
 	}
 
+	public void testIncrementalReparse() throws Exception
+	{
+		String source = "var a = 1;\nfunction foo() {return a;}\nvar b = a + 2;\nvar c = [a, b];\nvar d = (c);\n";
+		ParseResult previous = fParser.parse(new ParseState(source));
+		IParseRootNode previousRoot = previous.getRootNode();
+		IParseNode[] statements = previousRoot.getChildren();
+		String previousTree = ASTUtil.dumpTree(previousRoot);
+
+		// "a + 2" becomes "a + 20"
+		int offset = source.indexOf('2') + 1;
+		String newSource = source.substring(0, offset) + "0" + source.substring(offset);
+		DocumentEvent edit = new DocumentEvent(new Document(newSource), offset, 0, "0");
+		IParseRootNode root = fParser.parse(new ParseState(newSource), previous, edit).getRootNode();
+
+		assertIncrementalResult(newSource, root);
+
+		// the tokens kept by the moved nodes are moved as well
+		int groupOffset = newSource.indexOf('(', newSource.indexOf("var d"));
+		JSGroupNode group = (JSGroupNode) root.getNodeAtOffset(groupOffset);
+		assertEquals(groupOffset, group.getLeftParenthesis().getStart());
+		assertEquals(groupOffset + 2, group.getRightParenthesis().getStart());
+
+		// the previous result may be held by others (i.e.: the parse cache), so it's left as it was
+		assertEquals(previousTree, ASTUtil.dumpTree(previousRoot));
+		for (IParseNode statement : statements)
+		{
+			assertSame(previousRoot, statement.getParent());
+		}
+		assertNotSame(statements[0], root.getChild(0));
+		assertNotSame(statements[4], root.getChild(4));
+		group = (JSGroupNode) previousRoot.getNodeAtOffset(groupOffset - 1);
+		assertEquals(groupOffset - 1, group.getLeftParenthesis().getStart());
+		assertEquals(groupOffset + 1, group.getRightParenthesis().getStart());
+	}
+
+	public void testIncrementalReparseContinuedStatement() throws Exception
+	{
+		String source = "var a = 1;\nvar f = function() {};\n(a);\nvar b = 2;\nvar c = 3;\n";
+		ParseResult previous = fParser.parse(new ParseState(source));
+
+		// removing the semicolon turns the function expression and the group into an invocation
+		int offset = source.indexOf("};") + 1;
+		String newSource = source.substring(0, offset) + source.substring(offset + 1);
+		DocumentEvent edit = new DocumentEvent(new Document(newSource), offset, 1, "");
+		IParseRootNode root = fParser.parse(new ParseState(newSource), previous, edit).getRootNode();
+
+		assertIncrementalResult(newSource, root);
+		assertEquals(4, root.getChildCount());
+	}
+
+	public void testIncrementalReparseKeywordOperatorAfterBrace() throws Exception
+	{
+		JSIncrementalReparser reparser = new JSIncrementalReparser(fParser);
+		String object = "var t = {}\nin o;";
+		String function = "var f = function() {}\ninstanceof Function;";
+
+		// "in" and "instanceof" continue the expression ending with the brace, identifiers starting like them don't
+		assertFalse(reparser.isTerminated(object, object.indexOf('}')));
+		assertFalse(reparser.isTerminated(function, function.indexOf('}')));
+		assertTrue(reparser.isTerminated("var t = {}\ninput = 1;", object.indexOf('}')));
+		assertTrue(reparser.isTerminated("var t = {}\ninstanceofs = 1;", object.indexOf('}')));
+
+		// edits around such an expression
+		String source = "var a = 1;\nvar b = 2;\n" + object + "\nvar c = 3;\nvar d = 4;\n" + function
+				+ "\nvar e = 5;\nvar g = 6;\n";
+		ParseResult previous = fParser.parse(new ParseState(source));
+		for (String target : new String[] { "o;", "2;", "4;", "Function;", "6;" })
+		{
+			int offset = source.indexOf(target);
+			String newSource = source.substring(0, offset) + "x" + source.substring(offset + 1);
+			DocumentEvent edit = new DocumentEvent(new Document(newSource), offset, 1, "x");
+			IParseRootNode root = fParser.parse(new ParseState(newSource), previous, edit).getRootNode();
+
+			assertIncrementalResult(newSource, root);
+		}
+	}
+
 	/**
 	 * This method is not being used for formal testing, but it's useful to determine how effective
 	 * {@link ParseNode#trimToSize()} is.
@@ -1082,6 +1199,26 @@ public class JSParserTest extends TestCase
 	}
 
 	// utility methods
+	protected void assertIncrementalResult(String source, IParseRootNode root) throws Exception
+	{
+		IParseRootNode expected = parse(new ParseState(source));
+
+		assertEquals(expected.getStartingOffset(), root.getStartingOffset());
+		assertEquals(expected.getEndingOffset(), root.getEndingOffset());
+		assertEquals(expected.getChildCount(), root.getChildCount());
+
+		for (int i = 0; i < expected.getChildCount(); i++)
+		{
+			IParseNode expectedChild = expected.getChild(i);
+			IParseNode child = root.getChild(i);
+
+			assertEquals(expectedChild.toString(), child.toString());
+			assertEquals(expectedChild.getStartingOffset(), child.getStartingOffset());
+			assertEquals(expectedChild.getEndingOffset(), child.getEndingOffset());
+			assertSame(root, child.getParent());
+		}
+	}
+
 	protected void assertParseErrors(String... messages)
 	{
 		List<IParseError> errors = fParseResult.getErrors();
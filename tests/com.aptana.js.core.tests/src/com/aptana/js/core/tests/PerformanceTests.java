@@ -7,6 +7,7 @@ import junit.framework.TestCase;
 import junit.framework.TestResult;
 import junit.framework.TestSuite;
 
+import com.aptana.js.core.parsing.JSCompactASTPerformanceTest;
 import com.aptana.js.core.parsing.JSFlexScannerPerformanceTest;
 import com.aptana.js.core.parsing.JSParserPerformanceTest;
 import com.aptana.js.internal.core.parsing.sdoc.SDocParserPerformanceTest;
@@ -28,6 +29,7 @@ public class PerformanceTests extends TestCase
 		};
 
 		// $JUnit-BEGIN$
+		suite.addTestSuite(JSCompactASTPerformanceTest.class);
 		suite.addTestSuite(JSFlexScannerPerformanceTest.class);
 		suite.addTestSuite(JSParserPerformanceTest.class);
 		suite.addTestSuite(SDocParserPerformanceTest.class);
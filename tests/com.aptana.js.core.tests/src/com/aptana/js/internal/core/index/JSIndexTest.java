@@ -25,15 +25,16 @@ import org.eclipse.core.runtime.Platform;
 import com.aptana.core.CorePlugin;
 import com.aptana.core.IUserAgent;
 import com.aptana.core.IUserAgentManager;
+import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.IOUtil;
 import com.aptana.core.util.StringUtil;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexManager;
 import com.aptana.index.core.IndexPlugin;
-import com.aptana.index.core.IndexReader;
 import com.aptana.index.core.QueryResult;
 import com.aptana.index.core.SearchPattern;
 import com.aptana.index.core.build.BuildContext;
+import com.aptana.index.core.record.IRecordView;
 import com.aptana.jetty.util.epl.ajax.JSON;
 import com.aptana.js.core.JSCorePlugin;
 import com.aptana.js.core.index.IJSIndexConstants;
@@ -282,6 +283,44 @@ public class JSIndexTest extends TestCase
 		assertEquals(propertyName, retrievedProperty.getName());
 	}
 
+	/**
+	 * Members are looked up by owning type, so make sure types sharing a name prefix don't leak members into each other
+	 * and that a type listed more than once only returns its members once
+	 */
+	public void testMembersOfMultipleOwningTypes()
+	{
+		TypeElement type = new TypeElement();
+		type.setName("Foo");
+		PropertyElement property = new PropertyElement();
+		property.setName("fooProperty");
+		type.addProperty(property);
+		FunctionElement function = new FunctionElement();
+		function.setName("fooFunction");
+		type.addProperty(function);
+		this.writeType(type);
+
+		TypeElement subType = new TypeElement();
+		subType.setName("FooBar");
+		PropertyElement subProperty = new PropertyElement();
+		subProperty.setName("fooBarProperty");
+		subType.addProperty(subProperty);
+		this.writeType(subType);
+
+		JSIndexReader reader = new JSIndexReader();
+
+		List<PropertyElement> properties = reader.getProperties(this.getIndex(), "Foo");
+		assertEquals(1, properties.size());
+		assertEquals("fooProperty", properties.get(0).getName());
+
+		List<FunctionElement> functions = reader.getFunctions(this.getIndex(), "Foo");
+		assertEquals(1, functions.size());
+		assertEquals("fooFunction", functions.get(0).getName());
+
+		properties = reader.getProperties(this.getIndex(), CollectionsUtil.newList("Foo", "FooBar", "Foo"));
+		assertEquals(2, properties.size());
+		assertTrue(reader.getProperties(this.getIndex(), "Fo").isEmpty());
+	}
+
 	public void testSpecialAllUserAgentFlag()
 	{
 		// create property and use all user agents
@@ -313,11 +352,11 @@ public class JSIndexTest extends TestCase
 
 		// split result into columns
 		String word = properties.get(0).getWord();
-		String[] columns = IndexReader.DELIMITER_PATTERN.split(word);
-		assertEquals(3, columns.length);
+		IRecordView record = IJSIndexConstants.RECORD_CODEC.decode(word);
+		assertEquals(3, record.getFieldCount());
 
 		// grab last column and parse as JSON
-		String json = columns[2];
+		String json = record.getString(2);
 		Object m = JSON.parse(json);
 
 		// make sure we have a map
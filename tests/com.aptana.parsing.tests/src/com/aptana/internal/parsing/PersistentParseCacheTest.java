@@ -0,0 +1,261 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.parsing;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import beaver.Symbol;
+
+import com.aptana.core.build.IProblem.Severity;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ast.CompactParseRootNode;
+import com.aptana.parsing.ast.CompactParseTree;
+import com.aptana.parsing.ast.IParseError;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.ParseError;
+import com.aptana.parsing.ast.ParseNode;
+import com.aptana.parsing.ast.ParseRootNode;
+
+@SuppressWarnings("nls")
+public class PersistentParseCacheTest extends TestCase
+{
+	private static final String LANG = "text/words";
+	private static final String VERSION = "WordParser@1.0.0";
+
+	static class WordNode extends ParseNode
+	{
+		private final String fText;
+
+		WordNode(String text, int start, int end)
+		{
+			fText = text;
+			setLocation(start, end);
+		}
+
+		public String getLanguage()
+		{
+			return LANG;
+		}
+
+		public String getText()
+		{
+			return fText;
+		}
+	}
+
+	static class WordsRootNode extends ParseRootNode
+	{
+		WordsRootNode(Symbol[] children, int start, int end)
+		{
+			super(children, start, end);
+		}
+
+		public String getLanguage()
+		{
+			return LANG;
+		}
+	}
+
+	private File fDirectory;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		fDirectory = File.createTempFile("parseCache", null);
+		fDirectory.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		File[] files = fDirectory.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				file.delete();
+			}
+		}
+		fDirectory.delete();
+		fDirectory = null;
+
+		super.tearDown();
+	}
+
+	/**
+	 * Parses the words of the source: one node per word, and an error for each word in upper case
+	 * 
+	 * @param source
+	 * @return
+	 */
+	private ParseResult parse(String source)
+	{
+		List<Symbol> words = new ArrayList<Symbol>();
+		List<IParseError> errors = new ArrayList<IParseError>();
+		int start = 0;
+		for (String word : source.split(" "))
+		{
+			words.add(new WordNode(word, start, start + word.length() - 1));
+			if (word.equals(word.toUpperCase()))
+			{
+				errors.add(new ParseError(LANG, start, word.length(), "Shouting " + word, Severity.WARNING));
+			}
+			start += word.length() + 1;
+		}
+
+		ParseRootNode root = new WordsRootNode(words.toArray(new Symbol[words.size()]), 0, source.length() - 1);
+		root.setCommentNodes(new IParseNode[] { new WordNode("comment", 0, 6) });
+		return new ParseResult(root, errors);
+	}
+
+	private void assertSameResult(ParseResult expected, ParseResult actual)
+	{
+		assertNotNull(actual);
+		assertSameTree(expected.getRootNode(), actual.getRootNode());
+
+		IParseNode[] comments = actual.getRootNode().getCommentNodes();
+		assertEquals(1, comments.length);
+		assertEquals("comment", comments[0].getText());
+
+		List<IParseError> errors = actual.getErrors();
+		assertEquals(expected.getErrors().size(), errors.size());
+		for (int i = 0; i < errors.size(); i++)
+		{
+			IParseError error = errors.get(i);
+			assertEquals(expected.getErrors().get(i).getMessage(), error.getMessage());
+			assertEquals(expected.getErrors().get(i).getOffset(), error.getOffset());
+			assertEquals(expected.getErrors().get(i).getLength(), error.getLength());
+			assertEquals(expected.getErrors().get(i).getSeverity(), error.getSeverity());
+		}
+	}
+
+	private void assertSameTree(IParseNode expected, IParseNode actual)
+	{
+		assertEquals(expected.getText(), actual.getText());
+		assertEquals(expected.getLanguage(), actual.getLanguage());
+		assertEquals(expected.getStartingOffset(), actual.getStartingOffset());
+		assertEquals(expected.getEndingOffset(), actual.getEndingOffset());
+		assertEquals(expected.getChildCount(), actual.getChildCount());
+
+		for (int i = 0; i < expected.getChildCount(); i++)
+		{
+			assertSame(actual, actual.getChild(i).getParent());
+			assertSameTree(expected.getChild(i), actual.getChild(i));
+		}
+	}
+
+	public void testSerializedTreeRoundTrip()
+	{
+		PersistentParseCache cache = new PersistentParseCache(fDirectory, 1024 * 1024);
+		String source = "some words and SOME shouting";
+		ParseResult result = parse(source);
+		cache.put(LANG, VERSION, new ParseState(source), result);
+
+		ParseResult restored = cache.get(LANG, VERSION, new ParseState(source), getClass().getClassLoader());
+		assertSameResult(result, restored);
+		assertTrue(restored.getRootNode() instanceof WordsRootNode);
+		assertNotSame(result.getRootNode(), restored.getRootNode());
+		assertTrue(cache.getSize() > 0);
+	}
+
+	public void testCompactTreeRoundTrip()
+	{
+		PersistentParseCache cache = new PersistentParseCache(fDirectory, 1024 * 1024);
+		String source = "some words and SOME shouting";
+		ParseResult result = parse(source);
+		result = new ParseResult(CompactParseTree.compact(result.getRootNode()), result.getErrors());
+		cache.put(LANG, VERSION, new ParseState(source), result);
+
+		// compact trees don't need the classes of the parser
+		ParseResult restored = cache.get(LANG, VERSION, new ParseState(source), null);
+		assertSameResult(result, restored);
+		assertTrue(restored.getRootNode() instanceof CompactParseRootNode);
+	}
+
+	public void testKeptAcrossInstances()
+	{
+		String source = "some words";
+		ParseResult result = parse(source);
+		new PersistentParseCache(fDirectory, 1024 * 1024).put(LANG, VERSION, new ParseState(source), result);
+
+		PersistentParseCache cache = new PersistentParseCache(fDirectory, 1024 * 1024);
+		assertTrue(cache.getSize() > 0);
+		assertSameResult(result, cache.get(LANG, VERSION, new ParseState(source), getClass().getClassLoader()));
+	}
+
+	public void testMisses()
+	{
+		PersistentParseCache cache = new PersistentParseCache(fDirectory, 1024 * 1024);
+		String source = "some words";
+		cache.put(LANG, VERSION, new ParseState(source), parse(source));
+		ClassLoader classLoader = getClass().getClassLoader();
+
+		assertNull(cache.get(LANG, VERSION, new ParseState("some word"), classLoader));
+		assertNull(cache.get(LANG, "WordParser@1.0.1", new ParseState(source), classLoader));
+		assertNull(cache.get("text/other", VERSION, new ParseState(source), classLoader));
+		assertNotNull(cache.get(LANG, VERSION, new ParseState(source), classLoader));
+	}
+
+	public void testSerializedTreeNeedsClassLoader()
+	{
+		PersistentParseCache cache = new PersistentParseCache(fDirectory, 1024 * 1024);
+		String source = "some words";
+		cache.put(LANG, VERSION, new ParseState(source), parse(source));
+
+		assertNull(cache.get(LANG, VERSION, new ParseState(source), null));
+	}
+
+	public void testClear()
+	{
+		PersistentParseCache cache = new PersistentParseCache(fDirectory, 1024 * 1024);
+		String source = "some words";
+		cache.put(LANG, VERSION, new ParseState(source), parse(source));
+		cache.clear();
+
+		assertEquals(0, cache.getSize());
+		assertNull(cache.get(LANG, VERSION, new ParseState(source), getClass().getClassLoader()));
+	}
+
+	public void testEvictsLeastRecentlyUsed()
+	{
+		// sources of the same shape, so that their results take about the same space
+		String first = "first words of a source";
+		String second = "other words of a source";
+		String third = "third words of a source";
+		ClassLoader classLoader = getClass().getClassLoader();
+
+		PersistentParseCache cache = new PersistentParseCache(fDirectory, 1024 * 1024);
+		cache.put(LANG, VERSION, new ParseState(first), parse(first));
+		long size = cache.getSize();
+		cache.clear();
+
+		// room for two results but not three, and two are within the size evictions go back to
+		cache = new PersistentParseCache(fDirectory, size * 14 / 5);
+		cache.put(LANG, VERSION, new ParseState(first), parse(first));
+		cache.put(LANG, VERSION, new ParseState(second), parse(second));
+		for (File file : fDirectory.listFiles())
+		{
+			file.setLastModified(System.currentTimeMillis() - 60000);
+		}
+
+		// using the first result makes the second the least recently used one
+		assertNotNull(cache.get(LANG, VERSION, new ParseState(first), classLoader));
+		cache.put(LANG, VERSION, new ParseState(third), parse(third));
+
+		assertNotNull(cache.get(LANG, VERSION, new ParseState(first), classLoader));
+		assertNull(cache.get(LANG, VERSION, new ParseState(second), classLoader));
+		assertNotNull(cache.get(LANG, VERSION, new ParseState(third), classLoader));
+		assertTrue(cache.getSize() <= size * 14 / 5);
+	}
+}
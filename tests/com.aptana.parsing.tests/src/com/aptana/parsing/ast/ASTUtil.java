@@ -21,6 +21,27 @@ public class ASTUtil
 	{
 	}
 
+	/**
+	 * Returns the type, range and source of each node of a tree, one node per line. Comparing the dumps of a tree
+	 * taken before and after an operation tells whether the operation modified it.
+	 * 
+	 * @param node
+	 * @return
+	 */
+	public static String dumpTree(IParseNode node)
+	{
+		StringBuilder builder = new StringBuilder();
+		builder.append(node.getNodeType()).append(' ').append(node.getStartingOffset()).append('-')
+				.append(node.getEndingOffset()).append(' ').append(node).append('\n');
+
+		for (IParseNode child : node.getChildren())
+		{
+			builder.append(dumpTree(child));
+		}
+
+		return builder.toString();
+	}
+
 	public static void showBeforeAndAfterTrim(IParseNode node)
 	{
 		final int size[] = { 1, 1, 0 }; // add one to the child counts to include the root node
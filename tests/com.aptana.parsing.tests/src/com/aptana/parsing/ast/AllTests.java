@@ -27,7 +27,9 @@ public class AllTests
 			}
 		};
 		//$JUnit-BEGIN$
+		suite.addTestSuite(CompactParseTreeTests.class);
 		suite.addTestSuite(ParseNodeTests.class);
+		suite.addTestSuite(ParseRootNodeTests.class);
 		//$JUnit-END$
 		return suite;
 	}
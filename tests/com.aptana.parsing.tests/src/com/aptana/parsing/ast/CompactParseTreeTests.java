@@ -0,0 +1,286 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing.ast;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+import beaver.Symbol;
+
+@SuppressWarnings("nls")
+public class CompactParseTreeTests extends TestCase
+{
+	static class TextNode extends ParseNode
+	{
+		private String _text;
+		private short _type;
+
+		public TextNode(String text, short type, int start, int end)
+		{
+			super();
+
+			this._text = text;
+			this._type = type;
+			this.setLocation(start, end);
+		}
+
+		public String getLanguage()
+		{
+			return LANG;
+		}
+
+		@Override
+		public short getNodeType()
+		{
+			return _type;
+		}
+
+		public String getText()
+		{
+			return this._text;
+		}
+	}
+
+	private static final String LANG = "text/simple";
+
+	private ParseRootNode root;
+	private IParseRootNode compact;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		// 10 statements of 10 chars, each holding 3 words
+		Symbol[] statements = new Symbol[10];
+
+		for (int i = 0; i < statements.length; i++)
+		{
+			int start = i * 10;
+			TextNode statement = new TextNode("s" + i, (short) 1, start, start + 8);
+
+			statement.addChild(new TextNode("s" + i + "a", (short) 2, start, start + 2));
+			statement.addChild(new TextNode("s" + i + "b", (short) 2, start + 3, start + 5));
+			statement.addChild(new TextNode("s" + i + "c", (short) 3, start + 6, start + 8));
+			statements[i] = statement;
+		}
+
+		root = new ParseRootNode(statements, 0, 99)
+		{
+			public String getLanguage()
+			{
+				return LANG;
+			}
+		};
+		root.setCommentNodes(new IParseNode[] { new TextNode("comment", (short) 4, 100, 109) });
+		compact = CompactParseTree.compact(root);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		root = null;
+		compact = null;
+
+		super.tearDown();
+	}
+
+	/**
+	 * Check that the compact node has the same properties and descendants as the original one
+	 * 
+	 * @param expected
+	 * @param actual
+	 */
+	private void assertSameTree(IParseNode expected, IParseNode actual)
+	{
+		assertEquals(expected.getText(), actual.getText());
+		assertEquals(expected.getNodeType(), actual.getNodeType());
+		assertEquals(expected.getLanguage(), actual.getLanguage());
+		assertEquals(expected.getElementName(), actual.getElementName());
+		assertEquals(expected.getStartingOffset(), actual.getStartingOffset());
+		assertEquals(expected.getEndingOffset(), actual.getEndingOffset());
+		assertEquals(expected.getIndex(), actual.getIndex());
+		assertEquals(expected.getChildCount(), actual.getChildCount());
+
+		for (int i = 0; i < expected.getChildCount(); i++)
+		{
+			IParseNode child = actual.getChild(i);
+
+			assertEquals(actual, child.getParent());
+			assertEquals(i, actual.getChildIndex(child));
+			assertSameTree(expected.getChild(i), child);
+		}
+	}
+
+	/**
+	 * testStructure
+	 */
+	public void testStructure()
+	{
+		assertTrue(compact instanceof CompactParseRootNode);
+		assertSameTree(root, compact);
+		assertEquals(42, ((CompactParseRootNode) compact).getTree().getNodeCount());
+	}
+
+	/**
+	 * testCommentNodes
+	 */
+	public void testCommentNodes()
+	{
+		IParseNode[] comments = compact.getCommentNodes();
+
+		assertEquals(1, comments.length);
+		assertSameTree(root.getCommentNodes()[0], comments[0]);
+		assertNull(comments[0].getParent());
+	}
+
+	/**
+	 * testNavigation
+	 */
+	public void testNavigation()
+	{
+		IParseNode statement = compact.getChild(4);
+
+		assertEquals("s3", statement.getPreviousSibling().getText());
+		assertEquals("s5", statement.getNextSibling().getText());
+		assertNull(compact.getFirstChild().getPreviousSibling());
+		assertNull(compact.getLastChild().getNextSibling());
+		assertEquals("s4a", statement.getNextNode().getText());
+		assertEquals("s5", statement.getLastChild().getNextNode().getText());
+		assertEquals("s3c", statement.getPreviousNode().getText());
+		assertSame(compact, statement.getFirstChild().getRootNode());
+	}
+
+	/**
+	 * testTraversal
+	 */
+	public void testTraversal()
+	{
+		StringBuilder expected = new StringBuilder();
+		StringBuilder actual = new StringBuilder();
+
+		for (IParseNode node = root; node != null; node = node.getNextNode())
+		{
+			expected.append(node.getText()).append(' ');
+		}
+		for (IParseNode node = compact; node != null; node = node.getNextNode())
+		{
+			actual.append(node.getText()).append(' ');
+		}
+
+		assertEquals(expected.toString(), actual.toString());
+	}
+
+	/**
+	 * testNodeAtOffset
+	 */
+	public void testNodeAtOffset()
+	{
+		for (int offset = -1; offset <= 100; offset++)
+		{
+			IParseNode expected = root.getNodeAtOffset(offset);
+			IParseNode actual = compact.getNodeAtOffset(offset);
+
+			if (expected == null)
+			{
+				assertNull(actual);
+			}
+			else
+			{
+				assertEquals(expected.getText(), actual.getText());
+			}
+		}
+	}
+
+	/**
+	 * testRangeLookups
+	 */
+	public void testRangeLookups()
+	{
+		assertEquals("s4", compact.getEnclosingNode(41, 45).getText());
+		assertEquals(root.getNodesInRange(27, 34).length, compact.getNodesInRange(27, 34).length);
+	}
+
+	/**
+	 * testViewsEquality
+	 */
+	public void testViewsEquality()
+	{
+		assertEquals(compact.getChild(2), compact.getChild(2));
+		assertEquals(compact.getChild(2).hashCode(), compact.getChild(2).hashCode());
+		assertFalse(compact.getChild(2).equals(compact.getChild(3)));
+	}
+
+	/**
+	 * testReadOnly
+	 */
+	public void testReadOnly()
+	{
+		try
+		{
+			compact.addChild(new TextNode("x", (short) 1, 0, 0));
+			fail("Compact trees are read-only");
+		}
+		catch (UnsupportedOperationException e)
+		{
+			// expected
+		}
+	}
+
+	/**
+	 * testCompactTwice
+	 */
+	public void testCompactTwice()
+	{
+		assertSame(compact, CompactParseTree.compact(compact));
+	}
+
+	/**
+	 * testWriteAndRead
+	 */
+	public void testWriteAndRead() throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		CompactParseTree.write(root, new DataOutputStream(bytes));
+
+		IParseRootNode read = CompactParseTree.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertSameTree(root, read);
+		assertEquals(1, read.getCommentNodes().length);
+		assertSameTree(root.getCommentNodes()[0], read.getCommentNodes()[0]);
+		assertEquals("s4", read.getEnclosingNode(41, 45).getText());
+	}
+
+	/**
+	 * testReadTruncated
+	 */
+	public void testReadTruncated() throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		CompactParseTree.write(compact, new DataOutputStream(bytes));
+
+		byte[] truncated = new byte[bytes.size() / 2];
+
+		System.arraycopy(bytes.toByteArray(), 0, truncated, 0, truncated.length);
+		try
+		{
+			CompactParseTree.read(new DataInputStream(new ByteArrayInputStream(truncated)));
+			fail("A truncated tree can't be read");
+		}
+		catch (IOException e)
+		{
+			// expected
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing.ast;
+
+import junit.framework.TestCase;
+import beaver.Symbol;
+
+import com.aptana.parsing.util.ParseUtil;
+
+@SuppressWarnings("nls")
+public class ParseRootNodeTests extends TestCase
+{
+	static class TextNode extends ParseNode
+	{
+		private String _text;
+
+		public TextNode(String text, int start, int end)
+		{
+			super();
+
+			this._text = text;
+			this.setLocation(start, end);
+		}
+
+		public String getLanguage()
+		{
+			return LANG;
+		}
+
+		public String getText()
+		{
+			return this._text;
+		}
+	}
+
+	private static final String LANG = "text/simple";
+
+	private ParseRootNode root;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		// 20 statements of 10 chars, each holding 3 words
+		Symbol[] statements = new Symbol[20];
+
+		for (int i = 0; i < statements.length; i++)
+		{
+			int start = i * 10;
+			TextNode statement = new TextNode("s" + i, start, start + 8);
+
+			statement.addChild(new TextNode("s" + i + "a", start, start + 2));
+			statement.addChild(new TextNode("s" + i + "b", start + 3, start + 5));
+			statement.addChild(new TextNode("s" + i + "c", start + 6, start + 8));
+			statements[i] = statement;
+		}
+
+		root = new ParseRootNode(statements, 0, 199)
+		{
+			public String getLanguage()
+			{
+				return LANG;
+			}
+		};
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		root = null;
+
+		super.tearDown();
+	}
+
+	/**
+	 * testNodeAtOffset
+	 */
+	public void testNodeAtOffset()
+	{
+		assertEquals("s0a", root.getNodeAtOffset(0).getText());
+		assertEquals("s7b", root.getNodeAtOffset(74).getText());
+		assertEquals("s19c", root.getNodeAtOffset(198).getText());
+	}
+
+	/**
+	 * testNodeAtOffsetBetweenChildren
+	 */
+	public void testNodeAtOffsetBetweenChildren()
+	{
+		assertSame(root, root.getNodeAtOffset(9));
+		assertSame(root, root.getNodeAtOffset(129));
+	}
+
+	/**
+	 * testNodeAtOffsetOutsideRoot
+	 */
+	public void testNodeAtOffsetOutsideRoot()
+	{
+		assertNull(root.getNodeAtOffset(-1));
+		assertNull(root.getNodeAtOffset(200));
+	}
+
+	/**
+	 * testNodeAtOffsetAfterMove
+	 */
+	public void testNodeAtOffsetAfterMove()
+	{
+		assertEquals("s5a", root.getNodeAtOffset(50).getText());
+
+		ParseUtil.addOffset(root, 100);
+
+		assertEquals("s0a", root.getNodeAtOffset(100).getText());
+		assertEquals("s5a", root.getNodeAtOffset(150).getText());
+	}
+
+	/**
+	 * testNodeAtOffsetAfterChildrenChange
+	 */
+	public void testNodeAtOffsetAfterChildrenChange()
+	{
+		assertEquals("s3b", root.getNodeAtOffset(34).getText());
+
+		root.replaceChild(3, new TextNode("r3", 30, 38));
+		assertEquals("r3", root.getNodeAtOffset(34).getText());
+
+		root.setChildren(new IParseNode[] { new TextNode("all", 0, 199) });
+		assertEquals("all", root.getNodeAtOffset(34).getText());
+	}
+
+	/**
+	 * testEnclosingNode
+	 */
+	public void testEnclosingNode()
+	{
+		assertEquals("s4b", root.getEnclosingNode(43, 45).getText());
+		assertEquals("s4", root.getEnclosingNode(41, 45).getText());
+		assertSame(root, root.getEnclosingNode(45, 55));
+		assertNull(root.getEnclosingNode(195, 205));
+	}
+
+	/**
+	 * testNodesInRange
+	 */
+	public void testNodesInRange()
+	{
+		StringBuilder buffer = new StringBuilder();
+
+		for (IParseNode node : root.getNodesInRange(27, 34))
+		{
+			buffer.append(node.getText()).append(' ');
+		}
+
+		assertEquals("s2 s2c s3 s3a s3b ", buffer.toString());
+		assertEquals(0, root.getNodesInRange(209, 300).length);
+	}
+}
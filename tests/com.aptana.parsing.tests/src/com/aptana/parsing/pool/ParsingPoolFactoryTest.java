@@ -7,8 +7,6 @@
  */
 package com.aptana.parsing.pool;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Queue;
@@ -17,17 +15,16 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import junit.framework.TestCase;
 import beaver.Symbol;
 
-import com.aptana.core.epl.util.LRUCacheWithSoftPrunedValues;
 import com.aptana.parsing.AbstractParser;
 import com.aptana.parsing.IParseState;
 import com.aptana.parsing.IParseStateCacheKey;
 import com.aptana.parsing.IParser;
 import com.aptana.parsing.IParserPool;
 import com.aptana.parsing.ParseState;
-import com.aptana.parsing.ParseStateCacheKey;
 import com.aptana.parsing.ParseStateCacheKeyWithComments;
 import com.aptana.parsing.ParsingEngine;
 import com.aptana.parsing.WorkingParseResult;
+import com.aptana.parsing.ast.CompactParseRootNode;
 import com.aptana.parsing.ast.IParseRootNode;
 import com.aptana.parsing.ast.ParseRootNode;
 
@@ -118,6 +115,8 @@ public class ParsingPoolFactoryTest extends TestCase
 		 */
 		private final IParser parser;
 
+		public int compactASTThreshold = -1;
+
 		/**
 		 * @param parser
 		 */
@@ -154,6 +153,21 @@ public class ParsingPoolFactoryTest extends TestCase
 		public void checkIn(IParser t)
 		{
 		}
+
+		public int getCompactASTThreshold()
+		{
+			return compactASTThreshold;
+		}
+
+		public String getParserVersion()
+		{
+			return null;
+		}
+
+		public ClassLoader getASTClassLoader()
+		{
+			return null;
+		}
 	}
 
 	/**
@@ -191,7 +205,7 @@ public class ParsingPoolFactoryTest extends TestCase
 
 	Parser parser;
 
-	IParserPool parserPool;
+	ParserPool parserPool;
 
 	ParsingEngine parsingEngine;
 
@@ -235,6 +249,20 @@ public class ParsingPoolFactoryTest extends TestCase
 		assertEquals(1, parser.parses);
 	}
 
+	public void testCompactResult() throws Exception
+	{
+		parserPool.compactASTThreshold = 0;
+		queue.add(parseRootNode);
+		IParseRootNode ast = parsingEngine.parse("test", new ParseState("", 0)).getRootNode();
+		assertTrue(ast instanceof CompactParseRootNode);
+		assertEquals("test", ast.getLanguage());
+		assertEquals(1, parser.parses);
+
+		// Second parse: the compact ast should be cached.
+		assertSame(ast, parsingEngine.parse("test", new ParseState("", 0)).getRootNode());
+		assertEquals(1, parser.parses);
+	}
+
 	public void testParserPoolFactoryThreaded() throws Exception
 	{
 
@@ -399,42 +427,21 @@ public class ParsingPoolFactoryTest extends TestCase
 			// Empty body just to access protected constructor.
 		};
 
-		// Change the cache for a cache with an auxiliary cache that's predictable.
-		Field declaredField = ParsingEngine.class.getDeclaredField("fParseCache");
-		declaredField.setAccessible(true);
-		Map auxiliaryCache = new HashMap();
-		Constructor<LRUCacheWithSoftPrunedValues> constructor = LRUCacheWithSoftPrunedValues.class
-				.getDeclaredConstructor(int.class, Map.class);
-		constructor.setAccessible(true);
-		LRUCacheWithSoftPrunedValues cache = constructor.newInstance(4, auxiliaryCache);
-		declaredField.set(parsingEngine, cache);
-
 		mainParser.setParsingEngine(parsingEngine);
 
-		// In the end, the mainContent should be in the LRU, while the subContent should be in the auxiliary cache.
+		// Each source has 4 chars, so only one result fits in the strong references at a time. In the end, the
+		// mainContent should be kept, while the subContent should've been pruned.
 		parsingEngine.parse("mainContent", new ParseState("main"));
 
-		assertEquals(1, cache.keys().size());
-		for (Object key : cache.keys())
-		{
-			ParseStateCacheKey cacheKey = (ParseStateCacheKey) key;
-			Object content = cacheKey.getAt(0);
-			if (!"mainContent".equals(content))
-			{
-				fail("Could not find mainContent in LRU main memory. Found: " + content);
-			}
-		}
-		assertEquals(3, auxiliaryCache.size());
-		for (Object key : auxiliaryCache.keySet())
-		{
-			ParseStateCacheKey cacheKey = (ParseStateCacheKey) key;
-			Object content = cacheKey.getAt(0);
-			if (!"subContent".equals(content))
-			{
-				fail("Could not find subContent in LRU main memory. Found: " + content);
-			}
-		}
+		assertEquals(4, parsingEngine.getCacheMissCount());
+		assertEquals(4, parsingEngine.getCacheEvictionCount());
+		assertEquals(4, parsingEngine.getCacheWeight());
 
+		IParseRootNode ast = parsingEngine.parse("mainContent", new ParseState("main")).getRootNode();
+		assertEquals("main", ast.getLanguage());
+		assertEquals(1, parsingEngine.getCacheHitCount());
+		assertEquals(4, parsingEngine.getCacheMissCount());
+		assertEquals(4, parsingEngine.getCacheEvictionCount());
 	}
 
 }
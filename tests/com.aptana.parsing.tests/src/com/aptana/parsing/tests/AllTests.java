@@ -7,6 +7,7 @@
  */
 package com.aptana.parsing.tests;
 
+import com.aptana.internal.parsing.PersistentParseCacheTest;
 import com.aptana.parsing.ParseStateCacheKeyWithCommentsTest;
 
 import junit.framework.Test;
@@ -31,6 +32,8 @@ public class AllTests
 		// $JUnit-BEGIN$
 		suite.addTestSuite(ParseStateCacheKeyWithCommentsTest.class);
 		suite.addTestSuite(ParseStateTest.class);
+		suite.addTestSuite(PersistentParseCacheTest.class);
+		suite.addTestSuite(TextPoolTest.class);
 		suite.addTest(com.aptana.json.AllTests.suite());
 		suite.addTest(com.aptana.parsing.ast.AllTests.suite());
 		suite.addTest(com.aptana.parsing.lexer.LexerTests.suite());
@@ -0,0 +1,122 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing.tests;
+
+import junit.framework.TestCase;
+import beaver.TextPool;
+
+@SuppressWarnings("nls")
+public class TextPoolTest extends TestCase
+{
+	private TextPool fPool;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		fPool = new TextPool();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		fPool = null;
+		super.tearDown();
+	}
+
+	public void testSameTextReturnsSameValue()
+	{
+		char[] buffer = "foo bar foo".toCharArray();
+		String foo = fPool.add(buffer, 0, 3);
+
+		assertEquals("foo", foo);
+		assertSame(foo, fPool.add(buffer, 8, 3));
+		assertSame(foo, fPool.add(new String("foo")));
+		assertEquals("bar", fPool.add(buffer, 4, 3));
+		assertEquals(2, fPool.size());
+	}
+
+	public void testAddString()
+	{
+		String foo = new String("foo");
+
+		assertSame(foo, fPool.add(foo));
+		assertSame(foo, fPool.add(new String("foo")));
+		assertSame(foo, fPool.add("foo foo".toCharArray(), 4, 3));
+		assertNull(fPool.add(null));
+		assertEquals(1, fPool.size());
+	}
+
+	public void testCollidingHashes()
+	{
+		// all these have the same hash code
+		String[] texts = { "AaAa", "AaBB", "BBAa", "BBBB" };
+		assertEquals(texts[0].hashCode(), texts[3].hashCode());
+
+		String[] pooled = new String[texts.length];
+		for (int i = 0; i < texts.length; i++)
+		{
+			pooled[i] = fPool.add(texts[i].toCharArray(), 0, texts[i].length());
+			assertEquals(texts[i], pooled[i]);
+		}
+		for (int i = 0; i < texts.length; i++)
+		{
+			assertSame(pooled[i], fPool.add(texts[i].toCharArray(), 0, texts[i].length()));
+			assertSame(pooled[i], fPool.add(new String(texts[i])));
+		}
+		assertEquals(texts.length, fPool.size());
+	}
+
+	public void testRehashKeepsValues()
+	{
+		int capacity = fPool.capacity();
+		String[] pooled = new String[capacity * 2];
+		for (int i = 0; i < pooled.length; i++)
+		{
+			pooled[i] = fPool.add(Integer.toString(i));
+		}
+
+		assertTrue(fPool.capacity() > capacity);
+		assertEquals(pooled.length, fPool.size());
+		for (int i = 0; i < pooled.length; i++)
+		{
+			char[] text = Integer.toString(i).toCharArray();
+			assertSame(pooled[i], fPool.add(text, 0, text.length));
+		}
+	}
+
+	public void testClear()
+	{
+		String foo = fPool.add(new String("foo"));
+		int capacity = fPool.capacity();
+		fPool.clear();
+
+		assertEquals(0, fPool.size());
+		assertEquals(capacity, fPool.capacity());
+
+		String newFoo = fPool.add("foo".toCharArray(), 0, 3);
+		assertEquals(foo, newFoo);
+		assertNotSame(foo, newFoo);
+		assertEquals(1, fPool.size());
+	}
+
+	public void testClearShrinksLargeTable()
+	{
+		int capacity = fPool.capacity();
+		for (int i = 0; fPool.capacity() <= TextPool.MAX_RETAINED_CAPACITY; i++)
+		{
+			fPool.add(Integer.toString(i));
+		}
+		fPool.clear();
+
+		assertEquals(0, fPool.size());
+		assertEquals(capacity, fPool.capacity());
+		assertEquals("foo", fPool.add("foo"));
+		assertEquals(1, fPool.size());
+	}
+}
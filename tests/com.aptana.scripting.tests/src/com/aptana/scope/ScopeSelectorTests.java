@@ -449,4 +449,38 @@ public class ScopeSelectorTests extends TestCase
 		assertFalse("Selector shouldn't match, but does",
 				textSourceSelector.matches("text.html.basic source.ruby.embedded.html"));
 	}
+
+	public void testMatcherBestMatch()
+	{
+		String scope = "text.haml meta.line.ruby.haml source.ruby.embedded.haml comment.line.number-sign.ruby";
+
+		IScopeSelector textSourceSelector = new ScopeSelector("text source");
+		IScopeSelector metaSourceSelector = new ScopeSelector("meta source");
+		IScopeSelector textMinusMetaSelector = new ScopeSelector("text -meta");
+		IScopeSelector textMinusMetaSourceSelector = new ScopeSelector("text -meta source");
+		IScopeSelector stringOrCommentSelector = new ScopeSelector("string, comment.line");
+
+		ScopeSelectorMatcher matcher = new ScopeSelectorMatcher(Arrays.asList(textSourceSelector, metaSourceSelector,
+				textMinusMetaSelector, textMinusMetaSourceSelector, stringOrCommentSelector));
+
+		assertEquals(stringOrCommentSelector, matcher.bestMatch(scope));
+		assertEquals(textMinusMetaSourceSelector, matcher.bestMatch("text.haml meta.line.ruby.haml"));
+		assertEquals(textMinusMetaSourceSelector, matcher.bestMatch("text.haml"));
+		assertNull(matcher.bestMatch("source.ruby"));
+		assertNull(matcher.bestMatch(null));
+	}
+
+	public void testMatcherLastOneWins()
+	{
+		String scope = "text.haml";
+
+		IScopeSelector textMinusMetaSelector = new ScopeSelector("text -meta");
+		IScopeSelector textMinusMetaSourceSelector = new ScopeSelector("text -meta source");
+		IScopeSelector textSourceSelector = new ScopeSelector("text source");
+
+		assertEquals(textMinusMetaSourceSelector, new ScopeSelectorMatcher(Arrays.asList(textSourceSelector,
+				textMinusMetaSelector, textMinusMetaSourceSelector)).bestMatch(scope));
+		assertEquals(textMinusMetaSelector, new ScopeSelectorMatcher(Arrays.asList(textMinusMetaSourceSelector,
+				textSourceSelector, textMinusMetaSelector)).bestMatch(scope));
+	}
 }
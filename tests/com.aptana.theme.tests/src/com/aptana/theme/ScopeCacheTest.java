@@ -0,0 +1,84 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.theme;
+
+import junit.framework.TestCase;
+
+public class ScopeCacheTest extends TestCase
+{
+
+	// all of these have the same hash code
+	private static final String[] COLLIDING = { "AaAaAa", "AaAaBB", "AaBBAa", "AaBBBB", "BBAaAa" };
+
+	private ScopeCache<String> cache;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		cache = new ScopeCache<String>(16);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		cache = null;
+		super.tearDown();
+	}
+
+	public void testGetMissing() throws Exception
+	{
+		assertNull(cache.get("source.js"));
+	}
+
+	public void testPutAndGet() throws Exception
+	{
+		cache.put("source.js", "js");
+		cache.put("source.css", "css");
+		assertEquals("js", cache.get("source.js"));
+		assertEquals("css", cache.get("source.css"));
+	}
+
+	public void testCollidingPairIsKept() throws Exception
+	{
+		assertEquals(COLLIDING[0].hashCode(), COLLIDING[1].hashCode());
+
+		// alternate between the two, like two hot scopes would
+		for (int i = 0; i < 3; i++)
+		{
+			cache.put(COLLIDING[0], "first");
+			cache.put(COLLIDING[1], "second");
+			assertEquals("first", cache.get(COLLIDING[0]));
+			assertEquals("second", cache.get(COLLIDING[1]));
+		}
+		assertEquals(2, cache.getScopes().size());
+	}
+
+	public void testPutReplacesValue() throws Exception
+	{
+		cache.put(COLLIDING[0], "old");
+		cache.put(COLLIDING[1], "other");
+		cache.put(COLLIDING[0], "new");
+		assertEquals("new", cache.get(COLLIDING[0]));
+		assertEquals("other", cache.get(COLLIDING[1]));
+		assertEquals(2, cache.getScopes().size());
+	}
+
+	public void testOldestCollidingEntryIsEvicted() throws Exception
+	{
+		for (int i = 0; i < ScopeCache.WAYS + 1; i++)
+		{
+			cache.put(COLLIDING[i], COLLIDING[i]);
+		}
+		assertNull(cache.get(COLLIDING[0]));
+		for (int i = 1; i < ScopeCache.WAYS + 1; i++)
+		{
+			assertEquals(COLLIDING[i], cache.get(COLLIDING[i]));
+		}
+	}
+}
@@ -7,6 +7,7 @@
  */
 package com.aptana.theme;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 
@@ -124,6 +125,19 @@ public class ThemeTest extends TestCase
 		assertEquals(new RGB(128, 128, 128), theme.getBackground());
 	}
 
+	public void testCachedScopesAreKeptWhenThemeChanges()
+	{
+		assertTrue(theme.getCachedScopes().isEmpty());
+		TextAttribute attribute = theme.getTextAttribute("constant.language.js");
+		assertSame(attribute, theme.getTextAttribute("constant.language.js"));
+		assertEquals(Arrays.asList("constant.language.js"), theme.getCachedScopes());
+
+		// the cache is wiped, but its scopes are kept to warm up the next one
+		theme.updateBG(new RGB(128, 128, 128));
+		assertEquals(Arrays.asList("constant.language.js"), theme.getCachedScopes());
+		assertNotSame(attribute, theme.getTextAttribute("constant.language.js"));
+	}
+
 	public void testGetBackAsRGBReturnsThemeBackgroundIfNoBackGroundSpecified()
 	{
 		assertEquals(theme.getBackground(), theme.getBackgroundAsRGB("something.that.inherits"));
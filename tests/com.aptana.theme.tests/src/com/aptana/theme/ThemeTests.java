@@ -31,6 +31,7 @@ public class ThemeTests
 		suite.addTestSuite(ThemeTest.class);
 		suite.addTestSuite(ColorManagerTest.class);
 		suite.addTestSuite(ThemeManagerTest.class);
+		suite.addTestSuite(ScopeCacheTest.class);
 		// $JUnit-END$
 		return suite;
 	}